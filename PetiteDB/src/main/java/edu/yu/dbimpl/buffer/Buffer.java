@@ -3,10 +3,15 @@ package edu.yu.dbimpl.buffer;
 import edu.yu.dbimpl.file.BlockIdBase;
 import edu.yu.dbimpl.file.FileMgrBase;
 import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.log.LogMgr;
 import edu.yu.dbimpl.log.LogMgrBase;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -38,6 +43,9 @@ public class Buffer extends BufferBase{
     private int lsn = -1;
     private final Set<Integer> modifyingTxs = Collections.synchronizedSet(new HashSet<>());
     private final Object lock = new Object();
+    // row images whose writes reach the page before they're logged, mapped to
+    // the action that logs them: see writePending()
+    private final Map<Object, Runnable> pendingImages = new IdentityHashMap<>();
 
 
     public Buffer(FileMgrBase fileMgr, LogMgrBase logMgr) {
@@ -72,7 +80,8 @@ public class Buffer extends BufferBase{
      * @param txnum identifies the transaction that modified the Buffer.
      * @param lsn The LSN of the most recent log record, set to a negative number
      * to indicate that the client didn't generate a log record when modifying
-     * the Buffer.
+     * the Buffer.  The buffer keeps the highest LSN set since it was last
+     * written, and forces the log through it before writing the page.
      * @throws IllegalArgumentException if txnum is negative
      */
     @Override
@@ -82,7 +91,7 @@ public class Buffer extends BufferBase{
         }
         synchronized(lock){
             modifyingTxs.add(txnum);
-            this.lsn = lsn;
+            this.lsn = Math.max(this.lsn, lsn);
             this.modified = 1;
         }
     }
@@ -134,6 +143,57 @@ public class Buffer extends BufferBase{
         }
     }
 
+    /** Performs the specified write of a field of the page whose log record
+     * is deferred, registering the image that holds its old and new values.
+     * Before the page is next written to disk, the logger is invoked to log
+     * the image: it must then deregister the image (see removePendingImage).
+     *
+     * @param image the row image that the write is added to
+     * @param logger logs the image if it isn't yet logged
+     * @param write writes the field to the page
+     */
+    public void writePending(Object image, Runnable logger, Runnable write) {
+        synchronized(lock){
+            pendingImages.put(image, logger);
+            write.run();
+        }
+    }
+
+    /** Deregisters the specified row image once it has been logged.
+     *
+     * @see #writePending
+     */
+    public void removePendingImage(Object image) {
+        synchronized(lock){
+            pendingImages.remove(image);
+        }
+    }
+
+    /** Writes the page to disk, and clears the buffer's modified state, after
+     * logging the row images that are pending on it and forcing the log through
+     * the buffer's LSN (write-ahead logging).  The loggers are run outside the
+     * buffer's lock since they lock their image before the buffer.
+     */
+    protected void flushToDisk(){
+        while(true){
+            List<Runnable> loggers;
+            synchronized(lock){
+                if(pendingImages.isEmpty()){
+                    if(lsn >= 0){
+                        ((LogMgr)logMgr).flushThrough(lsn);
+                    }
+                    fileMgr.write(block, page);
+                    flush();
+                    return;
+                }
+                loggers = new ArrayList<>(pendingImages.values());
+            }
+            for(Runnable logger : loggers){
+                logger.run();
+            }
+        }
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (this == obj) return true;
@@ -153,8 +153,7 @@ public class BufferMgr extends BufferMgrBase {
         synchronized (lock){
             for(BufferBase b : bufferArray){
                 if(((Buffer)b).isModified() && ((Buffer) b).hasTXN(txnum)){
-                    ((Buffer) b).flush();
-                    fileMgr.write(b.block(), b.contents());
+                    ((Buffer) b).flushToDisk();
                 }
             }
         }
@@ -168,8 +167,7 @@ public class BufferMgr extends BufferMgrBase {
         synchronized (lock){
             for(BufferBase b : bufferArray){
                 if(((Buffer)b).isModified()){
-                    ((Buffer) b).flush();
-                    fileMgr.write(b.block(), b.contents());
+                    ((Buffer) b).flushToDisk();
                 }
             }
         }
@@ -275,8 +273,7 @@ public class BufferMgr extends BufferMgrBase {
     }
 
     private void flushAndClear(BufferBase buffer){
-        fileMgr.write(buffer.block(), buffer.contents());
-        ((Buffer)buffer).flush();
+        ((Buffer)buffer).flushToDisk();
         blockMap.remove(buffer.block());
     }
 
@@ -7,6 +7,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
 
 /**
  * The file module as a whole is the lowest file in the PetiteDB stack.  It
@@ -42,6 +43,15 @@ import java.util.concurrent.ConcurrentHashMap;
  * The DBMS has exactly one FileMgr object (singleton pattern), which is
  * (conceptually) created during system startup, and in practice by a single
  * invocation of the constructor.
+ *
+ * Implementation note: files chosen by the compression policy (see
+ * setCompressionPolicy) are stored compressed.  Such a file F is kept on disk
+ * as F, holding each block's compressed bytes, and F.lzmap, mapping each block
+ * number to the location of its bytes in F.  Blocks are compressed on write
+ * and decompressed on read, so that a Page (and the buffer frame holding it)
+ * always sees the full uncompressed block.  Reads and writes of a compressed
+ * file take two disk accesses (the map entry and the block's bytes) rather
+ * than one.
 
  * @author Avraham Leff
  */
@@ -68,9 +78,25 @@ public class FileMgr extends FileMgrBase{
     private final int blocksize;
     private final byte[] zeroPage;
     private final Map<String, Object> fileLocks = new ConcurrentHashMap<>();
+    // see latch(): separate from fileLocks, which are held only during I/O
+    private final Map<String, Object> latches = new ConcurrentHashMap<>();
     private final LRUCache cache;
+    private final Map<String, Boolean> compressed = new ConcurrentHashMap<>();
+    // per compressed file, the {offset, length} of the data file's free
+    // slots: built from the map on the file's first write (see freeSlots)
+    private final Map<String, List<long[]>> freeSlots = new ConcurrentHashMap<>();
+    private volatile Predicate<String> compressionPolicy = filename -> false;
     private static FileMgr instance;
 
+    private static final String MAP_SUFFIX = ".lzmap";
+    // map entry: [offset of the bytes in the data file][length][unused], padded
+    // so that an entry never straddles a disk sector: written with a single
+    // write, an entry is then replaced as a whole even by a crash
+    private static final int MAP_ENTRY = 16;
+    // map file: [block count], padded to an entry, followed by one entry per
+    // block
+    private static final int MAP_HEADER = MAP_ENTRY;
+
     public FileMgr(File dbDirectory, int blocksize) {
         super(dbDirectory, blocksize);
         this.blocksize = blocksize;
@@ -113,6 +139,81 @@ public class FileMgr extends FileMgrBase{
         cache.closeAll();
     }
 
+    /** Chooses the files that are stored compressed: a file is compressed iff
+     * the policy accepts its name when the file is first created (or found
+     * empty).  The choice is recorded on disk, so a file keeps its storage
+     * format for its lifetime regardless of later policies.  Table data files
+     * are named tblname + "_data.tbl" (see TableScan), so e.g.
+     *
+     *   fileMgr.setCompressionPolicy(f -> f.equals("orders_data.tbl"))
+     *
+     * compresses the orders table.  By default no file is compressed.
+     *
+     * Compression saves disk space and I/O bandwidth for tables whose blocks
+     * compress well (e.g., mostly-empty or repetitive records), at the cost of
+     * CPU on every read and write, and of the space of blocks whose compressed
+     * size grew (such blocks are relocated to the end of the file).
+     *
+     * A new policy only affects files whose format isn't yet decided: I/O on
+     * other files continues undisturbed.
+     *
+     * @param policy accepts the names of the files to compress
+     * @throws IllegalArgumentException if policy is null
+     */
+    public void setCompressionPolicy(Predicate<String> policy) {
+        if(policy == null){
+            throw new IllegalArgumentException("Compression policy can't be null");
+        }
+        this.compressionPolicy = policy;
+    }
+
+    /** Returns true iff the specified file is stored compressed.  The format
+     * is decided (and, for a compressed file, its map created) under the
+     * file's lock, so that it can't race an append or write that would
+     * create the file in the other format.  The decision is remembered once
+     * it's final: once the file has a map, or has contents.
+     */
+    public boolean isCompressed(String filename) {
+        Boolean known = compressed.get(filename);
+        if(known != null){
+            return known;
+        }
+        if(filename.endsWith(MAP_SUFFIX)){
+            return false;
+        }
+        fileLocks.putIfAbsent(filename, new Object());
+        synchronized (this.fileLocks.get(filename)){
+            known = compressed.get(filename);
+            if(known != null){
+                return known;
+            }
+            File map = new File(this.dbDirectory, filename + MAP_SUFFIX);
+            if(map.exists()){
+                compressed.put(filename, true);
+                return true;
+            }
+            File file = new File(this.dbDirectory, filename);
+            if(file.exists() && file.length() > 0){
+                compressed.put(filename, false);
+                return false;
+            }
+            if(!compressionPolicy.test(filename)){
+                // not remembered: the file is still empty, so a later policy
+                // may yet compress it
+                return false;
+            }
+            try{
+                file.createNewFile();
+                // a zero-length header records an empty file
+                cache.get(map).setLength(MAP_HEADER);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            compressed.put(filename, true);
+            return true;
+        }
+    }
+
 
     /** Reads the specified data from disk into main-memory
      *
@@ -128,6 +229,10 @@ public class FileMgr extends FileMgrBase{
         File file = new File(this.dbDirectory, blk.fileName());
         Object lock = this.fileLocks.get(blk.fileName());
         synchronized (lock) {
+            if(isCompressed(blk.fileName())){
+                readCompressed(blk, p, file);
+                return;
+            }
             if(!file.exists()){
                 try {
                     boolean created = file.createNewFile();
@@ -181,6 +286,10 @@ public class FileMgr extends FileMgrBase{
             }
         }
         synchronized (lock){
+            if(isCompressed(blk.fileName())){
+                writeCompressed(blk, p, file);
+                return;
+            }
             try {
                 RandomAccessFile raf = cache.get(file);
                 if((int)file.length()/blocksize < blk.number()){
@@ -201,6 +310,42 @@ public class FileMgr extends FileMgrBase{
         }
     }
 
+    /** Deletes the specified file (e.g., a query's temporary file), which
+     * clients must no longer reference.  Deleting a file that doesn't exist
+     * has no effect.
+     *
+     * @param filename specifies the file
+     */
+    public void delete(String filename) {
+        fileLocks.putIfAbsent(filename, new Object());
+        Object lock = this.fileLocks.get(filename);
+        File file = new File(this.dbDirectory, filename);
+        synchronized (lock){
+            for(File f : new File[]{file, mapFile(file)}){
+                cache.remove(f);
+                if(f.exists() && !f.delete()){
+                    throw new RuntimeException("Could not delete file " + f.getName());
+                }
+            }
+            compressed.remove(filename);
+            freeSlots.remove(filename);
+            latches.remove(filename);
+        }
+        // spill files are deleted by the thousand: don't keep their locks
+        fileLocks.remove(filename, lock);
+    }
+
+    /** Returns the latch of the specified file: an object that every client of
+     * this FileMgr gets for the file, on which clients that read-modify-write
+     * the file's pages outside the lock manager (e.g., a FreeSpaceMap)
+     * synchronize.  The latch is discarded when the file is deleted.
+     *
+     * @param filename specifies the file
+     */
+    public Object latch(String filename) {
+        return latches.computeIfAbsent(filename, k -> new Object());
+    }
+
     private void addSpace(File file, int space) {
         try{
             RandomAccessFile raf = cache.get(file);
@@ -229,6 +374,9 @@ public class FileMgr extends FileMgrBase{
             throw new RuntimeException(e);
         }
         synchronized (lock){
+            if(isCompressed(filename)){
+                return appendCompressed(filename, file);
+            }
             try {
                 blk = new BlockId(filename, (int)file.length()/blocksize);
                 addSpace(file, this.blocksize);
@@ -254,6 +402,9 @@ public class FileMgr extends FileMgrBase{
            fileLocks.putIfAbsent(filename, new Object());
            Object lock = this.fileLocks.get(filename);
            synchronized(lock){
+               if(isCompressed(filename)){
+                   return blockCount(mapFile(file));
+               }
                int length = (int)file.length();
                if(length < this.blocksize){
                    return 0;
@@ -274,6 +425,208 @@ public class FileMgr extends FileMgrBase{
         return this.blocksize;
     }
 
+    private File mapFile(File file) {
+        return new File(this.dbDirectory, file.getName() + MAP_SUFFIX);
+    }
+
+    private int blockCount(File map) {
+        try{
+            return readCount(cache.get(map));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    // The map is read and written through byte arrays: RandomAccessFile's
+    // readInt/writeInt (etc.) access the file a byte at a time, and on a
+    // synchronous file each byte written is a separate disk write.
+
+    private static int readCount(RandomAccessFile map) throws IOException {
+        byte[] header = new byte[Integer.BYTES];
+        map.seek(0);
+        map.readFully(header);
+        return ByteBuffer.wrap(header).getInt();
+    }
+
+    private static void writeCount(RandomAccessFile map, int count) throws IOException {
+        map.seek(0);
+        map.write(ByteBuffer.allocate(Integer.BYTES).putInt(count).array());
+    }
+
+    /** Returns the map entry of the specified block as {offset, length}. */
+    private static long[] readEntry(RandomAccessFile map, int blknum) throws IOException {
+        byte[] entry = new byte[MAP_ENTRY];
+        map.seek(MAP_HEADER + (long) blknum * MAP_ENTRY);
+        map.readFully(entry);
+        ByteBuffer buffer = ByteBuffer.wrap(entry);
+        return new long[]{buffer.getLong(), buffer.getInt()};
+    }
+
+    private static void writeEntry(RandomAccessFile map, int blknum, long offset, int length) throws IOException {
+        map.seek(MAP_HEADER + (long) blknum * MAP_ENTRY);
+        map.write(ByteBuffer.allocate(MAP_ENTRY).putLong(offset).putInt(length).array());
+    }
+
+    /** Reads a block of a compressed file: looks up the block's map entry and
+     * decompresses its bytes into the page.  Blocks past the end of the file,
+     * and blocks that were never written, read as zeros.
+     */
+    private void readCompressed(BlockIdBase blk, PageBase p, File file) {
+        byte[] bytes = new byte[blocksize];
+        try{
+            RandomAccessFile map = cache.get(mapFile(file));
+            if(blk.number() < readCount(map)){
+                long[] entry = readEntry(map, blk.number());
+                long offset = entry[0];
+                int length = (int) entry[1];
+                if(length > 0){
+                    byte[] stored = new byte[length];
+                    RandomAccessFile data = cache.get(file);
+                    data.seek(offset);
+                    data.readFully(stored);
+                    if(length == blocksize){
+                        bytes = stored;
+                    }else{
+                        LzCodec.decompress(stored, length, bytes);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ByteBuffer pageBuffer = ((Page)p).getBuffer();
+        pageBuffer.clear();
+        pageBuffer.put(bytes);
+        pageBuffer.rewind();
+    }
+
+    /** Writes a block of a compressed file.  The write is a shadow write: the
+     * compressed bytes go to a free slot of the data file (or are appended to
+     * it), and only then does the block's map entry point to them, freeing the
+     * slot of the block's previous bytes.  A crash before the map entry is
+     * written thus leaves the previous version of the block intact, rather
+     * than a mix of the two; the entry itself is a single write (see
+     * MAP_ENTRY).  An all-zero
+     * block is recorded in the map only, and a block that doesn't compress is
+     * stored as is.
+     */
+    private void writeCompressed(BlockIdBase blk, PageBase p, File file) {
+        byte[] bytes = new byte[blocksize];
+        ByteBuffer pageBuffer = ((Page)p).getBuffer();
+        pageBuffer.rewind();
+        pageBuffer.get(bytes);
+        pageBuffer.rewind();
+        byte[] stored;
+        if(Arrays.equals(bytes, zeroPage)){
+            stored = new byte[0];
+        }else{
+            stored = LzCodec.compress(bytes, blocksize);
+            if(stored.length >= blocksize){
+                stored = bytes;
+            }
+        }
+        try{
+            RandomAccessFile map = cache.get(mapFile(file));
+            if(blk.number() >= readCount(map)){
+                // blocks between the old end and this one read as zeros
+                map.setLength(MAP_HEADER + (long) (blk.number() + 1) * MAP_ENTRY);
+                writeCount(map, blk.number() + 1);
+            }
+            List<long[]> free = freeSlots(blk.fileName(), file, map);
+            long[] old = readEntry(map, blk.number());
+            long offset = 0;
+            if(stored.length > 0){
+                RandomAccessFile data = cache.get(file);
+                offset = takeSlot(free, stored.length);
+                if(offset < 0){
+                    offset = data.length();
+                }
+                data.seek(offset);
+                data.write(stored);
+            }
+            writeEntry(map, blk.number(), offset, stored.length);
+            if(old[1] > 0){
+                free.add(old);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** Returns the free slots of the compressed file's data file: the gaps
+     * between the slots that its map entries reference.  The caller must hold
+     * the file's lock.
+     */
+    private List<long[]> freeSlots(String filename, File file, RandomAccessFile map) throws IOException {
+        List<long[]> free = freeSlots.get(filename);
+        if(free != null){
+            return free;
+        }
+        int count = readCount(map);
+        byte[] entries = new byte[count * MAP_ENTRY];
+        map.seek(MAP_HEADER);
+        map.readFully(entries);
+        ByteBuffer buffer = ByteBuffer.wrap(entries);
+        List<long[]> used = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            long offset = buffer.getLong(i * MAP_ENTRY);
+            int length = buffer.getInt(i * MAP_ENTRY + Long.BYTES);
+            if(length > 0){
+                used.add(new long[]{offset, length});
+            }
+        }
+        used.sort(Comparator.comparingLong(slot -> slot[0]));
+        free = new ArrayList<>();
+        long end = 0;
+        for(long[] slot : used){
+            if(slot[0] > end){
+                free.add(new long[]{end, slot[0] - end});
+            }
+            end = Math.max(end, slot[0] + slot[1]);
+        }
+        long length = cache.get(file).length();
+        if(length > end){
+            free.add(new long[]{end, length - end});
+        }
+        freeSlots.put(filename, free);
+        return free;
+    }
+
+    /** Takes the specified number of bytes from the first free slot that holds
+     * them, leaving the rest of the slot free, and returns the offset; or
+     * returns -1 if no slot is large enough.
+     */
+    private static long takeSlot(List<long[]> free, int length) {
+        for(Iterator<long[]> it = free.iterator(); it.hasNext(); ){
+            long[] slot = it.next();
+            if(slot[1] >= length){
+                long offset = slot[0];
+                slot[0] += length;
+                slot[1] -= length;
+                if(slot[1] == 0){
+                    it.remove();
+                }
+                return offset;
+            }
+        }
+        return -1;
+    }
+
+    /** Appends a block to a compressed file: a new map entry, initially for an
+     * all-zero block, so no data is written until the block is.
+     */
+    private BlockIdBase appendCompressed(String filename, File file) {
+        try{
+            RandomAccessFile map = cache.get(mapFile(file));
+            int count = readCount(map);
+            map.setLength(MAP_HEADER + (long) (count + 1) * MAP_ENTRY);
+            writeCount(map, count + 1);
+            return new BlockId(filename, count);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private class LRUCache{
         private final int capacity;
         private final Map<File, RandomAccessFile> cacheMap;
@@ -313,6 +666,18 @@ public class FileMgr extends FileMgrBase{
                 return returnRaf;
             }
         }
+        public void remove(File filename) {
+            RandomAccessFile raf = cacheMap.remove(filename);
+            if(raf != null){
+                cacheList.remove(filename);
+                try {
+                    raf.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        }
+
         public void closeAll() {
             for (RandomAccessFile raf : cacheMap.values()) {
                 try {
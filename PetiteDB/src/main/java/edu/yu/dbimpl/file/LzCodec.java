@@ -0,0 +1,147 @@
+package edu.yu.dbimpl.file;
+
+import java.util.Arrays;
+
+/** A small LZ77-family codec (in the style of the LZ4 block format) used by
+ * the FileMgr to store the blocks of compressed files.
+ *
+ * The compressed form is a series of sequences, each of which is
+ *
+ *   [token][extra literal length bytes][literals][offset][extra match length bytes]
+ *
+ * where the token's high nibble is the number of literals and its low nibble
+ * is the match length minus MIN_MATCH (15 meaning "add the following bytes,
+ * up to and including the first that is less than 255"), and the two-byte
+ * little-endian offset locates the match in the already-decompressed output.
+ * The final sequence has literals only.  Matches may overlap their own output,
+ * so that a run of a repeated byte (e.g., a zeroed region of a page) costs a
+ * few bytes.
+ */
+final class LzCodec {
+    private static final int MIN_MATCH = 4;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int HASH_BITS = 12;
+
+    private LzCodec() {
+    }
+
+    /** Returns the compressed form of the first length bytes of src. */
+    static byte[] compress(byte[] src, int length) {
+        byte[] dst = new byte[length + length / 255 + 16];
+        int[] table = new int[1 << HASH_BITS];
+        Arrays.fill(table, -1);
+        int op = 0;
+        int anchor = 0;
+        int ip = 0;
+        while(ip + MIN_MATCH <= length){
+            int h = hash(src, ip);
+            int ref = table[h];
+            table[h] = ip;
+            if(ref >= 0 && ip - ref <= MAX_OFFSET && sameInt(src, ref, ip)){
+                int matchLength = MIN_MATCH;
+                while(ip + matchLength < length && src[ref + matchLength] == src[ip + matchLength]){
+                    matchLength++;
+                }
+                int token = op;
+                op = writeSequence(src, anchor, ip - anchor, dst, op);
+                dst[op++] = (byte) (ip - ref);
+                dst[op++] = (byte) ((ip - ref) >>> 8);
+                int extra = matchLength - MIN_MATCH;
+                dst[token] |= (byte) Math.min(extra, 15);
+                op = writeLength(extra, dst, op);
+                ip += matchLength;
+                anchor = ip;
+            }else{
+                ip++;
+            }
+        }
+        op = writeSequence(src, anchor, length - anchor, dst, op);
+        return Arrays.copyOf(dst, op);
+    }
+
+    /** Decompresses the first length bytes of src into dst, returning the
+     * number of bytes written.
+     *
+     * @throws IllegalArgumentException if src is malformed or decompresses to
+     * more than dst.length bytes
+     */
+    static int decompress(byte[] src, int length, byte[] dst) {
+        int ip = 0;
+        int op = 0;
+        try{
+            while(ip < length){
+                int token = src[ip++] & 0xFF;
+                int literals = token >>> 4;
+                if(literals == 15){
+                    int b;
+                    do{
+                        b = src[ip++] & 0xFF;
+                        literals += b;
+                    }while(b == 255);
+                }
+                System.arraycopy(src, ip, dst, op, literals);
+                ip += literals;
+                op += literals;
+                if(ip >= length){
+                    break;
+                }
+                int offset = (src[ip] & 0xFF) | ((src[ip + 1] & 0xFF) << 8);
+                ip += 2;
+                int matchLength = token & 0x0F;
+                if(matchLength == 15){
+                    int b;
+                    do{
+                        b = src[ip++] & 0xFF;
+                        matchLength += b;
+                    }while(b == 255);
+                }
+                matchLength += MIN_MATCH;
+                if(offset == 0 || offset > op || op + matchLength > dst.length){
+                    throw new IllegalArgumentException("Malformed compressed block");
+                }
+                // byte by byte, since a match may overlap the bytes it produces
+                for(int i = 0; i < matchLength; i++){
+                    dst[op] = dst[op - offset];
+                    op++;
+                }
+            }
+        }catch(ArrayIndexOutOfBoundsException e){
+            throw new IllegalArgumentException("Malformed compressed block", e);
+        }
+        return op;
+    }
+
+    /** Writes a token (with an empty match nibble) and the specified literals. */
+    private static int writeSequence(byte[] src, int from, int literals, byte[] dst, int op) {
+        dst[op++] = (byte) (Math.min(literals, 15) << 4);
+        op = writeLength(literals, dst, op);
+        System.arraycopy(src, from, dst, op, literals);
+        return op + literals;
+    }
+
+    /** Writes the extra length bytes (if any) of a length held in a nibble. */
+    private static int writeLength(int length, byte[] dst, int op) {
+        if(length < 15){
+            return op;
+        }
+        int rest = length - 15;
+        while(rest >= 255){
+            dst[op++] = (byte) 255;
+            rest -= 255;
+        }
+        dst[op++] = (byte) rest;
+        return op;
+    }
+
+    private static int hash(byte[] b, int i) {
+        return (readInt(b, i) * -1640531535) >>> (32 - HASH_BITS);
+    }
+
+    private static boolean sameInt(byte[] b, int i, int j) {
+        return readInt(b, i) == readInt(b, j);
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xFF) | (b[i + 1] & 0xFF) << 8 | (b[i + 2] & 0xFF) << 16 | (b[i + 3] & 0xFF) << 24;
+    }
+}
@@ -101,7 +101,7 @@ public class Page extends PageBase{
     }
 
     @Override
-    public synchronized void setInt(int offset, int n) {
+    public void setInt(int offset, int n) {
         if( offset < 0 || offset + Integer.BYTES > this.blocksize ) {
             throw new IllegalArgumentException("Invalid offset");
         }
@@ -118,7 +118,7 @@ public class Page extends PageBase{
     }
 
     @Override
-    public synchronized void setDouble(int offset, double d) {
+    public void setDouble(int offset, double d) {
         if( offset < 0 || offset + Double.BYTES > this.blocksize) {
             throw new IllegalArgumentException("Invalid offset");
         } else {
@@ -136,7 +136,7 @@ public class Page extends PageBase{
     }
 
     @Override
-    public synchronized void setBoolean(int offset, boolean d) {
+    public void setBoolean(int offset, boolean d) {
         if( offset < 0 || offset + 1 > this.blocksize) {
             throw new IllegalArgumentException("Invalid offset");
         } else {
@@ -168,7 +168,7 @@ public class Page extends PageBase{
      * into the block or if anything else goes wrong
      */
     @Override
-    public synchronized void setBytes(int offset, byte[] b) {
+    public void setBytes(int offset, byte[] b) {
         if( offset < 0 || offset + Integer.BYTES + b.length > this.blocksize) {
             throw new IllegalArgumentException("Invalid offset");
         }
@@ -202,7 +202,7 @@ public class Page extends PageBase{
      * the block or if anything else goes wrong
      */
     @Override
-    public synchronized void setString(int offset, String s) {
+    public void setString(int offset, String s) {
         if( offset < 0 || offset + Integer.BYTES + logicalLength(s) > this.blocksize) {
             throw new IllegalArgumentException("Invalid offset");
         }
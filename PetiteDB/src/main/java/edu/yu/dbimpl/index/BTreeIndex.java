@@ -0,0 +1,683 @@
+package edu.yu.dbimpl.index;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+import edu.yu.dbimpl.tx.recovery.RowImage;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/** A B+-tree index, stored in a file of its own (see fileName), one node per
+ * block.  Besides the search-key iteration of IndexBase, the index iterates
+ * over a range of keys in ascending key order (see beforeRange).
+ *
+ * A node holds a header (its level, 0 for a leaf; its number of entries; and,
+ * for a leaf, the block of its right sibling) followed by its entries, sorted.
+ * A leaf entry is an index record: a key and the RID of the indexed record.
+ * The tree is ordered by key and then by RID, which makes every entry unique,
+ * so that an insert or a delete descends straight to the entry's leaf even
+ * when a key has many records.  An inner entry is a separator, the smallest
+ * (key, RID) of its child's subtree, with the child's block; the first
+ * entry's separator is ignored.  The root is always block 0: when it splits,
+ * its entries move to two new blocks.  A zeroed block is an empty leaf, so a
+ * new index is an empty root.
+ *
+ * A node that overflows is split in half, and the separator of its new right
+ * half is inserted in its parent.  A node that underflows (holds fewer than
+ * half its capacity) borrows entries from a sibling, or, if the two fit in
+ * one node, is merged with it; a root with a single child is replaced by the
+ * child.  A merged-away node is abandoned, not reused.  Range scans follow
+ * the leaves' sibling links.
+ *
+ * Concurrency: a descent couples the tx's block locks, as latches are
+ * coupled ("crabbing"): the shared lock on an inner node is released as soon
+ * as its child is locked, so that txs contend only for the leaves that they
+ * read or update.  An update first descends optimistically, with an
+ * exclusive lock on the leaf only, and if the leaf would split or underflow,
+ * descends again holding the path from the lowest node that is safe (that
+ * won't split or underflow in turn).  Since the RecoveryMgr undoes a tx's
+ * changes physically, a node that a tx changes stays locked until the tx
+ * completes; a leaf that a tx reads is locked as a data block is, per the
+ * tx's isolation level.
+ *
+ * Recovery: each change to a node is logged through the tx, as a ROW_IMAGE
+ * record of the node's changed fields (split into several records if a log
+ * page can't hold them all), so that rollback and recovery restore the tree.
+ */
+public class BTreeIndex implements IndexBase {
+    /** The smallest number of entries that a node must be able to hold. */
+    public static final int MIN_CAPACITY = 4;
+
+    private static final int LEVEL_OFFSET = 0;
+    private static final int COUNT_OFFSET = Integer.BYTES;
+    private static final int NEXT_OFFSET = 2 * Integer.BYTES;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    // the root never has a sibling, so its block number marks the end of the leaves
+    private static final int ROOT = 0;
+    private static final int NONE = ROOT;
+    // the log record header of a row image: type, txnum, block and field count
+    private static final int IMAGE_HEADER = 4 * Integer.BYTES + Short.BYTES;
+
+    private final Tx tx;
+    private final String filename;
+    private final int type;
+    private final int keyLength;
+    private final int keySize;
+    private final int slotSize;
+    private final int capacity;
+    private final int imageBudget;
+
+    // the state of the current search
+    private Node leaf = null;
+    private int position;
+    private DatumBase hi;
+    private boolean hiInclusive;
+    private boolean exhausted;
+
+    /**
+     * Constructor: creates the index's root if the index's file is empty.
+     *
+     * @param tx the tx under which the index is accessed; must be a Tx
+     * @param indexDescriptor the index's descriptor
+     * @throws IllegalArgumentException if an argument is null, or a node can't
+     * hold at least MIN_CAPACITY entries of the indexed field
+     */
+    public BTreeIndex(TxBase tx, IndexDescriptorBase indexDescriptor) {
+        if(!(tx instanceof Tx) || indexDescriptor == null){
+            throw new IllegalArgumentException("A Tx and a descriptor are required");
+        }
+        this.tx = (Tx) tx;
+        this.filename = fileName(indexDescriptor.getTableName(), indexDescriptor.getFieldName());
+        SchemaBase schema = indexDescriptor.getIndexedTableSchema();
+        this.type = schema.type(indexDescriptor.getFieldName());
+        this.keyLength = schema.length(indexDescriptor.getFieldName());
+        this.keySize = keySize(type, keyLength);
+        this.slotSize = keySize + 3 * Integer.BYTES;
+        this.capacity = capacity(tx.blockSize(), type, keyLength);
+        this.imageBudget = tx.blockSize() - 3 * Integer.BYTES - IMAGE_HEADER - filename.length();
+        if(capacity < MIN_CAPACITY || imageBudget < fieldBytes(type)){
+            throw new IllegalArgumentException("Field " + indexDescriptor.getFieldName() + " is too large for a B-tree node");
+        }
+        if(this.tx.fileMgr().length(filename) == 0){
+            tx.append(filename);
+        }
+    }
+
+    /** Returns the name of the file of the index on the table's field. */
+    public static String fileName(String tableName, String fieldName) {
+        return tableName + "_" + fieldName + "_btree.idx";
+    }
+
+    /** Returns the number of entries that a node of an index on a field of the
+     * specified type and length holds.
+     */
+    public static int capacity(int blockSize, int type, int length) {
+        return (blockSize - HEADER_SIZE) / (keySize(type, length) + 3 * Integer.BYTES);
+    }
+
+    /** Returns the number of bytes that a key of the specified type and length
+     * occupies in a node.
+     */
+    static int keySize(int type, int length) {
+        return switch(type){
+            case Types.INTEGER -> Integer.BYTES;
+            case Types.DOUBLE -> Double.BYTES;
+            case Types.BOOLEAN -> 1;
+            default -> PageBase.maxLength(length);
+        };
+    }
+
+    /** Positions the index before the first record whose key equals the
+     * search key.
+     *
+     * @throws IllegalArgumentException if the key is null, or its type is
+     * incompatible with the index
+     * @see IndexBase#beforeFirst
+     */
+    @Override
+    public void beforeFirst(DatumBase searchKey) {
+        DatumBase key = checked(searchKey);
+        beforeRange(key, true, key, true);
+    }
+
+    /** Positions the index before the first record whose key is in the range:
+     * next() then moves through the records in the range in ascending key
+     * order (and, for equal keys, in RID order).
+     *
+     * @param lo the range's lower bound, or null if it has none
+     * @param loInclusive true iff a key equal to lo is in the range
+     * @param hi the range's upper bound, or null if it has none
+     * @param hiInclusive true iff a key equal to hi is in the range
+     * @throws IllegalArgumentException if a bound's type is incompatible with
+     * the index
+     */
+    public void beforeRange(DatumBase lo, boolean loInclusive, DatumBase hi, boolean hiInclusive) {
+        DatumBase from = lo == null ? null : checked(lo);
+        DatumBase to = hi == null ? null : checked(hi);
+        close();
+        Entry target = from == null ? null
+                : loInclusive ? new Entry(from, Integer.MIN_VALUE, Integer.MIN_VALUE, NONE)
+                : new Entry(from, Integer.MAX_VALUE, Integer.MAX_VALUE, NONE);
+        leaf = descend(target, false, null).get(0);
+        position = (target == null ? 0 : leaf.lowerBound(target)) - 1;
+        this.hi = to;
+        this.hiInclusive = hiInclusive;
+        this.exhausted = false;
+    }
+
+    /** Moves to the next record in the search's range, following the leaves'
+     * sibling links.
+     *
+     * @throws IllegalStateException if no search has been started
+     */
+    @Override
+    public boolean next() {
+        if(leaf == null){
+            throw new IllegalStateException("need to call beforeFirst");
+        }
+        if(exhausted){
+            return false;
+        }
+        position++;
+        while(position >= leaf.count()){
+            int next = leaf.next();
+            if(next == NONE){
+                exhausted = true;
+                return false;
+            }
+            // lock the sibling before leaving the current leaf
+            Node sibling = new Node(next);
+            sibling.count();
+            BlockIdBase left = leaf.block();
+            leaf.close();
+            tx.leaveBlock(left);
+            leaf = sibling;
+            position = 0;
+        }
+        if(hi != null){
+            int cmp = leaf.key(position).compareTo(hi);
+            if(cmp > 0 || (cmp == 0 && !hiInclusive)){
+                exhausted = true;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public RID getRID() {
+        checkPositioned();
+        return new RID(leaf.ridBlock(position), leaf.ridSlot(position));
+    }
+
+    /** Returns the key of the current index record.
+     *
+     * @throws IllegalStateException if the index isn't positioned on a record
+     */
+    public DatumBase getKey() {
+        checkPositioned();
+        return leaf.key(position);
+    }
+
+    private void checkPositioned() {
+        if(leaf == null || exhausted || position < 0 || position >= leaf.count()){
+            throw new IllegalStateException("Index isn't positioned on a record");
+        }
+    }
+
+    @Override
+    public void insert(DatumBase value, RID rid) {
+        Entry e = new Entry(checked(value), rid.blockNumber(), rid.slot(), NONE);
+        List<Node> path = descend(e, true, null);
+        Node n = path.get(0);
+        if(n.count() < capacity){
+            List<Entry> entries = n.entries();
+            entries.add(n.lowerBound(e), e);
+            n.rewrite(n.level(), n.next(), entries);
+            n.close();
+            return;
+        }
+        n.close();
+        path = descend(e, true, node -> node.count() < capacity);
+        Entry up = e;
+        int at = -1;
+        for(int d = path.size() - 1; d >= 0; d--){
+            n = path.get(d);
+            List<Entry> entries = n.entries();
+            entries.add(n.isLeaf() ? n.lowerBound(e) : at, up);
+            if(entries.size() <= capacity){
+                n.rewrite(n.level(), n.next(), entries);
+                break;
+            }
+            int level = n.level();
+            List<Entry> left = new ArrayList<>(entries.subList(0, entries.size() / 2));
+            List<Entry> right = new ArrayList<>(entries.subList(entries.size() / 2, entries.size()));
+            Node r = allocate();
+            if(n.number() == ROOT){
+                Node l = allocate();
+                r.rewrite(level, NONE, right);
+                l.rewrite(level, level == 0 ? r.number() : NONE, left);
+                n.rewrite(level + 1, NONE, List.of(left.get(0).withChild(l.number()), right.get(0).withChild(r.number())));
+                l.close();
+                r.close();
+                break;
+            }
+            r.rewrite(level, level == 0 ? n.next() : NONE, right);
+            n.rewrite(level, level == 0 ? r.number() : NONE, left);
+            up = right.get(0).withChild(r.number());
+            at = n.parentIndex + 1;
+            r.close();
+        }
+        release(path);
+    }
+
+    @Override
+    public void delete(DatumBase value, RID rid) {
+        Entry e = new Entry(checked(value), rid.blockNumber(), rid.slot(), NONE);
+        int min = capacity / 2;
+        List<Node> path = descend(e, true, null);
+        Node n = path.get(0);
+        int pos = n.lowerBound(e);
+        if(pos == n.count() || n.entry(pos).compareTo(e) != 0){
+            n.close();
+            return;
+        }
+        if(n.number() == ROOT || n.count() > min){
+            List<Entry> entries = n.entries();
+            entries.remove(pos);
+            n.rewrite(n.level(), n.next(), entries);
+            n.close();
+            return;
+        }
+        n.close();
+        path = descend(e, true, node -> node.number() == ROOT ? node.isLeaf() || node.count() > 2 : node.count() > min);
+        int at = path.get(path.size() - 1).lowerBound(e);
+        for(int d = path.size() - 1; d >= 0; d--){
+            n = path.get(d);
+            List<Entry> entries = n.entries();
+            entries.remove(at);
+            if(n.number() == ROOT){
+                if(!n.isLeaf() && entries.size() == 1){
+                    // the root's only child replaces it
+                    Node child = lockForUpdate(entries.get(0).child());
+                    n.rewrite(child.level(), NONE, child.entries());
+                    child.rewrite(child.level(), NONE, List.of());
+                    child.close();
+                }else{
+                    n.rewrite(n.level(), n.next(), entries);
+                }
+                break;
+            }
+            if(d == 0 || entries.size() >= min){
+                n.rewrite(n.level(), n.next(), entries);
+                break;
+            }
+            Node parent = path.get(d - 1);
+            int i = n.parentIndex;
+            boolean hasRight = i + 1 < parent.count();
+            int sep = hasRight ? i + 1 : i;
+            Node sibling = lockForUpdate(parent.child(hasRight ? i + 1 : i - 1));
+            Node l = hasRight ? n : sibling;
+            Node r = hasRight ? sibling : n;
+            List<Entry> left = hasRight ? entries : sibling.entries();
+            List<Entry> right = hasRight ? sibling.entries() : entries;
+            if(!n.isLeaf()){
+                // the parent's separator replaces the right node's ignored one
+                right.set(0, parent.entry(sep).withChild(right.get(0).child()));
+            }
+            int level = n.level();
+            if(left.size() + right.size() <= capacity){
+                left.addAll(right);
+                l.rewrite(level, level == 0 ? r.next() : NONE, left);
+                r.rewrite(level, NONE, List.of());
+                sibling.close();
+                at = sep;
+                continue;
+            }
+            List<Entry> all = new ArrayList<>(left);
+            all.addAll(right);
+            int half = all.size() / 2;
+            l.rewrite(level, l.next(), new ArrayList<>(all.subList(0, half)));
+            r.rewrite(level, r.next(), new ArrayList<>(all.subList(half, all.size())));
+            List<Entry> parentEntries = parent.entries();
+            parentEntries.set(sep, all.get(half).withChild(parentEntries.get(sep).child()));
+            parent.rewrite(parent.level(), parent.next(), parentEntries);
+            sibling.close();
+            break;
+        }
+        release(path);
+    }
+
+    /** Deletes every record of the index, leaving an empty root. */
+    @Override
+    public void deleteAll() {
+        close();
+        Node root = lockForUpdate(ROOT);
+        root.rewrite(0, NONE, List.of());
+        root.close();
+    }
+
+    @Override
+    public void close() {
+        if(leaf != null){
+            BlockIdBase blk = leaf.block();
+            leaf.close();
+            tx.leaveBlock(blk);
+            leaf = null;
+        }
+    }
+
+    /** Returns the key as the index's type: an int is widened for a double
+     * index, and a double truncated for an int index, as Index does.
+     */
+    private DatumBase checked(DatumBase key) {
+        if(key == null){
+            throw new IllegalArgumentException("Key can't be null");
+        }
+        if(key.getSQLType() == type){
+            return key;
+        }
+        if(type == Types.INTEGER && key.getSQLType() == Types.DOUBLE){
+            return new Datum(key.asInt());
+        }
+        if(type == Types.DOUBLE && key.getSQLType() == Types.INTEGER){
+            return new Datum(key.asDouble());
+        }
+        throw new IllegalArgumentException("incompatible value");
+    }
+
+    /** Descends from the root to the leaf that holds the target's position
+     * (the leftmost leaf if target is null), coupling the tx's locks: a
+     * child is locked before the locks on its ancestors are released.  A
+     * leaf is locked exclusively if forUpdate, else shared.  Locks are only
+     * taken top-down and a node's lock is never upgraded: a node that may be
+     * rewritten is locked exclusively before it's read.
+     *
+     * @param safe if non-null, the ancestors are released only below a node
+     * that the predicate accepts, and (if forUpdate) every node is locked
+     * exclusively, since any of them may be split; if null, every ancestor is
+     * released
+     * @return the nodes from the lowest retained node down to the leaf, each
+     * with its index in its parent
+     */
+    private List<Node> descend(Entry target, boolean forUpdate, Predicate<Node> safe) {
+        List<Node> path = new ArrayList<>();
+        boolean pessimistic = forUpdate && safe != null;
+        Node n = pessimistic ? lockForUpdate(ROOT) : new Node(ROOT);
+        if(forUpdate && !pessimistic && n.isLeaf()){
+            // the root was read under a shared lock: rather than upgrading
+            // it, drop it and lock the root exclusively (the loop re-checks
+            // whether it's still a leaf)
+            tx.unlockShared(n.block());
+            tx.xLockBlock(n.block());
+        }
+        path.add(n);
+        while(!n.isLeaf()){
+            int i = target == null ? 0 : n.childIndex(target);
+            Node child = pessimistic || (n.level() == 1 && forUpdate) ? lockForUpdate(n.child(i)) : new Node(n.child(i));
+            child.parentIndex = i;
+            child.level();
+            if(safe == null || safe.test(child)){
+                release(path);
+                path.clear();
+            }
+            path.add(child);
+            n = child;
+        }
+        return path;
+    }
+
+    /** Closes the nodes, releasing the shared locks on the inner ones. */
+    private void release(List<Node> nodes) {
+        for(Node n : nodes){
+            boolean inner = !n.isLeaf();
+            n.close();
+            if(inner){
+                tx.unlockShared(n.block());
+            }
+        }
+    }
+
+    /** Returns the node, locked exclusively before it's read. */
+    private Node lockForUpdate(int blknum) {
+        BlockIdBase blk = new BlockId(filename, blknum);
+        tx.xLockBlock(blk);
+        return new Node(blk);
+    }
+
+    private Node allocate() {
+        return new Node(tx.append(filename));
+    }
+
+    /** Returns the number of bytes that a changed field of the specified type
+     * adds to a row image's log record: its offset, type, and new and old
+     * values.
+     */
+    private int fieldBytes(int fieldType) {
+        int value = switch(fieldType){
+            case Types.INTEGER -> Integer.BYTES;
+            case Types.DOUBLE -> Double.BYTES;
+            case Types.BOOLEAN -> 1;
+            default -> Short.BYTES + keyLength;
+        };
+        return 2 * Integer.BYTES + 2 * value;
+    }
+
+    /** A node entry: a key and a RID, and, in an inner node, a child block. */
+    private record Entry(DatumBase key, int block, int slot, int child) implements Comparable<Entry> {
+        Entry withChild(int child) {
+            return new Entry(key, block, slot, child);
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int cmp = key.compareTo(o.key);
+            if(cmp == 0){
+                cmp = Integer.compare(block, o.block);
+            }
+            return cmp != 0 ? cmp : Integer.compare(slot, o.slot);
+        }
+    }
+
+    /** A node of the tree, pinned while it's in use.  The changes of a
+     * rewrite are collected in a row image, which is logged when it grows too
+     * large for a log record, and when the rewrite is done.
+     */
+    private class Node {
+        private final PageHandle h;
+        private RowImage image;
+        private int imageBytes = 0;
+        // the node's index among its parent's children, if it was reached by a descent
+        int parentIndex = -1;
+
+        Node(int blknum) {
+            this(new BlockId(filename, blknum));
+        }
+
+        Node(BlockIdBase blk) {
+            this.h = tx.pinHandle(blk);
+            this.image = new RowImage(blk);
+        }
+
+        BlockIdBase block() {
+            return h.block();
+        }
+
+        int number() {
+            return h.block().number();
+        }
+
+        int level() {
+            return h.getInt(LEVEL_OFFSET);
+        }
+
+        boolean isLeaf() {
+            return level() == 0;
+        }
+
+        int count() {
+            return h.getInt(COUNT_OFFSET);
+        }
+
+        int next() {
+            return h.getInt(NEXT_OFFSET);
+        }
+
+        private int offset(int i) {
+            return HEADER_SIZE + i * slotSize;
+        }
+
+        DatumBase key(int i) {
+            int off = offset(i);
+            return switch(type){
+                case Types.INTEGER -> new Datum(h.getInt(off));
+                case Types.DOUBLE -> new Datum(h.getDouble(off));
+                case Types.BOOLEAN -> new Datum(h.getBoolean(off));
+                default -> new Datum(h.getString(off));
+            };
+        }
+
+        int ridBlock(int i) {
+            return h.getInt(offset(i) + keySize);
+        }
+
+        int ridSlot(int i) {
+            return h.getInt(offset(i) + keySize + Integer.BYTES);
+        }
+
+        int child(int i) {
+            return h.getInt(offset(i) + keySize + 2 * Integer.BYTES);
+        }
+
+        Entry entry(int i) {
+            return new Entry(key(i), ridBlock(i), ridSlot(i), child(i));
+        }
+
+        List<Entry> entries() {
+            int count = count();
+            List<Entry> result = new ArrayList<>(count + 1);
+            for(int i = 0; i < count; i++){
+                result.add(entry(i));
+            }
+            return result;
+        }
+
+        /** Returns the position of the first entry that isn't less than the
+         * target.
+         */
+        int lowerBound(Entry target) {
+            int lo = 0;
+            int hi = count();
+            while(lo < hi){
+                int mid = (lo + hi) >>> 1;
+                if(entry(mid).compareTo(target) < 0){
+                    lo = mid + 1;
+                }else{
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+        /** Returns the index of the child whose subtree holds the target's
+         * position: that of the last separator that isn't greater than the
+         * target, or 0.
+         */
+        int childIndex(Entry target) {
+            int lo = 1;
+            int hi = count();
+            while(lo < hi){
+                int mid = (lo + hi) >>> 1;
+                if(entry(mid).compareTo(target) <= 0){
+                    lo = mid + 1;
+                }else{
+                    hi = mid;
+                }
+            }
+            return lo - 1;
+        }
+
+        /** Replaces the node's contents, writing only the fields that change. */
+        void rewrite(int level, int next, List<Entry> entries) {
+            int count = count();
+            if(level() != level){
+                setInt(LEVEL_OFFSET, level);
+            }
+            if(next() != next){
+                setInt(NEXT_OFFSET, next);
+            }
+            for(int i = 0; i < entries.size(); i++){
+                Entry e = entries.get(i);
+                int off = offset(i);
+                boolean used = i < count;
+                if(!used || !key(i).equals(e.key())){
+                    setKey(off, e.key());
+                }
+                if(!used || ridBlock(i) != e.block()){
+                    setInt(off + keySize, e.block());
+                }
+                if(!used || ridSlot(i) != e.slot()){
+                    setInt(off + keySize + Integer.BYTES, e.slot());
+                }
+                if(!used || child(i) != e.child()){
+                    setInt(off + keySize + 2 * Integer.BYTES, e.child());
+                }
+            }
+            if(count != entries.size()){
+                setInt(COUNT_OFFSET, entries.size());
+            }
+            // logged now, so that a node's records are in the order of its changes
+            // even if it's pinned twice
+            flush();
+        }
+
+        private void setInt(int offset, int val) {
+            reserve(Types.INTEGER);
+            h.setInt(offset, val, image);
+        }
+
+        private void setKey(int offset, DatumBase key) {
+            reserve(type);
+            switch(type){
+                case Types.INTEGER -> h.setInt(offset, key.asInt(), image);
+                case Types.DOUBLE -> h.setDouble(offset, key.asDouble(), image);
+                case Types.BOOLEAN -> h.setBoolean(offset, key.asBoolean(), image);
+                default -> h.setString(offset, key.asString(), image);
+            }
+        }
+
+        /** Makes room in the row image for a field, logging the image first if
+         * the field would make its log record too large.
+         */
+        private void reserve(int fieldType) {
+            int bytes = fieldBytes(fieldType);
+            if(imageBytes + bytes > imageBudget){
+                flush();
+            }
+            imageBytes += bytes;
+        }
+
+        private void flush() {
+            if(!image.isEmpty()){
+                tx.logRowImage(image);
+                image = new RowImage(h.block());
+            }
+            imageBytes = 0;
+        }
+
+        void close() {
+            flush();
+            h.unpin();
+        }
+    }
+}
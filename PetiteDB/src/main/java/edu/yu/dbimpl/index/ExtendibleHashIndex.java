@@ -0,0 +1,670 @@
+package edu.yu.dbimpl.index;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+import edu.yu.dbimpl.tx.recovery.RowImage;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+/** An extendible hash index, stored in a file of its own (see fileName): a
+ * directory page (block 0) that maps the low bits of a key's hash to the
+ * bucket that holds the key, and one block per bucket.  A search reads the
+ * directory and the key's bucket, so a lookup costs two block accesses
+ * however large the index grows.
+ *
+ * The directory holds its global depth d followed by 2^d bucket block
+ * numbers.  A bucket holds a header (its local depth, its number of entries,
+ * and the block of its first overflow page) followed by its entries, each a
+ * key and the RID of the indexed record.  A zeroed directory maps every key
+ * to block 1, and a zeroed bucket is empty, so a new index is two zeroed
+ * blocks.
+ *
+ * A bucket that overflows is split: its entries are divided between it and a
+ * new bucket by the next bit of their hashes, and the directory entries that
+ * pointed to it are divided likewise, after the directory doubles if the
+ * bucket's local depth was the global depth.  Only the overflowing bucket is
+ * split, so the index grows one bucket at a time.  A bucket that can't be
+ * split (the directory page is full, or every entry has the same hash, e.g.
+ * a key with many records) grows a chain of overflow pages instead.  A
+ * deletion doesn't merge buckets; a split-away overflow page is abandoned,
+ * not reused.
+ *
+ * Concurrency: a search locks its bucket before releasing the shared lock on
+ * the directory, so txs contend only for the buckets that they read or
+ * update.  An insert locks its bucket exclusively, and only if the bucket is
+ * full locks the directory exclusively to split it.  Since the RecoveryMgr
+ * undoes a tx's changes physically, a page that a tx changes stays locked
+ * until the tx completes: a tx that splits a bucket blocks the index's other
+ * txs until it completes.
+ *
+ * Recovery: each change to a page is logged through the tx, as a ROW_IMAGE
+ * record of the page's changed fields (split into several records if a log
+ * page can't hold them all), so that rollback and recovery restore the index.
+ */
+public class ExtendibleHashIndex implements IndexBase {
+    /** The smallest number of entries that a bucket must be able to hold. */
+    public static final int MIN_CAPACITY = 2;
+
+    private static final int DIRECTORY = 0;
+    private static final int FIRST_BUCKET = 1;
+    // the directory is never an overflow page, so its block number ends a chain
+    private static final int NONE = DIRECTORY;
+    private static final int GLOBAL_DEPTH_OFFSET = 0;
+    private static final int DEPTH_OFFSET = 0;
+    private static final int COUNT_OFFSET = Integer.BYTES;
+    private static final int OVERFLOW_OFFSET = 2 * Integer.BYTES;
+    private static final int HEADER_SIZE = 3 * Integer.BYTES;
+    // the log record header of a row image: type, txnum, block and field count
+    private static final int IMAGE_HEADER = 4 * Integer.BYTES + Short.BYTES;
+
+    private final Tx tx;
+    private final String filename;
+    private final int type;
+    private final int keyLength;
+    private final int keySize;
+    private final int slotSize;
+    private final int capacity;
+    private final int maxDepth;
+    private final int imageBudget;
+
+    // the state of the current search
+    private DatumBase searchKey;
+    private Page page = null;
+    private int position;
+
+    /**
+     * Constructor: creates the index's directory and first bucket if the
+     * index's file is empty.
+     *
+     * @param tx the tx under which the index is accessed; must be a Tx
+     * @param indexDescriptor the index's descriptor
+     * @throws IllegalArgumentException if an argument is null, or a bucket
+     * can't hold at least MIN_CAPACITY entries of the indexed field
+     */
+    public ExtendibleHashIndex(TxBase tx, IndexDescriptorBase indexDescriptor) {
+        if(!(tx instanceof Tx) || indexDescriptor == null){
+            throw new IllegalArgumentException("A Tx and a descriptor are required");
+        }
+        this.tx = (Tx) tx;
+        this.filename = fileName(indexDescriptor.getTableName(), indexDescriptor.getFieldName());
+        SchemaBase schema = indexDescriptor.getIndexedTableSchema();
+        this.type = schema.type(indexDescriptor.getFieldName());
+        this.keyLength = schema.length(indexDescriptor.getFieldName());
+        this.keySize = BTreeIndex.keySize(type, keyLength);
+        this.slotSize = keySize + 2 * Integer.BYTES;
+        this.capacity = capacity(tx.blockSize(), type, keyLength);
+        this.maxDepth = 31 - Integer.numberOfLeadingZeros((tx.blockSize() - Integer.BYTES) / Integer.BYTES);
+        this.imageBudget = tx.blockSize() - 3 * Integer.BYTES - IMAGE_HEADER - filename.length();
+        if(capacity < MIN_CAPACITY || imageBudget < fieldBytes(type)){
+            throw new IllegalArgumentException("Field " + indexDescriptor.getFieldName() + " is too large for a hash bucket");
+        }
+        while(this.tx.fileMgr().length(filename) <= FIRST_BUCKET){
+            tx.append(filename);
+        }
+    }
+
+    /** Returns the name of the file of the index on the table's field. */
+    public static String fileName(String tableName, String fieldName) {
+        return tableName + "_" + fieldName + "_ehash.idx";
+    }
+
+    /** Returns the number of entries that a bucket of an index on a field of
+     * the specified type and length holds.
+     */
+    public static int capacity(int blockSize, int type, int length) {
+        return (blockSize - HEADER_SIZE) / (BTreeIndex.keySize(type, length) + 2 * Integer.BYTES);
+    }
+
+    /** Positions the index before the first record whose key equals the
+     * search key.
+     *
+     * @throws IllegalArgumentException if the key is null, or its type is
+     * incompatible with the index
+     * @see IndexBase#beforeFirst
+     */
+    @Override
+    public void beforeFirst(DatumBase searchKey) {
+        DatumBase key = checked(searchKey);
+        close();
+        Page dir = new Page(DIRECTORY);
+        page = new Page(dir.bucket(hash(key)));
+        // the bucket is locked before the directory is released
+        page.count();
+        releaseDirectory(dir);
+        this.searchKey = key;
+        this.position = -1;
+    }
+
+    /** Moves to the next record with the search key, following the bucket's
+     * overflow chain.
+     *
+     * @throws IllegalStateException if no search has been started
+     */
+    @Override
+    public boolean next() {
+        if(page == null){
+            throw new IllegalStateException("need to call beforeFirst");
+        }
+        while(true){
+            position++;
+            while(position >= page.count()){
+                int next = page.overflow();
+                if(next == NONE){
+                    return false;
+                }
+                // lock the next page before leaving the current one
+                Page p = new Page(next);
+                p.count();
+                BlockIdBase left = page.block();
+                page.close();
+                tx.leaveBlock(left);
+                page = p;
+                position = 0;
+            }
+            if(page.key(position).equals(searchKey)){
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public RID getRID() {
+        if(page == null || position < 0 || position >= page.count()){
+            throw new IllegalStateException("Index isn't positioned on a record");
+        }
+        return new RID(page.ridBlock(position), page.ridSlot(position));
+    }
+
+    @Override
+    public void insert(DatumBase value, RID rid) {
+        Entry e = new Entry(checked(value), rid.blockNumber(), rid.slot());
+        int hash = hash(e.key());
+        Page dir = new Page(DIRECTORY);
+        int b = dir.bucket(hash);
+        if(seemsToHaveRoom(b)){
+            Page bucket = lockForUpdate(b);
+            releaseDirectory(dir);
+            if(!addWithRoom(bucket, e)){
+                // the bucket filled meanwhile: since the directory is locked
+                // before a bucket, chain a page instead of splitting it
+                appendOverflow(bucket, e);
+            }
+            bucket.close();
+            return;
+        }
+        // the bucket is full: split it, and then any bucket that the entry
+        // still doesn't fit, with the directory locked (before the buckets)
+        releaseDirectory(dir);
+        dir = lockForUpdate(DIRECTORY);
+        Page bucket;
+        while(true){
+            bucket = lockForUpdate(dir.bucket(hash));
+            if(addWithRoom(bucket, e)){
+                bucket.close();
+                break;
+            }
+            List<Entry> entries = chain(bucket);
+            int depth = bucket.depth();
+            if(depth == maxDepth || sameHash(entries, hash)){
+                appendOverflow(bucket, e);
+                bucket.close();
+                break;
+            }
+            if(depth == dir.globalDepth()){
+                dir.doubleDirectory();
+            }
+            int bit = 1 << depth;
+            List<Entry> stay = new ArrayList<>();
+            List<Entry> move = new ArrayList<>();
+            for(Entry x : entries){
+                ((hash(x.key()) & bit) == 0 ? stay : move).add(x);
+            }
+            Page split = allocate();
+            writeChain(bucket, depth + 1, stay);
+            writeChain(split, depth + 1, move);
+            dir.redirect(bucket.number(), split.number(), bit);
+            split.close();
+            bucket.close();
+        }
+        dir.close();
+    }
+
+    @Override
+    public void delete(DatumBase value, RID rid) {
+        DatumBase key = checked(value);
+        Page dir = new Page(DIRECTORY);
+        Page p = lockForUpdate(dir.bucket(hash(key)));
+        releaseDirectory(dir);
+        while(true){
+            for(int i = 0; i < p.count(); i++){
+                if(p.ridBlock(i) == rid.blockNumber() && p.ridSlot(i) == rid.slot() && p.key(i).equals(key)){
+                    // the page's last entry takes the deleted one's place
+                    List<Entry> entries = p.entries();
+                    Entry last = entries.remove(entries.size() - 1);
+                    if(i < entries.size()){
+                        entries.set(i, last);
+                    }
+                    p.rewrite(p.depth(), p.overflow(), entries);
+                    p.close();
+                    return;
+                }
+            }
+            int next = p.overflow();
+            p.close();
+            if(next == NONE){
+                return;
+            }
+            p = lockForUpdate(next);
+        }
+    }
+
+    /** Deletes every record of the index, leaving an empty directory and
+     * bucket.
+     */
+    @Override
+    public void deleteAll() {
+        close();
+        Page dir = lockForUpdate(DIRECTORY);
+        if(dir.globalDepth() != 0){
+            dir.setInt(GLOBAL_DEPTH_OFFSET, 0);
+        }
+        if(dir.getInt(Integer.BYTES) != 0){
+            dir.setInt(Integer.BYTES, 0);
+        }
+        dir.close();
+        Page bucket = lockForUpdate(FIRST_BUCKET);
+        bucket.rewrite(0, NONE, List.of());
+        bucket.close();
+    }
+
+    @Override
+    public void close() {
+        if(page != null){
+            BlockIdBase blk = page.block();
+            page.close();
+            tx.leaveBlock(blk);
+            page = null;
+        }
+    }
+
+    /** Returns the key as the index's type: an int is widened for a double
+     * index, and a double truncated for an int index, as Index does.
+     */
+    private DatumBase checked(DatumBase key) {
+        if(key == null){
+            throw new IllegalArgumentException("Key can't be null");
+        }
+        if(key.getSQLType() == type){
+            return key;
+        }
+        if(type == Types.INTEGER && key.getSQLType() == Types.DOUBLE){
+            return new Datum(key.asInt());
+        }
+        if(type == Types.DOUBLE && key.getSQLType() == Types.INTEGER){
+            return new Datum(key.asDouble());
+        }
+        throw new IllegalArgumentException("incompatible value");
+    }
+
+    /** Returns the key's hash, which (unlike Object#hashCode) is part of the
+     * index's persistent format, mixed with murmur3's finalizer so that its
+     * low bits depend on every bit of the key.
+     */
+    private int hash(DatumBase key) {
+        int h = switch(type){
+            case Types.INTEGER -> Integer.hashCode(key.asInt());
+            case Types.DOUBLE -> Double.hashCode(key.asDouble());
+            case Types.BOOLEAN -> Boolean.hashCode(key.asBoolean());
+            default -> key.asString().hashCode();
+        };
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean sameHash(List<Entry> entries, int hash) {
+        for(Entry x : entries){
+            if(hash(x.key()) != hash){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Adds the entry to the first page of the bucket's chain with room for
+     * it, and returns true, or returns false if every page is full.
+     */
+    private boolean addWithRoom(Page bucket, Entry e) {
+        Page p = bucket;
+        while(true){
+            if(p.count() < capacity){
+                List<Entry> entries = p.entries();
+                entries.add(e);
+                p.rewrite(p.depth(), p.overflow(), entries);
+                if(p != bucket){
+                    p.close();
+                }
+                return true;
+            }
+            int next = p.overflow();
+            if(p != bucket){
+                p.close();
+            }
+            if(next == NONE){
+                return false;
+            }
+            p = lockForUpdate(next);
+        }
+    }
+
+    /** Adds the entry in a new overflow page at the end of the bucket's
+     * chain.
+     */
+    private void appendOverflow(Page bucket, Entry e) {
+        Page p = bucket;
+        while(p.overflow() != NONE){
+            int next = p.overflow();
+            if(p != bucket){
+                p.close();
+            }
+            p = lockForUpdate(next);
+        }
+        Page added = allocate();
+        added.rewrite(bucket.depth(), NONE, List.of(e));
+        p.rewrite(p.depth(), added.number(), p.entries());
+        added.close();
+        if(p != bucket){
+            p.close();
+        }
+    }
+
+    /** Returns whether the bucket's first page has room for an entry, reading
+     * it without locking it: a hint, which addWithRoom re-checks once the
+     * bucket is locked.
+     */
+    private boolean seemsToHaveRoom(int blknum) {
+        PageHandle h = tx.pinHandle(new BlockId(filename, blknum));
+        int count = h.getHintInt(COUNT_OFFSET);
+        h.unpin();
+        return count < capacity;
+    }
+
+    /** Returns the entries of every page of the bucket's chain. */
+    private List<Entry> chain(Page bucket) {
+        List<Entry> result = bucket.entries();
+        int next = bucket.overflow();
+        while(next != NONE){
+            Page p = lockForUpdate(next);
+            result.addAll(p.entries());
+            next = p.overflow();
+            p.close();
+        }
+        return result;
+    }
+
+    /** Replaces the contents of the bucket's chain with the entries, in as
+     * few of its pages as hold them (adding pages if they don't fit); the
+     * rest of the chain is abandoned.
+     */
+    private void writeChain(Page bucket, int depth, List<Entry> entries) {
+        Page p = bucket;
+        int from = 0;
+        while(true){
+            int to = Math.min(entries.size(), from + capacity);
+            List<Entry> part = entries.subList(from, to);
+            int next = NONE;
+            if(to < entries.size()){
+                next = p.overflow();
+                if(next == NONE){
+                    Page added = allocate();
+                    next = added.number();
+                    added.close();
+                }
+            }
+            p.rewrite(depth, next, part);
+            if(p != bucket){
+                p.close();
+            }
+            if(next == NONE){
+                return;
+            }
+            p = lockForUpdate(next);
+            from = to;
+        }
+    }
+
+    /** Closes the directory, releasing a shared lock on it. */
+    private void releaseDirectory(Page dir) {
+        dir.close();
+        tx.unlockShared(dir.block());
+    }
+
+    /** Returns the page, locked exclusively before it's read. */
+    private Page lockForUpdate(int blknum) {
+        BlockIdBase blk = new BlockId(filename, blknum);
+        tx.xLockBlock(blk);
+        return new Page(blk);
+    }
+
+    private Page allocate() {
+        return new Page(tx.append(filename));
+    }
+
+    /** Returns the number of bytes that a changed field of the specified type
+     * adds to a row image's log record: its offset, type, and new and old
+     * values.
+     */
+    private int fieldBytes(int fieldType) {
+        int value = switch(fieldType){
+            case Types.INTEGER -> Integer.BYTES;
+            case Types.DOUBLE -> Double.BYTES;
+            case Types.BOOLEAN -> 1;
+            default -> Short.BYTES + keyLength;
+        };
+        return 2 * Integer.BYTES + 2 * value;
+    }
+
+    /** A bucket entry: a key and the RID of its record. */
+    private record Entry(DatumBase key, int block, int slot) {
+    }
+
+    /** A page of the index (the directory or a bucket page), pinned while
+     * it's in use.  The changes of a rewrite are collected in a row image,
+     * which is logged when it grows too large for a log record, and when the
+     * rewrite is done.
+     */
+    private class Page {
+        private final PageHandle h;
+        private RowImage image;
+        private int imageBytes = 0;
+
+        Page(int blknum) {
+            this(new BlockId(filename, blknum));
+        }
+
+        Page(BlockIdBase blk) {
+            this.h = tx.pinHandle(blk);
+            this.image = new RowImage(blk);
+        }
+
+        BlockIdBase block() {
+            return h.block();
+        }
+
+        int number() {
+            return h.block().number();
+        }
+
+        int getInt(int offset) {
+            return h.getInt(offset);
+        }
+
+        int globalDepth() {
+            return h.getInt(GLOBAL_DEPTH_OFFSET);
+        }
+
+        /** Returns the block of the bucket that holds the hash's keys. */
+        int bucket(int hash) {
+            int blknum = h.getInt(Integer.BYTES * (1 + (hash & ((1 << globalDepth()) - 1))));
+            return blknum == DIRECTORY ? FIRST_BUCKET : blknum;
+        }
+
+        /** Doubles the directory: the new half's entries point to the same
+         * buckets as the old half's.
+         */
+        void doubleDirectory() {
+            int depth = globalDepth();
+            int size = 1 << depth;
+            for(int i = 0; i < size; i++){
+                int blknum = h.getInt(Integer.BYTES * (1 + i));
+                if(h.getInt(Integer.BYTES * (1 + size + i)) != blknum){
+                    setInt(Integer.BYTES * (1 + size + i), blknum);
+                }
+            }
+            setInt(GLOBAL_DEPTH_OFFSET, depth + 1);
+            flush();
+        }
+
+        /** Points the directory's entries that point to the bucket, and that
+         * have the bit set, to the split bucket instead.
+         */
+        void redirect(int bucket, int split, int bit) {
+            int size = 1 << globalDepth();
+            for(int i = bit; i < size; i++){
+                if((i & bit) != 0){
+                    int blknum = h.getInt(Integer.BYTES * (1 + i));
+                    if((blknum == DIRECTORY ? FIRST_BUCKET : blknum) == bucket){
+                        setInt(Integer.BYTES * (1 + i), split);
+                    }
+                }
+            }
+            flush();
+        }
+
+        int depth() {
+            return h.getInt(DEPTH_OFFSET);
+        }
+
+        int count() {
+            return h.getInt(COUNT_OFFSET);
+        }
+
+        int overflow() {
+            return h.getInt(OVERFLOW_OFFSET);
+        }
+
+        private int offset(int i) {
+            return HEADER_SIZE + i * slotSize;
+        }
+
+        DatumBase key(int i) {
+            int off = offset(i);
+            return switch(type){
+                case Types.INTEGER -> new Datum(h.getInt(off));
+                case Types.DOUBLE -> new Datum(h.getDouble(off));
+                case Types.BOOLEAN -> new Datum(h.getBoolean(off));
+                default -> new Datum(h.getString(off));
+            };
+        }
+
+        int ridBlock(int i) {
+            return h.getInt(offset(i) + keySize);
+        }
+
+        int ridSlot(int i) {
+            return h.getInt(offset(i) + keySize + Integer.BYTES);
+        }
+
+        List<Entry> entries() {
+            int count = count();
+            List<Entry> result = new ArrayList<>(count + 1);
+            for(int i = 0; i < count; i++){
+                result.add(new Entry(key(i), ridBlock(i), ridSlot(i)));
+            }
+            return result;
+        }
+
+        /** Replaces the bucket page's contents, writing only the fields that
+         * change.
+         */
+        void rewrite(int depth, int overflow, List<Entry> entries) {
+            int count = count();
+            if(depth() != depth){
+                setInt(DEPTH_OFFSET, depth);
+            }
+            if(overflow() != overflow){
+                setInt(OVERFLOW_OFFSET, overflow);
+            }
+            for(int i = 0; i < entries.size(); i++){
+                Entry e = entries.get(i);
+                int off = offset(i);
+                boolean used = i < count;
+                if(!used || !key(i).equals(e.key())){
+                    setKey(off, e.key());
+                }
+                if(!used || ridBlock(i) != e.block()){
+                    setInt(off + keySize, e.block());
+                }
+                if(!used || ridSlot(i) != e.slot()){
+                    setInt(off + keySize + Integer.BYTES, e.slot());
+                }
+            }
+            if(count != entries.size()){
+                setInt(COUNT_OFFSET, entries.size());
+            }
+            // logged now, so that a page's records are in the order of its changes
+            // even if it's pinned twice
+            flush();
+        }
+
+        void setInt(int offset, int val) {
+            reserve(Types.INTEGER);
+            h.setInt(offset, val, image);
+        }
+
+        private void setKey(int offset, DatumBase key) {
+            reserve(type);
+            switch(type){
+                case Types.INTEGER -> h.setInt(offset, key.asInt(), image);
+                case Types.DOUBLE -> h.setDouble(offset, key.asDouble(), image);
+                case Types.BOOLEAN -> h.setBoolean(offset, key.asBoolean(), image);
+                default -> h.setString(offset, key.asString(), image);
+            }
+        }
+
+        /** Makes room in the row image for a field, logging the image first if
+         * the field would make its log record too large.
+         */
+        private void reserve(int fieldType) {
+            int bytes = fieldBytes(fieldType);
+            if(imageBytes + bytes > imageBudget){
+                flush();
+            }
+            imageBytes += bytes;
+        }
+
+        private void flush() {
+            if(!image.isEmpty()){
+                tx.logRowImage(image);
+                image = new RowImage(h.block());
+            }
+            imageBytes = 0;
+        }
+
+        void close() {
+            flush();
+            h.unpin();
+        }
+    }
+}
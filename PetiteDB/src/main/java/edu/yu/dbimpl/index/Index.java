@@ -5,6 +5,7 @@ import edu.yu.dbimpl.query.DatumBase;
 import edu.yu.dbimpl.record.*;
 import edu.yu.dbimpl.tx.TxBase;
 import java.sql.Types;
+import java.util.*;
 
 import static edu.yu.dbimpl.index.IndexMgr.RID_BLOCK_ID_FIELD;
 import static edu.yu.dbimpl.index.IndexMgr.RID_SLOT_FIELD;
@@ -36,9 +37,13 @@ public class Index implements IndexBase{
     private final TxBase tx;
     private final IndexDescriptorBase indexDescriptor;
     private final int buckets;
-    private TableScanBase tableScan = null;
+    private TableScan tableScan = null;
     private int type;
-    private final LayoutBase layout;
+    private final Layout layout;
+    // field ordinals, resolved once so that per-record access skips name lookups
+    private final int keyField;
+    private final int blockField;
+    private final int slotField;
     private DatumBase currentSearchKey = null;
 
     public Index(TxBase tx, IndexDescriptorBase indexDescriptor, int buckets){
@@ -51,6 +56,9 @@ public class Index implements IndexBase{
         ourSchema.addIntField(RID_BLOCK_ID_FIELD);
         ourSchema.addIntField(RID_SLOT_FIELD);
         layout = new Layout(ourSchema);
+        keyField = layout.ordinal("key");
+        blockField = layout.ordinal(RID_BLOCK_ID_FIELD);
+        slotField = layout.ordinal(RID_SLOT_FIELD);
     }
 
     private String getBucketTable(DatumBase datum){
@@ -89,6 +97,8 @@ public class Index implements IndexBase{
                 throw new IllegalArgumentException("invalid type");
             }
         }
+        // release the previous search's pin before pinning the bucket
+        close();
         tableScan = new TableScan(tx, getBucketTable(searchKey), layout);
         tableScan.beforeFirst();
         this.currentSearchKey = searchKey;
@@ -109,10 +119,10 @@ public class Index implements IndexBase{
         }
         while(tableScan.next()){
             boolean matches = switch (type) {
-                case Types.INTEGER -> tableScan.getInt("key") == currentSearchKey.asInt();
-                case Types.DOUBLE -> tableScan.getDouble("key") == currentSearchKey.asDouble();
-                case Types.VARCHAR -> tableScan.getString("key").equals(currentSearchKey.asString());
-                case Types.BOOLEAN -> tableScan.getBoolean("key") == currentSearchKey.asBoolean();
+                case Types.INTEGER -> tableScan.getInt(keyField) == currentSearchKey.asInt();
+                case Types.DOUBLE -> tableScan.getDouble(keyField) == currentSearchKey.asDouble();
+                case Types.VARCHAR -> tableScan.getString(keyField).equals(currentSearchKey.asString());
+                case Types.BOOLEAN -> tableScan.getBoolean(keyField) == currentSearchKey.asBoolean();
                 default -> false;
             };
             if(matches) return true;
@@ -135,7 +145,7 @@ public class Index implements IndexBase{
         }
         RID returnRid = null;
         try{
-            returnRid = new RID(tableScan.getInt(RID_BLOCK_ID_FIELD), tableScan.getInt(RID_SLOT_FIELD));
+            returnRid = new RID(tableScan.getInt(blockField), tableScan.getInt(slotField));
         }catch(Exception e){
             throw new IllegalStateException("invalid state");
         }
@@ -159,20 +169,61 @@ public class Index implements IndexBase{
             }
         }
         String tableName = getBucketTable(value);
-        TableScanBase tableScanLocal = new TableScan(tx, tableName, layout);
+        TableScan tableScanLocal = new TableScan(tx, tableName, layout);
         tableScanLocal.beforeFirst();
         tableScanLocal.insert();
         switch (type){
-            case Types.INTEGER -> tableScanLocal.setInt("key", value.asInt());
-            case Types.VARCHAR -> tableScanLocal.setString("key", value.asString());
-            case Types.DOUBLE ->  tableScanLocal.setDouble("key", value.asDouble());
-            case Types.BOOLEAN ->  tableScanLocal.setBoolean("key", value.asBoolean());
+            case Types.INTEGER -> tableScanLocal.setInt(keyField, value.asInt());
+            case Types.VARCHAR -> tableScanLocal.setString(keyField, value.asString());
+            case Types.DOUBLE ->  tableScanLocal.setDouble(keyField, value.asDouble());
+            case Types.BOOLEAN ->  tableScanLocal.setBoolean(keyField, value.asBoolean());
         }
-        tableScanLocal.setInt(RID_BLOCK_ID_FIELD, rid.blockNumber());
-        tableScanLocal.setInt(RID_SLOT_FIELD, rid.slot());
+        tableScanLocal.setInt(blockField, rid.blockNumber());
+        tableScanLocal.setInt(slotField, rid.slot());
         tableScanLocal.close();
     }
 
+    /**
+     * Inserts a batch of index records, as if by invoking insert() on each
+     * (value, RID) pair.  The batch is grouped by bucket so that each bucket's
+     * records are inserted through a single scan, in the batch's order within
+     * the bucket.
+     *
+     * @param entries the (value, RID) pairs to insert
+     * @throws IllegalArgumentException if any value is incompatible with the
+     *                                  index definition, in which case no record is inserted
+     * @see #insert
+     */
+    public void insertAll(List<Map.Entry<DatumBase, RID>> entries) {
+        Map<String, List<Map.Entry<DatumBase, RID>>> byBucket = new TreeMap<>();
+        for(Map.Entry<DatumBase, RID> entry : entries){
+            DatumBase value = entry.getKey();
+            if(type != value.getSQLType()){
+                if(!(type == Types.INTEGER && value.getSQLType() == Types.DOUBLE || type == Types.DOUBLE && value.getSQLType() == Types.INTEGER)){
+                    throw new IllegalArgumentException("incompatible value");
+                }
+            }
+            byBucket.computeIfAbsent(getBucketTable(value), k -> new ArrayList<>()).add(entry);
+        }
+        for(Map.Entry<String, List<Map.Entry<DatumBase, RID>>> bucket : byBucket.entrySet()){
+            TableScan tableScanLocal = new TableScan(tx, bucket.getKey(), layout);
+            tableScanLocal.beforeFirst();
+            for(Map.Entry<DatumBase, RID> entry : bucket.getValue()){
+                DatumBase value = entry.getKey();
+                tableScanLocal.insert();
+                switch (type){
+                    case Types.INTEGER -> tableScanLocal.setInt(keyField, value.asInt());
+                    case Types.VARCHAR -> tableScanLocal.setString(keyField, value.asString());
+                    case Types.DOUBLE ->  tableScanLocal.setDouble(keyField, value.asDouble());
+                    case Types.BOOLEAN ->  tableScanLocal.setBoolean(keyField, value.asBoolean());
+                }
+                tableScanLocal.setInt(blockField, entry.getValue().blockNumber());
+                tableScanLocal.setInt(slotField, entry.getValue().slot());
+            }
+            tableScanLocal.close();
+        }
+    }
+
     /**
      * Deletes the index record having the specified value and RID.
      *
@@ -190,35 +241,35 @@ public class Index implements IndexBase{
             }
         }
         String tableName = getBucketTable(value);
-        TableScanBase tableScanLocal = new TableScan(tx, tableName, layout);
+        TableScan tableScanLocal = new TableScan(tx, tableName, layout);
         tableScanLocal.beforeFirst();
         boolean found = false;
         while(tableScanLocal.next() && !found){
             switch (type){
                 case Types.INTEGER:
-                    if(tableScanLocal.getInt("key") == value.asInt() && tableScanLocal.getInt(RID_BLOCK_ID_FIELD) == rid.blockNumber()
-                        && tableScanLocal.getInt(RID_SLOT_FIELD) == rid.slot()){
+                    if(tableScanLocal.getInt(keyField) == value.asInt() && tableScanLocal.getInt(blockField) == rid.blockNumber()
+                        && tableScanLocal.getInt(slotField) == rid.slot()){
                         tableScanLocal.delete();
                         found = true;
                     }
                     break;
                 case Types.DOUBLE:
-                    if(tableScanLocal.getDouble("key") == value.asDouble() && tableScanLocal.getInt(RID_BLOCK_ID_FIELD) == rid.blockNumber()
-                            && tableScanLocal.getInt(RID_SLOT_FIELD) == rid.slot()){
+                    if(tableScanLocal.getDouble(keyField) == value.asDouble() && tableScanLocal.getInt(blockField) == rid.blockNumber()
+                            && tableScanLocal.getInt(slotField) == rid.slot()){
                         tableScanLocal.delete();
                         found = true;
                     }
                     break;
                 case Types.VARCHAR:
-                    if(tableScanLocal.getString("key").equals(value.asString()) && tableScanLocal.getInt(RID_BLOCK_ID_FIELD) == rid.blockNumber()
-                            && tableScanLocal.getInt(RID_SLOT_FIELD) == rid.slot()){
+                    if(tableScanLocal.getString(keyField).equals(value.asString()) && tableScanLocal.getInt(blockField) == rid.blockNumber()
+                            && tableScanLocal.getInt(slotField) == rid.slot()){
                         tableScanLocal.delete();
                         found = true;
                     }
                     break;
                 case Types.BOOLEAN:
-                    if(tableScanLocal.getBoolean("key") == value.asBoolean() && tableScanLocal.getInt(RID_BLOCK_ID_FIELD) == rid.blockNumber()
-                            && tableScanLocal.getInt(RID_SLOT_FIELD) == rid.slot()){
+                    if(tableScanLocal.getBoolean(keyField) == value.asBoolean() && tableScanLocal.getInt(blockField) == rid.blockNumber()
+                            && tableScanLocal.getInt(slotField) == rid.slot()){
                         tableScanLocal.delete();
                         found = true;
                     }
@@ -3,11 +3,14 @@ package edu.yu.dbimpl.index;
 import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.metadata.TableMgrBase;
 import edu.yu.dbimpl.record.*;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
 
 import java.io.File;
 import java.sql.Types;
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /** Specifies the public API for the IndexMgr implementation by requiring all
  * IndexMgr implementations to extend this base class.
@@ -39,10 +42,12 @@ public class IndexMgr extends IndexMgrBase{
     static final String TABLE_NAME_FIELD = "tableName";
     static final String INDEX_ID_FIELD = "indexId";
     static final String INDEX_NAME_FIELD = "indexName";
+    static final String INDEX_TYPE_FIELD = "indexType";
     static final String RID_BLOCK_ID_FIELD = "RIDBlock";
     static final String RID_SLOT_FIELD = "RIDSlot";
     private final LayoutBase indexMDLayout;
     private int nextIndexID = 0;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
 
     /**
      * Constructor creates a new index manager.
@@ -76,7 +81,7 @@ public class IndexMgr extends IndexMgrBase{
         SchemaBase indexMDSchema = new Schema();
         indexMDSchema.addField(TABLE_NAME_FIELD, Types.VARCHAR, 16);
         indexMDSchema.addField(INDEX_NAME_FIELD, Types.VARCHAR, 16);
-        indexMDSchema.addIntField("indexType");
+        indexMDSchema.addIntField(INDEX_TYPE_FIELD);
         indexMDSchema.addIntField(INDEX_ID_FIELD);
         indexMDLayout = new Layout(indexMDSchema);
         if(DBConfiguration.INSTANCE.isDBStartup()){
@@ -110,10 +115,13 @@ public class IndexMgr extends IndexMgrBase{
      *                  in the table's catalog information.  The name of the index is identical to
      *                  the field name.
      * @param indexType type of the index (e.g., static hashing, B-Tree), must be
-     *                  non-null.
+     *                  non-null.  A static hash index is stored in a table per
+     *                  bucket, a B-tree or an extendible hash index in a file of
+     *                  its own (see BTreeIndex, ExtendibleHashIndex).
      * @return the persisted id that is associated with the index information.
      * @throws IllegalArgumentException if arguments don't meet the
-     *                                  pre-conditions.
+     *                                  pre-conditions, or the field is too large
+     *                                  for a B-tree's nodes or a hash bucket.
      * @see #get
      * @see #indexIds
      * @see #instantiate
@@ -137,12 +145,21 @@ public class IndexMgr extends IndexMgrBase{
                 return returnInt;
             }
         }
+        if(indexType != IndexType.STATIC_HASH){
+            // creates the index's file, and rejects a key too large for its blocks
+            open(tx, new IndexDescriptor(tableName, lb.schema(), fieldName, fieldName, indexType)).close();
+        }
         tableScan.insert();
         tableScan.setString(TABLE_NAME_FIELD, tableName);
         tableScan.setString(INDEX_NAME_FIELD, fieldName);
+        tableScan.setInt(INDEX_TYPE_FIELD, indexType.ordinal());
         tableScan.setInt(INDEX_ID_FIELD, nextIndexID);
         nextIndexID++;
         tableScan.close();
+        if(indexType != IndexType.STATIC_HASH){
+            changed(tableName, tx);
+            return nextIndexID-1;
+        }
 
         //schema for indexes
         Schema ourSchema = new Schema();
@@ -153,9 +170,39 @@ public class IndexMgr extends IndexMgrBase{
         for(int i = 0; i < buckets; i++){
             tableMgr.createTable(tableName + "_" + fieldName+ "_" + i, ourSchema, tx);
         }
+        changed(tableName, tx);
         return nextIndexID-1;
     }
 
+    /**
+     * Registers an action to be run with a table's name whenever an index of
+     * the table is created or the table's indexes are deleted (e.g., for a
+     * client that caches plans that use them).  The action is run when the
+     * change is made, and again when the changing tx is about to complete,
+     * since the change is undone if the tx rolls back.
+     *
+     * @param listener the action
+     * @throws IllegalArgumentException if listener is null
+     */
+    public void onChange(Consumer<String> listener) {
+        if(listener == null){
+            throw new IllegalArgumentException("listener is null");
+        }
+        listeners.add(listener);
+    }
+
+    private void changed(String tableName, TxBase tx) {
+        if(listeners.isEmpty()){
+            return;
+        }
+        for(Consumer<String> listener : listeners){
+            listener.accept(tableName);
+        }
+        if(tx instanceof Tx t){
+            t.beforeCompletion(() -> listeners.forEach(l -> l.accept(tableName)));
+        }
+    }
+
     /**
      * Returns the unique index ids associated with the specified table name.
      *
@@ -205,8 +252,9 @@ public class IndexMgr extends IndexMgrBase{
             if(tableScan.getInt(INDEX_ID_FIELD) == indexId){
                 String tableName = tableScan.getString(TABLE_NAME_FIELD);
                 String indexName = tableScan.getString(INDEX_NAME_FIELD);
+                IndexType indexType = IndexType.values()[tableScan.getInt(INDEX_TYPE_FIELD)];
                 SchemaBase ourSchema = tableMgr.getLayout(tableName, tx).schema();
-                IndexDescriptorBase idb = new IndexDescriptor(tableName, ourSchema, indexName, indexName, IndexType.STATIC_HASH);
+                IndexDescriptorBase idb = new IndexDescriptor(tableName, ourSchema, indexName, indexName, indexType);
                 tableScan.close();
                 return idb;
             }
@@ -239,7 +287,15 @@ public class IndexMgr extends IndexMgrBase{
         if(idb == null){
             throw new IllegalArgumentException("index descriptor not found");
         }
-        return new Index(tx, idb, buckets);
+        return open(tx, idb);
+    }
+
+    private IndexBase open(TxBase tx, IndexDescriptorBase idb) {
+        return switch(idb.getIndexType()){
+            case STATIC_HASH -> new Index(tx, idb, buckets);
+            case BTREE -> new BTreeIndex(tx, idb);
+            case EXTENDIBLE_HASH -> new ExtendibleHashIndex(tx, idb);
+        };
     }
 
     /**
@@ -256,29 +312,31 @@ public class IndexMgr extends IndexMgrBase{
         if(tx == null){
             throw new IllegalArgumentException("tx is null");
         }
-        Map<String, SchemaBase> ids = new HashMap<>();
+        Map<String, IndexDescriptorBase> ids = new HashMap<>();
         //delete metadata
         TableScanBase tableScan = new TableScan(tx, INDEX_METADATA_FILE, indexMDLayout);
         while(tableScan.next()){
             if(tableScan.getString(TABLE_NAME_FIELD).equals(tableName)){
-                SchemaBase ourSchema = get(tx, tableScan.getInt(INDEX_ID_FIELD)).getIndexedTableSchema();
-                ids.put(tableScan.getString(INDEX_NAME_FIELD), ourSchema);
+                ids.put(tableScan.getString(INDEX_NAME_FIELD), get(tx, tableScan.getInt(INDEX_ID_FIELD)));
                 tableScan.delete();
             }
         }
         tableScan.close();
         //delete data
-        for(String id: ids.keySet()){
-            IndexDescriptorBase indexDescriptor = new IndexDescriptor(tableName, ids.get(id), id, id, IndexType.STATIC_HASH);
-            IndexBase index = new Index(tx, indexDescriptor,  buckets);
+        for(IndexDescriptorBase indexDescriptor: ids.values()){
+            IndexBase index = open(tx, indexDescriptor);
             index.deleteAll();
             index.close();
         }
         //delete tables metadata
         for(String id: ids.keySet()){
+            if(ids.get(id).getIndexType() != IndexType.STATIC_HASH){
+                continue;
+            }
             for (int i = 0; i < buckets; i++) {
                 tableMgr.replace(tableName + "_" + id + "_" + i, null, tx);
             }
         }
+        changed(tableName, tx);
     }
 }
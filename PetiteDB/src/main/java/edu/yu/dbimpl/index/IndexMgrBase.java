@@ -30,7 +30,7 @@ public abstract class IndexMgrBase {
 
     /** Defines the set of index types that a client can use when creating an index.
      */
-    public enum IndexType { STATIC_HASH };
+    public enum IndexType { STATIC_HASH, BTREE, EXTENDIBLE_HASH };
 
     /** Constructor creates a new index manager.
      *
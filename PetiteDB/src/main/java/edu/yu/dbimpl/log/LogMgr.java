@@ -122,6 +122,18 @@ public class LogMgr extends LogMgrBase{
         }
     }
 
+    /** Ensures that the log record corresponding to the specified LSN, or the
+     * latest log record if there is no such record yet, has been written to
+     * disk.  Unlike flush(), tolerates an LSN that wasn't returned by append():
+     * a Buffer forces the log through whatever LSN its clients passed to
+     * setModified() before writing its page.
+     *
+     * @param lsn the LSN of a log record
+     */
+    public synchronized void flushThrough(int lsn) {
+        flush(Math.min(lsn, currentLSN - 1));
+    }
+
     /** First flushes the log to disk, then return an Iterator over the contents
      * of the persisted log.
      *
@@ -0,0 +1,120 @@
+package edu.yu.dbimpl.metadata;
+
+import java.util.Arrays;
+
+/** An equi-depth histogram of the values of a numeric field: the buckets'
+ * boundaries are chosen (from a sorted sample) so that each bucket initially
+ * holds about as many values, and within a bucket the values are assumed to
+ * be spread uniformly.  The counts are scaled from the sample to the table.
+ *
+ * The histogram is kept up to date by add() and remove(), which adjust the
+ * count of a value's bucket (widening the outer buckets for a value beyond
+ * the histogram's range) but never move the boundaries.  A histogram isn't
+ * thread-safe.
+ */
+public class Histogram {
+    private final double[] bounds;
+    private final double[] counts;
+
+    /**
+     * Constructor.
+     *
+     * @param sorted a sample of the field's values, in ascending order
+     * @param buckets the number of buckets
+     * @param scale the number of values of the table that each sampled value
+     * stands for
+     * @throws IllegalArgumentException if the sample is empty, or buckets or
+     * scale isn't positive
+     */
+    public Histogram(double[] sorted, int buckets, double scale) {
+        if(sorted == null || sorted.length == 0 || buckets < 1 || scale <= 0){
+            throw new IllegalArgumentException("Invalid histogram sample");
+        }
+        int n = Math.min(buckets, sorted.length);
+        this.bounds = new double[n + 1];
+        this.counts = new double[n];
+        for(int b = 0; b < n; b++){
+            int from = (int) ((long) b * sorted.length / n);
+            int to = (int) ((long) (b + 1) * sorted.length / n);
+            bounds[b] = sorted[from];
+            counts[b] = (to - from) * scale;
+        }
+        bounds[n] = sorted[sorted.length - 1];
+    }
+
+    private Histogram(double[] bounds, double[] counts) {
+        this.bounds = bounds;
+        this.counts = counts;
+    }
+
+    /** Returns a copy of the histogram. */
+    public Histogram copy() {
+        return new Histogram(bounds.clone(), counts.clone());
+    }
+
+    public int buckets() {
+        return counts.length;
+    }
+
+    /** Returns the estimated number of values. */
+    public double total() {
+        double t = 0;
+        for(double c : counts){
+            t += c;
+        }
+        return t;
+    }
+
+    /** Counts a value added to the field. */
+    public void add(double v) {
+        if(v < bounds[0]){
+            bounds[0] = v;
+        }
+        if(v > bounds[bounds.length - 1]){
+            bounds[bounds.length - 1] = v;
+        }
+        counts[bucket(v)]++;
+    }
+
+    /** Uncounts a value removed from the field. */
+    public void remove(double v) {
+        int b = bucket(v);
+        counts[b] = Math.max(0, counts[b] - 1);
+    }
+
+    /** Returns the estimated fraction of the values that are less than v. */
+    public double fractionBelow(double v) {
+        double total = total();
+        if(total == 0 || v <= bounds[0]){
+            return 0;
+        }
+        if(v > bounds[bounds.length - 1]){
+            return 1;
+        }
+        double below = 0;
+        for(int b = 0; b < counts.length; b++){
+            double lo = bounds[b];
+            double hi = bounds[b + 1];
+            if(v >= hi){
+                below += counts[b];
+            }else{
+                if(v > lo){
+                    below += counts[b] * (v - lo) / (hi - lo);
+                }
+                break;
+            }
+        }
+        return Math.min(1, below / total);
+    }
+
+    private int bucket(double v) {
+        int i = Arrays.binarySearch(bounds, v);
+        int b = i >= 0 ? i : -i - 2;
+        return Math.max(0, Math.min(counts.length - 1, b));
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram[bounds=" + Arrays.toString(bounds) + ", counts=" + Arrays.toString(counts) + "]";
+    }
+}
@@ -0,0 +1,84 @@
+package edu.yu.dbimpl.metadata;
+
+import edu.yu.dbimpl.query.DatumBase;
+
+import java.sql.Types;
+
+/** A HyperLogLog sketch, which estimates the number of distinct values added
+ * to it in a fixed 2^P bytes, with a standard error of about 1.04 / sqrt(2^P)
+ * (some 3%).  Each value's 64-bit hash picks a register by its top P bits, and
+ * the register keeps the largest rank (position of the first 1 bit) of the
+ * remaining bits seen.  The sketch keeps the sum of 2^-register and the
+ * number of empty registers up to date as it's added to, so estimate() takes
+ * constant time.
+ *
+ * Values can't be removed from a sketch.  A sketch isn't thread-safe.
+ */
+public class HyperLogLog {
+    /** The number of hash bits that pick a register. */
+    public static final int P = 10;
+    private static final int M = 1 << P;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / M);
+
+    private final byte[] registers = new byte[M];
+    private double sum = M;
+    private int zeros = M;
+
+    /** Adds a value to the sketch. */
+    public void add(DatumBase val) {
+        addHash(hash(val));
+    }
+
+    /** Adds a value, given its 64-bit hash, to the sketch. */
+    public void addHash(long h) {
+        int idx = (int) (h >>> (64 - P));
+        // the low P bits of the shifted hash are 0: the sentinel caps the rank
+        int rank = Long.numberOfLeadingZeros((h << P) | (1L << (P - 1))) + 1;
+        int old = registers[idx];
+        if(rank > old){
+            if(old == 0){
+                zeros--;
+            }
+            sum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -old);
+            registers[idx] = (byte) rank;
+        }
+    }
+
+    /** Returns the estimated number of distinct values added to the sketch. */
+    public long estimate() {
+        double e = ALPHA * M * M / sum;
+        if(e <= 2.5 * M && zeros > 0){
+            // linear counting is more accurate for small cardinalities
+            e = M * Math.log((double) M / zeros);
+        }
+        return Math.round(e);
+    }
+
+    /** Returns a 64-bit hash of the value, consistent with DatumBase#equals. */
+    public static long hash(DatumBase val) {
+        long h = switch(val.getSQLType()){
+            case Types.INTEGER -> val.asInt();
+            case Types.DOUBLE -> Double.doubleToLongBits(val.asDouble());
+            case Types.BOOLEAN -> val.asBoolean() ? 1 : 0;
+            default -> {
+                long s = 1125899906842597L;
+                String str = val.asString();
+                for(int i = 0; i < str.length(); i++){
+                    s = 31 * s + str.charAt(i);
+                }
+                yield s;
+            }
+        };
+        return mix(h + val.getSQLType());
+    }
+
+    /** The 64-bit finalizer of MurmurHash3. */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,71 @@
+package edu.yu.dbimpl.metadata;
+
+import java.util.Map;
+
+/** The statistics of a table that the planner uses to estimate the cost of
+ * its plans: the number of blocks, the number of records, the number of
+ * distinct values of each field, and a histogram of each numeric field.
+ */
+public class StatInfo {
+    private final long blocks;
+    private final long records;
+    private final Map<String, Long> distinct;
+    private final Map<String, Histogram> histograms;
+
+    /**
+     * Constructor.
+     *
+     * @param blocks the number of blocks in the table
+     * @param records the number of records in the table
+     * @param distinct the number of distinct values of each field
+     * @param histograms the histograms of the fields that have one; the
+     * StatInfo takes ownership of them
+     * @throws IllegalArgumentException if a count is negative or a map is null
+     */
+    public StatInfo(long blocks, long records, Map<String, Long> distinct, Map<String, Histogram> histograms) {
+        if(blocks < 0 || records < 0 || distinct == null || histograms == null){
+            throw new IllegalArgumentException("Invalid statistics");
+        }
+        this.blocks = blocks;
+        this.records = records;
+        this.distinct = Map.copyOf(distinct);
+        this.histograms = Map.copyOf(histograms);
+    }
+
+    /** Constructor for statistics without histograms.
+     *
+     * @see #StatInfo(long, long, Map, Map)
+     */
+    public StatInfo(long blocks, long records, Map<String, Long> distinct) {
+        this(blocks, records, distinct, Map.of());
+    }
+
+    public long blocksAccessed() {
+        return blocks;
+    }
+
+    public long recordsOutput() {
+        return records;
+    }
+
+    /** Returns the number of distinct values of the field; at least 1, so that
+     * callers can divide by it.  For a field without a recorded count, a
+     * third of the records is assumed.
+     */
+    public long distinctValues(String fldname) {
+        Long v = distinct.get(fldname);
+        return Math.max(1, v != null ? v : records / 3);
+    }
+
+    /** Returns the field's histogram, or null if it has none.  The histogram
+     * must not be modified.
+     */
+    public Histogram histogram(String fldname) {
+        return histograms.get(fldname);
+    }
+
+    @Override
+    public String toString() {
+        return "StatInfo[blocks=" + blocks + ", records=" + records + ", distinct=" + distinct + "]";
+    }
+}
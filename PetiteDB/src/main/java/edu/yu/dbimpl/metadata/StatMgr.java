@@ -0,0 +1,322 @@
+package edu.yu.dbimpl.metadata;
+
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.UpdateScan;
+import edu.yu.dbimpl.record.LayoutBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.TableScan;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/** Maintains the statistics of each table (see StatInfo): its block and
+ * record counts, an estimate of each field's distinct values, and an
+ * equi-depth histogram of each numeric field.
+ *
+ * A table's statistics are gathered by refresh(), which reads a random sample
+ * of up to sampleBlocks of the table's blocks (all of them, for a small
+ * table) and scales the sample up to the table: the record count by the
+ * fraction of blocks read, the distinct values with Haas and Stokes' Duj1
+ * estimator s*d / (s - f1 + f1*s/n), where d values appear in a sample of s
+ * of the table's n records, f1 of them only once.
+ *
+ * The statistics are then kept up to date by the record* methods, which the
+ * clients that update a table (e.g., the Planner) call for each record: the
+ * counts and histograms are adjusted, and an inserted value is added to its
+ * field's HyperLogLog sketch, which estimates the distinct values along with
+ * the refresh's estimate.  Since a sketch can't forget a deleted value, a
+ * table is refreshed again on the first read after the number of updates
+ * since its last refresh exceeds its record count at that refresh (and at
+ * least MIN_REFRESH_CHANGES).  Updates that bypass the StatMgr are only seen
+ * by a refresh.
+ *
+ * getStatInfo() returns a snapshot that's cached until the table's next
+ * update, so that the planner reads statistics in constant time rather than
+ * with a scan.
+ */
+public class StatMgr {
+    /** The default number of blocks that a refresh samples. */
+    public static final int DEFAULT_SAMPLE_BLOCKS = 100;
+    /** The number of buckets of a histogram. */
+    public static final int HISTOGRAM_BUCKETS = 20;
+    /** The number of updates below which a table is never considered stale. */
+    public static final int MIN_REFRESH_CHANGES = 1000;
+
+    private final int sampleBlocks;
+    private final Map<String, TableStats> tables = new ConcurrentHashMap<>();
+
+    /** Constructor for a manager that samples DEFAULT_SAMPLE_BLOCKS blocks. */
+    public StatMgr() {
+        this(DEFAULT_SAMPLE_BLOCKS);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sampleBlocks the maximum number of blocks that a refresh reads
+     * @throws IllegalArgumentException if sampleBlocks isn't positive
+     */
+    public StatMgr(int sampleBlocks) {
+        if(sampleBlocks < 1){
+            throw new IllegalArgumentException("Must sample at least one block");
+        }
+        this.sampleBlocks = sampleBlocks;
+    }
+
+    /** Returns the table's statistics, refreshing them first if the table has
+     * none yet or they're stale.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public StatInfo getStatInfo(String tblname, LayoutBase layout, TxBase tx) {
+        if(tblname == null || layout == null || tx == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        TableStats ts = tables.get(tblname);
+        if(ts == null || ts.isStale()){
+            ts = load(tblname, layout, tx);
+        }
+        return ts.snapshot();
+    }
+
+    /** Gathers the table's statistics from a sample of its blocks, replacing
+     * any that the manager had.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public StatInfo refresh(String tblname, LayoutBase layout, TxBase tx) {
+        return load(tblname, layout, tx).snapshot();
+    }
+
+    /** Records the insertion of the scan's current record.
+     *
+     * @param tblname the table
+     * @param s a scan of the table, positioned on the inserted record after
+     * its fields were set
+     */
+    public void recordInsert(String tblname, UpdateScan s) {
+        TableStats ts = tables.get(tblname);
+        if(ts != null){
+            ts.insert(s);
+        }
+    }
+
+    /** Records the deletion of the scan's current record; must be called
+     * before the record is deleted.
+     */
+    public void recordDelete(String tblname, UpdateScan s) {
+        TableStats ts = tables.get(tblname);
+        if(ts != null){
+            ts.delete(s);
+        }
+    }
+
+    /** Records the change of a field of a record from one value to another. */
+    public void recordModify(String tblname, String fldname, DatumBase oldVal, DatumBase newVal) {
+        TableStats ts = tables.get(tblname);
+        if(ts != null){
+            ts.modify(fldname, oldVal, newVal);
+        }
+    }
+
+    /** Discards the table's statistics (e.g., when the table is dropped); the
+     * next getStatInfo() refreshes them.
+     */
+    public void forget(String tblname) {
+        tables.remove(tblname);
+    }
+
+    private TableStats load(String tblname, LayoutBase layout, TxBase tx) {
+        if(tblname == null || layout == null || tx == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        TableStats ts = sample(tblname, layout, tx);
+        tables.put(tblname, ts);
+        return ts;
+    }
+
+    private TableStats sample(String tblname, LayoutBase layout, TxBase tx) {
+        List<String> fields = layout.schema().fields();
+        int nf = fields.size();
+        int[] types = new int[nf];
+        List<Map<DatumBase, Integer>> freqs = new ArrayList<>();
+        List<double[]> numbers = new ArrayList<>();
+        int[] numberCount = new int[nf];
+        for(int f = 0; f < nf; f++){
+            types[f] = layout.schema().type(fields.get(f));
+            freqs.add(new HashMap<>());
+            numbers.add(isNumeric(types[f]) ? new double[64] : null);
+        }
+        int blocks = tx.size(tblname + "_data.tbl");
+        int[] sampled = chooseBlocks(blocks);
+        long n = 0;
+        TableScan scan = new TableScan(tx, tblname, layout);
+        for(int b : sampled){
+            scan.moveToRid(new RID(b, -1));
+            while(scan.next() && scan.getRid().blockNumber() == b){
+                n++;
+                for(int f = 0; f < nf; f++){
+                    DatumBase val = scan.getVal(fields.get(f));
+                    freqs.get(f).merge(val, 1, Integer::sum);
+                    double[] nums = numbers.get(f);
+                    if(nums != null){
+                        if(numberCount[f] == nums.length){
+                            nums = Arrays.copyOf(nums, nums.length * 2);
+                            numbers.set(f, nums);
+                        }
+                        nums[numberCount[f]++] = val.asDouble();
+                    }
+                }
+            }
+        }
+        scan.close();
+
+        double scale = sampled.length == 0 ? 1 : (double) blocks / sampled.length;
+        long records = Math.round(n * scale);
+        TableStats ts = new TableStats(fields.toArray(new String[0]), blocks, records);
+        for(int f = 0; f < nf; f++){
+            Map<DatumBase, Integer> freq = freqs.get(f);
+            long singles = 0;
+            for(Map.Entry<DatumBase, Integer> e : freq.entrySet()){
+                ts.sketches[f].add(e.getKey());
+                if(e.getValue() == 1){
+                    singles++;
+                }
+            }
+            ts.baseDistinct[f] = sampled.length == blocks || n == 0
+                    ? freq.size()
+                    : Math.round(n * freq.size() / (n - singles + singles * (double) n / Math.max(n, records)));
+            if(numberCount[f] > 0){
+                double[] nums = Arrays.copyOf(numbers.get(f), numberCount[f]);
+                Arrays.sort(nums);
+                ts.histograms[f] = new Histogram(nums, HISTOGRAM_BUCKETS, scale);
+            }
+        }
+        return ts;
+    }
+
+    /** Returns the (ascending) numbers of the blocks to sample: every block,
+     * or a random sample of sampleBlocks of them (by Floyd's algorithm).
+     */
+    private int[] chooseBlocks(int blocks) {
+        if(blocks <= sampleBlocks){
+            int[] all = new int[blocks];
+            for(int b = 0; b < blocks; b++){
+                all[b] = b;
+            }
+            return all;
+        }
+        TreeSet<Integer> chosen = new TreeSet<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for(int j = blocks - sampleBlocks; j < blocks; j++){
+            int t = random.nextInt(j + 1);
+            chosen.add(chosen.contains(t) ? j : t);
+        }
+        return chosen.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static boolean isNumeric(int type) {
+        return type == Types.INTEGER || type == Types.DOUBLE;
+    }
+
+    /** The maintained statistics of a table. */
+    private static class TableStats {
+        private final String[] fields;
+        private final long[] baseDistinct;
+        private final HyperLogLog[] sketches;
+        private final Histogram[] histograms;
+        private final long refreshRecords;
+        private long blocks;
+        private long records;
+        private long changes = 0;
+        // the statistics as of the last update, or null if not yet built
+        private StatInfo snapshot;
+
+        TableStats(String[] fields, long blocks, long records) {
+            this.fields = fields;
+            this.blocks = blocks;
+            this.records = records;
+            this.refreshRecords = records;
+            this.baseDistinct = new long[fields.length];
+            this.sketches = new HyperLogLog[fields.length];
+            this.histograms = new Histogram[fields.length];
+            for(int f = 0; f < fields.length; f++){
+                sketches[f] = new HyperLogLog();
+            }
+        }
+
+        synchronized boolean isStale() {
+            return changes > Math.max(MIN_REFRESH_CHANGES, refreshRecords);
+        }
+
+        synchronized void insert(UpdateScan s) {
+            blocks = Math.max(blocks, s.getRid().blockNumber() + 1L);
+            records++;
+            for(int f = 0; f < fields.length; f++){
+                add(f, s.getVal(fields[f]));
+            }
+            updated();
+        }
+
+        synchronized void delete(UpdateScan s) {
+            records = Math.max(0, records - 1);
+            for(int f = 0; f < fields.length; f++){
+                remove(f, s.getVal(fields[f]));
+            }
+            updated();
+        }
+
+        synchronized void modify(String fldname, DatumBase oldVal, DatumBase newVal) {
+            for(int f = 0; f < fields.length; f++){
+                if(fields[f].equals(fldname)){
+                    remove(f, oldVal);
+                    add(f, newVal);
+                    updated();
+                    return;
+                }
+            }
+        }
+
+        private void add(int f, DatumBase val) {
+            sketches[f].add(val);
+            if(histograms[f] != null){
+                histograms[f].add(val.asDouble());
+            }
+        }
+
+        private void remove(int f, DatumBase val) {
+            if(histograms[f] != null){
+                histograms[f].remove(val.asDouble());
+            }
+        }
+
+        private void updated() {
+            changes++;
+            snapshot = null;
+        }
+
+        synchronized StatInfo snapshot() {
+            if(snapshot == null){
+                Map<String, Long> distinct = new HashMap<>();
+                Map<String, Histogram> hists = new HashMap<>();
+                for(int f = 0; f < fields.length; f++){
+                    long d = Math.max(baseDistinct[f], sketches[f].estimate());
+                    distinct.put(fields[f], Math.min(d, records));
+                    if(histograms[f] != null){
+                        hists.put(fields[f], histograms[f].copy());
+                    }
+                }
+                snapshot = new StatInfo(blocks, records, distinct, hists);
+            }
+            return snapshot;
+        }
+    }
+}
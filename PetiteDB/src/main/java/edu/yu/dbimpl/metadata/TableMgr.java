@@ -2,10 +2,14 @@ package edu.yu.dbimpl.metadata;
 
 import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.record.*;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
 
 /** Specifies the public API for the TableMgr implementation by requiring all
  * TableMgr implementations to extend this base class.
@@ -34,10 +38,15 @@ import java.util.Map;
  * (conceptually) created during system startup, and in practice by a single
  * invocation of the constructor.
  *
+ * Implementation note: tblcat also records each table's RecordFormat, chosen
+ * via createTable(String, SchemaBase, RecordFormat, TxBase).  Tables created
+ * through the base-class API use the FIXED format.
+ *
  * @author Avraham Leff
  */
 public class TableMgr extends TableMgrBase{
     private static final String SLOT_SIZE = "slotsize";
+    private static final String FORMAT = "format";  // Stores RecordFormat ordinal
     private static final String FIELD_NAME = "fldname";
     private static final String TYPE = "type";      // Stores java.sql.Types as int
     private static final String LENGTH = "length";
@@ -45,6 +54,7 @@ public class TableMgr extends TableMgrBase{
 
     private final LayoutBase tcatLayout;
     private final LayoutBase fcatLayout;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
     /**
      * Constructor: create a new table (catalog) manager.
      * <p>
@@ -64,6 +74,7 @@ public class TableMgr extends TableMgrBase{
         Schema tcatSchema = new Schema();
         tcatSchema.addStringField(TABLE_NAME, MAX_LENGTH_PER_NAME);
         tcatSchema.addIntField(SLOT_SIZE);
+        tcatSchema.addIntField(FORMAT);
         tcatLayout = new Layout(tcatSchema);
 
         // Define layout for the field catalog (fldcat)
@@ -93,11 +104,13 @@ public class TableMgr extends TableMgrBase{
     @Override
     public LayoutBase getLayout(String tableName, TxBase tx) {
         int size = -1;
+        RecordFormat format = RecordFormat.FIXED;
         // Search table catalog for the record slot size
         TableScanBase tcatScan = new TableScan(tx, TABLE_META_DATA_TABLE, tcatLayout);
         while (tcatScan.next()) {
             if (tcatScan.getString(TABLE_NAME).equals(tableName)) {
                 size = tcatScan.getInt(SLOT_SIZE);
+                format = RecordFormat.values()[tcatScan.getInt(FORMAT)];
                 break;
             }
         }
@@ -123,7 +136,36 @@ public class TableMgr extends TableMgrBase{
         fcatScan.close();
 
         // Return the layout using the catalog-retrieval constructor
-        return new Layout(schema, offsets, size);
+        return new Layout(schema, offsets, size, format);
+    }
+
+    /**
+     * Registers an action to be run with a table's name whenever the table's
+     * metadata is created or replaced (e.g., for a client that caches plans
+     * that depend on it).  The action is run when the change is made, and
+     * again when the changing tx is about to complete, since the change is
+     * undone if the tx rolls back.
+     *
+     * @param listener the action
+     * @throws IllegalArgumentException if listener is null
+     */
+    public void onChange(Consumer<String> listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("listener can't be null");
+        }
+        listeners.add(listener);
+    }
+
+    private void changed(String tableName, TxBase tx) {
+        if (listeners.isEmpty()) {
+            return;
+        }
+        for (Consumer<String> listener : listeners) {
+            listener.accept(tableName);
+        }
+        if (tx instanceof Tx t) {
+            t.beforeCompletion(() -> listeners.forEach(l -> l.accept(tableName)));
+        }
     }
 
     /**
@@ -144,18 +186,40 @@ public class TableMgr extends TableMgrBase{
      */
     @Override
     public LayoutBase createTable(String tableName, SchemaBase schema, TxBase tx) {
+        return createTable(tableName, schema, RecordFormat.FIXED, tx);
+    }
+
+    /**
+     * Supplies the meta-data that should be persisted to the system catalog
+     * about a new database table whose records are stored in the specified
+     * format.
+     *
+     * @param tableName the name of the new table
+     * @param schema    the table's schema
+     * @param format    the format in which the table's records are stored
+     * @param tx        supplies the transactional scope for the method's implementation
+     * @return the layout that the DBMS has now associated with this table name.
+     * @throws IllegalArgumentException if the catalog already contains an entry
+     *                                  for the specified table, or if format is null.
+     * @see #createTable(String, SchemaBase, TxBase)
+     */
+    public LayoutBase createTable(String tableName, SchemaBase schema, RecordFormat format, TxBase tx) {
+        if (format == null) {
+            throw new IllegalArgumentException("format can't be null");
+        }
         if (getLayout(tableName, tx) != null) {
             throw new IllegalArgumentException("Table metadata already exists for: " + tableName);
         }
 
         // Calculate physical layout based on the logical schema
-        LayoutBase layout = new Layout(schema);
+        LayoutBase layout = new Layout(schema, format);
 
         // Persist table-level info
         TableScanBase tcatScan = new TableScan(tx, TABLE_META_DATA_TABLE, tcatLayout);
         tcatScan.insert();
         tcatScan.setString(TABLE_NAME, tableName);
         tcatScan.setInt(SLOT_SIZE, layout.slotSize());
+        tcatScan.setInt(FORMAT, format.ordinal());
         tcatScan.close();
 
         // Persist field-level info (Types are stored as integers)
@@ -170,6 +234,7 @@ public class TableMgr extends TableMgrBase{
         }
         fcatScan.close();
 
+        changed(tableName, tx);
         return layout;
     }
 
@@ -216,7 +281,9 @@ public class TableMgr extends TableMgrBase{
 
         // 3. Re-create metadata if a new schema is provided
         if (schema != null) {
-            createTable(tableName, schema, tx);
+            createTable(tableName, schema, ((Layout) oldLayout).format(), tx);
+        } else {
+            changed(tableName, tx);
         }
 
         return oldLayout;
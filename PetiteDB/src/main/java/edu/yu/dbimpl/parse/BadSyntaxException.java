@@ -0,0 +1,12 @@
+package edu.yu.dbimpl.parse;
+
+/** Thrown by the Lexer and Parser when a SQL statement doesn't conform to the
+ * grammar.
+ */
+public class BadSyntaxException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public BadSyntaxException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,10 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.index.IndexMgrBase;
+
+/** A parsed CREATE INDEX statement.  Note that the IndexMgr names an index
+ * after its field, so the statement's index name isn't persisted.  An index
+ * whose statement names no type is an extendible hash index.
+ */
+public record CreateIndexData(String index, String table, String field, IndexMgrBase.IndexType type) {
+}
@@ -0,0 +1,8 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.record.SchemaBase;
+
+/** A parsed CREATE TABLE statement.
+ */
+public record CreateTableData(String table, SchemaBase schema) {
+}
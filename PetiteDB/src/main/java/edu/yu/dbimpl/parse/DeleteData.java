@@ -0,0 +1,8 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.query.Predicate;
+
+/** A parsed DELETE statement; pred is empty if there's no WHERE clause.
+ */
+public record DeleteData(String table, Predicate pred) {
+}
@@ -0,0 +1,11 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.query.Expression;
+
+import java.util.List;
+
+/** A parsed INSERT statement: values.get(i), a constant or a parameter, is
+ * the value of fields.get(i).
+ */
+public record InsertData(String table, List<String> fields, List<Expression> values) {
+}
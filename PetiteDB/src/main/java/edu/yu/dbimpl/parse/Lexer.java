@@ -0,0 +1,227 @@
+package edu.yu.dbimpl.parse;
+
+import java.util.Set;
+
+/** Splits a SQL statement into tokens, and lets the Parser test ("match") and
+ * consume ("eat") them one at a time.
+ *
+ * The tokens are: keywords and identifiers (letters, digits and underscores,
+ * not starting with a digit), integer and double constants (an optional minus
+ * sign, digits, and for a double a decimal point), string constants (enclosed
+ * in single quotes, with '' standing for a quote), and the delimiters
+ * , ( ) * = &lt;&gt; != &lt; &lt;= &gt; &gt;= ? and ;.  Keywords are matched
+ * case-insensitively; identifiers keep their case.
+ */
+public class Lexer {
+    private static final Set<String> KEYWORDS = Set.of(
+            "select", "from", "where", "and", "order", "by", "insert", "into",
+            "values", "delete", "update", "set", "create", "table", "index", "on",
+            "using", "int", "double", "boolean", "varchar", "true", "false");
+
+    private enum Kind {
+        WORD, INT, DOUBLE, STRING, DELIM, END
+    }
+
+    private final String sql;
+    private int pos = 0;
+    private int tokenStart;
+    private Kind kind;
+    private String token;
+
+    /**
+     * Constructor: the lexer is positioned on the statement's first token.
+     *
+     * @throws IllegalArgumentException if sql is null
+     * @throws BadSyntaxException if the statement holds an invalid token
+     */
+    public Lexer(String sql) {
+        if(sql == null){
+            throw new IllegalArgumentException("Statement can't be null");
+        }
+        this.sql = sql;
+        nextToken();
+    }
+
+    public boolean matchDelim(String d) {
+        return kind == Kind.DELIM && token.equals(d);
+    }
+
+    public boolean matchIntConstant() {
+        return kind == Kind.INT;
+    }
+
+    public boolean matchDoubleConstant() {
+        return kind == Kind.DOUBLE;
+    }
+
+    public boolean matchStringConstant() {
+        return kind == Kind.STRING;
+    }
+
+    public boolean matchKeyword(String w) {
+        return kind == Kind.WORD && token.equalsIgnoreCase(w);
+    }
+
+    public boolean matchId() {
+        return kind == Kind.WORD && !KEYWORDS.contains(token.toLowerCase());
+    }
+
+    /** Returns the statement's tokens separated by single spaces, with its
+     * keywords in lower case, != written as &lt;&gt;, and without a final
+     * semicolon: two statements that differ only in whitespace, the case of
+     * their keywords, or those spellings normalize to the same string.
+     *
+     * @throws IllegalArgumentException if sql is null
+     * @throws BadSyntaxException if the statement holds an invalid token
+     */
+    public static String normalize(String sql) {
+        Lexer lex = new Lexer(sql);
+        StringBuilder sb = new StringBuilder();
+        while(lex.kind != Kind.END){
+            String t = switch(lex.kind){
+                case WORD -> KEYWORDS.contains(lex.token.toLowerCase()) ? lex.token.toLowerCase() : lex.token;
+                case STRING -> "'" + lex.token.replace("'", "''") + "'";
+                default -> lex.token;
+            };
+            lex.nextToken();
+            if(t.equals(";") && lex.kind == Kind.END){
+                break;
+            }
+            if(sb.length() > 0){
+                sb.append(' ');
+            }
+            sb.append(t);
+        }
+        return sb.toString();
+    }
+
+    /** Returns true iff the statement has no more tokens. */
+    public boolean atEnd() {
+        return kind == Kind.END;
+    }
+
+    public void eatDelim(String d) {
+        if(!matchDelim(d)){
+            throw error("'" + d + "'");
+        }
+        nextToken();
+    }
+
+    public int eatIntConstant() {
+        if(!matchIntConstant()){
+            throw error("an integer");
+        }
+        int i;
+        try{
+            i = Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new BadSyntaxException("Integer out of range: " + token);
+        }
+        nextToken();
+        return i;
+    }
+
+    public double eatDoubleConstant() {
+        if(!matchDoubleConstant()){
+            throw error("a double");
+        }
+        double d = Double.parseDouble(token);
+        nextToken();
+        return d;
+    }
+
+    public String eatStringConstant() {
+        if(!matchStringConstant()){
+            throw error("a string");
+        }
+        String s = token;
+        nextToken();
+        return s;
+    }
+
+    public void eatKeyword(String w) {
+        if(!matchKeyword(w)){
+            throw error("'" + w + "'");
+        }
+        nextToken();
+    }
+
+    public String eatId() {
+        if(!matchId()){
+            throw error("an identifier");
+        }
+        String s = token;
+        nextToken();
+        return s;
+    }
+
+    private BadSyntaxException error(String expected) {
+        String found = kind == Kind.END ? "end of statement" : "'" + token + "'";
+        return new BadSyntaxException("Expected " + expected + " but found " + found + " at position " + tokenStart);
+    }
+
+    private void nextToken() {
+        while(pos < sql.length() && Character.isWhitespace(sql.charAt(pos))){
+            pos++;
+        }
+        tokenStart = pos;
+        if(pos >= sql.length()){
+            kind = Kind.END;
+            token = null;
+            return;
+        }
+        char c = sql.charAt(pos);
+        if(Character.isLetter(c) || c == '_'){
+            while(pos < sql.length() && (Character.isLetterOrDigit(sql.charAt(pos)) || sql.charAt(pos) == '_')){
+                pos++;
+            }
+            kind = Kind.WORD;
+            token = sql.substring(tokenStart, pos);
+        }else if(Character.isDigit(c) || (c == '-' && pos + 1 < sql.length() && Character.isDigit(sql.charAt(pos + 1)))){
+            pos++;
+            while(pos < sql.length() && Character.isDigit(sql.charAt(pos))){
+                pos++;
+            }
+            kind = Kind.INT;
+            if(pos + 1 < sql.length() && sql.charAt(pos) == '.' && Character.isDigit(sql.charAt(pos + 1))){
+                pos++;
+                while(pos < sql.length() && Character.isDigit(sql.charAt(pos))){
+                    pos++;
+                }
+                kind = Kind.DOUBLE;
+            }
+            token = sql.substring(tokenStart, pos);
+        }else if(c == '\''){
+            StringBuilder sb = new StringBuilder();
+            pos++;
+            while(true){
+                if(pos >= sql.length()){
+                    throw new BadSyntaxException("Unterminated string starting at position " + tokenStart);
+                }
+                char ch = sql.charAt(pos++);
+                if(ch == '\''){
+                    if(pos < sql.length() && sql.charAt(pos) == '\''){
+                        pos++;
+                    }else{
+                        break;
+                    }
+                }
+                sb.append(ch);
+            }
+            kind = Kind.STRING;
+            token = sb.toString();
+        }else{
+            String two = pos + 1 < sql.length() ? sql.substring(pos, pos + 2) : "";
+            if(two.equals("<>") || two.equals("!=") || two.equals("<=") || two.equals(">=")){
+                pos += 2;
+                token = two.equals("!=") ? "<>" : two;
+            }else if(",()*=<>?;".indexOf(c) >= 0){
+                pos++;
+                token = String.valueOf(c);
+            }else{
+                throw new BadSyntaxException("Invalid character '" + c + "' at position " + pos);
+            }
+            kind = Kind.DELIM;
+        }
+    }
+}
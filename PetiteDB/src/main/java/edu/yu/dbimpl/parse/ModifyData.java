@@ -0,0 +1,11 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+
+/** A parsed UPDATE statement, which sets a field of each record satisfying
+ * pred to the value of an expression (a constant, or another field of the
+ * record); pred is empty if there's no WHERE clause.
+ */
+public record ModifyData(String table, String field, Expression value, Predicate pred) {
+}
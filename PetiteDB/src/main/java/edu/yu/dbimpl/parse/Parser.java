@@ -0,0 +1,290 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.index.IndexMgrBase;
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** A recursive-descent parser for PetiteDB's SQL subset:
+ *
+ *   Query       := SELECT SelectList FROM IdList [WHERE Predicate] [ORDER BY IdList]
+ *   SelectList  := * | IdList
+ *   Predicate   := Term {AND Term}
+ *   Term        := Expression Op Expression
+ *   Op          := = | &lt;&gt; | != | &lt; | &lt;= | &gt; | &gt;=
+ *   Expression  := Id | Value
+ *   Value       := Constant | ?
+ *   Constant    := IntTok | DoubleTok | StrTok | TRUE | FALSE
+ *   Insert      := INSERT INTO Id ( IdList ) VALUES ( Value {, Value} )
+ *   Delete      := DELETE FROM Id [WHERE Predicate]
+ *   Modify      := UPDATE Id SET Id = Expression [WHERE Predicate]
+ *   CreateTable := CREATE TABLE Id ( FieldDef {, FieldDef} )
+ *   FieldDef    := Id (INT | DOUBLE | BOOLEAN | VARCHAR ( IntTok ))
+ *   CreateIndex := CREATE INDEX Id ON Id ( Id ) [USING IndexType]
+ *   IndexType   := HASH | STATIC | BTREE
+ *   IdList      := Id {, Id}
+ *
+ * A statement may end with a semicolon.  Each statement method consumes the
+ * whole statement, and throws a BadSyntaxException if tokens remain.
+ *
+ * Each ? is a parameter of a prepared statement, parsed as
+ * Expression#parameter: the parameters are numbered from 0 in the order in
+ * which they appear.
+ */
+public class Parser {
+    private final Lexer lex;
+    private int parameters = 0;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if sql is null
+     * @throws BadSyntaxException if the statement holds an invalid token
+     */
+    public Parser(String sql) {
+        this.lex = new Lexer(sql);
+    }
+
+    /** Returns the number of parameters that the parser has parsed. */
+    public int parameterCount() {
+        return parameters;
+    }
+
+    /** Parses a SELECT statement.
+     *
+     * @throws BadSyntaxException if the statement isn't a valid query
+     */
+    public QueryData query() {
+        lex.eatKeyword("select");
+        List<String> fields = new ArrayList<>();
+        if(lex.matchDelim("*")){
+            lex.eatDelim("*");
+        }else{
+            fields = idList();
+        }
+        lex.eatKeyword("from");
+        List<String> tables = idList();
+        Predicate pred = optionalWhere();
+        List<String> orderBy = new ArrayList<>();
+        if(lex.matchKeyword("order")){
+            lex.eatKeyword("order");
+            lex.eatKeyword("by");
+            orderBy = idList();
+        }
+        end();
+        return new QueryData(fields, tables, pred, orderBy);
+    }
+
+    /** Parses an update command: an INSERT, DELETE, UPDATE, CREATE TABLE or
+     * CREATE INDEX statement, returning an InsertData, DeleteData, ModifyData,
+     * CreateTableData or CreateIndexData respectively.
+     *
+     * @throws BadSyntaxException if the statement isn't a valid update command
+     */
+    public Object updateCmd() {
+        Object result;
+        if(lex.matchKeyword("insert")){
+            result = insert();
+        }else if(lex.matchKeyword("delete")){
+            result = delete();
+        }else if(lex.matchKeyword("update")){
+            result = modify();
+        }else if(lex.matchKeyword("create")){
+            lex.eatKeyword("create");
+            result = lex.matchKeyword("table") ? createTable() : createIndex();
+        }else{
+            throw new BadSyntaxException("Expected an update command");
+        }
+        end();
+        return result;
+    }
+
+    private InsertData insert() {
+        lex.eatKeyword("insert");
+        lex.eatKeyword("into");
+        String table = lex.eatId();
+        lex.eatDelim("(");
+        List<String> fields = idList();
+        lex.eatDelim(")");
+        lex.eatKeyword("values");
+        lex.eatDelim("(");
+        List<Expression> values = new ArrayList<>();
+        values.add(value());
+        while(lex.matchDelim(",")){
+            lex.eatDelim(",");
+            values.add(value());
+        }
+        lex.eatDelim(")");
+        if(fields.size() != values.size()){
+            throw new BadSyntaxException("Insert has " + fields.size() + " fields but " + values.size() + " values");
+        }
+        return new InsertData(table, fields, values);
+    }
+
+    private DeleteData delete() {
+        lex.eatKeyword("delete");
+        lex.eatKeyword("from");
+        String table = lex.eatId();
+        return new DeleteData(table, optionalWhere());
+    }
+
+    private ModifyData modify() {
+        lex.eatKeyword("update");
+        String table = lex.eatId();
+        lex.eatKeyword("set");
+        String field = lex.eatId();
+        lex.eatDelim("=");
+        Expression value = expression();
+        return new ModifyData(table, field, value, optionalWhere());
+    }
+
+    private CreateTableData createTable() {
+        lex.eatKeyword("table");
+        String table = lex.eatId();
+        lex.eatDelim("(");
+        SchemaBase schema = new Schema();
+        fieldDef(schema);
+        while(lex.matchDelim(",")){
+            lex.eatDelim(",");
+            fieldDef(schema);
+        }
+        lex.eatDelim(")");
+        return new CreateTableData(table, schema);
+    }
+
+    private void fieldDef(SchemaBase schema) {
+        String field = lex.eatId();
+        if(schema.hasField(field)){
+            throw new BadSyntaxException("Duplicate field " + field);
+        }
+        if(lex.matchKeyword("int")){
+            lex.eatKeyword("int");
+            schema.addIntField(field);
+        }else if(lex.matchKeyword("double")){
+            lex.eatKeyword("double");
+            schema.addDoubleField(field);
+        }else if(lex.matchKeyword("boolean")){
+            lex.eatKeyword("boolean");
+            schema.addBooleanField(field);
+        }else{
+            lex.eatKeyword("varchar");
+            lex.eatDelim("(");
+            int length = lex.eatIntConstant();
+            lex.eatDelim(")");
+            if(length < 1){
+                throw new BadSyntaxException("Varchar length must be positive");
+            }
+            schema.addStringField(field, length);
+        }
+    }
+
+    private CreateIndexData createIndex() {
+        lex.eatKeyword("index");
+        String index = lex.eatId();
+        lex.eatKeyword("on");
+        String table = lex.eatId();
+        lex.eatDelim("(");
+        String field = lex.eatId();
+        lex.eatDelim(")");
+        IndexMgrBase.IndexType type = IndexMgrBase.IndexType.EXTENDIBLE_HASH;
+        if(lex.matchKeyword("using")){
+            lex.eatKeyword("using");
+            String name = lex.eatId();
+            type = switch(name.toLowerCase()){
+                case "hash" -> IndexMgrBase.IndexType.EXTENDIBLE_HASH;
+                case "static" -> IndexMgrBase.IndexType.STATIC_HASH;
+                case "btree" -> IndexMgrBase.IndexType.BTREE;
+                default -> throw new BadSyntaxException("Unknown index type " + name);
+            };
+        }
+        return new CreateIndexData(index, table, field, type);
+    }
+
+    private Predicate optionalWhere() {
+        if(!lex.matchKeyword("where")){
+            return new Predicate();
+        }
+        lex.eatKeyword("where");
+        Predicate pred = new Predicate(term());
+        while(lex.matchKeyword("and")){
+            lex.eatKeyword("and");
+            pred.conjoinWith(new Predicate(term()));
+        }
+        return pred;
+    }
+
+    private Term term() {
+        Expression lhs = expression();
+        Term.Operator op = operator();
+        return new Term(lhs, op, expression());
+    }
+
+    private Term.Operator operator() {
+        for(Term.Operator op : Term.Operator.values()){
+            if(lex.matchDelim(op.symbol())){
+                lex.eatDelim(op.symbol());
+                return op;
+            }
+        }
+        throw new BadSyntaxException("Expected a comparison operator");
+    }
+
+    private Expression expression() {
+        return lex.matchId() ? new Expression(lex.eatId()) : value();
+    }
+
+    private Expression value() {
+        if(lex.matchDelim("?")){
+            lex.eatDelim("?");
+            return Expression.parameter(parameters++);
+        }
+        return new Expression(constant());
+    }
+
+    private DatumBase constant() {
+        if(lex.matchIntConstant()){
+            return new Datum(lex.eatIntConstant());
+        }
+        if(lex.matchDoubleConstant()){
+            return new Datum(lex.eatDoubleConstant());
+        }
+        if(lex.matchStringConstant()){
+            return new Datum(lex.eatStringConstant());
+        }
+        if(lex.matchKeyword("true")){
+            lex.eatKeyword("true");
+            return new Datum(true);
+        }
+        if(lex.matchKeyword("false")){
+            lex.eatKeyword("false");
+            return new Datum(false);
+        }
+        throw new BadSyntaxException("Expected a constant");
+    }
+
+    private List<String> idList() {
+        List<String> ids = new ArrayList<>();
+        ids.add(lex.eatId());
+        while(lex.matchDelim(",")){
+            lex.eatDelim(",");
+            ids.add(lex.eatId());
+        }
+        return ids;
+    }
+
+    private void end() {
+        if(lex.matchDelim(";")){
+            lex.eatDelim(";");
+        }
+        if(!lex.atEnd()){
+            throw new BadSyntaxException("Unexpected tokens after the statement");
+        }
+    }
+}
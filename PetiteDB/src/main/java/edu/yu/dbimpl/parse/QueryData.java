@@ -0,0 +1,28 @@
+package edu.yu.dbimpl.parse;
+
+import edu.yu.dbimpl.query.Predicate;
+
+import java.util.List;
+
+/** A parsed SELECT statement.
+ *
+ * @param fields the selected fields, empty for "select *"
+ * @param tables the tables of the FROM clause
+ * @param pred the WHERE clause, empty if there is none
+ * @param orderBy the fields of the ORDER BY clause, empty if there is none
+ */
+public record QueryData(List<String> fields, List<String> tables, Predicate pred, List<String> orderBy) {
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("select ");
+        sb.append(fields.isEmpty() ? "*" : String.join(", ", fields));
+        sb.append(" from ").append(String.join(", ", tables));
+        if(!pred.isEmpty()){
+            sb.append(" where ").append(pred);
+        }
+        if(!orderBy.isEmpty()){
+            sb.append(" order by ").append(String.join(", ", orderBy));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,79 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.record.Layout;
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+
+/** Cost-model arithmetic shared by the plans. */
+final class Costs {
+    private Costs() {
+    }
+
+    /** Returns a * b, or Long.MAX_VALUE if the product overflows. */
+    static long mul(long a, long b) {
+        long hi = Math.multiplyHigh(a, b);
+        long lo = a * b;
+        return (hi == 0 && lo >= 0) ? lo : Long.MAX_VALUE;
+    }
+
+    /** Returns a + b, or Long.MAX_VALUE if the sum overflows. */
+    static long add(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    static long ceilDiv(long a, long b) {
+        return a == Long.MAX_VALUE ? a : (a + b - 1) / b;
+    }
+
+    /** Returns the schema holding the fields of both schemas. */
+    static SchemaBase union(SchemaBase sch1, SchemaBase sch2) {
+        Schema result = new Schema();
+        result.addAll(sch1);
+        result.addAll(sch2);
+        return result;
+    }
+
+    /** Returns the estimated number of blocks that the plan's records occupy
+     * when an operator materializes them (e.g., in a sort run or a hash
+     * partition).
+     */
+    static long outputBlocks(Plan p, int blockSize) {
+        long bytes = mul(p.recordsOutput(), new Layout(p.schema()).slotSize());
+        return Math.max(1, ceilDiv(bytes, blockSize));
+    }
+
+    /** Returns the block accesses of an external sort of the specified number
+     * of blocks, beyond reading its input: none if the input fits in memory,
+     * else a write and a read of the data for the run generation and for each
+     * merge pass but the last.  Replacement selection makes runs about twice
+     * the size of memory.
+     */
+    static long sortCost(long blocks, int memBlocks) {
+        if(blocks <= memBlocks){
+            return 0;
+        }
+        long runs = ceilDiv(blocks, 2L * memBlocks);
+        int fanIn = Math.max(2, memBlocks);
+        long passes = 1;
+        while(runs > fanIn){
+            runs = ceilDiv(runs, fanIn);
+            passes++;
+        }
+        return mul(mul(2, blocks), passes);
+    }
+
+    /** Returns the estimated output of the equijoin of two plans. */
+    static long joinRecords(Plan p1, String fld1, Plan p2, String fld2) {
+        long v = Math.max(p1.distinctValues(fld1), p2.distinctValues(fld2));
+        return Math.max(1, mul(p1.recordsOutput(), p2.recordsOutput()) / v);
+    }
+
+    /** Returns the distinct values of a field of a join's output, taken from
+     * the input that has the field.
+     */
+    static long joinDistinct(Plan p1, Plan p2, String fldname, long records) {
+        Plan p = p1.schema().hasField(fldname) ? p1 : p2;
+        return Math.max(1, Math.min(p.distinctValues(fldname), records));
+    }
+}
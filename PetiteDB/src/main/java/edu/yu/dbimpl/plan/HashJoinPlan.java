@@ -0,0 +1,80 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.HashJoinScan;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that equijoins its inputs by hashing (see HashJoinScan).  If the
+ * smaller input fits in the tx's available buffers, each input is read once;
+ * otherwise both are also written to and read back from partition files.
+ */
+public class HashJoinPlan implements Plan {
+    private final TxBase tx;
+    private final Plan p1;
+    private final String fld1;
+    private final Plan p2;
+    private final String fld2;
+    private final SchemaBase schema;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public HashJoinPlan(TxBase tx, Plan p1, String fld1, Plan p2, String fld2) {
+        if(tx == null || p1 == null || fld1 == null || p2 == null || fld2 == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.tx = tx;
+        this.p1 = p1;
+        this.fld1 = fld1;
+        this.p2 = p2;
+        this.fld2 = fld2;
+        this.schema = Costs.union(p1.schema(), p2.schema());
+    }
+
+    @Override
+    public Scan open() {
+        return new HashJoinScan(tx, p1.open(), p1.schema(), fld1, p2.open(), p2.schema(), fld2);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        long size1 = Costs.outputBlocks(p1, tx.blockSize());
+        long size2 = Costs.outputBlocks(p2, tx.blockSize());
+        long cost = Costs.add(p1.blocksAccessed(), p2.blocksAccessed());
+        if(Math.min(size1, size2) > tx.availableBuffs()){
+            cost = Costs.add(cost, Costs.mul(2, Costs.add(size1, size2)));
+        }
+        return cost;
+    }
+
+    @Override
+    public long recordsOutput() {
+        return Costs.joinRecords(p1, fld1, p2, fld2);
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return Costs.joinDistinct(p1, p2, fldname, recordsOutput());
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return schema;
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new HashJoinPlan(tx, p1.bind(tx, params), fld1, p2.bind(tx, params), fld2);
+    }
+
+    @Override
+    public String toString() {
+        return "HashJoin(" + fld1 + " = " + fld2 + ", " + p1 + ", " + p2 + ")";
+    }
+}
@@ -0,0 +1,155 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.config.DBConfiguration;
+import edu.yu.dbimpl.index.BTreeIndex;
+import edu.yu.dbimpl.index.ExtendibleHashIndex;
+import edu.yu.dbimpl.index.IndexBase;
+import edu.yu.dbimpl.index.IndexDescriptorBase;
+import edu.yu.dbimpl.index.IndexMgrBase;
+import edu.yu.dbimpl.metadata.StatInfo;
+import edu.yu.dbimpl.record.Layout;
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+/** The planner's view of an index: it opens the index, and estimates the cost
+ * and output of a search from the indexed table's statistics.
+ *
+ * A static hash index spreads its records over a fixed number of buckets, and
+ * a search reads every block of the search key's bucket.  An extendible hash
+ * index splits its buckets as it grows: a search reads the directory and the
+ * bucket pages that hold the matching entries.  A B+-tree index's
+ * leaves are assumed three-quarters full: a search reads a node of each inner
+ * level and the leaves that hold the matching entries, and since the tree
+ * keeps its entries in key order it can also search a range of keys (see
+ * rangeBlocksAccessed).
+ */
+public class IndexInfo {
+    private final TxBase tx;
+    private final IndexMgrBase indexMgr;
+    private final int id;
+    private final IndexDescriptorBase descriptor;
+    private final StatInfo si;
+    private final int recordsPerBlock;
+    private final int fanout;
+
+    /**
+     * Constructor.
+     *
+     * @param tx the tx under which the index is opened
+     * @param indexMgr the manager of the index
+     * @param id the index's id
+     * @param descriptor the index's descriptor
+     * @param si the statistics of the indexed table
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public IndexInfo(TxBase tx, IndexMgrBase indexMgr, int id, IndexDescriptorBase descriptor, StatInfo si) {
+        if(tx == null || indexMgr == null || descriptor == null || si == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.tx = tx;
+        this.indexMgr = indexMgr;
+        this.id = id;
+        this.descriptor = descriptor;
+        this.si = si;
+        SchemaBase sch = descriptor.getIndexedTableSchema();
+        String fldname = descriptor.getFieldName();
+        if(isOrdered()){
+            this.recordsPerBlock = Math.max(1, BTreeIndex.capacity(tx.blockSize(), sch.type(fldname), sch.length(fldname)) * 3 / 4);
+            this.fanout = Math.max(2, recordsPerBlock);
+            return;
+        }
+        if(descriptor.getIndexType() == IndexMgrBase.IndexType.EXTENDIBLE_HASH){
+            this.recordsPerBlock = Math.max(1, ExtendibleHashIndex.capacity(tx.blockSize(), sch.type(fldname), sch.length(fldname)));
+            this.fanout = 0;
+            return;
+        }
+        this.fanout = 0;
+        // the layout of an index record, as the index creates it
+        Schema schema = new Schema();
+        schema.addField("key", sch.type(fldname), 16);
+        schema.addIntField("block");
+        schema.addIntField("slot");
+        this.recordsPerBlock = Math.max(1, tx.blockSize() / new Layout(schema).slotSize());
+    }
+
+    public String fieldName() {
+        return descriptor.getFieldName();
+    }
+
+    public IndexDescriptorBase descriptor() {
+        return descriptor;
+    }
+
+    /** Returns a copy of the IndexInfo that opens the index under the
+     * specified tx.
+     *
+     * @throws IllegalArgumentException if tx is null
+     */
+    public IndexInfo bind(TxBase tx) {
+        return new IndexInfo(tx, indexMgr, id, descriptor, si);
+    }
+
+    /** Opens the index.  The caller must close it. */
+    public IndexBase open() {
+        return indexMgr.instantiate(tx, id);
+    }
+
+    /** Returns true iff the index keeps its entries in key order, so that it
+     * can search a range of keys and return them in order.
+     */
+    public boolean isOrdered() {
+        return descriptor.getIndexType() == IndexMgrBase.IndexType.BTREE;
+    }
+
+    /** Returns the estimated number of block accesses of a search. */
+    public long blocksAccessed() {
+        if(isOrdered()){
+            return rangeBlocksAccessed(recordsOutput());
+        }
+        if(descriptor.getIndexType() == IndexMgrBase.IndexType.EXTENDIBLE_HASH){
+            return Costs.add(1, Math.max(1, Costs.ceilDiv(recordsOutput(), recordsPerBlock)));
+        }
+        long buckets = DBConfiguration.INSTANCE.nStaticHashBuckets();
+        return Math.max(1, Costs.ceilDiv(si.recordsOutput(), Costs.mul(buckets, recordsPerBlock)));
+    }
+
+    /** Returns the estimated number of block accesses of a search of an
+     * ordered index for a range of keys that matches the specified number of
+     * records: a descent through the inner levels, then the leaves that hold
+     * the range.
+     *
+     * @throws IllegalStateException if the index isn't ordered
+     */
+    public long rangeBlocksAccessed(long records) {
+        if(!isOrdered()){
+            throw new IllegalStateException("A " + descriptor.getIndexType() + " index can't search a range");
+        }
+        long leaves = Math.max(1, Costs.ceilDiv(si.recordsOutput(), recordsPerBlock));
+        long innerLevels = 0;
+        for(long nodes = leaves; nodes > 1; nodes = Costs.ceilDiv(nodes, fanout)){
+            innerLevels++;
+        }
+        return Costs.add(innerLevels, Math.max(1, Costs.ceilDiv(records, recordsPerBlock)));
+    }
+
+    /** Returns the estimated number of records that match a search key. */
+    public long recordsOutput() {
+        return Math.max(1, si.recordsOutput() / si.distinctValues(fieldName()));
+    }
+
+    /** Returns the estimated number of distinct values of the field among the
+     * records that match a search key.
+     */
+    public long distinctValues(String fldname) {
+        if(fldname.equals(fieldName())){
+            return 1;
+        }
+        return Math.min(si.distinctValues(fldname), recordsOutput());
+    }
+
+    @Override
+    public String toString() {
+        return descriptor.getTableName() + "." + fieldName();
+    }
+}
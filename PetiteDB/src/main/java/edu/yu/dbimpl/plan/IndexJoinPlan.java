@@ -0,0 +1,82 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.IndexJoinScan;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that joins its outer input with a table by probing an index on the
+ * table's join field (see IndexJoinScan).  Each outer record costs an index
+ * search; the matches of a batch of outer records are fetched in file order,
+ * so a batch reads each of the table's blocks at most once.
+ */
+public class IndexJoinPlan implements Plan {
+    private final Plan outer;
+    private final TablePlan inner;
+    private final IndexInfo ii;
+    private final String joinField;
+    private final SchemaBase schema;
+
+    /**
+     * Constructor.
+     *
+     * @param outer the outer input
+     * @param inner the indexed table
+     * @param ii the index on the table's join field
+     * @param joinField the outer input's join field
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public IndexJoinPlan(Plan outer, TablePlan inner, IndexInfo ii, String joinField) {
+        if(outer == null || inner == null || ii == null || joinField == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.outer = outer;
+        this.inner = inner;
+        this.ii = ii;
+        this.joinField = joinField;
+        this.schema = Costs.union(outer.schema(), inner.schema());
+    }
+
+    @Override
+    public Scan open() {
+        return new IndexJoinScan(outer.open(), outer.schema(), joinField, ii.open(), inner.open());
+    }
+
+    @Override
+    public long blocksAccessed() {
+        long r = outer.recordsOutput();
+        long batches = Costs.ceilDiv(r, IndexJoinScan.BATCH_SIZE);
+        long perBatch = Math.min(inner.blocksAccessed(),
+                Costs.mul(Math.min(r, IndexJoinScan.BATCH_SIZE), ii.recordsOutput()));
+        long probes = Costs.mul(r, ii.blocksAccessed());
+        return Costs.add(Costs.add(outer.blocksAccessed(), probes), Costs.mul(batches, perBatch));
+    }
+
+    @Override
+    public long recordsOutput() {
+        return Costs.mul(outer.recordsOutput(), ii.recordsOutput());
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return Costs.joinDistinct(outer, inner, fldname, recordsOutput());
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return schema;
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new IndexJoinPlan(outer.bind(tx, params), inner.bind(tx, params), ii.bind(tx), joinField);
+    }
+
+    @Override
+    public String toString() {
+        return "IndexJoin(" + joinField + " = " + ii + ", " + outer + ")";
+    }
+}
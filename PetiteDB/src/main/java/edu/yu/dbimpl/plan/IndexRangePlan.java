@@ -0,0 +1,129 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.index.BTreeIndex;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.IndexRangeScan;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that outputs the records of a table whose indexed field lies in a
+ * range, found through an ordered index (see IndexRangeScan).  Each end of
+ * the range is a constant or a parameter (which must be bound before the plan
+ * is opened), or is missing for an unbounded range.
+ *
+ * An unordered plan fetches the matching records in file order, so its cost
+ * is that of the index search plus the smaller of the matching records and
+ * the table's blocks.  An ordered plan returns the records in the index's
+ * order (e.g., to answer an ORDER BY without a sort), at the cost of a block
+ * access per record.
+ */
+public class IndexRangePlan implements Plan {
+    private final TablePlan tp;
+    private final IndexInfo ii;
+    private final Expression lo;
+    private final boolean loInclusive;
+    private final Expression hi;
+    private final boolean hiInclusive;
+    private final boolean ordered;
+
+    /**
+     * Constructor.
+     *
+     * @param tp the plan of the table
+     * @param ii an ordered index on a field of the table
+     * @param lo the range's low end, or null if it has none
+     * @param loInclusive true iff the range includes its low end
+     * @param hi the range's high end, or null if it has none
+     * @param hiInclusive true iff the range includes its high end
+     * @param ordered true iff the records must be returned in key order
+     * @throws IllegalArgumentException if tp or ii is null, an end is a
+     * field, or the index isn't ordered
+     */
+    public IndexRangePlan(TablePlan tp, IndexInfo ii, Expression lo, boolean loInclusive,
+                          Expression hi, boolean hiInclusive, boolean ordered) {
+        if(tp == null || ii == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if((lo != null && lo.isFieldName()) || (hi != null && hi.isFieldName())){
+            throw new IllegalArgumentException("The range's ends can't be fields");
+        }
+        if(!ii.isOrdered()){
+            throw new IllegalArgumentException("Index " + ii + " can't search a range");
+        }
+        this.tp = tp;
+        this.ii = ii;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public Scan open() {
+        if((lo != null && lo.isParameter()) || (hi != null && hi.isParameter())){
+            throw new IllegalStateException("A parameter of the range isn't bound");
+        }
+        return new IndexRangeScan(tp.open(), (BTreeIndex) ii.open(),
+                lo == null ? null : lo.asConstant(), loInclusive,
+                hi == null ? null : hi.asConstant(), hiInclusive, ordered);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        long r = recordsOutput();
+        return Costs.add(ii.rangeBlocksAccessed(r), ordered ? r : Math.min(r, tp.blocksAccessed()));
+    }
+
+    @Override
+    public long recordsOutput() {
+        return Math.max(1, Math.round(tp.recordsOutput() * SelectPlan.selectivity(range(), tp)));
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return Math.max(1, Math.min(tp.distinctValues(fldname), recordsOutput()));
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return tp.schema();
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new IndexRangePlan(tp.bind(tx, params), ii.bind(tx),
+                lo == null ? null : lo.bind(params), loInclusive,
+                hi == null ? null : hi.bind(params), hiInclusive, ordered);
+    }
+
+    /** Returns true iff the plan returns its records in key order. */
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    /** Returns the range as a predicate on the indexed field. */
+    private Predicate range() {
+        Predicate result = new Predicate();
+        Expression fld = new Expression(ii.fieldName());
+        if(lo != null){
+            result.conjoinWith(new Predicate(new Term(fld, loInclusive ? Term.Operator.GE : Term.Operator.GT, lo)));
+        }
+        if(hi != null){
+            result.conjoinWith(new Predicate(new Term(fld, hiInclusive ? Term.Operator.LE : Term.Operator.LT, hi)));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        Predicate range = range();
+        return "IndexRange(" + ii + (range.isEmpty() ? "" : ": " + range) + (ordered ? ", ordered" : "") + ")";
+    }
+}
@@ -0,0 +1,78 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.IndexSelectScan;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that outputs the records of a table whose indexed field equals a
+ * constant (or a parameter, which must be bound before the plan is opened),
+ * found through the index (see IndexSelectScan).  Since the scan
+ * fetches the matching records in file order, each of the table's blocks is
+ * read at most once: the cost is that of the index search plus the smaller of
+ * the matching records and the table's blocks.
+ */
+public class IndexSelectPlan implements Plan {
+    private final TablePlan tp;
+    private final IndexInfo ii;
+    private final Expression val;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public IndexSelectPlan(TablePlan tp, IndexInfo ii, Expression val) {
+        if(tp == null || ii == null || val == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(val.isFieldName()){
+            throw new IllegalArgumentException("The search key can't be a field");
+        }
+        this.tp = tp;
+        this.ii = ii;
+        this.val = val;
+    }
+
+    @Override
+    public Scan open() {
+        if(val.isParameter()){
+            throw new IllegalStateException("The search key's parameter isn't bound");
+        }
+        return new IndexSelectScan(tp.open(), ii.open(), val.asConstant());
+    }
+
+    @Override
+    public long blocksAccessed() {
+        return Costs.add(ii.blocksAccessed(), Math.min(ii.recordsOutput(), tp.blocksAccessed()));
+    }
+
+    @Override
+    public long recordsOutput() {
+        return ii.recordsOutput();
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return ii.distinctValues(fldname);
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return tp.schema();
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new IndexSelectPlan(tp.bind(tx, params), ii.bind(tx), val.bind(params));
+    }
+
+    @Override
+    public String toString() {
+        return "IndexSelect(" + ii + " = " + val + ")";
+    }
+}
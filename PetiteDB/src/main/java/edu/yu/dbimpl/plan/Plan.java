@@ -0,0 +1,54 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.metadata.Histogram;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A node of a query plan: it estimates the cost and output of the scan that
+ * it opens, so that the planner can compare alternative plans for a query
+ * before executing any of them.  The estimates are derived from the tables'
+ * StatInfo.
+ *
+ * A plan opens its scans under the tx that it was created with.  bind() copies
+ * a plan for another tx, so that a plan can be cached and executed again.
+ */
+public interface Plan {
+    /** Opens a scan of the plan's records.  The caller must close it. */
+    Scan open();
+
+    /** Returns the estimated number of block accesses needed to read the
+     * plan's records once, including those of its inputs.
+     */
+    long blocksAccessed();
+
+    /** Returns the estimated number of records that the plan outputs. */
+    long recordsOutput();
+
+    /** Returns the estimated number of distinct values of the field among the
+     * plan's records; at least 1.
+     */
+    long distinctValues(String fldname);
+
+    /** Returns the fields of the plan's records. */
+    SchemaBase schema();
+
+    /** Returns a copy of the plan, with the same estimates, that opens its
+     * scans under the specified tx and with the statement's parameters (see
+     * Expression#parameter) replaced by the specified values.
+     *
+     * @throws IllegalArgumentException if tx is null, or a parameter of the
+     * plan has no value
+     */
+    Plan bind(TxBase tx, List<DatumBase> params);
+
+    /** Returns a histogram of the field's values among the plan's records
+     * (which must not be modified), or null if the plan has none.
+     */
+    default Histogram histogram(String fldname) {
+        return null;
+    }
+}
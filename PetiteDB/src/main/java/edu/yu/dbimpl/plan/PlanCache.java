@@ -0,0 +1,73 @@
+package edu.yu.dbimpl.plan;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** The Planner's cache of compiled statements, keyed by their normalized text
+ * (see Lexer#normalize), which evicts the least recently used statement when
+ * it's full.
+ *
+ * A statement is invalidated (removed) when the metadata of a table that it
+ * reads or updates changes.  Since a statement may be compiled while such a
+ * change is made, a statement compiled before the cache's latest invalidation
+ * is not cached: see version().
+ */
+class PlanCache {
+    private final int capacity;
+    private final LinkedHashMap<String, Planner.Compiled> statements;
+    private long version = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param capacity the maximum number of statements cached; 0 disables the
+     * cache
+     */
+    PlanCache(int capacity) {
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /** Returns the number of invalidations so far: a statement compiled from
+     * metadata read after version() returned v may be put with version v.
+     */
+    synchronized long version() {
+        return version;
+    }
+
+    /** Returns the cached statement, or null if it isn't cached. */
+    synchronized Planner.Compiled get(String sql) {
+        return statements.get(sql);
+    }
+
+    /** Caches the statement, unless the cache has been invalidated since the
+     * statement's metadata was read.
+     *
+     * @param version the cache's version() before the metadata was read
+     */
+    synchronized void put(String sql, Planner.Compiled c, long version) {
+        if(capacity == 0 || version != this.version){
+            return;
+        }
+        statements.put(sql, c);
+        if(statements.size() > capacity){
+            Iterator<String> eldest = statements.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    /** Removes the statements that read or update the table. */
+    synchronized void invalidate(String tblname) {
+        version++;
+        statements.values().removeIf(c -> c.tables().contains(tblname));
+    }
+
+    synchronized boolean contains(String sql) {
+        return statements.containsKey(sql);
+    }
+
+    synchronized int size() {
+        return statements.size();
+    }
+}
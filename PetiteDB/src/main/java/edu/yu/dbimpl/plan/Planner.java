@@ -0,0 +1,695 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.index.IndexBase;
+import edu.yu.dbimpl.index.IndexDescriptorBase;
+import edu.yu.dbimpl.index.IndexMgr;
+import edu.yu.dbimpl.index.IndexMgrBase;
+import edu.yu.dbimpl.metadata.StatInfo;
+import edu.yu.dbimpl.metadata.StatMgr;
+import edu.yu.dbimpl.metadata.TableMgr;
+import edu.yu.dbimpl.metadata.TableMgrBase;
+import edu.yu.dbimpl.parse.BadSyntaxException;
+import edu.yu.dbimpl.parse.CreateIndexData;
+import edu.yu.dbimpl.parse.CreateTableData;
+import edu.yu.dbimpl.parse.DeleteData;
+import edu.yu.dbimpl.parse.InsertData;
+import edu.yu.dbimpl.parse.Lexer;
+import edu.yu.dbimpl.parse.ModifyData;
+import edu.yu.dbimpl.parse.Parser;
+import edu.yu.dbimpl.parse.QueryData;
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.SelectScan;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.record.LayoutBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.record.TableScan;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/** Executes SQL statements (see Parser for the grammar) against the tables and
+ * indexes of the TableMgr and IndexMgr.
+ *
+ * A query is planned by cost, as estimated from the tables' statistics (see
+ * Plan): each table is read by the cheapest access path (a table scan or an
+ * index search, see TablePlanner#selectPlan), and the tables are joined in the
+ * cheapest left-deep order, found by dynamic programming over the subsets of
+ * the query's tables (or, for more than MAX_DP_TABLES tables, greedily).  Each
+ * join uses the cheapest of an index join, a hash join and a merge join, or a
+ * product if no term equates the tables.  An ORDER BY sorts the joined
+ * records, unless the query reads one table, ordered by a field with a
+ * B+-tree index, and reading the table in the index's order is cheaper.  The
+ * records are then projected on the selected fields.
+ *
+ * Since a query's tables are named only by their fields, the fields of the
+ * tables of a query must have distinct names.  Constants are coerced to the
+ * type of the fields that they're compared with (an int to a double); other
+ * type mismatches are rejected.  An INSERT sets the fields that it omits to
+ * 0, 0.0, false or the empty string.
+ *
+ * The tables' statistics come from a StatMgr, which the planner keeps up to
+ * date as it executes updates.
+ *
+ * A query, INSERT, DELETE or UPDATE statement is compiled once: it's parsed,
+ * checked against the catalog, and (for a query) planned, and the result is
+ * cached, keyed by the statement's normalized text (see Lexer#normalize), in
+ * an LRU cache of cacheSize statements.  Executing the statement again (by
+ * its text, or through a PreparedStatement, whose parameters are bound to
+ * each execution's values) reuses the compiled statement, without reading
+ * the catalog or planning.  A cached statement is discarded when the
+ * metadata of one of its tables changes: when the planner creates a table or
+ * an index, and, if the planner's TableMgr and IndexMgr are PetiteDB's, when
+ * they replace a table or change its indexes (see TableMgr#onChange and
+ * IndexMgr#onChange).  A cached plan keeps the estimates that it was chosen
+ * with, and a parameter's value isn't known when the plan is chosen.
+ */
+public class Planner {
+    /** The largest number of tables whose join order is chosen exhaustively. */
+    public static final int MAX_DP_TABLES = 10;
+    /** The default number of compiled statements that a planner caches. */
+    public static final int PLAN_CACHE_SIZE = 100;
+
+    private final TableMgrBase tableMgr;
+    private final IndexMgrBase indexMgr;
+    private final StatMgr statMgr;
+    private final PlanCache cache;
+
+    /**
+     * Constructor.
+     *
+     * @param cacheSize the number of compiled statements cached; 0 disables
+     * the cache
+     * @throws IllegalArgumentException if an argument is null, or cacheSize
+     * is negative
+     */
+    public Planner(TableMgrBase tableMgr, IndexMgrBase indexMgr, StatMgr statMgr, int cacheSize) {
+        if(tableMgr == null || indexMgr == null || statMgr == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(cacheSize < 0){
+            throw new IllegalArgumentException("Cache size can't be negative");
+        }
+        this.tableMgr = tableMgr;
+        this.indexMgr = indexMgr;
+        this.statMgr = statMgr;
+        this.cache = new PlanCache(cacheSize);
+        if(tableMgr instanceof TableMgr tm){
+            tm.onChange(cache::invalidate);
+        }
+        if(indexMgr instanceof IndexMgr im){
+            im.onChange(cache::invalidate);
+        }
+    }
+
+    /** Constructor for a planner that caches PLAN_CACHE_SIZE statements.
+     *
+     * @see #Planner(TableMgrBase, IndexMgrBase, StatMgr, int)
+     */
+    public Planner(TableMgrBase tableMgr, IndexMgrBase indexMgr, StatMgr statMgr) {
+        this(tableMgr, indexMgr, statMgr, PLAN_CACHE_SIZE);
+    }
+
+    /** Constructor for a planner with a StatMgr of its own.
+     *
+     * @see #Planner(TableMgrBase, IndexMgrBase, StatMgr, int)
+     */
+    public Planner(TableMgrBase tableMgr, IndexMgrBase indexMgr) {
+        this(tableMgr, indexMgr, new StatMgr());
+    }
+
+    /** Parses and plans a query, or returns its cached plan.
+     *
+     * @throws edu.yu.dbimpl.parse.BadSyntaxException if the statement isn't a
+     * valid query
+     * @throws IllegalArgumentException if the query names a missing table or
+     * field, an ambiguous field, or compares values of different types, or if
+     * it has parameters
+     */
+    public Plan createQueryPlan(String sql, TxBase tx) {
+        if(tx == null){
+            throw new IllegalArgumentException("tx can't be null");
+        }
+        Compiled c = compiled(Lexer.normalize(sql), tx);
+        if(!(c.cmd() instanceof QueryData)){
+            throw new BadSyntaxException("Expected a query");
+        }
+        return c.plan().bind(tx, parameterValues(c, List.of()));
+    }
+
+    /** Plans a parsed query.  The plan isn't cached.
+     *
+     * @see #createQueryPlan(String, TxBase)
+     */
+    public Plan createQueryPlan(QueryData data, TxBase tx) {
+        if(data == null || tx == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        return planQuery(data, new HashMap<>(), tx);
+    }
+
+    /** Compiles a query, INSERT, DELETE or UPDATE statement whose values may
+     * include parameters (see Parser), or returns its cached compilation.
+     *
+     * @throws edu.yu.dbimpl.parse.BadSyntaxException if the statement isn't
+     * one of those statements
+     * @throws IllegalArgumentException if the statement names a missing table
+     * or field, or uses a value of the wrong type, or if a parameter's type
+     * can't be inferred from the field that it's compared with or assigned to
+     */
+    public PreparedStatement prepare(String sql, TxBase tx) {
+        if(tx == null){
+            throw new IllegalArgumentException("tx can't be null");
+        }
+        String key = Lexer.normalize(sql);
+        if(isDefinition(key)){
+            throw new BadSyntaxException("A CREATE statement can't be prepared");
+        }
+        Compiled c = compiled(key, tx);
+        return new PreparedStatement(this, key, c.cmd() instanceof QueryData, c.paramTypes().size());
+    }
+
+    /** Returns true iff the statement is cached. */
+    public boolean isCached(String sql) {
+        return cache.contains(Lexer.normalize(sql));
+    }
+
+    /** Returns the number of statements cached. */
+    public int cachedStatements() {
+        return cache.size();
+    }
+
+    /** Returns the plan of the prepared query, bound to the tx and the
+     * parameters' values.
+     */
+    Plan createQueryPlan(String key, List<DatumBase> params, TxBase tx) {
+        Compiled c = compiled(key, tx);
+        return c.plan().bind(tx, parameterValues(c, params));
+    }
+
+    /** Executes the prepared update with the parameters' values. */
+    int executeUpdate(String key, List<DatumBase> params, TxBase tx) {
+        Compiled c = compiled(key, tx);
+        return execute(c, parameterValues(c, params), tx);
+    }
+
+    /** Returns the statement's cached compilation, compiling and caching it if
+     * it isn't cached.
+     */
+    private Compiled compiled(String key, TxBase tx) {
+        Compiled c = cache.get(key);
+        if(c == null){
+            long version = cache.version();
+            c = compile(key, tx);
+            cache.put(key, c, version);
+        }
+        return c;
+    }
+
+    private Compiled compile(String sql, TxBase tx) {
+        Parser parser = new Parser(sql);
+        Map<Integer, Integer> types = new HashMap<>();
+        if(startsWith(sql, "select")){
+            QueryData data = parser.query();
+            Plan p = planQuery(data, types, tx);
+            return new Compiled(data, paramTypes(types, parser.parameterCount()), Set.copyOf(data.tables()), p, null, null);
+        }
+        Object cmd = parser.updateCmd();
+        if(cmd instanceof CreateTableData || cmd instanceof CreateIndexData){
+            throw new BadSyntaxException("Expected a query, INSERT, DELETE or UPDATE statement");
+        }
+        String table = cmd instanceof InsertData d ? d.table()
+                : cmd instanceof DeleteData d ? d.table() : ((ModifyData) cmd).table();
+        LayoutBase layout = layout(table, tx);
+        List<SchemaBase> schemas = List.of(layout.schema());
+        if(cmd instanceof InsertData d){
+            cmd = checkInsert(d, schemas, types);
+        }else if(cmd instanceof DeleteData d){
+            cmd = new DeleteData(table, resolve(d.pred(), schemas, types));
+        }else{
+            cmd = checkModify((ModifyData) cmd, schemas, types);
+        }
+        return new Compiled(cmd, paramTypes(types, parser.parameterCount()), Set.of(table), null, layout,
+                indexIds(table, tx));
+    }
+
+    private Plan planQuery(QueryData data, Map<Integer, Integer> types, TxBase tx) {
+        Map<String, TablePlan> tables = new LinkedHashMap<>();
+        List<SchemaBase> schemas = new ArrayList<>();
+        for(String tblname : data.tables()){
+            if(tables.containsKey(tblname)){
+                throw new IllegalArgumentException("Table " + tblname + " is named twice");
+            }
+            TablePlan tp = tablePlan(tblname, tx);
+            tables.put(tblname, tp);
+            schemas.add(tp.schema());
+        }
+        for(String fldname : data.fields()){
+            typeOf(fldname, schemas);
+        }
+        for(String fldname : data.orderBy()){
+            typeOf(fldname, schemas);
+        }
+        Predicate pred = resolve(data.pred(), schemas, types);
+
+        List<TablePlanner> planners = new ArrayList<>();
+        for(TablePlan tp : tables.values()){
+            planners.add(new TablePlanner(tx, tp, pred, indexes(tp, tx)));
+        }
+        Plan p = planners.size() <= MAX_DP_TABLES ? joinExhaustively(planners) : joinGreedily(planners);
+        if(!data.orderBy().isEmpty()){
+            Plan sorted = new SortPlan(tx, p, data.orderBy());
+            Plan ordered = planners.size() == 1 && data.orderBy().size() == 1
+                    ? planners.get(0).orderedPlan(data.orderBy().get(0)) : null;
+            p = ordered == null ? sorted : TablePlanner.cheapest(List.of(ordered, sorted));
+        }
+        List<String> fields = data.fields().isEmpty() ? p.schema().fields() : data.fields();
+        return new ProjectPlan(p, fields);
+    }
+
+    /** Parses and executes an INSERT, DELETE, UPDATE, CREATE TABLE or CREATE
+     * INDEX statement, maintaining the indexes of an updated table.  An
+     * INSERT, DELETE or UPDATE is compiled once, and then cached.
+     *
+     * @return the number of records inserted, deleted or modified; 0 for a
+     * CREATE statement
+     * @throws edu.yu.dbimpl.parse.BadSyntaxException if the statement isn't a
+     * valid update command
+     * @throws IllegalArgumentException if the statement names a missing table
+     * or field, or uses a value of the wrong type, or if it has parameters
+     */
+    public int executeUpdate(String sql, TxBase tx) {
+        if(tx == null){
+            throw new IllegalArgumentException("tx can't be null");
+        }
+        String key = Lexer.normalize(sql);
+        if(!isDefinition(key)){
+            Compiled c = compiled(key, tx);
+            return execute(c, parameterValues(c, List.of()), tx);
+        }
+        Object cmd = new Parser(key).updateCmd();
+        if(cmd instanceof CreateTableData d){
+            tableMgr.createTable(d.table(), d.schema(), tx);
+            cache.invalidate(d.table());
+            return 0;
+        }
+        return executeCreateIndex((CreateIndexData) cmd, tx);
+    }
+
+    private static boolean isDefinition(String normalized) {
+        return startsWith(normalized, "create");
+    }
+
+    /** Returns true iff the normalized statement starts with the keyword. */
+    private static boolean startsWith(String normalized, String keyword) {
+        return normalized.equals(keyword) || normalized.startsWith(keyword + " ");
+    }
+
+    private int execute(Compiled c, List<DatumBase> params, TxBase tx) {
+        if(c.cmd() instanceof InsertData d){
+            return executeInsert(d, c, params, tx);
+        }
+        if(c.cmd() instanceof DeleteData d){
+            return executeDelete(d, c, params, tx);
+        }
+        if(c.cmd() instanceof ModifyData d){
+            return executeModify(d, c, params, tx);
+        }
+        throw new BadSyntaxException("Expected an update command");
+    }
+
+    /** Returns the insert with its constants coerced to their fields' types,
+     * recording the types of its parameters.
+     */
+    private static InsertData checkInsert(InsertData data, List<SchemaBase> schemas, Map<Integer, Integer> types) {
+        Set<String> seen = new HashSet<>();
+        List<Expression> values = new ArrayList<>();
+        for(int i = 0; i < data.fields().size(); i++){
+            String fldname = data.fields().get(i);
+            if(!seen.add(fldname)){
+                throw new IllegalArgumentException("Field " + fldname + " is named twice");
+            }
+            int type = typeOf(fldname, schemas);
+            Expression value = data.values().get(i);
+            if(value.isParameter()){
+                types.put(value.parameterIndex(), type);
+                values.add(value);
+            }else{
+                values.add(new Expression(coerce(value.asConstant(), type)));
+            }
+        }
+        return new InsertData(data.table(), data.fields(), values);
+    }
+
+    /** Returns the update with its constants coerced to their fields' types,
+     * recording the types of its parameters.
+     */
+    private static ModifyData checkModify(ModifyData data, List<SchemaBase> schemas, Map<Integer, Integer> types) {
+        int type = typeOf(data.field(), schemas);
+        Expression value = data.value();
+        if(value.isFieldName()){
+            if(typeOf(value.asFieldName(), schemas) != type){
+                throw new IllegalArgumentException("Field " + value.asFieldName() + " doesn't have the type of " + data.field());
+            }
+        }else if(value.isParameter()){
+            types.put(value.parameterIndex(), type);
+        }else{
+            value = new Expression(coerce(value.asConstant(), type));
+        }
+        return new ModifyData(data.table(), data.field(), value, resolve(data.pred(), schemas, types));
+    }
+
+    private int executeInsert(InsertData data, Compiled c, List<DatumBase> params, TxBase tx) {
+        LayoutBase layout = c.layout();
+        TableScan ts = new TableScan(tx, data.table(), layout);
+        ts.insert();
+        // a reused slot still holds a deleted record's values
+        for(String fldname : layout.schema().fields()){
+            int i = data.fields().indexOf(fldname);
+            ts.setVal(fldname, i >= 0 ? data.values().get(i).bind(params).asConstant()
+                    : defaultValue(layout.schema().type(fldname)));
+        }
+        RID rid = ts.getRid();
+        statMgr.recordInsert(data.table(), ts);
+        Map<String, Integer> ids = c.indexIds();
+        Map<String, DatumBase> indexed = new HashMap<>();
+        for(String fldname : ids.keySet()){
+            indexed.put(fldname, ts.getVal(fldname));
+        }
+        ts.close();
+        for(Map.Entry<String, Integer> e : ids.entrySet()){
+            IndexBase idx = indexMgr.instantiate(tx, e.getValue());
+            idx.insert(indexed.get(e.getKey()), rid);
+            idx.close();
+        }
+        return 1;
+    }
+
+    private int executeDelete(DeleteData data, Compiled c, List<DatumBase> params, TxBase tx) {
+        LayoutBase layout = c.layout();
+        Predicate pred = data.pred().bind(params);
+        Map<String, IndexBase> idxs = new HashMap<>();
+        for(Map.Entry<String, Integer> e : c.indexIds().entrySet()){
+            idxs.put(e.getKey(), indexMgr.instantiate(tx, e.getValue()));
+        }
+        SelectScan s = new SelectScan(new TableScan(tx, data.table(), layout), pred);
+        int count = 0;
+        while(s.next()){
+            RID rid = s.getRid();
+            for(Map.Entry<String, IndexBase> e : idxs.entrySet()){
+                e.getValue().delete(s.getVal(e.getKey()), rid);
+            }
+            statMgr.recordDelete(data.table(), s);
+            s.delete();
+            count++;
+        }
+        s.close();
+        for(IndexBase idx : idxs.values()){
+            idx.close();
+        }
+        return count;
+    }
+
+    private int executeModify(ModifyData data, Compiled c, List<DatumBase> params, TxBase tx) {
+        LayoutBase layout = c.layout();
+        Expression value = data.value().bind(params);
+        Predicate pred = data.pred().bind(params);
+        Integer id = c.indexIds().get(data.field());
+        IndexBase idx = id != null ? indexMgr.instantiate(tx, id) : null;
+        SelectScan s = new SelectScan(new TableScan(tx, data.table(), layout), pred);
+        int count = 0;
+        while(s.next()){
+            DatumBase newVal = value.evaluate(s);
+            DatumBase oldVal = s.getVal(data.field());
+            statMgr.recordModify(data.table(), data.field(), oldVal, newVal);
+            if(idx != null){
+                idx.delete(oldVal, s.getRid());
+            }
+            s.setVal(data.field(), newVal);
+            if(idx != null){
+                idx.insert(newVal, s.getRid());
+            }
+            count++;
+        }
+        s.close();
+        if(idx != null){
+            idx.close();
+        }
+        return count;
+    }
+
+    private int executeCreateIndex(CreateIndexData data, TxBase tx) {
+        LayoutBase layout = layout(data.table(), tx);
+        typeOf(data.field(), List.of(layout.schema()));
+        if(indexIds(data.table(), tx).containsKey(data.field())){
+            throw new IllegalArgumentException("Field " + data.field() + " is already indexed");
+        }
+        int id = indexMgr.persistIndexDescriptor(tx, data.table(), data.field(), data.type());
+        cache.invalidate(data.table());
+        IndexBase idx = indexMgr.instantiate(tx, id);
+        TableScan ts = new TableScan(tx, data.table(), layout);
+        while(ts.next()){
+            idx.insert(ts.getVal(data.field()), ts.getRid());
+        }
+        ts.close();
+        idx.close();
+        return 0;
+    }
+
+    /** Returns the cheapest left-deep join of the tables: best[s] is the
+     * cheapest plan of the subset s, found by joining a table of s to the best
+     * plan of the rest of s.
+     */
+    private static Plan joinExhaustively(List<TablePlanner> planners) {
+        int n = planners.size();
+        Plan[] best = new Plan[1 << n];
+        for(int i = 0; i < n; i++){
+            best[1 << i] = planners.get(i).selectPlan();
+        }
+        for(int set = 1; set < best.length; set++){
+            if(Integer.bitCount(set) < 2){
+                continue;
+            }
+            List<Plan> candidates = new ArrayList<>();
+            for(int i = 0; i < n; i++){
+                if((set & (1 << i)) != 0){
+                    candidates.add(planners.get(i).joinPlan(best[set & ~(1 << i)]));
+                }
+            }
+            best[set] = TablePlanner.cheapest(candidates);
+        }
+        return best[best.length - 1];
+    }
+
+    /** Returns a join of the tables that starts with the table of the
+     * smallest output, and repeatedly adds the table whose join is cheapest.
+     */
+    private static Plan joinGreedily(List<TablePlanner> planners) {
+        List<TablePlanner> rest = new ArrayList<>(planners);
+        TablePlanner first = rest.get(0);
+        for(TablePlanner tp : rest){
+            if(tp.selectPlan().recordsOutput() < first.selectPlan().recordsOutput()){
+                first = tp;
+            }
+        }
+        rest.remove(first);
+        Plan current = first.selectPlan();
+        while(!rest.isEmpty()){
+            TablePlanner next = null;
+            Plan bestJoin = null;
+            for(TablePlanner tp : rest){
+                Plan join = tp.joinPlan(current);
+                if(bestJoin == null || TablePlanner.cheapest(List.of(join, bestJoin)) == join){
+                    next = tp;
+                    bestJoin = join;
+                }
+            }
+            rest.remove(next);
+            current = bestJoin;
+        }
+        return current;
+    }
+
+    private LayoutBase layout(String tblname, TxBase tx) {
+        LayoutBase layout = tableMgr.getLayout(tblname, tx);
+        if(layout == null){
+            throw new IllegalArgumentException("No table " + tblname);
+        }
+        return layout;
+    }
+
+    private TablePlan tablePlan(String tblname, TxBase tx) {
+        LayoutBase layout = layout(tblname, tx);
+        return new TablePlan(tx, tblname, layout, statInfo(tblname, layout, tx));
+    }
+
+    /** Returns the ids of the table's indexes, by field. */
+    private Map<String, Integer> indexIds(String tblname, TxBase tx) {
+        Set<Integer> ids;
+        try{
+            ids = indexMgr.indexIds(tx, tblname);
+        } catch (IllegalArgumentException e) {
+            // the IndexMgr's way of saying that the table has no indexes
+            return Map.of();
+        }
+        Map<String, Integer> result = new HashMap<>();
+        for(int id : ids){
+            result.put(indexMgr.get(tx, id).getFieldName(), id);
+        }
+        return result;
+    }
+
+    /** Returns the planner's view of the table's indexes, by field. */
+    private Map<String, IndexInfo> indexes(TablePlan tp, TxBase tx) {
+        StatInfo si = statInfo(tp.tableName(), tp.layout(), tx);
+        Map<String, IndexInfo> result = new HashMap<>();
+        for(Map.Entry<String, Integer> e : indexIds(tp.tableName(), tx).entrySet()){
+            IndexDescriptorBase descriptor = indexMgr.get(tx, e.getValue());
+            result.put(e.getKey(), new IndexInfo(tx, indexMgr, e.getValue(), descriptor, si));
+        }
+        return result;
+    }
+
+    private StatInfo statInfo(String tblname, LayoutBase layout, TxBase tx) {
+        return statMgr.getStatInfo(tblname, layout, tx);
+    }
+
+    /** Returns the type of the field in the one schema that has it.
+     *
+     * @throws IllegalArgumentException if no schema, or more than one, has it
+     */
+    private static int typeOf(String fldname, List<SchemaBase> schemas) {
+        SchemaBase found = null;
+        for(SchemaBase sch : schemas){
+            if(sch.hasField(fldname)){
+                if(found != null){
+                    throw new IllegalArgumentException("Ambiguous field " + fldname);
+                }
+                found = sch;
+            }
+        }
+        if(found == null){
+            throw new IllegalArgumentException("No field " + fldname);
+        }
+        return found.type(fldname);
+    }
+
+    /** Returns the predicate with its constants coerced to the types of the
+     * fields that they're compared with, recording in types the type of each
+     * parameter: that of the field or constant that it's compared with.
+     *
+     * @throws IllegalArgumentException if a term names a missing or ambiguous
+     * field, compares values of different types, or compares two parameters
+     */
+    private static Predicate resolve(Predicate pred, List<SchemaBase> schemas, Map<Integer, Integer> types) {
+        Predicate result = new Predicate();
+        for(Term t : pred.terms()){
+            Expression lhs = t.lhs();
+            Expression rhs = t.rhs();
+            if(lhs.isParameter() || rhs.isParameter()){
+                if(lhs.isParameter() && rhs.isParameter()){
+                    throw new IllegalArgumentException("Can't compare two parameters: " + t);
+                }
+                Expression param = lhs.isParameter() ? lhs : rhs;
+                Expression other = lhs.isParameter() ? rhs : lhs;
+                types.put(param.parameterIndex(),
+                        other.isFieldName() ? typeOf(other.asFieldName(), schemas) : other.asConstant().getSQLType());
+                result.conjoinWith(new Predicate(t));
+                continue;
+            }
+            int lhsType = lhs.isFieldName() ? typeOf(lhs.asFieldName(), schemas) : lhs.asConstant().getSQLType();
+            int rhsType = rhs.isFieldName() ? typeOf(rhs.asFieldName(), schemas) : rhs.asConstant().getSQLType();
+            if(lhsType != rhsType){
+                if(!rhs.isFieldName()){
+                    rhs = new Expression(coerce(rhs.asConstant(), lhsType));
+                }else if(!lhs.isFieldName()){
+                    lhs = new Expression(coerce(lhs.asConstant(), rhsType));
+                }else{
+                    throw new IllegalArgumentException("Can't compare " + t + ": the fields have different types");
+                }
+            }
+            result.conjoinWith(new Predicate(new Term(lhs, t.operator(), rhs)));
+        }
+        return result;
+    }
+
+    /** Returns the types of the statement's parameters, in order.
+     *
+     * @throws IllegalArgumentException if a parameter has no type
+     */
+    private static List<Integer> paramTypes(Map<Integer, Integer> types, int count) {
+        List<Integer> result = new ArrayList<>();
+        for(int i = 0; i < count; i++){
+            Integer type = types.get(i);
+            if(type == null){
+                throw new IllegalArgumentException("Can't infer the type of parameter " + i);
+            }
+            result.add(type);
+        }
+        return List.copyOf(result);
+    }
+
+    /** Returns the parameters' values coerced to the compiled statement's
+     * parameter types.
+     *
+     * @throws IllegalArgumentException if the number of values differs from
+     * the number of parameters, or a value is null or of the wrong type
+     */
+    private static List<DatumBase> parameterValues(Compiled c, List<DatumBase> params) {
+        if(params.size() != c.paramTypes().size()){
+            throw new IllegalArgumentException("The statement has " + c.paramTypes().size()
+                    + " parameters but " + params.size() + " values");
+        }
+        List<DatumBase> result = new ArrayList<>();
+        for(int i = 0; i < params.size(); i++){
+            if(params.get(i) == null){
+                throw new IllegalArgumentException("No value for parameter " + i);
+            }
+            result.add(coerce(params.get(i), c.paramTypes().get(i)));
+        }
+        return result;
+    }
+
+    /** A compiled statement: the parsed statement, with its constants coerced
+     * and its parameters' types inferred, and the tables that it uses.  A
+     * query has a plan (bound to the tx that compiled it); an update has the
+     * layout and the index ids, by field, of its table.
+     */
+    record Compiled(Object cmd, List<Integer> paramTypes, Set<String> tables, Plan plan,
+                    LayoutBase layout, Map<String, Integer> indexIds) {
+    }
+
+    /** Returns the value of an omitted field of an inserted record. */
+    private static DatumBase defaultValue(int type) {
+        return switch(type){
+            case Types.INTEGER -> new Datum(0);
+            case Types.DOUBLE -> new Datum(0.0);
+            case Types.BOOLEAN -> new Datum(false);
+            default -> new Datum("");
+        };
+    }
+
+    /** Returns the value as the specified type: an int is widened to a double.
+     *
+     * @throws IllegalArgumentException if the value has another type
+     */
+    private static DatumBase coerce(DatumBase val, int type) {
+        if(val.getSQLType() == type){
+            return val;
+        }
+        if(type == Types.DOUBLE && val.getSQLType() == Types.INTEGER){
+            return new Datum(val.asDouble());
+        }
+        throw new IllegalArgumentException("Value " + new Expression(val) + " doesn't have the field's type");
+    }
+}
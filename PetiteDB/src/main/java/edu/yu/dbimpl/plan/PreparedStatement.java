@@ -0,0 +1,132 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/** A query, INSERT, DELETE or UPDATE statement compiled by a Planner (see
+ * Planner#prepare), which can be executed repeatedly, in any tx, with
+ * different values of its parameters.
+ *
+ * A parameter is written "?" in the statement, and its index is its position
+ * among the statement's parameters, starting from 0.  A value must be set for
+ * each parameter before the statement is executed; values are kept across
+ * executions until they're set again or cleared.  A parameter's type is that
+ * of the field (or constant) that it's compared with or assigned to, and an
+ * int value is widened for a double parameter.
+ *
+ * The compiled statement is cached by the Planner: if it has been evicted or
+ * invalidated by a change to its tables' metadata, it's compiled again when
+ * it's executed.  A PreparedStatement isn't thread-safe.
+ */
+public class PreparedStatement {
+    private final Planner planner;
+    private final String sql;
+    private final boolean query;
+    private final DatumBase[] params;
+
+    PreparedStatement(Planner planner, String sql, boolean query, int parameterCount) {
+        this.planner = planner;
+        this.sql = sql;
+        this.query = query;
+        this.params = new DatumBase[parameterCount];
+    }
+
+    /** Returns the statement's normalized text. */
+    public String sql() {
+        return sql;
+    }
+
+    /** Returns true iff the statement is a query. */
+    public boolean isQuery() {
+        return query;
+    }
+
+    public int parameterCount() {
+        return params.length;
+    }
+
+    /** Sets the value of a parameter.
+     *
+     * @throws IllegalArgumentException if the index isn't that of a
+     * parameter, or the value is null
+     */
+    public void setVal(int index, DatumBase val) {
+        if(index < 0 || index >= params.length){
+            throw new IllegalArgumentException("No parameter " + index + " among " + params.length);
+        }
+        if(val == null){
+            throw new IllegalArgumentException("Value can't be null");
+        }
+        params[index] = val;
+    }
+
+    public void setInt(int index, int val) {
+        setVal(index, new Datum(val));
+    }
+
+    public void setDouble(int index, double val) {
+        setVal(index, new Datum(val));
+    }
+
+    public void setString(int index, String val) {
+        setVal(index, new Datum(val));
+    }
+
+    public void setBoolean(int index, boolean val) {
+        setVal(index, new Datum(val));
+    }
+
+    /** Clears the values of the parameters. */
+    public void clearParameters() {
+        Arrays.fill(params, null);
+    }
+
+    /** Returns the query's plan, bound to the tx and the parameters' current
+     * values.
+     *
+     * @throws IllegalStateException if the statement isn't a query
+     * @throws IllegalArgumentException if tx is null, or a parameter has no
+     * value or a value of the wrong type
+     */
+    public Plan createQueryPlan(TxBase tx) {
+        if(!query){
+            throw new IllegalStateException("The statement isn't a query");
+        }
+        return planner.createQueryPlan(sql, values(), checked(tx));
+    }
+
+    /** Executes the INSERT, DELETE or UPDATE with the parameters' current
+     * values.
+     *
+     * @return the number of records inserted, deleted or modified
+     * @throws IllegalStateException if the statement is a query
+     * @throws IllegalArgumentException if tx is null, or a parameter has no
+     * value or a value of the wrong type
+     */
+    public int executeUpdate(TxBase tx) {
+        if(query){
+            throw new IllegalStateException("The statement is a query");
+        }
+        return planner.executeUpdate(sql, values(), checked(tx));
+    }
+
+    private List<DatumBase> values() {
+        return Arrays.asList(params.clone());
+    }
+
+    private static TxBase checked(TxBase tx) {
+        if(tx == null){
+            throw new IllegalArgumentException("tx can't be null");
+        }
+        return tx;
+    }
+
+    @Override
+    public String toString() {
+        return "PreparedStatement[" + sql + "]";
+    }
+}
@@ -0,0 +1,67 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.ProductScan;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that pairs every record of its first input with every record of its
+ * second: the second input is read once per record of the first.
+ */
+public class ProductPlan implements Plan {
+    private final Plan p1;
+    private final Plan p2;
+    private final SchemaBase schema;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public ProductPlan(Plan p1, Plan p2) {
+        if(p1 == null || p2 == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.p1 = p1;
+        this.p2 = p2;
+        this.schema = Costs.union(p1.schema(), p2.schema());
+    }
+
+    @Override
+    public Scan open() {
+        return new ProductScan(p1.open(), p2.open());
+    }
+
+    @Override
+    public long blocksAccessed() {
+        return Costs.add(p1.blocksAccessed(), Costs.mul(p1.recordsOutput(), p2.blocksAccessed()));
+    }
+
+    @Override
+    public long recordsOutput() {
+        return Costs.mul(p1.recordsOutput(), p2.recordsOutput());
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return Costs.joinDistinct(p1, p2, fldname, recordsOutput());
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return schema;
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new ProductPlan(p1.bind(tx, params), p2.bind(tx, params));
+    }
+
+    @Override
+    public String toString() {
+        return "Product(" + p1 + ", " + p2 + ")";
+    }
+}
@@ -0,0 +1,78 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.metadata.Histogram;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.ProjectScan;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that restricts the records of its input to the specified fields. */
+public class ProjectPlan implements Plan {
+    private final Plan p;
+    private final List<String> fields;
+    private final Schema schema = new Schema();
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null, or if the input
+     * lacks one of the fields
+     */
+    public ProjectPlan(Plan p, List<String> fields) {
+        if(p == null || fields == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        for(String fldname : fields){
+            if(!p.schema().hasField(fldname)){
+                throw new IllegalArgumentException("Input has no field " + fldname);
+            }
+            schema.add(fldname, p.schema());
+        }
+        this.p = p;
+        this.fields = List.copyOf(fields);
+    }
+
+    @Override
+    public Scan open() {
+        return new ProjectScan(p.open(), fields);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        return p.blocksAccessed();
+    }
+
+    @Override
+    public long recordsOutput() {
+        return p.recordsOutput();
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return p.distinctValues(fldname);
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return schema;
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new ProjectPlan(p.bind(tx, params), fields);
+    }
+
+    @Override
+    public Histogram histogram(String fldname) {
+        return p.histogram(fldname);
+    }
+
+    @Override
+    public String toString() {
+        return "Project(" + fields + ", " + p + ")";
+    }
+}
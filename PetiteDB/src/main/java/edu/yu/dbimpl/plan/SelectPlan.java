@@ -0,0 +1,140 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.metadata.Histogram;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.query.SelectScan;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+import java.sql.Types;
+
+/** A plan that outputs the records of its input that satisfy a predicate.
+ *
+ * Each term is estimated to keep a fraction (its selectivity) of the input:
+ * an equality with a constant 1 / the field's distinct values, an equality of
+ * two fields 1 / the larger of their distinct values, a range comparison with
+ * a constant the fraction that the field's histogram puts in the range (or a
+ * third without a histogram, or with a parameter, whose value isn't known
+ * when the plan is chosen), and an inequality all of it.
+ */
+public class SelectPlan implements Plan {
+    private final Plan p;
+    private final Predicate pred;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public SelectPlan(Plan p, Predicate pred) {
+        if(p == null || pred == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.p = p;
+        this.pred = pred;
+    }
+
+    @Override
+    public Scan open() {
+        return new SelectScan(p.open(), pred);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        return p.blocksAccessed();
+    }
+
+    @Override
+    public long recordsOutput() {
+        return Math.max(1, Math.round(p.recordsOutput() * selectivity(pred, p)));
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        if(pred.equatesWithValue(fldname) != null){
+            return 1;
+        }
+        long v = p.distinctValues(fldname);
+        String other = pred.equatesWithField(fldname);
+        if(other != null){
+            v = Math.min(v, p.distinctValues(other));
+        }
+        return Math.max(1, Math.min(v, recordsOutput()));
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return p.schema();
+    }
+
+    @Override
+    public String toString() {
+        return "Select(" + pred + ", " + p + ")";
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new SelectPlan(p.bind(tx, params), pred.bind(params));
+    }
+
+    @Override
+    public Histogram histogram(String fldname) {
+        return p.histogram(fldname);
+    }
+
+    /** Returns the estimated fraction of the plan's records that satisfy the
+     * predicate.
+     */
+    static double selectivity(Predicate pred, Plan p) {
+        double sel = 1;
+        for(Term t : pred.terms()){
+            sel *= selectivity(t, p);
+        }
+        return sel;
+    }
+
+    private static double selectivity(Term t, Plan p) {
+        Expression lhs = t.lhs();
+        Expression rhs = t.rhs();
+        return switch(t.operator()){
+            case EQ -> {
+                long v = 1;
+                if(lhs.isFieldName()){
+                    v = p.distinctValues(lhs.asFieldName());
+                }
+                if(rhs.isFieldName()){
+                    v = Math.max(v, p.distinctValues(rhs.asFieldName()));
+                }
+                yield 1.0 / v;
+            }
+            case NE -> 1;
+            default -> {
+                if(!lhs.isFieldName() && !rhs.isFieldName()){
+                    yield 1;
+                }
+                if(lhs.isFieldName() && rhs.isFieldName()){
+                    yield 1.0 / 3;
+                }
+                // normalize to "field op constant"
+                boolean fieldLeft = lhs.isFieldName();
+                String fldname = fieldLeft ? lhs.asFieldName() : rhs.asFieldName();
+                DatumBase val = fieldLeft ? rhs.asConstant() : lhs.asConstant();
+                Term.Operator op = fieldLeft ? t.operator() : t.operator().flip();
+                Histogram h = p.histogram(fldname);
+                if(val == null || h == null || (val.getSQLType() != Types.INTEGER && val.getSQLType() != Types.DOUBLE)){
+                    yield 1.0 / 3;
+                }
+                double below = h.fractionBelow(val.asDouble());
+                double sel = (op == Term.Operator.LT || op == Term.Operator.LE) ? below : 1 - below;
+                // a range is never estimated to be empty
+                yield Math.max(sel, 1.0 / Math.max(1, p.recordsOutput()));
+            }
+        };
+    }
+}
@@ -0,0 +1,80 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.metadata.Histogram;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.query.SortScan;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that outputs the records of its input in ascending order of the
+ * specified fields, by an external merge sort (see SortScan).
+ */
+public class SortPlan implements Plan {
+    private final TxBase tx;
+    private final Plan p;
+    private final List<String> fields;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null, or if the input
+     * lacks one of the fields
+     */
+    public SortPlan(TxBase tx, Plan p, List<String> fields) {
+        if(tx == null || p == null || fields == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        for(String fldname : fields){
+            if(!p.schema().hasField(fldname)){
+                throw new IllegalArgumentException("Input has no field " + fldname);
+            }
+        }
+        this.tx = tx;
+        this.p = p;
+        this.fields = List.copyOf(fields);
+    }
+
+    @Override
+    public Scan open() {
+        return new SortScan(tx, p.open(), p.schema(), fields);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        long blocks = Costs.outputBlocks(p, tx.blockSize());
+        return Costs.add(p.blocksAccessed(), Costs.sortCost(blocks, tx.availableBuffs()));
+    }
+
+    @Override
+    public long recordsOutput() {
+        return p.recordsOutput();
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return p.distinctValues(fldname);
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return p.schema();
+    }
+
+    @Override
+    public Plan bind(TxBase tx, List<DatumBase> params) {
+        return new SortPlan(tx, p.bind(tx, params), fields);
+    }
+
+    @Override
+    public Histogram histogram(String fldname) {
+        return p.histogram(fldname);
+    }
+
+    @Override
+    public String toString() {
+        return "Sort(" + fields + ", " + p + ")";
+    }
+}
@@ -0,0 +1,82 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.metadata.Histogram;
+import edu.yu.dbimpl.metadata.StatInfo;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.record.LayoutBase;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.record.TableScan;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A plan that reads every record of a table. */
+public class TablePlan implements Plan {
+    private final TxBase tx;
+    private final String tblname;
+    private final LayoutBase layout;
+    private final StatInfo si;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public TablePlan(TxBase tx, String tblname, LayoutBase layout, StatInfo si) {
+        if(tx == null || tblname == null || layout == null || si == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.tx = tx;
+        this.tblname = tblname;
+        this.layout = layout;
+        this.si = si;
+    }
+
+    public String tableName() {
+        return tblname;
+    }
+
+    public LayoutBase layout() {
+        return layout;
+    }
+
+    @Override
+    public TableScan open() {
+        return new TableScan(tx, tblname, layout);
+    }
+
+    @Override
+    public long blocksAccessed() {
+        return si.blocksAccessed();
+    }
+
+    @Override
+    public long recordsOutput() {
+        return si.recordsOutput();
+    }
+
+    @Override
+    public long distinctValues(String fldname) {
+        return si.distinctValues(fldname);
+    }
+
+    @Override
+    public SchemaBase schema() {
+        return layout.schema();
+    }
+
+    @Override
+    public TablePlan bind(TxBase tx, List<DatumBase> params) {
+        return new TablePlan(tx, tblname, layout, si);
+    }
+
+    @Override
+    public Histogram histogram(String fldname) {
+        return si.histogram(fldname);
+    }
+
+    @Override
+    public String toString() {
+        return "Table(" + tblname + ")";
+    }
+}
@@ -0,0 +1,205 @@
+package edu.yu.dbimpl.plan;
+
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/** Chooses the cheapest plans that involve one table of a query: the access
+ * path that reads the table's records satisfying their part of the query's
+ * predicate, and the join algorithm that adds the table to a plan of other
+ * tables of the query.
+ */
+class TablePlanner {
+    private final TxBase tx;
+    private final TablePlan tp;
+    private final Predicate pred;
+    private final Predicate selectPred;
+    private final Map<String, IndexInfo> indexes;
+    private Plan selectPlan;
+
+    /**
+     * Constructor.
+     *
+     * @param tx the tx under which the plans are opened
+     * @param tp the plan of the table
+     * @param pred the query's predicate
+     * @param indexes the table's indexes, by field
+     */
+    TablePlanner(TxBase tx, TablePlan tp, Predicate pred, Map<String, IndexInfo> indexes) {
+        this.tx = tx;
+        this.tp = tp;
+        this.pred = pred;
+        this.selectPred = pred.selectSubPred(tp.schema());
+        this.indexes = indexes;
+    }
+
+    SchemaBase schema() {
+        return tp.schema();
+    }
+
+    /** Returns the cheapest of a scan of the table, for each index on a
+     * field that the predicate equates with a constant or a parameter, an
+     * index search, and for each ordered index on a field that the predicate
+     * compares with a constant or a parameter, a range search; in each case
+     * followed by the rest of the table's terms.
+     */
+    Plan selectPlan() {
+        if(selectPlan == null){
+            List<Plan> candidates = new ArrayList<>();
+            candidates.add(select(tp, selectPred));
+            for(Map.Entry<String, IndexInfo> e : indexes.entrySet()){
+                Term t = equatesWithValue(selectPred, e.getKey());
+                if(t != null){
+                    Expression val = t.equatesWithValue(e.getKey());
+                    candidates.add(select(new IndexSelectPlan(tp, e.getValue(), val), without(selectPred, t)));
+                }
+                Range r = range(selectPred, e.getKey());
+                if(e.getValue().isOrdered() && (r.loTerm() != null || r.hiTerm() != null)){
+                    candidates.add(select(r.plan(tp, e.getValue(), false), without(selectPred, r.loTerm(), r.hiTerm())));
+                }
+            }
+            selectPlan = cheapest(candidates);
+        }
+        return selectPlan;
+    }
+
+    /** Returns a plan of the table's records, restricted by their part of the
+     * query's predicate, that returns them in ascending order of the field:
+     * a search of an ordered index on the field (for the range of values
+     * that the predicate allows), or null if the field has no such index.
+     */
+    Plan orderedPlan(String fldname) {
+        IndexInfo ii = indexes.get(fldname);
+        if(ii == null || !ii.isOrdered()){
+            return null;
+        }
+        Range r = range(selectPred, fldname);
+        return select(r.plan(tp, ii, true), without(selectPred, r.loTerm(), r.hiTerm()));
+    }
+
+    /** Returns the cheapest plan that joins the table to the current plan.
+     * For each term that equates a field of the table with a field of the
+     * current plan, the candidates are an index join (if the table's field is
+     * indexed), a hash join and a merge join; without such a term, the table
+     * is joined by a product.  The remaining terms that span the two are
+     * applied to the join's output.
+     */
+    Plan joinPlan(Plan current) {
+        Predicate joinPred = pred.joinSubPred(current.schema(), tp.schema());
+        List<Plan> candidates = new ArrayList<>();
+        for(String fldname : tp.schema().fields()){
+            Term t = equatesWithField(joinPred, fldname);
+            if(t == null){
+                continue;
+            }
+            String other = t.equatesWithField(fldname);
+            Predicate rest = without(joinPred, t);
+            IndexInfo ii = indexes.get(fldname);
+            if(ii != null){
+                Predicate residual = new Predicate();
+                residual.conjoinWith(selectPred);
+                residual.conjoinWith(rest);
+                candidates.add(select(new IndexJoinPlan(current, tp, ii, other), residual));
+            }
+            candidates.add(select(new HashJoinPlan(tx, current, other, selectPlan(), fldname), rest));
+            candidates.add(select(new MergeJoinPlan(tx, current, other, selectPlan(), fldname), rest));
+        }
+        if(candidates.isEmpty()){
+            candidates.add(select(new ProductPlan(current, selectPlan()), joinPred));
+        }
+        return cheapest(candidates);
+    }
+
+    /** Returns the plan with the fewest block accesses, or on a tie the
+     * fewest records.
+     */
+    static Plan cheapest(List<Plan> plans) {
+        Plan best = null;
+        for(Plan p : plans){
+            if(best == null || p.blocksAccessed() < best.blocksAccessed()
+                    || (p.blocksAccessed() == best.blocksAccessed() && p.recordsOutput() < best.recordsOutput())){
+                best = p;
+            }
+        }
+        return best;
+    }
+
+    private static Plan select(Plan p, Predicate pred) {
+        return pred.isEmpty() ? p : new SelectPlan(p, pred);
+    }
+
+    private static Term equatesWithValue(Predicate pred, String fldname) {
+        for(Term t : pred.terms()){
+            if(t.equatesWithValue(fldname) != null){
+                return t;
+            }
+        }
+        return null;
+    }
+
+    private static Term equatesWithField(Predicate pred, String fldname) {
+        for(Term t : pred.terms()){
+            if(t.equatesWithField(fldname) != null){
+                return t;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the range of the field's values that the predicate allows:
+     * the first term that compares the field with a constant or a parameter
+     * from below, and the first from above (either may be null).
+     */
+    private static Range range(Predicate pred, String fldname) {
+        Range r = new Range(null, null, false, null, null, false);
+        for(Term t : pred.terms()){
+            Term.Operator op;
+            Expression val;
+            if(fldname.equals(t.lhs().asFieldName()) && !t.rhs().isFieldName()){
+                op = t.operator();
+                val = t.rhs();
+            } else if(fldname.equals(t.rhs().asFieldName()) && !t.lhs().isFieldName()){
+                op = t.operator().flip();
+                val = t.lhs();
+            } else {
+                continue;
+            }
+            boolean lower = op == Term.Operator.GT || op == Term.Operator.GE;
+            boolean upper = op == Term.Operator.LT || op == Term.Operator.LE;
+            if(lower && r.loTerm() == null){
+                r = new Range(t, val, op == Term.Operator.GE, r.hiTerm(), r.hi(), r.hiInclusive());
+            } else if(upper && r.hiTerm() == null){
+                r = new Range(r.loTerm(), r.lo(), r.loInclusive(), t, val, op == Term.Operator.LE);
+            }
+        }
+        return r;
+    }
+
+    /** The bounds of a range of a field's values, and the terms they came
+     * from.
+     */
+    private record Range(Term loTerm, Expression lo, boolean loInclusive,
+                         Term hiTerm, Expression hi, boolean hiInclusive) {
+        Plan plan(TablePlan tp, IndexInfo ii, boolean ordered) {
+            return new IndexRangePlan(tp, ii, lo, loInclusive, hi, hiInclusive, ordered);
+        }
+    }
+
+    private static Predicate without(Predicate pred, Term... terms) {
+        List<Term> excluded = Arrays.asList(terms);
+        Predicate result = new Predicate();
+        for(Term t : pred.terms()){
+            if(!excluded.contains(t)){
+                result.conjoinWith(new Predicate(t));
+            }
+        }
+        return result;
+    }
+}
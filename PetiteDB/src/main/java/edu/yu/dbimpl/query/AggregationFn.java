@@ -0,0 +1,79 @@
+package edu.yu.dbimpl.query;
+
+import java.sql.Types;
+
+/** An aggregate that a GroupByScan computes over a field of each group, e.g.
+ * "max(score)".  The aggregate's value is read from the scan under the name
+ * fieldName(), e.g. "maxofscore".
+ */
+public class AggregationFn {
+    /** The aggregation functions. */
+    public enum Kind {
+        COUNT, SUM, MIN, MAX, AVG
+    }
+
+    private final Kind kind;
+    private final String fldname;
+
+    /**
+     * Constructor.
+     *
+     * @param kind the function
+     * @param fldname the field that the function aggregates
+     * @throws IllegalArgumentException if an argument is null, or fldname is
+     * blank
+     */
+    public AggregationFn(Kind kind, String fldname) {
+        if(kind == null || fldname == null || fldname.isBlank()){
+            throw new IllegalArgumentException("Aggregate arguments can't be null or blank");
+        }
+        this.kind = kind;
+        this.fldname = fldname;
+    }
+
+    public Kind kind() {
+        return kind;
+    }
+
+    /** Returns the field that the function aggregates. */
+    public String inputField() {
+        return fldname;
+    }
+
+    /** Returns the name under which the scan exposes the aggregate. */
+    public String fieldName() {
+        return kind.name().toLowerCase() + "of" + fldname;
+    }
+
+    /** Returns the type of the aggregate's value, given the type of the field
+     * that it aggregates.
+     *
+     * @throws IllegalArgumentException if the function can't aggregate a
+     * field of that type (e.g., the sum of a string field)
+     */
+    public int resultType(int inputType) {
+        return switch(kind){
+            case COUNT -> Types.INTEGER;
+            case AVG -> {
+                checkNumeric(inputType);
+                yield Types.DOUBLE;
+            }
+            case SUM -> {
+                checkNumeric(inputType);
+                yield inputType;
+            }
+            default -> inputType;
+        };
+    }
+
+    private void checkNumeric(int inputType) {
+        if(inputType != Types.INTEGER && inputType != Types.DOUBLE){
+            throw new IllegalArgumentException("Can't compute " + this + " of a non-numeric field");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return kind.name().toLowerCase() + "(" + fldname + ")";
+    }
+}
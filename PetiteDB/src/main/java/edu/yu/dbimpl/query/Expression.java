@@ -0,0 +1,141 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.SchemaBase;
+
+import java.sql.Types;
+import java.util.List;
+
+/** An operand of a Term: either a constant value, the name of a field, whose
+ * value is taken from the current record of a scan, or a parameter of a
+ * prepared statement (written "?"), whose value is supplied by bind() before
+ * the expression is evaluated.
+ */
+public class Expression {
+    private final DatumBase val;
+    private final String fldname;
+    private final int param;
+
+    /** Constructor for a constant expression.
+     *
+     * @throws IllegalArgumentException if val is null
+     */
+    public Expression(DatumBase val) {
+        if(val == null){
+            throw new IllegalArgumentException("Constant can't be null");
+        }
+        this.val = val;
+        this.fldname = null;
+        this.param = -1;
+    }
+
+    /** Constructor for a field-name expression.
+     *
+     * @throws IllegalArgumentException if fldname is null or blank
+     */
+    public Expression(String fldname) {
+        if(fldname == null || fldname.isBlank()){
+            throw new IllegalArgumentException("Field name can't be null or blank");
+        }
+        this.val = null;
+        this.fldname = fldname;
+        this.param = -1;
+    }
+
+    private Expression(int param) {
+        this.val = null;
+        this.fldname = null;
+        this.param = param;
+    }
+
+    /** Returns an expression for the specified parameter of a statement.
+     *
+     * @param index the parameter's position among the statement's parameters,
+     * starting from 0
+     * @throws IllegalArgumentException if index is negative
+     */
+    public static Expression parameter(int index) {
+        if(index < 0){
+            throw new IllegalArgumentException("Parameter index can't be negative");
+        }
+        return new Expression(index);
+    }
+
+    public boolean isFieldName() {
+        return fldname != null;
+    }
+
+    public boolean isParameter() {
+        return param >= 0;
+    }
+
+    /** Returns the expression's constant, or null if it isn't a constant. */
+    public DatumBase asConstant() {
+        return val;
+    }
+
+    /** Returns the expression's field name, or null if it isn't a field name. */
+    public String asFieldName() {
+        return fldname;
+    }
+
+    /** Returns the expression's parameter index, or -1 if it isn't a
+     * parameter.
+     */
+    public int parameterIndex() {
+        return param;
+    }
+
+    /** Returns the expression with a parameter replaced by its value, i.e.,
+     * params.get(parameterIndex()); any other expression is returned as is.
+     *
+     * @throws IllegalArgumentException if the parameter has no value
+     */
+    public Expression bind(List<DatumBase> params) {
+        if(param < 0){
+            return this;
+        }
+        if(params == null || param >= params.size() || params.get(param) == null){
+            throw new IllegalArgumentException("No value for parameter " + param);
+        }
+        return new Expression(params.get(param));
+    }
+
+    /** Returns the value of the expression for the scan's current record.
+     *
+     * @throws IllegalStateException if the expression is an unbound parameter
+     */
+    public DatumBase evaluate(Scan s) {
+        if(param >= 0){
+            throw new IllegalStateException("Parameter " + param + " isn't bound");
+        }
+        return val != null ? val : s.getVal(fldname);
+    }
+
+    /** Returns true iff the expression can be evaluated against the scan. */
+    public boolean appliesTo(Scan s) {
+        return fldname == null || s.hasField(fldname);
+    }
+
+    /** Returns true iff the expression can be evaluated against a record of
+     * the schema.
+     */
+    public boolean appliesTo(SchemaBase sch) {
+        return fldname == null || sch.hasField(fldname);
+    }
+
+    @Override
+    public String toString() {
+        if(fldname != null){
+            return fldname;
+        }
+        if(param >= 0){
+            return "?";
+        }
+        return switch(val.getSQLType()){
+            case Types.INTEGER -> Integer.toString(val.asInt());
+            case Types.DOUBLE -> Double.toString(val.asDouble());
+            case Types.BOOLEAN -> Boolean.toString(val.asBoolean());
+            default -> "'" + val.asString() + "'";
+        };
+    }
+}
@@ -0,0 +1,216 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.ParallelTableScan;
+import edu.yu.dbimpl.record.SchemaBase;
+
+import java.util.List;
+
+/** Groups the records of its input on zero or more fields and computes
+ * aggregates (see AggregationFn) over each group, by hashing (see
+ * GroupTable).  The scan has one record per group, holding the grouping
+ * fields and the aggregates (each named by AggregationFn.fieldName()), in no
+ * particular order.  With no grouping fields, a non-empty input forms a
+ * single group; an empty input forms none.
+ *
+ * The input may be any Scan, read a record at a time on the caller's thread,
+ * or a ParallelTableScan: then each worker aggregates its morsels' batches
+ * into a partial table of its own, a column at a time, and the partial
+ * tables are merged when the workers are done.
+ *
+ * The grouping is performed by the first call to next(), not by the
+ * constructor.  Closing the scan closes its input.
+ */
+public class GroupByScan implements Scan {
+    private final Scan src;
+    private final ParallelTableScan parallelSrc;
+    private final String[] groupFields;
+    private final int[] groupTypes;
+    private final AggregationFn[] aggs;
+    private final int[] inputTypes;
+    private GroupTable table;
+    private int current = -1;
+
+    /**
+     * Constructor.
+     *
+     * @param src the input
+     * @param schema the fields of the input
+     * @param groupFields the fields to group on
+     * @param aggs the aggregates to compute
+     * @throws IllegalArgumentException if an argument is null, if a field
+     * isn't in the schema or the input, or if an aggregate can't aggregate its
+     * field's type
+     */
+    public GroupByScan(Scan src, SchemaBase schema, List<String> groupFields, List<AggregationFn> aggs) {
+        if(src == null || schema == null || groupFields == null || aggs == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.src = src;
+        this.parallelSrc = null;
+        this.groupFields = groupFields.toArray(new String[0]);
+        this.groupTypes = new int[this.groupFields.length];
+        this.aggs = aggs.toArray(new AggregationFn[0]);
+        this.inputTypes = new int[this.aggs.length];
+        resolveTypes(schema, src);
+    }
+
+    /** Constructor for a parallel aggregation of a table.  The scan must read
+     * every field that is grouped on or aggregated.
+     *
+     * @see #GroupByScan(Scan, SchemaBase, List, List)
+     */
+    public GroupByScan(ParallelTableScan src, List<String> groupFields, List<AggregationFn> aggs) {
+        if(src == null || groupFields == null || aggs == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.src = null;
+        this.parallelSrc = src;
+        this.groupFields = groupFields.toArray(new String[0]);
+        this.groupTypes = new int[this.groupFields.length];
+        this.aggs = aggs.toArray(new AggregationFn[0]);
+        this.inputTypes = new int[this.aggs.length];
+        resolveTypes(src.layout().schema(), null);
+        for(String fld : groupFields){
+            checkRead(fld);
+        }
+        for(AggregationFn agg : aggs){
+            checkRead(agg.inputField());
+        }
+    }
+
+    @Override
+    public void beforeFirst() {
+        current = -1;
+    }
+
+    @Override
+    public boolean next() {
+        if(table == null){
+            table = group();
+        }
+        if(current + 1 >= table.size()){
+            current = table.size();
+            return false;
+        }
+        current++;
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return getVal(fldname).asInt();
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return getVal(fldname).asBoolean();
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return getVal(fldname).asDouble();
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return getVal(fldname).asString();
+    }
+
+    /** @throws ArithmeticException if an integer count or sum overflows an int */
+    @Override
+    public DatumBase getVal(String fldname) {
+        if(table == null || current < 0 || current >= table.size()){
+            throw new IllegalStateException("Scan isn't positioned on a group");
+        }
+        for(int k = 0; k < groupFields.length; k++){
+            if(groupFields[k].equals(fldname)){
+                return table.groupValue(current, k);
+            }
+        }
+        return table.aggregateValue(current, aggregate(fldname));
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        for(String fld : groupFields){
+            if(fld.equals(fldname)){
+                return true;
+            }
+        }
+        for(AggregationFn agg : aggs){
+            if(agg.fieldName().equals(fldname)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getType(String fldname) {
+        for(int k = 0; k < groupFields.length; k++){
+            if(groupFields[k].equals(fldname)){
+                return groupTypes[k];
+            }
+        }
+        int a = aggregate(fldname);
+        return aggs[a].resultType(inputTypes[a]);
+    }
+
+    @Override
+    public void close() {
+        if(src != null){
+            src.close();
+        }else{
+            parallelSrc.close();
+        }
+    }
+
+    private GroupTable group() {
+        if(src != null){
+            GroupTable t = newTable();
+            src.beforeFirst();
+            while(src.next()){
+                t.add(src);
+            }
+            return t;
+        }
+        return parallelSrc.stream().collect(this::newTable, GroupTable::add, GroupTable::merge);
+    }
+
+    private GroupTable newTable() {
+        return new GroupTable(groupFields, groupTypes, aggs, inputTypes);
+    }
+
+    private void resolveTypes(SchemaBase schema, Scan scan) {
+        for(int k = 0; k < groupFields.length; k++){
+            groupTypes[k] = typeOf(schema, scan, groupFields[k]);
+        }
+        for(int a = 0; a < aggs.length; a++){
+            inputTypes[a] = typeOf(schema, scan, aggs[a].inputField());
+            // rejects e.g. the sum of a string field
+            aggs[a].resultType(inputTypes[a]);
+        }
+    }
+
+    private static int typeOf(SchemaBase schema, Scan scan, String fldname) {
+        if(!schema.hasField(fldname) || (scan != null && !scan.hasField(fldname))){
+            throw new IllegalArgumentException("Input has no field " + fldname);
+        }
+        return schema.type(fldname);
+    }
+
+    private void checkRead(String fldname) {
+        if(!parallelSrc.fields().contains(fldname)){
+            throw new IllegalArgumentException("Parallel scan doesn't read field " + fldname);
+        }
+    }
+
+    private int aggregate(String fldname) {
+        for(int a = 0; a < aggs.length; a++){
+            if(aggs[a].fieldName().equals(fldname)){
+                return a;
+            }
+        }
+        throw new IllegalArgumentException("Scan has no field " + fldname);
+    }
+}
@@ -0,0 +1,389 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.record.ColumnBatch;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/** The hash table behind a GroupByScan: maps each group (the values of the
+ * grouping fields) to the running state of its aggregates.
+ *
+ * A group's values are normalized to bytes (an int as 4 bytes, a double as
+ * the 8 bytes of its bits, a boolean as 1 byte, a string as its length and
+ * ASCII bytes), and the groups' keys are stored back to back in one byte[].
+ * The table itself is open-addressed over int group numbers, and the
+ * aggregates' state is kept in primitive arrays indexed by group number (a
+ * long[] for integer and boolean fields, a double[] for double fields), so
+ * that adding a record allocates nothing unless it starts a new group.  Only
+ * the minimum and maximum of a string field are kept as Datums.
+ *
+ * A table is filled by one thread; the tables of several threads are then
+ * combined with merge.
+ */
+final class GroupTable {
+    private final String[] groupFields;
+    private final int[] groupTypes;
+    private final AggregationFn[] aggs;
+    private final int[] inputTypes;
+
+    // slot -> group number + 1, or 0 if the slot is empty
+    private int[] index = new int[64];
+    private int size = 0;
+    private int[] hashes = new int[16];
+    // group g's key is keys[keyStarts[g], keyStarts[g + 1])
+    private int[] keyStarts = new int[17];
+    private byte[] keys = new byte[256];
+    // the key being looked up
+    private byte[] scratch = new byte[64];
+    private int scratchLength;
+
+    // per aggregate, per group: the number of values aggregated, and the
+    // running sum, minimum, or maximum
+    private final long[][] counts;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final DatumBase[][] objects;
+
+    GroupTable(String[] groupFields, int[] groupTypes, AggregationFn[] aggs, int[] inputTypes) {
+        this.groupFields = groupFields;
+        this.groupTypes = groupTypes;
+        this.aggs = aggs;
+        this.inputTypes = inputTypes;
+        counts = new long[aggs.length][16];
+        longs = new long[aggs.length][];
+        doubles = new double[aggs.length][];
+        objects = new DatumBase[aggs.length][];
+        for(int a = 0; a < aggs.length; a++){
+            if(aggs[a].kind() == AggregationFn.Kind.COUNT){
+                continue;
+            }
+            switch(inputTypes[a]){
+                case Types.DOUBLE -> doubles[a] = new double[16];
+                case Types.VARCHAR -> objects[a] = new DatumBase[16];
+                default -> longs[a] = new long[16];
+            }
+        }
+    }
+
+    /** Returns the number of groups. */
+    int size() {
+        return size;
+    }
+
+    /** Adds the scan's current record to its group. */
+    void add(Scan s) {
+        scratchLength = 0;
+        for(int k = 0; k < groupFields.length; k++){
+            switch(groupTypes[k]){
+                case Types.INTEGER -> putInt(s.getInt(groupFields[k]));
+                case Types.DOUBLE -> putDouble(s.getDouble(groupFields[k]));
+                case Types.BOOLEAN -> putByte(s.getBoolean(groupFields[k]) ? 1 : 0);
+                default -> putString(s.getString(groupFields[k]).getBytes(PageBase.CHARSET));
+            }
+        }
+        int g = find();
+        for(int a = 0; a < aggs.length; a++){
+            String fld = aggs[a].inputField();
+            if(aggs[a].kind() == AggregationFn.Kind.COUNT){
+                counts[a][g]++;
+                continue;
+            }
+            switch(inputTypes[a]){
+                case Types.INTEGER -> accumulate(a, g, s.getInt(fld));
+                case Types.DOUBLE -> accumulate(a, g, s.getDouble(fld));
+                case Types.BOOLEAN -> accumulate(a, g, s.getBoolean(fld) ? 1 : 0);
+                default -> accumulate(a, g, s.getVal(fld));
+            }
+        }
+    }
+
+    /** Adds the batch's selected rows to their groups: the rows' groups are
+     * found first, and then each aggregate is computed a column at a time.
+     */
+    void add(ColumnBatch batch) {
+        int n = batch.selectedCount();
+        int[] sel = batch.selection();
+        int[] groupCols = new int[groupFields.length];
+        for(int k = 0; k < groupCols.length; k++){
+            groupCols[k] = batch.column(groupFields[k]);
+        }
+        int[] groupOf = new int[n];
+        for(int i = 0; i < n; i++){
+            int row = sel[i];
+            scratchLength = 0;
+            for(int k = 0; k < groupCols.length; k++){
+                int col = groupCols[k];
+                switch(groupTypes[k]){
+                    case Types.INTEGER -> putInt(batch.ints(col)[row]);
+                    case Types.DOUBLE -> putDouble(batch.doubles(col)[row]);
+                    case Types.BOOLEAN -> putByte(batch.booleans(col)[row] ? 1 : 0);
+                    default -> {
+                        int[] offsets = batch.stringOffsets(col);
+                        putString(batch.stringBytes(col), offsets[row], offsets[row + 1] - offsets[row]);
+                    }
+                }
+            }
+            groupOf[i] = find();
+        }
+        for(int a = 0; a < aggs.length; a++){
+            if(aggs[a].kind() == AggregationFn.Kind.COUNT){
+                long[] c = counts[a];
+                for(int i = 0; i < n; i++){
+                    c[groupOf[i]]++;
+                }
+                continue;
+            }
+            int col = batch.column(aggs[a].inputField());
+            switch(inputTypes[a]){
+                case Types.INTEGER -> {
+                    int[] v = batch.ints(col);
+                    for(int i = 0; i < n; i++){
+                        accumulate(a, groupOf[i], v[sel[i]]);
+                    }
+                }
+                case Types.DOUBLE -> {
+                    double[] v = batch.doubles(col);
+                    for(int i = 0; i < n; i++){
+                        accumulate(a, groupOf[i], v[sel[i]]);
+                    }
+                }
+                case Types.BOOLEAN -> {
+                    boolean[] v = batch.booleans(col);
+                    for(int i = 0; i < n; i++){
+                        accumulate(a, groupOf[i], v[sel[i]] ? 1 : 0);
+                    }
+                }
+                default -> {
+                    for(int i = 0; i < n; i++){
+                        accumulate(a, groupOf[i], new Datum(batch.getString(col, sel[i])));
+                    }
+                }
+            }
+        }
+    }
+
+    /** Combines another table's groups into this one. */
+    void merge(GroupTable other) {
+        for(int og = 0; og < other.size; og++){
+            int start = other.keyStarts[og];
+            scratchLength = 0;
+            putBytes(other.keys, start, other.keyStarts[og + 1] - start);
+            int g = find();
+            for(int a = 0; a < aggs.length; a++){
+                long n = other.counts[a][og];
+                if(n == 0){
+                    continue;
+                }
+                boolean first = counts[a][g] == 0;
+                counts[a][g] += n;
+                AggregationFn.Kind kind = aggs[a].kind();
+                if(kind == AggregationFn.Kind.COUNT){
+                    continue;
+                }
+                boolean sum = kind == AggregationFn.Kind.SUM || kind == AggregationFn.Kind.AVG;
+                boolean min = kind == AggregationFn.Kind.MIN;
+                if(longs[a] != null){
+                    long v = other.longs[a][og];
+                    long[] mine = longs[a];
+                    mine[g] = sum ? mine[g] + v : first ? v : min ? Math.min(mine[g], v) : Math.max(mine[g], v);
+                }else if(doubles[a] != null){
+                    double v = other.doubles[a][og];
+                    double[] mine = doubles[a];
+                    mine[g] = sum ? mine[g] + v : first ? v : min ? Math.min(mine[g], v) : Math.max(mine[g], v);
+                }else{
+                    DatumBase v = other.objects[a][og];
+                    DatumBase[] mine = objects[a];
+                    if(first || (min ? v.compareTo(mine[g]) < 0 : v.compareTo(mine[g]) > 0)){
+                        mine[g] = v;
+                    }
+                }
+            }
+        }
+    }
+
+    /** Returns the value of the k'th grouping field of a group. */
+    DatumBase groupValue(int g, int k) {
+        int offset = keyStarts[g];
+        for(int i = 0; ; i++){
+            int length = switch(groupTypes[i]){
+                case Types.INTEGER -> Integer.BYTES;
+                case Types.DOUBLE -> Long.BYTES;
+                case Types.BOOLEAN -> 1;
+                default -> Integer.BYTES + readInt(offset);
+            };
+            if(i == k){
+                return switch(groupTypes[i]){
+                    case Types.INTEGER -> new Datum(readInt(offset));
+                    case Types.DOUBLE -> new Datum(Double.longBitsToDouble(readLong(offset)));
+                    case Types.BOOLEAN -> new Datum(keys[offset] != 0);
+                    default -> new Datum(new String(keys, offset + Integer.BYTES, length - Integer.BYTES, PageBase.CHARSET));
+                };
+            }
+            offset += length;
+        }
+    }
+
+    /** Returns the value of the a'th aggregate of a group.
+     *
+     * @throws ArithmeticException if an integer count or sum overflows an int
+     */
+    DatumBase aggregateValue(int g, int a) {
+        long n = counts[a][g];
+        return switch(aggs[a].kind()){
+            case COUNT -> new Datum(Math.toIntExact(n));
+            case AVG -> new Datum((longs[a] != null ? longs[a][g] : doubles[a][g]) / (double) n);
+            default -> switch(inputTypes[a]){
+                case Types.INTEGER -> new Datum(Math.toIntExact(longs[a][g]));
+                case Types.DOUBLE -> new Datum(doubles[a][g]);
+                case Types.BOOLEAN -> new Datum(longs[a][g] != 0);
+                default -> objects[a][g];
+            };
+        };
+    }
+
+    private void accumulate(int a, int g, long v) {
+        long[] state = longs[a];
+        boolean first = counts[a][g]++ == 0;
+        switch(aggs[a].kind()){
+            case MIN -> state[g] = first ? v : Math.min(state[g], v);
+            case MAX -> state[g] = first ? v : Math.max(state[g], v);
+            default -> state[g] += v;
+        }
+    }
+
+    private void accumulate(int a, int g, double v) {
+        double[] state = doubles[a];
+        boolean first = counts[a][g]++ == 0;
+        switch(aggs[a].kind()){
+            case MIN -> state[g] = first ? v : Math.min(state[g], v);
+            case MAX -> state[g] = first ? v : Math.max(state[g], v);
+            default -> state[g] += v;
+        }
+    }
+
+    private void accumulate(int a, int g, DatumBase v) {
+        DatumBase[] state = objects[a];
+        boolean first = counts[a][g]++ == 0;
+        boolean min = aggs[a].kind() == AggregationFn.Kind.MIN;
+        if(first || (min ? v.compareTo(state[g]) < 0 : v.compareTo(state[g]) > 0)){
+            state[g] = v;
+        }
+    }
+
+    /** Returns the group whose key is in scratch, adding the group if it's
+     * new.
+     */
+    private int find() {
+        int h = 1;
+        for(int i = 0; i < scratchLength; i++){
+            h = 31 * h + scratch[i];
+        }
+        h ^= h >>> 16;
+        int mask = index.length - 1;
+        int pos = h & mask;
+        while(index[pos] != 0){
+            int g = index[pos] - 1;
+            if(hashes[g] == h && Arrays.equals(keys, keyStarts[g], keyStarts[g + 1], scratch, 0, scratchLength)){
+                return g;
+            }
+            pos = (pos + 1) & mask;
+        }
+        int g = size++;
+        if(g == hashes.length){
+            grow();
+        }
+        hashes[g] = h;
+        int start = keyStarts[g];
+        if(start + scratchLength > keys.length){
+            keys = Arrays.copyOf(keys, Math.max(start + scratchLength, 2 * keys.length));
+        }
+        System.arraycopy(scratch, 0, keys, start, scratchLength);
+        keyStarts[g + 1] = start + scratchLength;
+        index[pos] = g + 1;
+        if(2 * size > index.length){
+            rehash();
+        }
+        return g;
+    }
+
+    private void grow() {
+        int capacity = 2 * hashes.length;
+        hashes = Arrays.copyOf(hashes, capacity);
+        keyStarts = Arrays.copyOf(keyStarts, capacity + 1);
+        for(int a = 0; a < aggs.length; a++){
+            counts[a] = Arrays.copyOf(counts[a], capacity);
+            if(longs[a] != null){
+                longs[a] = Arrays.copyOf(longs[a], capacity);
+            }
+            if(doubles[a] != null){
+                doubles[a] = Arrays.copyOf(doubles[a], capacity);
+            }
+            if(objects[a] != null){
+                objects[a] = Arrays.copyOf(objects[a], capacity);
+            }
+        }
+    }
+
+    private void rehash() {
+        index = new int[2 * index.length];
+        int mask = index.length - 1;
+        for(int g = 0; g < size; g++){
+            int pos = hashes[g] & mask;
+            while(index[pos] != 0){
+                pos = (pos + 1) & mask;
+            }
+            index[pos] = g + 1;
+        }
+    }
+
+    private void putInt(int v) {
+        ensureScratch(Integer.BYTES);
+        scratch[scratchLength++] = (byte) (v >>> 24);
+        scratch[scratchLength++] = (byte) (v >>> 16);
+        scratch[scratchLength++] = (byte) (v >>> 8);
+        scratch[scratchLength++] = (byte) v;
+    }
+
+    private void putDouble(double v) {
+        // adding 0.0 turns -0.0 into 0.0, so that the two form one group
+        long bits = Double.doubleToLongBits(v + 0.0);
+        putInt((int) (bits >>> 32));
+        putInt((int) bits);
+    }
+
+    private void putByte(int v) {
+        ensureScratch(1);
+        scratch[scratchLength++] = (byte) v;
+    }
+
+    private void putString(byte[] b) {
+        putString(b, 0, b.length);
+    }
+
+    private void putString(byte[] b, int from, int length) {
+        putInt(length);
+        putBytes(b, from, length);
+    }
+
+    private void putBytes(byte[] b, int from, int length) {
+        ensureScratch(length);
+        System.arraycopy(b, from, scratch, scratchLength, length);
+        scratchLength += length;
+    }
+
+    private void ensureScratch(int more) {
+        if(scratchLength + more > scratch.length){
+            scratch = Arrays.copyOf(scratch, Math.max(scratchLength + more, 2 * scratch.length));
+        }
+    }
+
+    private int readInt(int offset) {
+        return (keys[offset] & 0xFF) << 24 | (keys[offset + 1] & 0xFF) << 16
+                | (keys[offset + 2] & 0xFF) << 8 | (keys[offset + 3] & 0xFF);
+    }
+
+    private long readLong(int offset) {
+        return ((long) readInt(offset) << 32) | (readInt(offset + Integer.BYTES) & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,458 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.file.FileMgrBase;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/** The equijoin of two scans on lhsField = rhsField, computed by hashing.
+ *
+ * The scan builds an in-memory hash table (keyed by the join field) on the
+ * smaller input and then probes it with each record of the other.  When
+ * neither input fits in the memory budget, the scan falls back to a grace
+ * hash join: it partitions both inputs on the join field into temporary
+ * files (see SpillFile), and then joins each pair of matching partitions on
+ * its own, building on the smaller of the two.  A partition that still
+ * doesn't fit is partitioned again with a different hash, up to MAX_DEPTH
+ * times (after which it is built regardless: e.g., when most records share
+ * one join value).
+ *
+ * Which input is smaller is discovered by reading: the lhs is loaded first,
+ * and if it fits, the rhs is read only until it proves to be at least as
+ * large.  Memory is the estimated size of the loaded records (see
+ * SpillFile.estimate), not an exact count of the heap that they use.
+ *
+ * The join is performed by the first call to next(), not by the constructor.
+ * A field is read from the lhs if its schema has the field, else from the
+ * rhs.  Clients must close() the scan, which closes both inputs and deletes
+ * the scan's temporary files.
+ */
+public class HashJoinScan implements Scan {
+    /** The number of times that a partition may be re-partitioned. */
+    public static final int MAX_DEPTH = 3;
+    private static final int MAX_FANOUT = 32;
+
+    private final FileMgrBase fm;
+    private final Scan lhs;
+    private final Scan rhs;
+    private final SchemaBase lhsSchema;
+    private final SchemaBase rhsSchema;
+    private final Side left;
+    private final Side right;
+    private final long budget;
+    private final int fanout;
+
+    private boolean prepared = false;
+    private boolean closed = false;
+    private Map<DatumBase, List<DatumBase[]>> table;
+    private boolean buildIsLhs;
+    // the probe input while the whole join is in memory, else null
+    private Scan probe;
+    // grace mode: the partitions still to join, those joined, and the current one
+    private Deque<Partition> pending;
+    private List<Partition> done;
+    private Partition current;
+    private SpillFile.Reader probeReader;
+    private DatumBase[] probeRow;
+    private List<DatumBase[]> matches;
+    private int matchIndex;
+    private DatumBase[] buildRow;
+
+    /**
+     * Constructor.
+     *
+     * @param tx the tx whose FileMgr stores the temporary files
+     * @param lhs the left input
+     * @param lhsSchema the fields of the left input
+     * @param lhsField the left input's join field
+     * @param rhs the right input
+     * @param rhsSchema the fields of the right input
+     * @param rhsField the right input's join field
+     * @param memoryBudget the maximum (estimated) number of bytes of records
+     *                     held in memory at once
+     * @throws IllegalArgumentException if an argument is null, if an input
+     * lacks a field of its schema, if a join field isn't in its schema, if the
+     * join fields' types differ, or if memoryBudget isn't positive
+     */
+    public HashJoinScan(TxBase tx, Scan lhs, SchemaBase lhsSchema, String lhsField,
+                        Scan rhs, SchemaBase rhsSchema, String rhsField, long memoryBudget) {
+        if(tx == null || lhs == null || lhsSchema == null || lhsField == null
+                || rhs == null || rhsSchema == null || rhsField == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(memoryBudget < 1){
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        this.fm = ((Tx)tx).fileMgr();
+        this.lhs = lhs;
+        this.rhs = rhs;
+        this.lhsSchema = lhsSchema;
+        this.rhsSchema = rhsSchema;
+        this.left = new Side(lhs, lhsSchema, lhsField);
+        this.right = new Side(rhs, rhsSchema, rhsField);
+        if(left.types[left.key] != right.types[right.key]){
+            throw new IllegalArgumentException("Join fields " + lhsField + " and " + rhsField + " have different types");
+        }
+        this.budget = memoryBudget;
+        this.fanout = (int) Math.max(2, Math.min(MAX_FANOUT, memoryBudget / fm.blockSize()));
+    }
+
+    /** Constructor whose memory budget is the space of the buffers that are
+     * available when it is invoked.
+     *
+     * @see #HashJoinScan(TxBase, Scan, SchemaBase, String, Scan, SchemaBase, String, long)
+     */
+    public HashJoinScan(TxBase tx, Scan lhs, SchemaBase lhsSchema, String lhsField,
+                        Scan rhs, SchemaBase rhsSchema, String rhsField) {
+        this(tx, lhs, lhsSchema, lhsField, rhs, rhsSchema, rhsField,
+                tx == null ? 1 : Math.max(1, (long) tx.availableBuffs() * tx.blockSize()));
+    }
+
+    /** Returns true iff the join spilled its inputs to temporary files.
+     *
+     * @throws IllegalStateException if the join hasn't been performed yet
+     */
+    public boolean spilled() {
+        if(!prepared){
+            throw new IllegalStateException("Join hasn't started");
+        }
+        return probe == null;
+    }
+
+    @Override
+    public void beforeFirst() {
+        checkOpen();
+        matches = null;
+        if(!prepared){
+            return;
+        }
+        if(probe != null){
+            probe.beforeFirst();
+            return;
+        }
+        // rejoin every partition (the partitions themselves are kept)
+        if(current != null){
+            pending.addFirst(current);
+            current = null;
+        }
+        for(Partition p : done){
+            pending.addFirst(p);
+        }
+        done.clear();
+        probeReader = null;
+        table = null;
+    }
+
+    @Override
+    public boolean next() {
+        checkOpen();
+        if(!prepared){
+            prepare();
+        }
+        while(true){
+            if(matches != null && matchIndex < matches.size()){
+                buildRow = matches.get(matchIndex++);
+                return true;
+            }
+            if(!advanceProbe()){
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return isLiveProbe(fldname) ? probe.getInt(fldname) : getVal(fldname).asInt();
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return isLiveProbe(fldname) ? probe.getBoolean(fldname) : getVal(fldname).asBoolean();
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return isLiveProbe(fldname) ? probe.getDouble(fldname) : getVal(fldname).asDouble();
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return isLiveProbe(fldname) ? probe.getString(fldname) : getVal(fldname).asString();
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        if(buildRow == null){
+            throw new IllegalStateException("Scan isn't positioned on a record");
+        }
+        boolean inLhs = inLhs(fldname);
+        Side side = inLhs ? left : right;
+        int index = side.index(fldname);
+        if(inLhs == buildIsLhs){
+            return buildRow[index];
+        }
+        return probe != null ? probe.getVal(fldname) : probeRow[index];
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return lhsSchema.hasField(fldname) || rhsSchema.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return inLhs(fldname) ? lhsSchema.type(fldname) : rhsSchema.type(fldname);
+    }
+
+    /** Closes both inputs and deletes the scan's temporary files.  Closing a
+     * closed scan has no effect.
+     */
+    @Override
+    public void close() {
+        if(closed){
+            return;
+        }
+        closed = true;
+        lhs.close();
+        rhs.close();
+        if(pending != null){
+            List<Partition> all = new ArrayList<>(pending);
+            all.addAll(done);
+            if(current != null){
+                all.add(current);
+            }
+            for(Partition p : all){
+                p.lhs.delete();
+                p.rhs.delete();
+            }
+        }
+        table = null;
+        matches = null;
+    }
+
+    /** Builds the hash table: on the smaller input if either fits in the
+     * budget, else by partitioning both inputs.
+     */
+    private void prepare() {
+        prepared = true;
+        lhs.beforeFirst();
+        Table l = load(rows(left), left.key, budget);
+        if(l != null){
+            // build on the rhs only if it turns out to be smaller
+            rhs.beforeFirst();
+            Table r = load(rows(right), right.key, l.bytes - 1);
+            start(r != null ? r : l, r == null);
+            return;
+        }
+        rhs.beforeFirst();
+        Table r = load(rows(right), right.key, budget);
+        if(r != null){
+            start(r, false);
+            return;
+        }
+        pending = new ArrayDeque<>();
+        done = new ArrayList<>();
+        lhs.beforeFirst();
+        SpillFile[] lp = partition(rows(left), left, 0);
+        rhs.beforeFirst();
+        SpillFile[] rp = partition(rows(right), right, 0);
+        for(int i = 0; i < fanout; i++){
+            pending.add(new Partition(lp[i], rp[i], 1));
+        }
+    }
+
+    /** Starts an in-memory join, probing with the input not built on. */
+    private void start(Table t, boolean onLhs) {
+        table = t.rows;
+        buildIsLhs = onLhs;
+        probe = onLhs ? rhs : lhs;
+        probe.beforeFirst();
+    }
+
+    /** Moves to the next probe record that has matches, setting matches. */
+    private boolean advanceProbe() {
+        matches = null;
+        if(probe != null){
+            String key = (buildIsLhs ? right : left).keyName;
+            while(probe.next()){
+                List<DatumBase[]> m = table.get(probe.getVal(key));
+                if(m != null){
+                    setMatches(m);
+                    return true;
+                }
+            }
+            return false;
+        }
+        while(true){
+            if(probeReader != null){
+                int key = (buildIsLhs ? right : left).key;
+                DatumBase[] row;
+                while((row = probeReader.next()) != null){
+                    List<DatumBase[]> m = table.get(row[key]);
+                    if(m != null){
+                        probeRow = row;
+                        setMatches(m);
+                        return true;
+                    }
+                }
+                done.add(current);
+                current = null;
+                probeReader = null;
+                table = null;
+            }
+            if(pending.isEmpty()){
+                return false;
+            }
+            open(pending.pop());
+        }
+    }
+
+    private void setMatches(List<DatumBase[]> m) {
+        matches = m;
+        matchIndex = 0;
+    }
+
+    /** Loads the smaller side of a partition pair, or splits the pair if that
+     * side doesn't fit.
+     */
+    private void open(Partition p) {
+        if(p.lhs.count() == 0 || p.rhs.count() == 0){
+            done.add(p);
+            return;
+        }
+        boolean onLhs = p.lhs.count() <= p.rhs.count();
+        Side side = onLhs ? left : right;
+        SpillFile build = onLhs ? p.lhs : p.rhs;
+        Table t = load(build.reader()::next, side.key, p.depth < MAX_DEPTH ? budget : Long.MAX_VALUE);
+        if(t == null){
+            SpillFile[] lp = partition(p.lhs.reader()::next, left, p.depth);
+            SpillFile[] rp = partition(p.rhs.reader()::next, right, p.depth);
+            p.lhs.delete();
+            p.rhs.delete();
+            for(int i = 0; i < fanout; i++){
+                pending.addFirst(new Partition(lp[i], rp[i], p.depth + 1));
+            }
+            return;
+        }
+        table = t.rows;
+        buildIsLhs = onLhs;
+        current = p;
+        probeReader = (onLhs ? p.rhs : p.lhs).reader();
+    }
+
+    /** Returns a hash table of the rows, or null if they exceed the limit. */
+    private Table load(Supplier<DatumBase[]> rows, int key, long limit) {
+        Table t = new Table();
+        DatumBase[] row;
+        while((row = rows.get()) != null){
+            t.bytes += SpillFile.estimate(row);
+            if(t.bytes > limit){
+                return null;
+            }
+            t.rows.computeIfAbsent(row[key], k -> new ArrayList<>(1)).add(row);
+        }
+        return t;
+    }
+
+    /** Writes the rows to fanout files, by the hash of their join value. */
+    private SpillFile[] partition(Supplier<DatumBase[]> rows, Side side, int depth) {
+        SpillFile[] files = new SpillFile[fanout];
+        for(int i = 0; i < fanout; i++){
+            files[i] = new SpillFile(fm, "hashjoin", side.types);
+        }
+        DatumBase[] row;
+        while((row = rows.get()) != null){
+            files[bucket(row[side.key], depth)].write(row);
+        }
+        for(SpillFile f : files){
+            f.finish();
+        }
+        return files;
+    }
+
+    private int bucket(DatumBase key, int depth) {
+        // a different hash at each depth, so that a re-partitioning splits
+        int h = (key.hashCode() ^ (depth * 0x9E3779B9)) * 0x85EBCA6B;
+        h ^= h >>> 16;
+        return Math.floorMod(h, fanout);
+    }
+
+    private Supplier<DatumBase[]> rows(Side side) {
+        return () -> {
+            if(!side.scan.next()){
+                return null;
+            }
+            DatumBase[] row = new DatumBase[side.fields.length];
+            for(int i = 0; i < row.length; i++){
+                row[i] = side.scan.getVal(side.fields[i]);
+            }
+            return row;
+        };
+    }
+
+    private boolean inLhs(String fldname) {
+        if(lhsSchema.hasField(fldname)){
+            return true;
+        }
+        if(!rhsSchema.hasField(fldname)){
+            throw new IllegalArgumentException("Scan has no field " + fldname);
+        }
+        return false;
+    }
+
+    private boolean isLiveProbe(String fldname) {
+        return probe != null && buildRow != null && inLhs(fldname) != buildIsLhs;
+    }
+
+    private void checkOpen() {
+        if(closed){
+            throw new IllegalStateException("Scan is closed");
+        }
+    }
+
+    /** An input: its scan, fields (in schema order), and join field. */
+    private static final class Side {
+        final Scan scan;
+        final String[] fields;
+        final int[] types;
+        final String keyName;
+        final int key;
+
+        Side(Scan scan, SchemaBase schema, String keyName) {
+            this.scan = scan;
+            this.fields = schema.fields().toArray(new String[0]);
+            this.types = new int[fields.length];
+            for(int i = 0; i < fields.length; i++){
+                if(!scan.hasField(fields[i])){
+                    throw new IllegalArgumentException("Input has no field " + fields[i]);
+                }
+                types[i] = schema.type(fields[i]);
+            }
+            if(!schema.hasField(keyName)){
+                throw new IllegalArgumentException("Input has no join field " + keyName);
+            }
+            this.keyName = keyName;
+            this.key = index(keyName);
+        }
+
+        int index(String fldname) {
+            for(int i = 0; i < fields.length; i++){
+                if(fields[i].equals(fldname)){
+                    return i;
+                }
+            }
+            throw new IllegalArgumentException("Input has no field " + fldname);
+        }
+    }
+
+    private static final class Table {
+        final Map<DatumBase, List<DatumBase[]>> rows = new HashMap<>();
+        long bytes = 0;
+    }
+
+    private record Partition(SpillFile lhs, SpillFile rhs, int depth) {
+    }
+}
@@ -0,0 +1,186 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.index.IndexBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.record.TableScan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** The equijoin of an outer scan with a table that has an index on its join
+ * field: for each outer record, the index is probed with the record's join
+ * value, and each matching record of the table is paired with it.
+ *
+ * Probing reads a batch of outer records (up to BATCH_SIZE) at a time,
+ * collecting the RIDs that each one matches; the batch's (outer record, RID)
+ * pairs are then sorted by block and slot and the table's records visited
+ * with TableScan.moveToRid, so that each of the table's blocks is pinned at
+ * most once per batch rather than once per match.  The joined records are
+ * thus returned in RID order within a batch, not in outer order.
+ *
+ * A field is read from the outer scan if its schema has the field, else from
+ * the table.  Closing the scan closes the outer scan, the index, and the
+ * table scan.
+ */
+public class IndexJoinScan implements Scan {
+    /** The maximum number of outer records probed together. */
+    public static final int BATCH_SIZE = 256;
+    private static final Comparator<Match> MATCH_ORDER =
+            Comparator.comparing(Match::rid, IndexSelectScan.RID_ORDER);
+
+    private final Scan outer;
+    private final SchemaBase outerSchema;
+    private final String[] outerFields;
+    private final int joinIndex;
+    private final IndexBase idx;
+    private final TableScan ts;
+    private final List<Match> matches = new ArrayList<>();
+    private int position;
+    private boolean outerDone;
+    private Match current;
+
+    /**
+     * Constructor.
+     *
+     * @param outer the outer input
+     * @param outerSchema the fields of the outer input
+     * @param joinField the outer input's join field
+     * @param idx an index on the table's join field
+     * @param ts a scan of the indexed table
+     * @throws IllegalArgumentException if an argument is null, or if the outer
+     * input lacks a field of its schema or the join field
+     */
+    public IndexJoinScan(Scan outer, SchemaBase outerSchema, String joinField, IndexBase idx, TableScan ts) {
+        if(outer == null || outerSchema == null || joinField == null || idx == null || ts == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(!outerSchema.hasField(joinField)){
+            throw new IllegalArgumentException("Outer input has no join field " + joinField);
+        }
+        this.outer = outer;
+        this.outerSchema = outerSchema;
+        this.outerFields = outerSchema.fields().toArray(new String[0]);
+        int join = -1;
+        for(int i = 0; i < outerFields.length; i++){
+            if(!outer.hasField(outerFields[i])){
+                throw new IllegalArgumentException("Outer input has no field " + outerFields[i]);
+            }
+            if(outerFields[i].equals(joinField)){
+                join = i;
+            }
+        }
+        this.joinIndex = join;
+        this.idx = idx;
+        this.ts = ts;
+        beforeFirst();
+    }
+
+    @Override
+    public void beforeFirst() {
+        outer.beforeFirst();
+        matches.clear();
+        position = 0;
+        outerDone = false;
+        current = null;
+    }
+
+    @Override
+    public boolean next() {
+        while(position >= matches.size()){
+            if(outerDone){
+                current = null;
+                return false;
+            }
+            probeBatch();
+        }
+        current = matches.get(position++);
+        ts.moveToRid(current.rid);
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return isOuter(fldname) ? outerValue(fldname).asInt() : ts.getInt(fldname);
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return isOuter(fldname) ? outerValue(fldname).asBoolean() : ts.getBoolean(fldname);
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return isOuter(fldname) ? outerValue(fldname).asDouble() : ts.getDouble(fldname);
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return isOuter(fldname) ? outerValue(fldname).asString() : ts.getString(fldname);
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return isOuter(fldname) ? outerValue(fldname) : ts.getVal(fldname);
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return outerSchema.hasField(fldname) || ts.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return isOuter(fldname) ? outerSchema.type(fldname) : ts.getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        outer.close();
+        idx.close();
+        ts.close();
+    }
+
+    /** Probes the index with the next batch of outer records, replacing
+     * matches with their sorted (record, RID) pairs.
+     */
+    private void probeBatch() {
+        matches.clear();
+        position = 0;
+        for(int n = 0; n < BATCH_SIZE; n++){
+            if(!outer.next()){
+                outerDone = true;
+                break;
+            }
+            DatumBase[] row = new DatumBase[outerFields.length];
+            for(int i = 0; i < row.length; i++){
+                row[i] = outer.getVal(outerFields[i]);
+            }
+            idx.beforeFirst(row[joinIndex]);
+            while(idx.next()){
+                matches.add(new Match(row, idx.getRID()));
+            }
+        }
+        matches.sort(MATCH_ORDER);
+    }
+
+    private boolean isOuter(String fldname) {
+        return outerSchema.hasField(fldname);
+    }
+
+    private DatumBase outerValue(String fldname) {
+        if(current == null){
+            throw new IllegalStateException("Scan isn't positioned on a record");
+        }
+        for(int i = 0; i < outerFields.length; i++){
+            if(outerFields[i].equals(fldname)){
+                return current.row[i];
+            }
+        }
+        throw new IllegalArgumentException("Scan has no field " + fldname);
+    }
+
+    private record Match(DatumBase[] row, RID rid) {
+    }
+}
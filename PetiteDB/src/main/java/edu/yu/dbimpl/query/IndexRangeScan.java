@@ -0,0 +1,137 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.index.BTreeIndex;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.TableScan;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The records of a table whose indexed field lies in a range, found through
+ * a B+-tree index rather than by scanning the table.
+ *
+ * An unordered scan fetches the records as IndexSelectScan does: it reads the
+ * matching RIDs a batch (of up to IndexSelectScan.BATCH_SIZE) at a time and
+ * visits them in file order.  An ordered scan visits each record as the index
+ * reaches it, so that the records are returned in ascending key order.
+ *
+ * Closing the scan closes both the index and the table scan.
+ */
+public class IndexRangeScan implements Scan {
+    private final TableScan ts;
+    private final BTreeIndex idx;
+    private final DatumBase lo;
+    private final boolean loInclusive;
+    private final DatumBase hi;
+    private final boolean hiInclusive;
+    private final boolean ordered;
+    private final List<RID> rids = new ArrayList<>();
+    private int position;
+    private boolean indexDone;
+
+    /**
+     * Constructor: the scan is positioned before the first record in the
+     * range.
+     *
+     * @param ts a scan of the indexed table
+     * @param idx a B+-tree index on a field of the table
+     * @param lo the range's lower bound, or null if it has none
+     * @param loInclusive true iff a key equal to lo is in the range
+     * @param hi the range's upper bound, or null if it has none
+     * @param hiInclusive true iff a key equal to hi is in the range
+     * @param ordered true iff the records must be returned in key order
+     * @throws IllegalArgumentException if ts or idx is null, or if a bound is
+     * incompatible with the index
+     */
+    public IndexRangeScan(TableScan ts, BTreeIndex idx, DatumBase lo, boolean loInclusive,
+                          DatumBase hi, boolean hiInclusive, boolean ordered) {
+        if(ts == null || idx == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.ts = ts;
+        this.idx = idx;
+        this.lo = lo;
+        this.loInclusive = loInclusive;
+        this.hi = hi;
+        this.hiInclusive = hiInclusive;
+        this.ordered = ordered;
+        beforeFirst();
+    }
+
+    @Override
+    public void beforeFirst() {
+        idx.beforeRange(lo, loInclusive, hi, hiInclusive);
+        rids.clear();
+        position = 0;
+        indexDone = false;
+    }
+
+    @Override
+    public boolean next() {
+        if(ordered){
+            if(!idx.next()){
+                return false;
+            }
+            ts.moveToRid(idx.getRID());
+            return true;
+        }
+        while(position >= rids.size()){
+            if(indexDone){
+                return false;
+            }
+            rids.clear();
+            position = 0;
+            while(rids.size() < IndexSelectScan.BATCH_SIZE){
+                if(!idx.next()){
+                    indexDone = true;
+                    break;
+                }
+                rids.add(idx.getRID());
+            }
+            rids.sort(IndexSelectScan.RID_ORDER);
+        }
+        ts.moveToRid(rids.get(position++));
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return ts.getInt(fldname);
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return ts.getBoolean(fldname);
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return ts.getDouble(fldname);
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return ts.getString(fldname);
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return ts.getVal(fldname);
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return ts.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return ts.getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        idx.close();
+        ts.close();
+    }
+}
@@ -0,0 +1,124 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.index.IndexBase;
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.TableScan;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** The records of a table whose indexed field equals a search key, found
+ * through the index rather than by scanning the table.
+ *
+ * The scan reads the matching RIDs from the index a batch (of up to
+ * BATCH_SIZE) at a time, sorts each batch by block and slot, and then visits
+ * the records with TableScan.moveToRid, so that each of the table's blocks is
+ * pinned at most once per batch, and the records are read in file order.
+ * The records are thus returned in RID order within a batch, not in the
+ * index's order.
+ *
+ * Closing the scan closes both the index and the table scan.
+ */
+public class IndexSelectScan implements Scan {
+    /** The maximum number of RIDs sorted and fetched together. */
+    public static final int BATCH_SIZE = 1024;
+    static final Comparator<RID> RID_ORDER =
+            Comparator.comparingInt(RID::blockNumber).thenComparingInt(RID::slot);
+
+    private final TableScan ts;
+    private final IndexBase idx;
+    private final DatumBase key;
+    private final List<RID> rids = new ArrayList<>();
+    private int position;
+    private boolean indexDone;
+
+    /**
+     * Constructor: the scan is positioned before the first matching record.
+     *
+     * @param ts a scan of the indexed table
+     * @param idx an index on a field of the table
+     * @param key the search key
+     * @throws IllegalArgumentException if an argument is null, or if the key
+     * is incompatible with the index
+     */
+    public IndexSelectScan(TableScan ts, IndexBase idx, DatumBase key) {
+        if(ts == null || idx == null || key == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.ts = ts;
+        this.idx = idx;
+        this.key = key;
+        beforeFirst();
+    }
+
+    @Override
+    public void beforeFirst() {
+        idx.beforeFirst(key);
+        rids.clear();
+        position = 0;
+        indexDone = false;
+    }
+
+    @Override
+    public boolean next() {
+        while(position >= rids.size()){
+            if(indexDone){
+                return false;
+            }
+            rids.clear();
+            position = 0;
+            while(rids.size() < BATCH_SIZE){
+                if(!idx.next()){
+                    indexDone = true;
+                    break;
+                }
+                rids.add(idx.getRID());
+            }
+            rids.sort(RID_ORDER);
+        }
+        ts.moveToRid(rids.get(position++));
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return ts.getInt(fldname);
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return ts.getBoolean(fldname);
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return ts.getDouble(fldname);
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return ts.getString(fldname);
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return ts.getVal(fldname);
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return ts.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return ts.getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        idx.close();
+        ts.close();
+    }
+}
@@ -0,0 +1,179 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** The equijoin of two scans on lhsField = rhsField, computed by sorting both
+ * inputs on their join field (see SortScan) and merging them.
+ *
+ * The merge reads each input once.  The rhs records that share a join value
+ * (a "group") are held in memory while the lhs records with that value are
+ * paired with them, so memory is bounded by the largest rhs group rather than
+ * by either input.
+ *
+ * A field is read from the lhs if its schema has the field, else from the
+ * rhs.  Clients must close() the scan, which closes both sorts (and so both
+ * inputs).
+ */
+public class MergeJoinScan implements Scan {
+    private final SortScan lhs;
+    private final SortScan rhs;
+    private final SchemaBase lhsSchema;
+    private final SchemaBase rhsSchema;
+    private final String lhsField;
+    private final String rhsField;
+
+    private boolean started;
+    private boolean lhsHas;
+    private boolean rhsHas;
+    private DatumBase groupKey;
+    private List<DatumBase[]> group;
+    private int groupIndex;
+    private DatumBase[] rhsRow;
+
+    /**
+     * Constructor: the inputs are sorted with SortScan's default budget and
+     * fan-in.
+     *
+     * @param tx the tx whose FileMgr stores the sorts' runs
+     * @param lhs the left input
+     * @param lhsSchema the fields of the left input
+     * @param lhsField the left input's join field
+     * @param rhs the right input
+     * @param rhsSchema the fields of the right input
+     * @param rhsField the right input's join field
+     * @throws IllegalArgumentException if an argument is null, if an input
+     * lacks a field of its schema, if a join field isn't in its schema, or if
+     * the join fields' types differ
+     */
+    public MergeJoinScan(TxBase tx, Scan lhs, SchemaBase lhsSchema, String lhsField,
+                         Scan rhs, SchemaBase rhsSchema, String rhsField) {
+        if(tx == null || lhs == null || lhsSchema == null || lhsField == null
+                || rhs == null || rhsSchema == null || rhsField == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(!lhsSchema.hasField(lhsField) || !rhsSchema.hasField(rhsField)){
+            throw new IllegalArgumentException("Join fields must be in their inputs' schemas");
+        }
+        if(lhsSchema.type(lhsField) != rhsSchema.type(rhsField)){
+            throw new IllegalArgumentException("Join fields " + lhsField + " and " + rhsField + " have different types");
+        }
+        this.lhs = new SortScan(tx, lhs, lhsSchema, List.of(lhsField));
+        this.rhs = new SortScan(tx, rhs, rhsSchema, List.of(rhsField));
+        this.lhsSchema = lhsSchema;
+        this.rhsSchema = rhsSchema;
+        this.lhsField = lhsField;
+        this.rhsField = rhsField;
+    }
+
+    @Override
+    public void beforeFirst() {
+        lhs.beforeFirst();
+        rhs.beforeFirst();
+        started = false;
+        group = null;
+        rhsRow = null;
+    }
+
+    @Override
+    public boolean next() {
+        if(!started){
+            started = true;
+            lhsHas = lhs.next();
+            rhsHas = rhs.next();
+        }else if(group != null && groupIndex >= group.size()){
+            // the current lhs record has met its group: try the next one
+            lhsHas = lhs.next();
+            if(lhsHas && lhs.getVal(lhsField).compareTo(groupKey) == 0){
+                groupIndex = 0;
+            }else{
+                group = null;
+            }
+        }
+        if(group == null){
+            if(!findGroup()){
+                rhsRow = null;
+                return false;
+            }
+        }
+        rhsRow = group.get(groupIndex++);
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return getVal(fldname).asInt();
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return getVal(fldname).asBoolean();
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return getVal(fldname).asDouble();
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return getVal(fldname).asString();
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        if(rhsRow == null){
+            throw new IllegalStateException("Scan isn't positioned on a record");
+        }
+        if(lhsSchema.hasField(fldname)){
+            return lhs.getVal(fldname);
+        }
+        return rhsRow[rhs.index(fldname)];
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return lhsSchema.hasField(fldname) || rhsSchema.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return lhsSchema.hasField(fldname) ? lhsSchema.type(fldname) : rhs.getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        lhs.close();
+        rhs.close();
+        group = null;
+    }
+
+    /** Advances both inputs to the next join value that they share, and reads
+     * the rhs records with that value into group.
+     *
+     * @return false if the inputs share no more join values
+     */
+    private boolean findGroup() {
+        while(lhsHas && rhsHas){
+            int cmp = lhs.getVal(lhsField).compareTo(rhs.getVal(rhsField));
+            if(cmp < 0){
+                lhsHas = lhs.next();
+            }else if(cmp > 0){
+                rhsHas = rhs.next();
+            }else{
+                groupKey = rhs.getVal(rhsField);
+                group = new ArrayList<>();
+                while(rhsHas && rhs.getVal(rhsField).compareTo(groupKey) == 0){
+                    group.add(rhs.current());
+                    rhsHas = rhs.next();
+                }
+                groupIndex = 0;
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,151 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** A conjunction of Terms.  The empty predicate is satisfied by every record.
+ */
+public class Predicate {
+    private final List<Term> terms = new ArrayList<>();
+
+    /** Constructor for the empty predicate. */
+    public Predicate() {
+    }
+
+    /** Constructor for a predicate holding a single term. */
+    public Predicate(Term t) {
+        if(t == null){
+            throw new IllegalArgumentException("Term can't be null");
+        }
+        terms.add(t);
+    }
+
+    /** Adds the terms of the specified predicate to this one. */
+    public void conjoinWith(Predicate pred) {
+        terms.addAll(pred.terms);
+    }
+
+    /** Returns the predicate's terms (unmodifiable). */
+    public List<Term> terms() {
+        return Collections.unmodifiableList(terms);
+    }
+
+    public boolean isEmpty() {
+        return terms.isEmpty();
+    }
+
+    /** Returns true iff every term holds for the scan's current record. */
+    public boolean isSatisfied(Scan s) {
+        for(Term t : terms){
+            if(!t.isSatisfied(s)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns the sub-predicate of the terms that apply to the scan. */
+    public Predicate selectSubPred(Scan s) {
+        Predicate result = new Predicate();
+        for(Term t : terms){
+            if(t.appliesTo(s)){
+                result.terms.add(t);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the sub-predicate of the terms that apply to a record of the
+     * schema.
+     */
+    public Predicate selectSubPred(SchemaBase sch) {
+        Predicate result = new Predicate();
+        for(Term t : terms){
+            if(t.appliesTo(sch)){
+                result.terms.add(t);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the sub-predicate of the terms that apply to the join of two
+     * schemas, but to neither schema alone.
+     */
+    public Predicate joinSubPred(SchemaBase sch1, SchemaBase sch2) {
+        Schema both = new Schema();
+        both.addAll(sch1);
+        both.addAll(sch2);
+        Predicate result = new Predicate();
+        for(Term t : terms){
+            if(!t.appliesTo(sch1) && !t.appliesTo(sch2) && t.appliesTo(both)){
+                result.terms.add(t);
+            }
+        }
+        return result;
+    }
+
+    /** Returns the constant that a term equates with the field, or null if
+     * there's no such term.
+     */
+    public DatumBase equatesWithConstant(String fldname) {
+        for(Term t : terms){
+            DatumBase c = t.equatesWithConstant(fldname);
+            if(c != null){
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the constant or parameter that a term equates with the field,
+     * or null if there's no such term.
+     */
+    public Expression equatesWithValue(String fldname) {
+        for(Term t : terms){
+            Expression e = t.equatesWithValue(fldname);
+            if(e != null){
+                return e;
+            }
+        }
+        return null;
+    }
+
+    /** Returns the predicate with its parameters replaced by their values
+     * (see Expression#bind).
+     *
+     * @throws IllegalArgumentException if a parameter has no value
+     */
+    public Predicate bind(List<DatumBase> params) {
+        Predicate result = new Predicate();
+        for(Term t : terms){
+            result.terms.add(t.bind(params));
+        }
+        return result;
+    }
+
+    /** Returns the field that a term equates with the field, or null if
+     * there's no such term.
+     */
+    public String equatesWithField(String fldname) {
+        for(Term t : terms){
+            String f = t.equatesWithField(fldname);
+            if(f != null){
+                return f;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for(Term t : terms){
+            parts.add(t.toString());
+        }
+        return String.join(" and ", parts);
+    }
+}
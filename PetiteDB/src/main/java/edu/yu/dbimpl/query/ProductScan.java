@@ -0,0 +1,100 @@
+package edu.yu.dbimpl.query;
+
+/** The cartesian product of two scans: every record of the first scan paired
+ * with every record of the second.  The second scan is rescanned (see
+ * beforeFirst) once per record of the first.  A field is read from the first
+ * scan if it has the field, else from the second.
+ */
+public class ProductScan implements Scan {
+    private final Scan s1;
+    private final Scan s2;
+    private boolean positioned;
+
+    /**
+     * Constructor.
+     *
+     * @param s1 the outer scan
+     * @param s2 the inner scan
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public ProductScan(Scan s1, Scan s2) {
+        if(s1 == null || s2 == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.s1 = s1;
+        this.s2 = s2;
+        beforeFirst();
+    }
+
+    @Override
+    public void beforeFirst() {
+        s1.beforeFirst();
+        positioned = s1.next();
+        s2.beforeFirst();
+    }
+
+    @Override
+    public boolean next() {
+        if(!positioned){
+            return false;
+        }
+        if(s2.next()){
+            return true;
+        }
+        s2.beforeFirst();
+        // an empty inner scan makes the product empty
+        positioned = s1.next() && s2.next();
+        return positioned;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return scanFor(fldname).getInt(fldname);
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return scanFor(fldname).getBoolean(fldname);
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return scanFor(fldname).getDouble(fldname);
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return scanFor(fldname).getString(fldname);
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return scanFor(fldname).getVal(fldname);
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return s1.hasField(fldname) || s2.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return scanFor(fldname).getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        s1.close();
+        s2.close();
+    }
+
+    private Scan scanFor(String fldname) {
+        if(s1.hasField(fldname)){
+            return s1;
+        }
+        if(s2.hasField(fldname)){
+            return s2;
+        }
+        throw new IllegalArgumentException("field " + fldname + " not found");
+    }
+}
@@ -0,0 +1,89 @@
+package edu.yu.dbimpl.query;
+
+import java.util.List;
+
+/** A scan of the records of an underlying scan, restricted to the specified
+ * fields.
+ */
+public class ProjectScan implements Scan {
+    private final Scan s;
+    private final List<String> fields;
+
+    /**
+     * Constructor.
+     *
+     * @param s the underlying scan
+     * @param fields the fields to keep
+     * @throws IllegalArgumentException if an argument is null, or if the
+     * underlying scan lacks one of the fields
+     */
+    public ProjectScan(Scan s, List<String> fields) {
+        if(s == null || fields == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        for(String fldname : fields){
+            if(!s.hasField(fldname)){
+                throw new IllegalArgumentException("Underlying scan has no field " + fldname);
+            }
+        }
+        this.s = s;
+        this.fields = List.copyOf(fields);
+    }
+
+    @Override
+    public void beforeFirst() {
+        s.beforeFirst();
+    }
+
+    @Override
+    public boolean next() {
+        return s.next();
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return s.getInt(check(fldname));
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return s.getBoolean(check(fldname));
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return s.getDouble(check(fldname));
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return s.getString(check(fldname));
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return s.getVal(check(fldname));
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return fields.contains(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return s.getType(check(fldname));
+    }
+
+    @Override
+    public void close() {
+        s.close();
+    }
+
+    private String check(String fldname) {
+        if(!fields.contains(fldname)){
+            throw new IllegalArgumentException("field " + fldname + " not found");
+        }
+        return fldname;
+    }
+}
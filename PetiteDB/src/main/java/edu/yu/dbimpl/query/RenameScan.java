@@ -0,0 +1,96 @@
+package edu.yu.dbimpl.query;
+
+/** A scan of the records of an underlying scan in which one field is known by
+ * a new name (e.g., to tell apart same-named fields of the two sides of a
+ * ProductScan).  The field's old name is no longer visible.
+ */
+public class RenameScan implements Scan {
+    private final Scan s;
+    private final String oldName;
+    private final String newName;
+
+    /**
+     * Constructor.
+     *
+     * @param s the underlying scan
+     * @param oldName the field's name in the underlying scan
+     * @param newName the field's name in this scan
+     * @throws IllegalArgumentException if an argument is null, if the
+     * underlying scan lacks oldName, or already has newName
+     */
+    public RenameScan(Scan s, String oldName, String newName) {
+        if(s == null || oldName == null || newName == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(!s.hasField(oldName)){
+            throw new IllegalArgumentException("Underlying scan has no field " + oldName);
+        }
+        if(!oldName.equals(newName) && s.hasField(newName)){
+            throw new IllegalArgumentException("Underlying scan already has field " + newName);
+        }
+        this.s = s;
+        this.oldName = oldName;
+        this.newName = newName;
+    }
+
+    @Override
+    public void beforeFirst() {
+        s.beforeFirst();
+    }
+
+    @Override
+    public boolean next() {
+        return s.next();
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return s.getInt(map(fldname));
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return s.getBoolean(map(fldname));
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return s.getDouble(map(fldname));
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return s.getString(map(fldname));
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return s.getVal(map(fldname));
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return fldname.equals(newName) || (!fldname.equals(oldName) && s.hasField(fldname));
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return s.getType(map(fldname));
+    }
+
+    @Override
+    public void close() {
+        s.close();
+    }
+
+    /** Maps a field name of this scan to the underlying scan's name. */
+    private String map(String fldname) {
+        if(fldname.equals(newName)){
+            return oldName;
+        }
+        if(fldname.equals(oldName)){
+            throw new IllegalArgumentException("field " + fldname + " not found");
+        }
+        return fldname;
+    }
+}
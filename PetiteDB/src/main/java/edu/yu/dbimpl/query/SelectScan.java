@@ -0,0 +1,143 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.RID;
+import edu.yu.dbimpl.record.TableScan;
+
+/** A scan of the records of an underlying scan that satisfy a predicate.
+ *
+ * If the underlying scan is a TableScan, the predicate's terms that compare
+ * the table's fields with constants (or with each other) are pushed into the
+ * TableScan (see TableScan#pushPredicate), which rejects records against the
+ * page's bytes before any Datum is built; only the remaining terms are
+ * evaluated here.
+ *
+ * A select scan is updatable iff its underlying scan is: the update methods
+ * apply to the underlying scan's current record.
+ */
+public class SelectScan implements UpdateScan {
+    private final Scan s;
+    private final Predicate residual;
+
+    /**
+     * Constructor.
+     *
+     * @param s the underlying scan
+     * @param pred the predicate that records must satisfy
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public SelectScan(Scan s, Predicate pred) {
+        if(s == null || pred == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.s = s;
+        this.residual = s instanceof TableScan ts ? ts.pushPredicate(pred) : pred;
+    }
+
+    @Override
+    public void beforeFirst() {
+        s.beforeFirst();
+    }
+
+    @Override
+    public boolean next() {
+        while(s.next()){
+            if(residual.isSatisfied(s)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return s.getInt(fldname);
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return s.getBoolean(fldname);
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return s.getDouble(fldname);
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return s.getString(fldname);
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return s.getVal(fldname);
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return s.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        return s.getType(fldname);
+    }
+
+    @Override
+    public void close() {
+        s.close();
+    }
+
+    @Override
+    public void setVal(String fldname, DatumBase val) {
+        updateScan().setVal(fldname, val);
+    }
+
+    @Override
+    public void setInt(String fldname, int val) {
+        updateScan().setInt(fldname, val);
+    }
+
+    @Override
+    public void setDouble(String fldname, double val) {
+        updateScan().setDouble(fldname, val);
+    }
+
+    @Override
+    public void setBoolean(String fldname, boolean val) {
+        updateScan().setBoolean(fldname, val);
+    }
+
+    @Override
+    public void setString(String fldname, String val) {
+        updateScan().setString(fldname, val);
+    }
+
+    @Override
+    public void insert() {
+        updateScan().insert();
+    }
+
+    @Override
+    public void delete() {
+        updateScan().delete();
+    }
+
+    @Override
+    public RID getRid() {
+        return updateScan().getRid();
+    }
+
+    @Override
+    public void moveToRid(RID rid) {
+        updateScan().moveToRid(rid);
+    }
+
+    /** @throws IllegalStateException if the underlying scan isn't updatable */
+    private UpdateScan updateScan() {
+        if(!(s instanceof UpdateScan us)){
+            throw new IllegalStateException("Underlying scan isn't updatable");
+        }
+        return us;
+    }
+}
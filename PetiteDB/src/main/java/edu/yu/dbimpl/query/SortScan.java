@@ -0,0 +1,360 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.file.FileMgrBase;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.*;
+
+/** The records of a scan, sorted (ascending) on one or more fields, by an
+ * external merge sort.
+ *
+ * Run generation uses replacement selection: the records are read into a
+ * heap that holds as many records as the memory budget allows, and the
+ * smallest record is written to the current run each time room is needed for
+ * the next one.  A record smaller than the last one written waits in the heap
+ * for the next run, so that the runs are (for random input) about twice the
+ * size of the heap, and a sorted input produces a single run.  An input that
+ * fits in the heap is sorted in memory, and never written.
+ *
+ * The runs (see SpillFile) are then merged fanIn at a time, each merge
+ * holding one block per run, until at most fanIn runs remain; next() merges
+ * those.  By default the fan-in is the number of buffers available when the
+ * scan is constructed (BufferMgr.available), and the memory budget is their
+ * space, so that the sort uses about as much memory as the free buffers.
+ *
+ * The sort is performed by the first call to next(), which reads the whole
+ * input and then closes it.  Clients must close() the scan, which deletes its
+ * temporary files.
+ */
+public class SortScan implements Scan {
+    private final FileMgrBase fm;
+    private final Scan src;
+    private final SchemaBase schema;
+    private final String[] fields;
+    private final int[] types;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final Comparator<DatumBase[]> comparator;
+    private final long budget;
+    private final int fanIn;
+
+    private boolean prepared = false;
+    private boolean srcClosed = false;
+    private boolean closed = false;
+    // the sorted records if the input fit in memory, else null
+    private List<DatumBase[]> sorted;
+    private int position;
+    // the runs that next() merges
+    private List<SpillFile> runs = new ArrayList<>();
+    private PriorityQueue<Head> merge;
+    private DatumBase[] row;
+
+    /**
+     * Constructor.
+     *
+     * @param tx the tx whose FileMgr stores the runs
+     * @param src the input
+     * @param schema the fields of the input
+     * @param sortFields the fields to sort on, most significant first
+     * @param memoryBudget the maximum (estimated) number of bytes of records
+     *                     held in memory at once during run generation
+     * @param fanIn the maximum number of runs merged at once
+     * @throws IllegalArgumentException if an argument is null, if the input
+     * lacks a field of its schema, if there are no sort fields or a sort field
+     * isn't in the schema, if memoryBudget isn't positive, or if fanIn is less
+     * than 2
+     */
+    public SortScan(TxBase tx, Scan src, SchemaBase schema, List<String> sortFields, long memoryBudget, int fanIn) {
+        if(tx == null || src == null || schema == null || sortFields == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(sortFields.isEmpty()){
+            throw new IllegalArgumentException("Must sort on at least one field");
+        }
+        if(memoryBudget < 1){
+            throw new IllegalArgumentException("Memory budget must be positive");
+        }
+        if(fanIn < 2){
+            throw new IllegalArgumentException("Fan-in must be at least 2");
+        }
+        this.fm = ((Tx)tx).fileMgr();
+        this.src = src;
+        this.schema = schema;
+        this.fields = schema.fields().toArray(new String[0]);
+        this.types = new int[fields.length];
+        for(int i = 0; i < fields.length; i++){
+            if(!src.hasField(fields[i])){
+                throw new IllegalArgumentException("Input has no field " + fields[i]);
+            }
+            types[i] = schema.type(fields[i]);
+            indexes.put(fields[i], i);
+        }
+        int[] keys = new int[sortFields.size()];
+        for(int k = 0; k < keys.length; k++){
+            keys[k] = index(sortFields.get(k));
+        }
+        this.comparator = (a, b) -> {
+            for(int key : keys){
+                int cmp = a[key].compareTo(b[key]);
+                if(cmp != 0){
+                    return cmp;
+                }
+            }
+            return 0;
+        };
+        this.budget = memoryBudget;
+        this.fanIn = fanIn;
+    }
+
+    /** Constructor whose fan-in is the number of buffers that are available
+     * when it is invoked, and whose memory budget is their space.
+     *
+     * @see #SortScan(TxBase, Scan, SchemaBase, List, long, int)
+     */
+    public SortScan(TxBase tx, Scan src, SchemaBase schema, List<String> sortFields) {
+        this(tx, src, schema, sortFields,
+                tx == null ? 1 : Math.max(1, (long) tx.availableBuffs() * tx.blockSize()),
+                tx == null ? 2 : Math.max(2, tx.availableBuffs()));
+    }
+
+    /** Returns the number of runs that next() merges (0 if the input was
+     * sorted in memory).
+     *
+     * @throws IllegalStateException if the sort hasn't been performed yet
+     */
+    public int runCount() {
+        if(!prepared){
+            throw new IllegalStateException("Sort hasn't started");
+        }
+        return runs.size();
+    }
+
+    @Override
+    public void beforeFirst() {
+        checkOpen();
+        row = null;
+        if(!prepared){
+            return;
+        }
+        if(sorted != null){
+            position = 0;
+        }else{
+            openMerge();
+        }
+    }
+
+    @Override
+    public boolean next() {
+        checkOpen();
+        if(!prepared){
+            prepare();
+        }
+        if(sorted != null){
+            row = position < sorted.size() ? sorted.get(position++) : null;
+            return row != null;
+        }
+        Head head = merge.poll();
+        if(head == null){
+            row = null;
+            return false;
+        }
+        row = head.row;
+        DatumBase[] following = head.reader.next();
+        if(following != null){
+            merge.add(new Head(head.reader, following));
+        }
+        return true;
+    }
+
+    @Override
+    public int getInt(String fldname) {
+        return getVal(fldname).asInt();
+    }
+
+    @Override
+    public boolean getBoolean(String fldname) {
+        return getVal(fldname).asBoolean();
+    }
+
+    @Override
+    public double getDouble(String fldname) {
+        return getVal(fldname).asDouble();
+    }
+
+    @Override
+    public String getString(String fldname) {
+        return getVal(fldname).asString();
+    }
+
+    @Override
+    public DatumBase getVal(String fldname) {
+        return current()[index(fldname)];
+    }
+
+    @Override
+    public boolean hasField(String fldname) {
+        return schema.hasField(fldname);
+    }
+
+    @Override
+    public int getType(String fldname) {
+        index(fldname);
+        return schema.type(fldname);
+    }
+
+    /** Closes the input (if the sort hasn't already) and deletes the scan's
+     * temporary files.  Closing a closed scan has no effect.
+     */
+    @Override
+    public void close() {
+        if(closed){
+            return;
+        }
+        closed = true;
+        if(!srcClosed){
+            src.close();
+        }
+        for(SpillFile run : runs){
+            run.delete();
+        }
+        sorted = null;
+        merge = null;
+    }
+
+    /** Returns the current record's values, in schema order. */
+    DatumBase[] current() {
+        if(row == null){
+            throw new IllegalStateException("Scan isn't positioned on a record");
+        }
+        return row;
+    }
+
+    /** Returns the position of the field in the records' values. */
+    int index(String fldname) {
+        Integer index = indexes.get(fldname);
+        if(index == null){
+            throw new IllegalArgumentException("Scan has no field " + fldname);
+        }
+        return index;
+    }
+
+    private void prepare() {
+        prepared = true;
+        generateRuns();
+        src.close();
+        srcClosed = true;
+        if(sorted != null){
+            return;
+        }
+        // merge the oldest runs first, so that the runs stay of similar size
+        while(runs.size() > fanIn){
+            List<SpillFile> group = new ArrayList<>(runs.subList(0, fanIn));
+            runs.subList(0, fanIn).clear();
+            SpillFile out = newRun();
+            runs.add(out);
+            openMerge(group);
+            while(next()){
+                out.write(row);
+            }
+            out.finish();
+            for(SpillFile run : group){
+                run.delete();
+            }
+        }
+        openMerge();
+    }
+
+    /** Reads the input into runs by replacement selection, or into sorted if
+     * it fits in memory.
+     */
+    private void generateRuns() {
+        PriorityQueue<Entry> heap = new PriorityQueue<>((a, b) ->
+                a.run != b.run ? Integer.compare(a.run, b.run) : comparator.compare(a.row, b.row));
+        long bytes = 0;
+        Writer writer = new Writer();
+        src.beforeFirst();
+        while(src.next()){
+            DatumBase[] r = new DatumBase[fields.length];
+            for(int i = 0; i < r.length; i++){
+                r[i] = src.getVal(fields[i]);
+            }
+            long size = SpillFile.estimate(r);
+            while(bytes + size > budget && !heap.isEmpty()){
+                Entry e = heap.poll();
+                bytes -= e.size;
+                writer.write(e);
+            }
+            // a record that sorts before the last one written waits for the next run
+            int run = writer.last != null && comparator.compare(r, writer.last) < 0 ? writer.run + 1 : writer.run;
+            heap.add(new Entry(r, run, size));
+            bytes += size;
+        }
+        if(runs.isEmpty()){
+            sorted = new ArrayList<>(heap.size());
+            while(!heap.isEmpty()){
+                sorted.add(heap.poll().row);
+            }
+            return;
+        }
+        while(!heap.isEmpty()){
+            writer.write(heap.poll());
+        }
+        writer.out.finish();
+    }
+
+    private void openMerge() {
+        openMerge(runs);
+    }
+
+    /** Positions next() before the merge of the specified runs. */
+    private void openMerge(List<SpillFile> group) {
+        merge = new PriorityQueue<>(Math.max(1, group.size()), (a, b) -> comparator.compare(a.row, b.row));
+        for(SpillFile run : group){
+            SpillFile.Reader reader = run.reader();
+            DatumBase[] first = reader.next();
+            if(first != null){
+                merge.add(new Head(reader, first));
+            }
+        }
+        row = null;
+    }
+
+    private SpillFile newRun() {
+        return new SpillFile(fm, "sort", types);
+    }
+
+    private void checkOpen() {
+        if(closed){
+            throw new IllegalStateException("Scan is closed");
+        }
+    }
+
+    /** Writes the heap's records to the runs, starting a run when the heap's
+     * smallest record belongs to the next one.
+     */
+    private class Writer {
+        SpillFile out;
+        int run = 0;
+        DatumBase[] last;
+
+        void write(Entry e) {
+            if(out == null || e.run != run){
+                if(out != null){
+                    out.finish();
+                }
+                out = newRun();
+                runs.add(out);
+                run = e.run;
+            }
+            out.write(e.row);
+            last = e.row;
+        }
+    }
+
+    private record Entry(DatumBase[] row, int run, long size) {
+    }
+
+    private record Head(SpillFile.Reader reader, DatumBase[] row) {
+    }
+}
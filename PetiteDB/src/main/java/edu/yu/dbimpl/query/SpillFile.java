@@ -0,0 +1,168 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.file.FileMgr;
+import edu.yu.dbimpl.file.FileMgrBase;
+import edu.yu.dbimpl.file.Page;
+import edu.yu.dbimpl.file.PageBase;
+
+import java.sql.Types;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** A temporary file of rows that an operator writes once, sequentially, and
+ * then reads back (any number of times), sequentially.  The file is read and
+ * written through the FileMgr a block at a time, bypassing the buffer pool,
+ * the log, and the lock table: it is private to its operator, and is deleted
+ * rather than recovered.
+ *
+ * Each block holds [row count] followed by its rows, each row being its
+ * values in order, encoded as a Page encodes them.  A row never spans blocks.
+ */
+final class SpillFile {
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final int ROW_OVERHEAD = 48;
+    private static final int FIELD_OVERHEAD = 16;
+
+    private final FileMgrBase fm;
+    private final String filename;
+    private final int[] types;
+    private final Page page;
+    private int blocks = 0;
+    private int count = 0;
+    private int pageRows = 0;
+    private int pageOffset = Integer.BYTES;
+    private boolean finished = false;
+
+    /**
+     * Constructor: creates an empty file.
+     *
+     * @param fm the FileMgr that stores the file
+     * @param prefix identifies the operator, as the start of the file's name
+     * @param types the types (java.sql.Types constants) of the rows' values
+     */
+    SpillFile(FileMgrBase fm, String prefix, int[] types) {
+        this.fm = fm;
+        this.filename = "temp_" + prefix + nextId.incrementAndGet();
+        this.types = types;
+        this.page = new Page(fm.blockSize());
+    }
+
+    /** Returns the number of rows written to the file. */
+    int count() {
+        return count;
+    }
+
+    /** Appends a row to the file.
+     *
+     * @throws IllegalArgumentException if the row doesn't fit in a block
+     */
+    void write(DatumBase[] row) {
+        int size = Integer.BYTES;
+        for(int i = 0; i < types.length; i++){
+            size += size(types[i], row[i]);
+        }
+        if(size > fm.blockSize()){
+            throw new IllegalArgumentException("Row doesn't fit in a block");
+        }
+        if(pageOffset + size - Integer.BYTES > fm.blockSize()){
+            flush();
+        }
+        for(int i = 0; i < types.length; i++){
+            switch(types[i]){
+                case Types.INTEGER -> page.setInt(pageOffset, row[i].asInt());
+                case Types.DOUBLE -> page.setDouble(pageOffset, row[i].asDouble());
+                case Types.BOOLEAN -> page.setBoolean(pageOffset, row[i].asBoolean());
+                default -> page.setString(pageOffset, row[i].asString());
+            }
+            pageOffset += size(types[i], row[i]);
+        }
+        pageRows++;
+        count++;
+    }
+
+    /** Writes the last, partial block: the file can then be read. */
+    void finish() {
+        if(pageRows > 0){
+            flush();
+        }
+        finished = true;
+    }
+
+    /** Returns a reader positioned before the file's first row. */
+    Reader reader() {
+        if(!finished){
+            throw new IllegalStateException("File " + filename + " is still being written");
+        }
+        return new Reader();
+    }
+
+    /** Deletes the file. */
+    void delete() {
+        ((FileMgr) fm).delete(filename);
+    }
+
+    /** Returns the estimated number of bytes of heap that a row held in
+     * memory (as its array of Datums) occupies: the unit of the operators'
+     * memory budgets.
+     */
+    static long estimate(DatumBase[] row) {
+        long size = ROW_OVERHEAD;
+        for(DatumBase val : row){
+            size += FIELD_OVERHEAD + switch(val.getSQLType()){
+                case Types.INTEGER -> Integer.BYTES;
+                case Types.DOUBLE -> Double.BYTES;
+                case Types.BOOLEAN -> 1;
+                default -> val.asString().length();
+            };
+        }
+        return size;
+    }
+
+    private void flush() {
+        page.setInt(0, pageRows);
+        fm.write(new BlockId(filename, blocks++), page);
+        pageRows = 0;
+        pageOffset = Integer.BYTES;
+    }
+
+    private static int size(int type, DatumBase val) {
+        return switch(type){
+            case Types.INTEGER -> Integer.BYTES;
+            case Types.DOUBLE -> Double.BYTES;
+            case Types.BOOLEAN -> 1;
+            default -> Integer.BYTES + PageBase.logicalLength(val.asString());
+        };
+    }
+
+    /** Reads the file's rows in order, with a page of its own. */
+    final class Reader {
+        private final Page in = new Page(fm.blockSize());
+        private int block = -1;
+        private int rowsLeft = 0;
+        private int offset;
+
+        /** Returns the next row, or null if there are no more rows. */
+        DatumBase[] next() {
+            while(rowsLeft == 0){
+                if(block + 1 >= blocks){
+                    return null;
+                }
+                fm.read(new BlockId(filename, ++block), in);
+                rowsLeft = in.getInt(0);
+                offset = Integer.BYTES;
+            }
+            DatumBase[] row = new DatumBase[types.length];
+            for(int i = 0; i < types.length; i++){
+                row[i] = switch(types[i]){
+                    case Types.INTEGER -> new Datum(in.getInt(offset));
+                    case Types.DOUBLE -> new Datum(in.getDouble(offset));
+                    case Types.BOOLEAN -> new Datum(in.getBoolean(offset));
+                    default -> new Datum(in.getString(offset));
+                };
+                offset += size(types[i], row[i]);
+            }
+            rowsLeft--;
+            return row;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package edu.yu.dbimpl.query;
+
+import edu.yu.dbimpl.record.SchemaBase;
+
+import java.util.List;
+
+/** A comparison between two expressions, e.g., "age >= 21" or "dept = did".
+ * The expressions' values are compared with DatumBase#compareTo, so they must
+ * have the same type.
+ */
+public class Term {
+    /** The comparison operators. */
+    public enum Operator {
+        EQ("="), NE("<>"), LT("<"), LE("<="), GT(">"), GE(">=");
+
+        private final String symbol;
+
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+
+        /** Returns true iff a comparison result (as returned by compareTo)
+         * satisfies the operator.
+         */
+        public boolean test(int cmp) {
+            return switch(this){
+                case EQ -> cmp == 0;
+                case NE -> cmp != 0;
+                case LT -> cmp < 0;
+                case LE -> cmp <= 0;
+                case GT -> cmp > 0;
+                case GE -> cmp >= 0;
+            };
+        }
+
+        /** Returns the operator that holds with the operands swapped. */
+        public Operator flip() {
+            return switch(this){
+                case LT -> GT;
+                case LE -> GE;
+                case GT -> LT;
+                case GE -> LE;
+                default -> this;
+            };
+        }
+
+        public String symbol() {
+            return symbol;
+        }
+    }
+
+    private final Expression lhs;
+    private final Operator op;
+    private final Expression rhs;
+
+    /**
+     * Constructor.
+     *
+     * @throws IllegalArgumentException if an argument is null
+     */
+    public Term(Expression lhs, Operator op, Expression rhs) {
+        if(lhs == null || op == null || rhs == null){
+            throw new IllegalArgumentException("Term arguments can't be null");
+        }
+        this.lhs = lhs;
+        this.op = op;
+        this.rhs = rhs;
+    }
+
+    /** Constructor for an equality term. */
+    public Term(Expression lhs, Expression rhs) {
+        this(lhs, Operator.EQ, rhs);
+    }
+
+    public Expression lhs() {
+        return lhs;
+    }
+
+    public Operator operator() {
+        return op;
+    }
+
+    public Expression rhs() {
+        return rhs;
+    }
+
+    /** Returns true iff the term holds for the scan's current record.
+     *
+     * @throws ClassCastException if the expressions' values have different
+     * types
+     */
+    public boolean isSatisfied(Scan s) {
+        return op.test(lhs.evaluate(s).compareTo(rhs.evaluate(s)));
+    }
+
+    /** Returns true iff both expressions can be evaluated against the scan. */
+    public boolean appliesTo(Scan s) {
+        return lhs.appliesTo(s) && rhs.appliesTo(s);
+    }
+
+    /** Returns true iff both expressions can be evaluated against a record of
+     * the schema.
+     */
+    public boolean appliesTo(SchemaBase sch) {
+        return lhs.appliesTo(sch) && rhs.appliesTo(sch);
+    }
+
+    /** If the term is an equality between the field and a constant, returns
+     * the constant, else null.
+     */
+    public DatumBase equatesWithConstant(String fldname) {
+        if(op != Operator.EQ){
+            return null;
+        }
+        if(fldname.equals(lhs.asFieldName()) && !rhs.isFieldName()){
+            return rhs.asConstant();
+        }
+        if(fldname.equals(rhs.asFieldName()) && !lhs.isFieldName()){
+            return lhs.asConstant();
+        }
+        return null;
+    }
+
+    /** If the term is an equality between the field and a constant or a
+     * parameter, returns that expression, else null.
+     */
+    public Expression equatesWithValue(String fldname) {
+        if(op != Operator.EQ){
+            return null;
+        }
+        if(fldname.equals(lhs.asFieldName()) && !rhs.isFieldName()){
+            return rhs;
+        }
+        if(fldname.equals(rhs.asFieldName()) && !lhs.isFieldName()){
+            return lhs;
+        }
+        return null;
+    }
+
+    /** Returns the term with its parameters replaced by their values (see
+     * Expression#bind).
+     *
+     * @throws IllegalArgumentException if a parameter has no value
+     */
+    public Term bind(List<DatumBase> params) {
+        Expression l = lhs.bind(params);
+        Expression r = rhs.bind(params);
+        return l == lhs && r == rhs ? this : new Term(l, op, r);
+    }
+
+    /** If the term is an equality between the field and another field,
+     * returns the other field's name, else null.
+     */
+    public String equatesWithField(String fldname) {
+        if(op != Operator.EQ || !lhs.isFieldName() || !rhs.isFieldName()){
+            return null;
+        }
+        if(fldname.equals(lhs.asFieldName())){
+            return rhs.asFieldName();
+        }
+        if(fldname.equals(rhs.asFieldName())){
+            return lhs.asFieldName();
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return lhs + " " + op.symbol() + " " + rhs;
+    }
+}
@@ -0,0 +1,175 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+
+/** A read-only scan over the records of a table that returns them a batch at
+ * a time, as column vectors (see ColumnBatch), rather than a record at a time
+ * through getX calls.
+ *
+ * Each call to nextBatch() fills the scan's batch with up to capacity records.
+ * The scan reads a block's values straight from the block's page, a column at
+ * a time: it locks the whole block shared once, finds the block's in-use
+ * slots, and then copies each requested field of those slots into the
+ * field's vector.  A batch may span blocks, and a block may span batches.
+ *
+ * Locking: the scan holds a shared lock on the whole block that it is
+ * reading (rather than a lock per record).  Under SERIALIZABLE the locks are
+ * held until the tx completes; under the other isolation levels, a block's
+ * lock is released when the scan moves off the block.
+ *
+ * Like a TableScan, the scan holds exactly one pin, on its current block, and
+ * clients must close() it.  Unlike a TableScan, it never appends a block: a
+ * scan of an empty table returns no batches.
+ */
+public class BatchScan {
+    private final TxBase tx;
+    private final Layout layout;
+    private final String fileName;
+    private final ColumnBatch batch;
+    // the scan's blocks are [firstBlock, endBlock), or [firstBlock, eof) if
+    // endBlock is negative
+    private final int firstBlock;
+    private final int endBlock;
+    private int blockNumber;
+    private RecordPage recordPage;
+    private PageHandle handle;
+    private PageBase page;
+    private int[] slots;
+    private int nextSlot;
+    private boolean closed = false;
+
+    /**
+     * Constructor: the scan is positioned before the first record of the
+     * table.
+     *
+     * @param tx       Defines the transactional scope under which the scan operations
+     *                 will take place
+     * @param tblname  the name of the table (as passed to a TableScan)
+     * @param layout   Defines the logical and physical schema of the table
+     * @param fldnames the fields to read, one column of the batch per field
+     * @param capacity the maximum number of records per batch
+     * @throws IllegalArgumentException if capacity isn't positive, or if a
+     * field isn't part of the layout's schema
+     */
+    public BatchScan(TxBase tx, String tblname, LayoutBase layout, List<String> fldnames, int capacity) {
+        this(tx, tblname, layout, fldnames, capacity, 0, -1);
+    }
+
+    /** Constructor for a scan that reads every field of the table, in the
+     * schema's order.
+     *
+     * @see #BatchScan(TxBase, String, LayoutBase, List, int)
+     */
+    public BatchScan(TxBase tx, String tblname, LayoutBase layout, int capacity) {
+        this(tx, tblname, layout, layout == null ? null : layout.schema().fields(), capacity);
+    }
+
+    /** Constructor for a scan of the blocks [firstBlock, endBlock) of a table,
+     * used by ParallelTableScan: the caller must already hold a shared lock on
+     * every one of those blocks (so the scan's lock requests find them held),
+     * and the scan doesn't release them.
+     */
+    BatchScan(TxBase tx, String tblname, LayoutBase layout, List<String> fldnames, int capacity,
+              int firstBlock, int endBlock) {
+        if(tx == null || tblname == null || layout == null || fldnames == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        this.tx = tx;
+        this.layout = (Layout) layout;
+        this.fileName = tblname + "_data.tbl";
+        this.batch = new ColumnBatch(this.layout, fldnames, capacity);
+        this.firstBlock = firstBlock;
+        this.endBlock = endBlock;
+        this.blockNumber = firstBlock - 1;
+    }
+
+    /** Returns the batch that nextBatch() fills. */
+    public ColumnBatch batch() {
+        return batch;
+    }
+
+    /** Fills the batch with the next records of the table.
+     *
+     * @return true iff the batch holds at least one record; false if the scan
+     * has no more records.
+     * @throws IllegalStateException if the scan is closed
+     */
+    public boolean nextBatch() {
+        if(closed){
+            throw new IllegalStateException("Scan is closed");
+        }
+        batch.clear();
+        while(batch.size() < batch.capacity()){
+            if(slots == null || nextSlot >= slots.length){
+                if(!moveToNextBlock()){
+                    break;
+                }
+                continue;
+            }
+            int n = Math.min(slots.length - nextSlot, batch.capacity() - batch.size());
+            batch.fill(recordPage, page, blockNumber, slots, nextSlot, n);
+            nextSlot += n;
+        }
+        return batch.size() > 0;
+    }
+
+    /** Positions the scan before the first record of the table. */
+    public void beforeFirst() {
+        if(closed){
+            throw new IllegalStateException("Scan is closed");
+        }
+        leaveBlock();
+        blockNumber = firstBlock - 1;
+        batch.clear();
+    }
+
+    /** Releases the scan's pin.  Closing a closed scan has no effect. */
+    public void close() {
+        if(!closed){
+            leaveBlock();
+            closed = true;
+        }
+    }
+
+    /** Moves to the next block of the table, locking it and finding its in-use
+     * slots.
+     *
+     * @return false if the table has no more blocks
+     */
+    private boolean moveToNextBlock() {
+        leaveBlock();
+        if(blockNumber + 1 >= (endBlock < 0 ? tx.size(fileName) : endBlock)){
+            return false;
+        }
+        blockNumber++;
+        BlockId blk = new BlockId(fileName, blockNumber);
+        recordPage = switch(layout.format()){
+            case SLOTTED -> new SlottedRecordPage(tx, blk, layout);
+            case PAX -> new PaxRecordPage(tx, blk, layout);
+            default -> new RecordPage(tx, blk, layout);
+        };
+        handle = ((Tx)tx).pinHandle(blk);
+        page = handle.sharedPage();
+        slots = recordPage.inUseSlots(page);
+        nextSlot = 0;
+        return true;
+    }
+
+    private void leaveBlock() {
+        if(handle != null){
+            handle.unpin();
+            if(endBlock < 0){
+                ((Tx)tx).leaveBlock(recordPage.block());
+            }
+            handle = null;
+            page = null;
+        }
+        slots = null;
+    }
+}
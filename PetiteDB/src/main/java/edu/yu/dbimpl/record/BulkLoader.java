@@ -0,0 +1,245 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.index.Index;
+import edu.yu.dbimpl.index.IndexBase;
+import edu.yu.dbimpl.query.Datum;
+import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.sql.Types;
+import java.util.*;
+
+/** Loads records into a table much faster than a TableScan can, for use by
+ * large batch loads.
+ *
+ * A TableScan logs one record per field write.  A BulkLoader instead appends
+ * fresh blocks to the table (see Tx#appendNewBlock) and fills them with
+ * unlogged writes: each block costs one "new block" log record, however many
+ * records it holds.  Rolling back the tx erases the loaded blocks, and
+ * committing the tx makes them durable with the commit's single flush of the
+ * tx's buffers.  The loaded blocks stay x-locked until the tx completes.
+ *
+ * Clients may register indexes on the table's fields; the loader collects
+ * the index records for the loaded records and, when closed, inserts them in
+ * key order as one batch per index.
+ *
+ * Usage: invoke insert() to start each record, then the setX methods to set
+ * its fields (unset fields keep their default values); finally invoke close().
+ *
+ * Tables whose Layout uses the FIXED or PAX record format can be bulk loaded,
+ * but not SLOTTED tables.  The loader never reuses space in the table's
+ * existing blocks.
+ */
+public class BulkLoader {
+    private final TxBase tx;
+    private final Layout layout;
+    private final String fileName;
+    private final FreeSpaceMap freeSpace;
+    private final int slotsPerBlock;
+    private final Map<Integer, List<IndexBase>> indexes = new LinkedHashMap<>();
+    private final Map<IndexBase, List<Map.Entry<DatumBase, RID>>> indexEntries = new LinkedHashMap<>();
+    private PageHandle handle;
+    // locates slots and fields in the current block; never pins the block
+    private RecordPage geometry;
+    private int currentSlot = -1;
+    private boolean closed = false;
+    // blocks that the loader filled: marked full in the free-space map only
+    // when the tx commits, since a rollback empties them again
+    private final List<Integer> filledBlocks = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param tx the transaction on whose behalf the records are loaded
+     * @param tblname the name of the table, as supplied to TableScan
+     * @param layout the table's layout
+     * @throws IllegalArgumentException if the layout's record format is
+     * SLOTTED
+     * @throws IllegalStateException if the tx is read-only
+     */
+    public BulkLoader(TxBase tx, String tblname, LayoutBase layout) {
+        this.tx = tx;
+        this.layout = (Layout) layout;
+        if(this.layout.format() == RecordFormat.SLOTTED){
+            throw new IllegalArgumentException("Tables with the SLOTTED record format can't be bulk loaded");
+        }
+        if(((Tx)tx).isReadOnly()){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        this.fileName = tblname + "_data.tbl";
+        this.freeSpace = new FreeSpaceMap(tx, tblname);
+        this.slotsPerBlock = tx.blockSize() / layout.slotSize();
+    }
+
+    /**
+     * Registers an index on the specified field: every record loaded from now
+     * on is added to the index when the loader is closed.
+     *
+     * @param fldname the indexed field
+     * @param index the index
+     * @throws IllegalArgumentException if fldname isn't part of the schema
+     */
+    public void addIndex(String fldname, IndexBase index) {
+        checkOpen();
+        indexes.computeIfAbsent(layout.ordinal(fldname), k -> new ArrayList<>()).add(index);
+        indexEntries.putIfAbsent(index, new ArrayList<>());
+    }
+
+    /**
+     * Starts a new record, appending a block to the table if the current block
+     * is full.
+     *
+     * @return the new record's RID
+     */
+    public RID insert() {
+        checkOpen();
+        if(handle != null){
+            collectIndexEntries();
+        }
+        if(handle == null || currentSlot + 1 >= slotsPerBlock){
+            nextBlock();
+        }
+        currentSlot++;
+        handle.setBoolean(geometry.flagOffset(currentSlot), true, false);
+        return currentRID();
+    }
+
+    public void setInt(String fldname, int val) {
+        handle.setInt(offset(fldname, Types.INTEGER), val, false);
+    }
+
+    public void setBoolean(String fldname, boolean val) {
+        handle.setBoolean(offset(fldname, Types.BOOLEAN), val, false);
+    }
+
+    public void setDouble(String fldname, double val) {
+        handle.setDouble(offset(fldname, Types.DOUBLE), val, false);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the length of val exceeds the field's
+     * logical length
+     */
+    public void setString(String fldname, String val) {
+        int ordinal = layout.ordinal(fldname, Types.VARCHAR);
+        if(val.length() > layout.length(ordinal)){
+            throw new IllegalArgumentException("invalid input");
+        }
+        handle.setString(offset(ordinal), val, false);
+    }
+
+    public void setVal(String fldname, DatumBase val) {
+        switch(val.getSQLType()){
+            case Types.INTEGER -> setInt(fldname, val.asInt());
+            case Types.VARCHAR -> setString(fldname, val.asString());
+            case Types.BOOLEAN -> setBoolean(fldname, val.asBoolean());
+            case Types.DOUBLE -> setDouble(fldname, val.asDouble());
+            default -> throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
+        }
+    }
+
+    /**
+     * Finishes the load: inserts the collected index records, one batch per
+     * index in key order, and releases the current block.  The tx must still
+     * be committed for the load to take effect.  Closing a closed loader has no
+     * effect.
+     */
+    public void close() {
+        if(closed){
+            return;
+        }
+        if(handle != null){
+            collectIndexEntries();
+            releaseBlock();
+        }
+        for(Map.Entry<IndexBase, List<Map.Entry<DatumBase, RID>>> batch : indexEntries.entrySet()){
+            List<Map.Entry<DatumBase, RID>> entries = batch.getValue();
+            entries.sort(Map.Entry.comparingByKey());
+            if(batch.getKey() instanceof Index index){
+                index.insertAll(entries);
+            }else{
+                for(Map.Entry<DatumBase, RID> entry : entries){
+                    batch.getKey().insert(entry.getKey(), entry.getValue());
+                }
+            }
+        }
+        closed = true;
+    }
+
+    private void nextBlock() {
+        if(handle != null){
+            releaseBlock();
+        }
+        // a fresh block is all zeroes, which both formats read as empty
+        handle = ((Tx)tx).appendNewBlock(fileName);
+        BlockIdBase blk = handle.block();
+        geometry = layout.format() == RecordFormat.PAX
+                ? new PaxRecordPage(tx, blk, layout) : new RecordPage(tx, blk, layout);
+        currentSlot = -1;
+    }
+
+    private void releaseBlock() {
+        int blkNum = handle.block().number();
+        if(currentSlot + 1 >= slotsPerBlock){
+            if(filledBlocks.isEmpty()){
+                ((Tx)tx).beforeCommit(this::markFilledBlocks);
+            }
+            filledBlocks.add(blkNum);
+        }else{
+            freeSpace.markHasRoom(blkNum);
+        }
+        handle.unpin();
+        handle = null;
+    }
+
+    private void markFilledBlocks() {
+        for(int blkNum : filledBlocks){
+            freeSpace.markFull(blkNum);
+        }
+        filledBlocks.clear();
+    }
+
+    private void collectIndexEntries() {
+        if(indexes.isEmpty()){
+            return;
+        }
+        RID rid = currentRID();
+        for(Map.Entry<Integer, List<IndexBase>> indexed : indexes.entrySet()){
+            int ordinal = indexed.getKey();
+            int offset = geometry.fieldOffset(currentSlot, ordinal);
+            DatumBase key = switch(layout.type(ordinal)){
+                case Types.INTEGER -> new Datum(handle.getInt(offset));
+                case Types.BOOLEAN -> new Datum(handle.getBoolean(offset));
+                case Types.DOUBLE -> new Datum(handle.getDouble(offset));
+                default -> new Datum(handle.getString(offset));
+            };
+            for(IndexBase index : indexed.getValue()){
+                indexEntries.get(index).add(Map.entry(key, rid));
+            }
+        }
+    }
+
+    private RID currentRID() {
+        return new RID(handle.block().number(), currentSlot);
+    }
+
+    private int offset(String fldname, int type) {
+        return offset(layout.ordinal(fldname, type));
+    }
+
+    private int offset(int ordinal) {
+        if(handle == null || currentSlot < 0){
+            throw new IllegalStateException("insert() must be invoked before setting a field");
+        }
+        return geometry.fieldOffset(currentSlot, ordinal);
+    }
+
+    private void checkOpen() {
+        if(closed){
+            throw new IllegalStateException("Bulk loader is closed");
+        }
+    }
+}
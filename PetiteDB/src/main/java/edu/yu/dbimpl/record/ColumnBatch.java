@@ -0,0 +1,321 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.PageBase;
+
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoublePredicate;
+import java.util.function.IntPredicate;
+
+/** A batch of up to capacity() records, filled by a BatchScan, stored as one
+ * column vector per field: an int[], double[], or boolean[] indexed by row,
+ * or (for VARCHAR fields) the strings' bytes concatenated into one byte[],
+ * with row r's bytes at [stringOffsets[r], stringOffsets[r + 1]).
+ *
+ * The batch also holds a selection vector: the rows (in increasing order)
+ * that downstream operators should still consider.  After a fill every row
+ * is selected; a filter narrows the selection in place rather than copying
+ * the surviving values, e.g.
+ *
+ *   int[] sel = batch.selection();
+ *   int[] ages = batch.ints(col);
+ *   int n = 0;
+ *   for(int i = 0; i < batch.selectedCount(); i++){
+ *       if(ages[sel[i]] >= 21) sel[n++] = sel[i];
+ *   }
+ *   batch.setSelectedCount(n);
+ *
+ * The vectors are reused by every fill: their contents are only valid until
+ * the scan's next call to nextBatch().  Vectors may be longer than size().
+ */
+public class ColumnBatch {
+    private final int capacity;
+    private final String[] names;
+    private final int[] ordinals;
+    private final int[] types;
+    private final int[][] ints;
+    private final double[][] doubles;
+    private final boolean[][] booleans;
+    private final int[][] stringOffsets;
+    private final byte[][] stringBytes;
+    private final int[] blocks;
+    private final int[] slots;
+    private final int[] selection;
+    private int size;
+    private int selected;
+
+    /**
+     * Constructor.
+     *
+     * @param layout the layout of the table whose records the batch holds
+     * @param fldnames the fields to hold, one column per field, in order
+     * @param capacity the maximum number of rows in the batch
+     * @throws IllegalArgumentException if capacity isn't positive, or if a
+     * field isn't part of the layout's schema
+     */
+    public ColumnBatch(Layout layout, List<String> fldnames, int capacity) {
+        if(capacity < 1){
+            throw new IllegalArgumentException("Batch capacity must be positive");
+        }
+        this.capacity = capacity;
+        int count = fldnames.size();
+        names = fldnames.toArray(new String[0]);
+        ordinals = new int[count];
+        types = new int[count];
+        ints = new int[count][];
+        doubles = new double[count][];
+        booleans = new boolean[count][];
+        stringOffsets = new int[count][];
+        stringBytes = new byte[count][];
+        for(int c = 0; c < count; c++){
+            ordinals[c] = layout.ordinal(names[c]);
+            types[c] = layout.type(ordinals[c]);
+            switch(types[c]){
+                case Types.INTEGER -> ints[c] = new int[capacity];
+                case Types.DOUBLE -> doubles[c] = new double[capacity];
+                case Types.BOOLEAN -> booleans[c] = new boolean[capacity];
+                case Types.VARCHAR -> {
+                    stringOffsets[c] = new int[capacity + 1];
+                    stringBytes[c] = new byte[capacity * 16];
+                }
+                default -> throw new IllegalArgumentException("Unsupported type for field " + names[c]);
+            }
+        }
+        blocks = new int[capacity];
+        slots = new int[capacity];
+        selection = new int[capacity];
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Returns the number of rows in the batch. */
+    public int size() {
+        return size;
+    }
+
+    public int columnCount() {
+        return names.length;
+    }
+
+    public String columnName(int col) {
+        return names[col];
+    }
+
+    /** Returns the type (a java.sql.Types constant) of the specified column. */
+    public int type(int col) {
+        return types[col];
+    }
+
+    /** Returns the column that holds the specified field.
+     *
+     * @throws IllegalArgumentException if the batch doesn't hold the field
+     */
+    public int column(String fldname) {
+        for(int c = 0; c < names.length; c++){
+            if(names[c].equals(fldname)){
+                return c;
+            }
+        }
+        throw new IllegalArgumentException("Batch has no column for field " + fldname);
+    }
+
+    /** Returns the vector of an integer column.
+     *
+     * @throws IllegalArgumentException if the column isn't an integer column
+     */
+    public int[] ints(int col) {
+        return vector(ints, col, Types.INTEGER);
+    }
+
+    /** @see #ints */
+    public double[] doubles(int col) {
+        return vector(doubles, col, Types.DOUBLE);
+    }
+
+    /** @see #ints */
+    public boolean[] booleans(int col) {
+        return vector(booleans, col, Types.BOOLEAN);
+    }
+
+    /** Returns the offsets of a string column's values in stringBytes(col):
+     * row r's bytes are [offsets[r], offsets[r + 1]).
+     *
+     * @see #ints
+     */
+    public int[] stringOffsets(int col) {
+        return vector(stringOffsets, col, Types.VARCHAR);
+    }
+
+    /** Returns the concatenated bytes of a string column's values.
+     *
+     * @see #stringOffsets
+     */
+    public byte[] stringBytes(int col) {
+        return vector(stringBytes, col, Types.VARCHAR);
+    }
+
+    /** Decodes the value of a string column in the specified row. */
+    public String getString(int col, int row) {
+        int[] offsets = stringOffsets(col);
+        checkRow(row);
+        return new String(stringBytes[col], offsets[row], offsets[row + 1] - offsets[row], PageBase.CHARSET);
+    }
+
+    /** Returns the id of the record in the specified row. */
+    public RID rid(int row) {
+        checkRow(row);
+        return new RID(blocks[row], slots[row]);
+    }
+
+    /** Returns the selection vector: its first selectedCount() entries are the
+     * selected rows.  Clients may overwrite those entries, provided they keep
+     * them in increasing order, and then call setSelectedCount.
+     */
+    public int[] selection() {
+        return selection;
+    }
+
+    public int selectedCount() {
+        return selected;
+    }
+
+    /** Sets the number of selected rows (see selection()).
+     *
+     * @throws IllegalArgumentException if count is negative or exceeds the
+     * number of selected rows
+     */
+    public void setSelectedCount(int count) {
+        if(count < 0 || count > selected){
+            throw new IllegalArgumentException("Invalid selected count " + count);
+        }
+        selected = count;
+    }
+
+    /** Deselects the selected rows whose value in an integer column doesn't
+     * satisfy the predicate.
+     *
+     * @return the number of rows still selected
+     */
+    public int filterInts(int col, IntPredicate predicate) {
+        int[] values = ints(col);
+        int n = 0;
+        for(int i = 0; i < selected; i++){
+            int row = selection[i];
+            if(predicate.test(values[row])){
+                selection[n++] = row;
+            }
+        }
+        selected = n;
+        return n;
+    }
+
+    /** @see #filterInts */
+    public int filterDoubles(int col, DoublePredicate predicate) {
+        double[] values = doubles(col);
+        int n = 0;
+        for(int i = 0; i < selected; i++){
+            int row = selection[i];
+            if(predicate.test(values[row])){
+                selection[n++] = row;
+            }
+        }
+        selected = n;
+        return n;
+    }
+
+    /** Returns the sum of an integer column over the selected rows. */
+    public long sumInts(int col) {
+        int[] values = ints(col);
+        long sum = 0;
+        for(int i = 0; i < selected; i++){
+            sum += values[selection[i]];
+        }
+        return sum;
+    }
+
+    /** Returns the sum of a double column over the selected rows. */
+    public double sumDoubles(int col) {
+        double[] values = doubles(col);
+        double sum = 0;
+        for(int i = 0; i < selected; i++){
+            sum += values[selection[i]];
+        }
+        return sum;
+    }
+
+    /** Empties the batch before a fill. */
+    void clear() {
+        size = 0;
+        selected = 0;
+    }
+
+    /** Adds the records in the n slots starting at blockSlots[from] to the
+     * batch, selecting them.  The values are copied from the block's page a
+     * column at a time.  The caller must hold the block's pin and a shared
+     * lock on the whole block, and the batch must have room for n more rows.
+     */
+    void fill(RecordPage recordPage, PageBase page, int blockNumber, int[] blockSlots, int from, int n) {
+        int row = size;
+        Arrays.fill(blocks, row, row + n, blockNumber);
+        System.arraycopy(blockSlots, from, slots, row, n);
+        for(int c = 0; c < types.length; c++){
+            int ordinal = ordinals[c];
+            switch(types[c]){
+                case Types.INTEGER -> {
+                    int[] values = ints[c];
+                    for(int i = 0; i < n; i++){
+                        values[row + i] = page.getInt(recordPage.fieldOffset(page, blockSlots[from + i], ordinal));
+                    }
+                }
+                case Types.DOUBLE -> {
+                    double[] values = doubles[c];
+                    for(int i = 0; i < n; i++){
+                        values[row + i] = page.getDouble(recordPage.fieldOffset(page, blockSlots[from + i], ordinal));
+                    }
+                }
+                case Types.BOOLEAN -> {
+                    boolean[] values = booleans[c];
+                    for(int i = 0; i < n; i++){
+                        values[row + i] = page.getBoolean(recordPage.fieldOffset(page, blockSlots[from + i], ordinal));
+                    }
+                }
+                default -> {
+                    for(int i = 0; i < n; i++){
+                        putString(c, row + i, page.getBytes(recordPage.fieldOffset(page, blockSlots[from + i], ordinal)));
+                    }
+                }
+            }
+        }
+        for(int i = 0; i < n; i++){
+            selection[selected++] = row + i;
+        }
+        size += n;
+    }
+
+    /** Appends a string column's value; rows must be appended in order. */
+    private void putString(int col, int row, byte[] val) {
+        int start = stringOffsets[col][row];
+        int end = start + val.length;
+        if(end > stringBytes[col].length){
+            stringBytes[col] = Arrays.copyOf(stringBytes[col], Math.max(end, 2 * stringBytes[col].length));
+        }
+        System.arraycopy(val, 0, stringBytes[col], start, val.length);
+        stringOffsets[col][row + 1] = end;
+    }
+
+    private <T> T vector(T[] vectors, int col, int type) {
+        if(col < 0 || col >= types.length || types[col] != type){
+            throw new IllegalArgumentException("No column of that type with index " + col);
+        }
+        return vectors[col];
+    }
+
+    private void checkRow(int row) {
+        if(row < 0 || row >= size){
+            throw new IllegalArgumentException("No row " + row + " in batch");
+        }
+    }
+}
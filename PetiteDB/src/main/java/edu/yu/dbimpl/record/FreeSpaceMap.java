@@ -0,0 +1,201 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.file.FileMgr;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+/** A persistent free-space map for a table: for every block of the table's
+ * data file, a flag that says whether the block may have room for another
+ * record.  TableScan.insert() consults the map to jump directly to a block
+ * with room (or to append one), rather than visiting every block in turn.
+ *
+ * The map is stored in its own file (the table name suffixed with
+ * "_fsm.tbl").  Its first block starts with a header:
+ *
+ *   [first candidate][covered]
+ *
+ * where "first candidate" is a block number such that every earlier block is
+ * believed to be full, and "covered" is the number of data blocks that the
+ * map describes.  The per-block flags (one byte each) follow the header,
+ * continuing into subsequent blocks of the map file as needed.
+ *
+ * The map's contents are hints: they are written without locks and without
+ * logging (see PageHandle#setHintInt), so they may be stale after a rollback,
+ * a crash, or a concurrent update.  A stale "has room" flag costs one wasted
+ * visit and is then cleared.  A block whose flag is stale "full" is not
+ * offered for inserts until a delete on that block sets its flag again.
+ * Data blocks that the map doesn't yet cover (e.g., blocks of a table
+ * created before the map existed) are assumed to have room.
+ */
+public class FreeSpaceMap {
+    private static final int FIRST_CANDIDATE_OFFSET = 0;
+    private static final int COVERED_OFFSET = Integer.BYTES;
+    private static final int HEADER_SIZE = 2 * Integer.BYTES;
+    private final TxBase tx;
+    private final String fileName;
+    // serializes read-modify-write of the map's header across the (per-scan)
+    // instances that share its file; held only while pages are accessed,
+    // never while waiting for a lock
+    private final Object latch;
+    private int mapBlocks = -1;
+    private int covered = 0;
+
+    /**
+     * Constructor.
+     *
+     * @param tx the transaction on whose behalf the map is accessed
+     * @param tblname the name of the table described by the map
+     */
+    public FreeSpaceMap(TxBase tx, String tblname) {
+        this.tx = tx;
+        this.fileName = tblname + "_fsm.tbl";
+        this.latch = ((FileMgr) ((Tx) tx).fileMgr()).latch(fileName);
+    }
+
+    /** Returns the name of the file that stores the map. */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Returns the number of the first block, at or after the specified block,
+     * that may have room for another record, or -1 if there is no such block.
+     *
+     * @param from the first block to consider
+     * @param dataBlocks the current number of blocks in the table's data file
+     * @return a candidate block number, or -1.
+     */
+    public int findBlockWithRoom(int from, int dataBlocks) {
+        cover(dataBlocks);
+        synchronized (latch) {
+            Cursor cursor = new Cursor();
+            try {
+                int first = cursor.header(FIRST_CANDIDATE_OFFSET);
+                int found = -1;
+                for (int b = Math.max(from, first); b < dataBlocks; b++) {
+                    if (cursor.hasRoom(b)) {
+                        found = b;
+                        break;
+                    }
+                }
+                if (from <= first) {
+                    // every block between first and found turned out to be full
+                    cursor.setHeader(FIRST_CANDIDATE_OFFSET, found >= 0 ? found : dataBlocks);
+                }
+                return found;
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /** Records that the specified block has no room for another record. */
+    public void markFull(int blk) {
+        cover(blk + 1);
+        synchronized (latch) {
+            Cursor cursor = new Cursor();
+            try {
+                cursor.setHasRoom(blk, false);
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /** Records that the specified block may have room for another record. */
+    public void markHasRoom(int blk) {
+        cover(blk + 1);
+        synchronized (latch) {
+            Cursor cursor = new Cursor();
+            try {
+                cursor.setHasRoom(blk, true);
+                if (blk < cursor.header(FIRST_CANDIDATE_OFFSET)) {
+                    cursor.setHeader(FIRST_CANDIDATE_OFFSET, blk);
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /** Ensures that the map describes the first dataBlocks blocks of the data
+     * file, extending the map file if necessary.  Newly covered blocks are
+     * assumed to have room.
+     */
+    private void cover(int dataBlocks) {
+        if (dataBlocks <= covered) {
+            return;
+        }
+        int needed = (HEADER_SIZE + dataBlocks + tx.blockSize() - 1) / tx.blockSize();
+        needed = Math.max(needed, 1);
+        if (mapBlocks < needed) {
+            // may wait for locks, so done before taking the latch
+            mapBlocks = tx.size(fileName);
+            while (mapBlocks < needed) {
+                tx.append(fileName);
+                mapBlocks++;
+            }
+        }
+        synchronized (latch) {
+            Cursor cursor = new Cursor();
+            try {
+                int mapCovered = cursor.header(COVERED_OFFSET);
+                if (mapCovered < dataBlocks) {
+                    for (int b = mapCovered; b < dataBlocks; b++) {
+                        cursor.setHasRoom(b, true);
+                    }
+                    cursor.setHeader(COVERED_OFFSET, dataBlocks);
+                    if (mapCovered < cursor.header(FIRST_CANDIDATE_OFFSET)) {
+                        cursor.setHeader(FIRST_CANDIDATE_OFFSET, mapCovered);
+                    }
+                }
+                covered = Math.max(mapCovered, dataBlocks);
+            } finally {
+                cursor.close();
+            }
+        }
+    }
+
+    /** Holds at most one pinned block of the map at a time. */
+    private class Cursor {
+        private PageHandle handle;
+        private int current = -1;
+
+        int header(int offset) {
+            return page(0).getHintInt(offset);
+        }
+
+        void setHeader(int offset, int val) {
+            page(0).setHintInt(offset, val);
+        }
+
+        boolean hasRoom(int blk) {
+            int position = HEADER_SIZE + blk;
+            return page(position / tx.blockSize()).getHintBoolean(position % tx.blockSize());
+        }
+
+        void setHasRoom(int blk, boolean val) {
+            int position = HEADER_SIZE + blk;
+            page(position / tx.blockSize()).setHintBoolean(position % tx.blockSize(), val);
+        }
+
+        private PageHandle page(int mapBlock) {
+            if (mapBlock != current) {
+                close();
+                handle = ((Tx) tx).pinHandle(new BlockId(fileName, mapBlock));
+                current = mapBlock;
+            }
+            return handle;
+        }
+
+        void close() {
+            if (handle != null) {
+                handle.unpin();
+                handle = null;
+                current = -1;
+            }
+        }
+    }
+}
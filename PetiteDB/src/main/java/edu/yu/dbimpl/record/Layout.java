@@ -29,11 +29,33 @@ import java.util.Map;
  *
  * NOTE: Layout is conceptually a "value class", with all implications
  * concomitant thereto.
+ *
+ * Implementation note: each field is also assigned an ordinal (its position
+ * in schema order), and the per-field meta-data is precomputed into arrays
+ * indexed by ordinal.  Clients on a per-record path (TableScan, RecordPage)
+ * resolve a field name to its ordinal once, and thereafter access the field
+ * by ordinal without hashing field names.
+ *
+ * Implementation note: the rules above describe the FIXED record format.  A
+ * Layout may instead be created for the SLOTTED format (see RecordFormat), in
+ * which records are variable-length tuples: there is no in-use flag (a
+ * slot directory records which slots are in use), each VARCHAR field's offset
+ * locates a 4-byte pointer to the string's bytes within the tuple, and
+ * slotSize is the size of the largest possible tuple.  A Layout for the PAX
+ * format has the offsets and slot size of the FIXED format: a PaxRecordPage
+ * uses them to size a block's slots, but places each field's values in a
+ * per-field run of the block.
  */
 public class Layout extends LayoutBase{
     private final Map<String, Integer> offsets;
     private final SchemaBase schema;
     private final int slotSize;
+    private final RecordFormat format;
+    private final Map<String, Integer> ordinals;
+    private final String[] fieldNames;
+    private final int[] fieldOffsets;
+    private final int[] fieldTypes;
+    private final int[] fieldLengths;
     /**
      * Constructs a Layout object from a SchemaBase.  This constructor is used
      * when a table is created. It determines the physical offset of each field
@@ -42,17 +64,40 @@ public class Layout extends LayoutBase{
      * @param schema the schema of the table's records
      */
     public Layout(SchemaBase schema) {
+        this(schema, RecordFormat.FIXED);
+    }
+
+    /**
+     * Constructs a Layout object from a SchemaBase for records stored in the
+     * specified format.
+     *
+     * @param schema the schema of the table's records
+     * @param format the format in which the table's records are stored
+     * @throws IllegalArgumentException if format is null
+     */
+    public Layout(SchemaBase schema, RecordFormat format) {
         super(schema);
+        if (format == null) {
+            throw new IllegalArgumentException("format can't be null");
+        }
         this.schema = schema;
+        this.format = format;
         offsets = new HashMap<>();
         List<String> fields = schema.fields();
-        int off = 1;
+        boolean slotted = format == RecordFormat.SLOTTED;
+        int off = slotted ? 0 : 1;
+        int varLength = 0;
         for (String field : fields) {
             offsets.put(field, off);
             int type = schema.type(field);
             if (type == Types.VARCHAR) {
                 int length = schema.length(field);
-                off += length + 4;
+                if (slotted) {
+                    off += 4;
+                    varLength += length + 4;
+                } else {
+                    off += length + 4;
+                }
             }else if (type == Types.INTEGER) {
                 off += 4;
             }else if (type == Types.DOUBLE) {
@@ -61,7 +106,13 @@ public class Layout extends LayoutBase{
                 off += 1;
             }
         }
-        slotSize = off;
+        slotSize = off + varLength;
+        ordinals = new HashMap<>();
+        fieldNames = fields.toArray(new String[0]);
+        fieldOffsets = new int[fieldNames.length];
+        fieldTypes = new int[fieldNames.length];
+        fieldLengths = new int[fieldNames.length];
+        compileFields();
     }
 
     /** Constructs a Layout object from a SchemaBase, and assumes that the supplied
@@ -73,10 +124,42 @@ public class Layout extends LayoutBase{
      * @param slotSize pre-calculated length of each record slot
      */
     public Layout(SchemaBase schema, Map<String,Integer> offsets, int slotSize) {
+        this(schema, offsets, slotSize, RecordFormat.FIXED);
+    }
+
+    /** Constructs a Layout object from catalog meta-data, for records stored in
+     * the specified format.
+     *
+     * @param schema the schema of the table's records
+     * @param offsets the already-calculated offsets of the fields within a record
+     * @param slotSize pre-calculated length of each record slot
+     * @param format the format in which the table's records are stored
+     * @throws IllegalArgumentException if format is null
+     */
+    public Layout(SchemaBase schema, Map<String,Integer> offsets, int slotSize, RecordFormat format) {
         super(schema, offsets, slotSize);
+        if (format == null) {
+            throw new IllegalArgumentException("format can't be null");
+        }
         this.schema = schema;
         this.offsets = offsets;
         this.slotSize = slotSize;
+        this.format = format;
+        ordinals = new HashMap<>();
+        fieldNames = schema.fields().toArray(new String[0]);
+        fieldOffsets = new int[fieldNames.length];
+        fieldTypes = new int[fieldNames.length];
+        fieldLengths = new int[fieldNames.length];
+        compileFields();
+    }
+
+    private void compileFields() {
+        for (int i = 0; i < fieldNames.length; i++) {
+            ordinals.put(fieldNames[i], i);
+            fieldOffsets[i] = offset(fieldNames[i]);
+            fieldTypes[i] = schema.type(fieldNames[i]);
+            fieldLengths[i] = schema.length(fieldNames[i]);
+        }
     }
 
     /**
@@ -98,10 +181,81 @@ public class Layout extends LayoutBase{
      */
     @Override
     public int offset(String fldname) {
-        if(!offsets.containsKey(fldname)){
+        Integer offset = offsets.get(fldname);
+        if(offset == null){
+            throw new IllegalArgumentException(fldname + " not found");
+        }
+        return offset;
+    }
+
+    /** Returns the format in which records with this Layout are stored. */
+    public RecordFormat format() {
+        return format;
+    }
+
+    /**
+     * Returns the ordinal of the specified field: its position in the schema's
+     * field order.
+     *
+     * @param fldname the name of the field
+     * @return the field's ordinal, in the range [0, fieldCount())
+     * @throws IllegalArgumentException if fldname isn't defined for this Layout
+     */
+    public int ordinal(String fldname) {
+        Integer ordinal = ordinals.get(fldname);
+        if(ordinal == null){
             throw new IllegalArgumentException(fldname + " not found");
         }
-        return offsets.get(fldname);
+        return ordinal;
+    }
+
+    /**
+     * Returns the ordinal of the specified field, verifying that the field has
+     * the specified type.
+     *
+     * @param fldname the name of the field
+     * @param type the expected type, a java.sql.Types constant
+     * @return the field's ordinal
+     * @throws IllegalArgumentException if fldname isn't defined for this Layout
+     * or has a different type
+     */
+    public int ordinal(String fldname, int type) {
+        Integer ordinal = fldname == null ? null : ordinals.get(fldname);
+        if(ordinal == null || fieldTypes[ordinal] != type){
+            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
+        }
+        return ordinal;
+    }
+
+    /** Returns the number of fields in the Layout. */
+    public int fieldCount() {
+        return fieldNames.length;
+    }
+
+    /** Returns the name of the field with the specified ordinal. */
+    public String fieldName(int ordinal) {
+        return fieldNames[ordinal];
+    }
+
+    /** Returns the offset, within a record, of the field with the specified
+     * ordinal.
+     */
+    public int offset(int ordinal) {
+        return fieldOffsets[ordinal];
+    }
+
+    /** Returns the type (a java.sql.Types constant) of the field with the
+     * specified ordinal.
+     */
+    public int type(int ordinal) {
+        return fieldTypes[ordinal];
+    }
+
+    /** Returns the logical length of the field with the specified ordinal (see
+     * SchemaBase#length).
+     */
+    public int length(int ordinal) {
+        return fieldLengths[ordinal];
     }
 
     /**
@@ -125,6 +279,7 @@ public class Layout extends LayoutBase{
         }
         Layout other = (Layout) obj;
         return slotSize == other.slotSize &&
+                format == other.format &&
                 offsets.equals(other.offsets) &&
                 schema.equals(other.schema);
     }
@@ -135,6 +290,7 @@ public class Layout extends LayoutBase{
         int result = schema.hashCode();
         result = 31 * result + offsets.hashCode();
         result = 31 * result + slotSize;
+        result = 31 * result + format.ordinal();
         return result;
     }
 }
@@ -0,0 +1,248 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockId;
+import edu.yu.dbimpl.tx.IsolationLevel;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** A read-only scan that processes a table's blocks in parallel.  The table's
+ * blocks are split into "morsels" (ranges of morselBlocks blocks), and each
+ * morsel is read, a batch at a time, by a BatchScan on a ForkJoinPool worker.
+ * The records are exposed as a parallel Stream of ColumnBatches, so that e.g.
+ *
+ *   scan.stream().mapToLong(b -> b.sumInts(col)).sum()
+ *
+ * aggregates a large table on all cores.
+ *
+ * The constructor fixes the scan's blocks (the table's size at that time) and
+ * takes a shared lock on every one of them on the caller's thread, so the
+ * workers read a stable snapshot without taking locks of their own.  Under
+ * SERIALIZABLE the locks are held until the tx completes; under the other
+ * isolation levels close() releases them.
+ *
+ * Each worker pins one block at a time.  The scan lets at most as many
+ * morsels proceed at once as there were buffers available when it was
+ * constructed (other workers wait for a morsel to finish), so that a large
+ * pool can't exhaust the buffer pool.  While a stream runs, the tx may not be
+ * used by other clients.
+ *
+ * A batch's vectors are reused for the next batch of the same morsel: an
+ * operation must finish with a batch before returning (e.g., map it to a
+ * partial result), rather than collect the batches themselves.
+ */
+public class ParallelTableScan {
+    /** The number of records per batch. */
+    public static final int BATCH_CAPACITY = 1024;
+
+    private final TxBase tx;
+    private final String tblname;
+    private final Layout layout;
+    private final List<String> fldnames;
+    private final String fileName;
+    private final int morselBlocks;
+    private final int blocks;
+    // the morsels' scans that may still hold a pin
+    private final Set<BatchScan> open = ConcurrentHashMap.newKeySet();
+    // one permit per morsel allowed to hold a pin
+    private final Semaphore buffers;
+    private boolean closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param tx           Defines the transactional scope under which the scan
+     *                     operations will take place
+     * @param tblname      the name of the table (as passed to a TableScan)
+     * @param layout       Defines the logical and physical schema of the table
+     * @param fldnames     the fields to read, one column of each batch per field
+     * @param morselBlocks the number of blocks in a morsel, the unit of work
+     *                     handed to a worker
+     * @throws IllegalArgumentException if morselBlocks isn't positive, or if a
+     * field isn't part of the layout's schema
+     */
+    public ParallelTableScan(TxBase tx, String tblname, LayoutBase layout, List<String> fldnames, int morselBlocks) {
+        if(tx == null || tblname == null || layout == null || fldnames == null){
+            throw new IllegalArgumentException("Arguments can't be null");
+        }
+        if(morselBlocks < 1){
+            throw new IllegalArgumentException("A morsel must have at least one block");
+        }
+        this.tx = tx;
+        this.tblname = tblname;
+        this.layout = (Layout) layout;
+        this.fldnames = List.copyOf(fldnames);
+        this.fileName = tblname + "_data.tbl";
+        this.morselBlocks = morselBlocks;
+        // validate the fields before locking anything
+        new ColumnBatch(this.layout, this.fldnames, 1);
+        this.buffers = new Semaphore(Math.max(1, tx.availableBuffs()));
+        this.blocks = tx.size(fileName);
+        for(int b = 0; b < blocks; b++){
+            ((Tx)tx).sLockBlock(new BlockId(fileName, b));
+        }
+    }
+
+    public Layout layout() {
+        return layout;
+    }
+
+    /** Returns the fields that the scan reads, one column of each batch per
+     * field.
+     */
+    public List<String> fields() {
+        return fldnames;
+    }
+
+    /** Returns the number of blocks that the scan reads. */
+    public int blockCount() {
+        return blocks;
+    }
+
+    /** Returns a spliterator over the batches of the scan's blocks, which
+     * splits along morsel boundaries.
+     *
+     * @throws IllegalStateException if the scan is closed
+     */
+    public Spliterator<ColumnBatch> spliterator() {
+        if(closed){
+            throw new IllegalStateException("Scan is closed");
+        }
+        return new MorselSpliterator(0, blocks);
+    }
+
+    /** Returns a parallel stream of the batches of the scan's blocks.  The
+     * stream runs on the common ForkJoinPool, unless its terminal operation is
+     * invoked from a task of another pool (see execute).
+     *
+     * @throws IllegalStateException if the scan is closed
+     */
+    public Stream<ColumnBatch> stream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /** Applies a query to the scan's stream on the specified pool, returning
+     * the query's result.
+     *
+     * @throws IllegalStateException if the scan is closed
+     * @throws RuntimeException wrapping any checked exception thrown by the
+     * query, or the query's own runtime exception
+     */
+    public <R> R execute(ForkJoinPool pool, Function<Stream<ColumnBatch>, R> query) {
+        Stream<ColumnBatch> stream = stream();
+        try{
+            return pool.submit(() -> query.apply(stream)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause){
+                throw cause;
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /** Releases the pins still held by the scan's morsels (e.g., after a
+     * short-circuiting stream operation) and, unless the tx is SERIALIZABLE,
+     * the scan's locks.  Closing a closed scan has no effect.
+     */
+    public void close() {
+        if(closed){
+            return;
+        }
+        for(BatchScan scan : open){
+            if(open.remove(scan)){
+                scan.close();
+                buffers.release();
+            }
+        }
+        if(((Tx)tx).isolationLevel() != IsolationLevel.SERIALIZABLE){
+            for(int b = 0; b < blocks; b++){
+                ((Tx)tx).leaveBlock(new BlockId(fileName, b));
+            }
+        }
+        closed = true;
+    }
+
+    /** The batches of the blocks [from, to), read by a BatchScan once the
+     * spliterator starts advancing.
+     */
+    private class MorselSpliterator implements Spliterator<ColumnBatch> {
+        private int from;
+        private final int to;
+        private BatchScan scan;
+
+        MorselSpliterator(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super ColumnBatch> action) {
+            if(from >= to){
+                return false;
+            }
+            if(scan == null){
+                buffers.acquireUninterruptibly();
+                scan = new BatchScan(tx, tblname, layout, fldnames, BATCH_CAPACITY, from, to);
+                open.add(scan);
+            }
+            boolean found;
+            try{
+                found = scan.nextBatch();
+            } catch (RuntimeException e) {
+                finish();
+                throw e;
+            }
+            if(found){
+                action.accept(scan.batch());
+                return true;
+            }
+            finish();
+            return false;
+        }
+
+        private void finish() {
+            if(open.remove(scan)){
+                scan.close();
+                buffers.release();
+            }
+            from = to;
+        }
+
+        @Override
+        public Spliterator<ColumnBatch> trySplit() {
+            if(scan != null || to - from <= morselBlocks){
+                return null;
+            }
+            // split on a morsel boundary
+            int morsels = (to - from + morselBlocks - 1) / morselBlocks;
+            int mid = from + (morsels / 2) * morselBlocks;
+            MorselSpliterator prefix = new MorselSpliterator(from, mid);
+            from = mid;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            return to - from;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+}
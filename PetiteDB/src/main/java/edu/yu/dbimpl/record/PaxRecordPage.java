@@ -0,0 +1,76 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.sql.Types;
+
+/** A RecordPage for tables whose Layout uses the PAX record format: the block
+ * holds as many records as a FIXED-format block, but stores them column by
+ * column.
+ *
+ * Block format, for a block of n slots:
+ *
+ *   [n in-use flags][n values of field 0][n values of field 1] ...
+ *
+ * Each field's "minipage" holds that field's value for every slot, in slot
+ * order, each value taking the field's fixed length (as in the FIXED format).
+ * A scan that reads one field of every record therefore reads one contiguous
+ * run of the block rather than a few bytes of every slot.
+ *
+ * Only the placement of the flags and values differs from RecordPage: slot
+ * numbers, locking, and logging are the same.
+ */
+public class PaxRecordPage extends RecordPage {
+    private final int slots;
+    private final int[] columnOffsets;
+    private final int[] widths;
+
+    /**
+     * Constructor.
+     *
+     * @param tx     Defines the transaction scope in which operations on the block
+     *               will take place.
+     * @param blk    The block in which the records are stored
+     * @param layout Holds the physical and logical record schema, must use the
+     *               PAX record format
+     * @throws IllegalArgumentException if the layout doesn't use the PAX format,
+     * or if the block is too small to hold at least one record.
+     */
+    public PaxRecordPage(TxBase tx, BlockIdBase blk, LayoutBase layout) {
+        super(tx, blk, layout);
+        Layout paxLayout = (Layout) layout;
+        if(paxLayout.format() != RecordFormat.PAX){
+            throw new IllegalArgumentException("Layout must use the PAX record format");
+        }
+        slots = tx.blockSize() / layout.slotSize();
+        columnOffsets = new int[paxLayout.fieldCount()];
+        widths = new int[paxLayout.fieldCount()];
+        int offset = slots;
+        for(int i = 0; i < widths.length; i++){
+            widths[i] = switch(paxLayout.type(i)){
+                case Types.INTEGER -> Integer.BYTES;
+                case Types.DOUBLE -> Double.BYTES;
+                case Types.VARCHAR -> Integer.BYTES + paxLayout.length(i);
+                default -> 1;
+            };
+            columnOffsets[i] = offset;
+            offset += slots * widths[i];
+        }
+    }
+
+    @Override
+    public int fieldOffset(int slot, int ordinal) {
+        return columnOffsets[ordinal] + slot * widths[ordinal];
+    }
+
+    @Override
+    public int flagOffset(int slot) {
+        return slot;
+    }
+
+    @Override
+    public int maxSlots() {
+        return slots;
+    }
+}
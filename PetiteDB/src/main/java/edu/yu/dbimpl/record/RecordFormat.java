@@ -0,0 +1,23 @@
+package edu.yu.dbimpl.record;
+
+/** The formats in which a table's records may be stored in its blocks.  A
+ * table's format is chosen when the table is created (see
+ * TableMgr.createTable(String, SchemaBase, RecordFormat, TxBase)) and is part
+ * of its Layout.
+ */
+public enum RecordFormat {
+    /** Fixed-length slots (RecordPage): every record reserves the maximum
+     * length of each of its VARCHAR fields.  This is the default.
+     */
+    FIXED,
+    /** Slotted pages (SlottedRecordPage): a slot directory at the start of the
+     * block locates variable-length tuples stored at its end, so a VARCHAR
+     * field only occupies the space its current value needs.
+     */
+    SLOTTED,
+    /** Column-wise blocks (PaxRecordPage): the slots of the FIXED format, but
+     * each block stores all of its records' values of a field together, so
+     * that scans reading a few fields touch less of each block.
+     */
+    PAX
+}
@@ -1,12 +1,12 @@
 package edu.yu.dbimpl.record;
 
 import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
 
 import java.sql.Types;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.Arrays;
 
 /** Specifies the public API for the RecordPage implementation by requiring all
  * RecordPage implementations to extend this base class.
@@ -57,7 +57,7 @@ import java.util.Map;
 public class RecordPage extends RecordPageBase{
     private final BlockIdBase block;
     private final TxBase tx;
-    private final LayoutBase layout;
+    private final Layout layout;
     /**
      * Constructor.
      * <p>
@@ -79,7 +79,7 @@ public class RecordPage extends RecordPageBase{
         super(tx, blk, layout);
         this.block = blk;
         this.tx = tx;
-        this.layout = layout;
+        this.layout = (Layout) layout;
         if(tx.blockSize() < layout.slotSize()){
             throw new IllegalArgumentException("Block size must be >= slot size");
         }
@@ -96,16 +96,14 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public int getInt(int slot, String fldname) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.INTEGER){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.INTEGER);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        return tx.getInt(block, offset);
+        int val = ((Tx)tx).getInt(block, slot, fieldOffset(slot, ordinal));
+        ((Tx)tx).endRecordRead(block, slot);
+        return val;
     }
 
     /**
@@ -119,16 +117,14 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public String getString(int slot, String fldname) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.VARCHAR){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.VARCHAR);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        return tx.getString(block, offset);
+        String val = ((Tx)tx).getString(block, slot, fieldOffset(slot, ordinal));
+        ((Tx)tx).endRecordRead(block, slot);
+        return val;
     }
 
     /**
@@ -142,16 +138,14 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public boolean getBoolean(int slot, String fldname) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.BOOLEAN){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.BOOLEAN);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        return tx.getBoolean(block, offset);
+        boolean val = ((Tx)tx).getBoolean(block, slot, fieldOffset(slot, ordinal));
+        ((Tx)tx).endRecordRead(block, slot);
+        return val;
     }
 
     /**
@@ -165,16 +159,14 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public double getDouble(int slot, String fldname) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.DOUBLE){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.DOUBLE);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        return tx.getDouble(block, offset);
+        double val = ((Tx)tx).getDouble(block, slot, fieldOffset(slot, ordinal));
+        ((Tx)tx).endRecordRead(block, slot);
+        return val;
     }
 
     /**
@@ -187,16 +179,13 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public void setInt(int slot, String fldname, int val) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.INTEGER){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.INTEGER);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        tx.setInt(block, offset, val, true);
+        ((Tx)tx).setInt(block, slot, fieldOffset(slot, ordinal), val, true);
     }
 
     /**
@@ -211,16 +200,16 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public void setString(int slot, String fldname, String val) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.VARCHAR || val.length() > layout.schema().length(fldname)){
+        int ordinal = resolve(slot, fldname, Types.VARCHAR);
+        if(val.length() > layout.length(ordinal)){
             throw new IllegalArgumentException("invalid input");
         }
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        tx.setString(block, offset, val, true);
+        ((Tx)tx).setString(block, slot, stringWriteOffset(slot, ordinal, val), val, true);
     }
 
     /**
@@ -233,16 +222,13 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public void setBoolean(int slot, String fldname, boolean val) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.BOOLEAN){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.BOOLEAN);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        tx.setBoolean(block, offset, val, true);
+        ((Tx)tx).setBoolean(block, slot, fieldOffset(slot, ordinal), val, true);
     }
 
     /**
@@ -255,16 +241,13 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public void setDouble(int slot, String fldname, double val) {
-        if(slot < 0 || !layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.DOUBLE){
-            throw new IllegalArgumentException("invalid input");
-        }
+        int ordinal = resolve(slot, fldname, Types.DOUBLE);
         tx.pin(block);
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        int offset = slot * layout.slotSize();
-        offset += layout.offset(fldname);
-        tx.setDouble(block, offset, val, true);
+        ((Tx)tx).setDouble(block, slot, fieldOffset(slot, ordinal), val, true);
     }
 
     /**
@@ -278,11 +261,12 @@ public class RecordPage extends RecordPageBase{
         if(slot < 0){
             throw new IllegalArgumentException("input must be greater than or equal to 0");
         }
-        if(!tx.getBoolean(block, slot*layout.slotSize())){
+        tx.pin(block);
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!isInUse(slot)){
             throw new IllegalStateException("slot not in use");
         }
-        tx.pin(block);
-        tx.setBoolean(block, slot*layout.slotSize(), false, true);
+        ((Tx)tx).setBoolean(block, slot, flagOffset(slot), false, true);
     }
 
     /**
@@ -295,36 +279,26 @@ public class RecordPage extends RecordPageBase{
      */
     @Override
     public void format() {
-        int num = tx.blockSize()/layout.slotSize();
-        int offset = 0;
+        int num = maxSlots();
         tx.pin(block);
-        List<String> fields = layout.schema().fields();
-        Map<String, Integer> types = new HashMap<>();
-        for(String field : fields){
-            types.put(field, layout.schema().type(field));
-        }
+        ((Tx)tx).xLockBlock(block);
+        int fieldCount = layout.fieldCount();
         for(int i = 0; i < num; i++){
-            tx.setBoolean(block, offset, false, false);
-            offset++;
-            for(String field : fields){
-                int type = types.get(field);
-                switch(type){
+            tx.setBoolean(block, flagOffset(i), false, false);
+            for(int field = 0; field < fieldCount; field++){
+                int offset = fieldOffset(i, field);
+                switch(layout.type(field)){
                     case Types.BOOLEAN:
                         tx.setBoolean(block, offset, false, false);
-                        offset++;
                         break;
                     case Types.INTEGER:
                         tx.setInt(block, offset, 0, false);
-                        offset+=4;
                         break;
                     case Types.DOUBLE:
                         tx.setDouble(block, offset, 0.0, false);
-                        offset+=8;
                         break;
                     case Types.VARCHAR:
                         tx.setString(block, offset, "", false);
-                        offset+=4;
-                        offset+=layout.schema().length(field);
                         break;
                 }
             }
@@ -347,24 +321,16 @@ public class RecordPage extends RecordPageBase{
         if(slot < -1){
             throw new IllegalArgumentException("input must be greater than or equal to -1");
         }
-        boolean found = false;
         tx.pin(block);
-        int size = layout.slotSize();
-        int offset = 0;
-        if(slot != BEFORE_FIRST_SLOT){
-            offset = slot*size + size;
-        }
-        int returnINT = 0;
-        while(!found && offset+size <= tx.blockSize()){
-            found = tx.getBoolean(block, offset);
-            returnINT = offset;
-            offset+=size;
-        }
-        if(!found){
-            return -1;
-        }else {
-            return returnINT/size;
+        int num = maxSlots();
+        for(int next = slot + 1; next < num; next++){
+            boolean found = ((Tx)tx).getBoolean(block, next, flagOffset(next));
+            ((Tx)tx).endRecordRead(block, next);
+            if(found){
+                return next;
+            }
         }
+        return -1;
     }
 
     /**
@@ -383,29 +349,166 @@ public class RecordPage extends RecordPageBase{
         if(slot < -1){
             throw new IllegalArgumentException("input must be greater than or equal to -1");
         }
-        boolean found = false;
         tx.pin(block);
-        int size = layout.slotSize();
-        int offset = 0;
-        if(slot != BEFORE_FIRST_SLOT){
-            offset += (slot*size + size);
+        // search under an intention lock, locking only the slot that we claim:
+        // another tx may have claimed it meanwhile, so re-check it once locked
+        ((Tx)tx).isLockBlock(block);
+        int num = maxSlots();
+        for(int next = slot + 1; next < num; next++){
+            if(!((Tx)tx).getHintBoolean(block, flagOffset(next))){
+                ((Tx)tx).xLockRecord(block, next);
+                if(!((Tx)tx).getBoolean(block, next, flagOffset(next))){
+                    ((Tx)tx).setBoolean(block, next, flagOffset(next), true, true);
+                    return next;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true iff the block has an empty slot.  Intended for maintaining
+     * the FreeSpaceMap after insertAfter() fails to find an empty slot after a
+     * given slot: the client must already have pinned the block, and hold a
+     * lock on it (as insertAfter() leaves it).  Under an intention lock the
+     * result is only a hint, since other txs may be claiming or freeing slots.
+     *
+     * @return true iff insertAfter(BEFORE_FIRST_SLOT) would succeed
+     */
+    public boolean hasRoom() {
+        int num = maxSlots();
+        for(int slot = 0; slot < num; slot++){
+            if(!((Tx)tx).getHintBoolean(block, flagOffset(slot))){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether the specified slot is "in-use", first acquiring a shared
+     * lock on that record.  The block must already be pinned by the client.
+     *
+     * @param slot uniquely identifies the record slot, must be non-negative.
+     * @return true iff the slot's "in-use" flag is set
+     * @throws IllegalArgumentException if slot is negative.
+     */
+    public boolean isInUse(int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("input must be greater than or equal to 0");
+        }
+        return ((Tx)tx).getBoolean(block, slot, flagOffset(slot));
+    }
+
+    /**
+     * Returns whether the specified slot is "in-use", first acquiring an
+     * exclusive lock on that record so that the caller can go on to modify it
+     * without upgrading a shared lock.  The block must already be pinned by the
+     * client.
+     *
+     * @param slot uniquely identifies the record slot, must be non-negative.
+     * @return true iff the slot's "in-use" flag is set
+     * @throws IllegalArgumentException if slot is negative.
+     */
+    public boolean isInUseForUpdate(int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("input must be greater than or equal to 0");
         }
-        int returnINT = 0;
-        while(!found && offset+size <= tx.blockSize()){
-            boolean next = tx.getBoolean(block, offset);
-            if(!next){
-                found = true;
-                tx.setBoolean(block, offset, true, true);
-                returnINT = offset;
-            }else{
-                offset+=size;
+        ((Tx)tx).xLockRecord(block, slot);
+        return ((Tx)tx).getBoolean(block, slot, flagOffset(slot));
+    }
+
+    /**
+     * Returns the offset, within the block, of the value of the field with the
+     * specified ordinal in the specified slot.  The block must already be
+     * pinned, and the slot locked, by the client.
+     *
+     * @param slot uniquely identifies the record slot, must be in use.
+     * @param ordinal the field's ordinal (see Layout#ordinal)
+     * @return the offset at which the field's value is stored
+     */
+    public int fieldOffset(int slot, int ordinal) {
+        return slot * layout.slotSize() + layout.offset(ordinal);
+    }
+
+    /**
+     * Returns the offset of the value of the field with the specified ordinal
+     * in the specified slot, reading any bookkeeping that locates the value
+     * directly from the block's page (see inUseSlots) rather than through the
+     * tx.
+     *
+     * @param page the block's page
+     * @param slot uniquely identifies the record slot, must be in use.
+     * @param ordinal the field's ordinal (see Layout#ordinal)
+     * @return the offset at which the field's value is stored
+     */
+    public int fieldOffset(PageBase page, int slot, int ordinal) {
+        return fieldOffset(slot, ordinal);
+    }
+
+    /**
+     * Returns the offset, within the block, of the specified slot's "in-use"
+     * flag.
+     *
+     * @param slot uniquely identifies the record slot, must be non-negative.
+     * @return the offset at which the slot's flag is stored
+     */
+    public int flagOffset(int slot) {
+        return slot * layout.slotSize();
+    }
+
+    /** Returns the number of record slots that fit in the block. */
+    public int maxSlots() {
+        return tx.blockSize() / layout.slotSize();
+    }
+
+    /**
+     * Returns the "in-use" slots of the block, in slot order, reading the
+     * block's page directly.  The client must have pinned the block and hold a
+     * shared lock on the whole block (see PageHandle#sharedPage), which covers
+     * every record that it goes on to read.
+     *
+     * @param page the block's page
+     * @return the in-use slots
+     */
+    public int[] inUseSlots(PageBase page) {
+        int num = maxSlots();
+        int[] slots = new int[num];
+        int count = 0;
+        for(int slot = 0; slot < num; slot++){
+            if(page.getBoolean(flagOffset(slot))){
+                slots[count++] = slot;
             }
         }
-        if(!found){
-            return -1;
-        }else {
-            return returnINT/size;
+        return Arrays.copyOf(slots, count);
+    }
+
+    /**
+     * Returns the offset at which the specified value of a string field should
+     * be written.  Record formats that store strings in variable-length space
+     * may first make room for the value; with fixed-length slots, this is just
+     * the field's offset.  The block must already be pinned, and the slot
+     * x-locked, by the client.
+     *
+     * @param slot uniquely identifies the record slot, must be in use.
+     * @param ordinal the ordinal of a VARCHAR field
+     * @param val the value about to be written
+     * @return the offset at which val should be written
+     */
+    public int stringWriteOffset(int slot, int ordinal, String val) {
+        return fieldOffset(slot, ordinal);
+    }
+
+    /** Resolves the field (one lookup) to its ordinal.
+     *
+     * @throws IllegalArgumentException if slot is negative, or if fldname isn't
+     * defined on the page's layout with the specified type.
+     */
+    private int resolve(int slot, String fldname, int type) {
+        if(slot < 0){
+            throw new IllegalArgumentException("invalid input");
         }
+        return layout.ordinal(fldname, type);
     }
 
     /**
@@ -204,7 +204,7 @@ public class Schema extends SchemaBase{
      */
     @Override
     public boolean hasField(String fldname) {
-        return columns.contains(fldname);
+        return typeMap.containsKey(fldname);
     }
 
     /**
@@ -217,10 +217,11 @@ public class Schema extends SchemaBase{
      */
     @Override
     public int type(String fldname) {
-        if(fldname==null || fldname.isEmpty() || !typeMap.containsKey(fldname)){
+        Integer type = fldname == null ? null : typeMap.get(fldname);
+        if(type == null){
             throw new IllegalArgumentException("not here");
         }
-        return typeMap.get(fldname);
+        return type;
     }
 
     /**
@@ -0,0 +1,500 @@
+package edu.yu.dbimpl.record;
+
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.file.FileMgr;
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.tx.Tx;
+import edu.yu.dbimpl.tx.TxBase;
+
+import java.sql.Types;
+import java.util.Arrays;
+
+/** A RecordPage for tables whose Layout uses the SLOTTED record format: the
+ * block holds variable-length tuples, so that a VARCHAR field only occupies
+ * the space needed by its current value rather than its maximum length.
+ *
+ * Block format:
+ *
+ *   [slot count][free-space end][slot directory ...] free space [tuples ...]
+ *
+ * The slot directory grows from the start of the block, and the tuples grow
+ * from the end of the block towards it.  Each directory entry holds the
+ * offset of its slot's tuple (0 iff the slot is empty) and the number of bytes
+ * reserved for the tuple.  A slot number never changes once assigned, so RIDs
+ * are stable: deleting a record just marks its directory entry empty, and
+ * insertAfter() reuses empty entries before appending new ones.
+ *
+ * A tuple stores the fixed-length fields at the offsets given by the Layout.
+ * Each VARCHAR field's Layout offset holds the offset (relative to the start
+ * of the tuple) of the string's bytes, which follow the fixed-length part.
+ *
+ * A string that shrinks (or keeps its length) is overwritten in place.  A
+ * string that grows requires the tuple to be rewritten: in the space already
+ * reserved for the tuple if possible, else in the block's free space, which
+ * is first compacted (squeezing out the space of deleted and moved tuples) if
+ * necessary.  Since RIDs are stable, a tuple can't move to another block: if
+ * the block can't make room for the grown tuple, the write fails with an
+ * IllegalStateException.
+ *
+ * Locking: a record's directory entry and tuple are covered by its record
+ * lock, as in RecordPage, and are accessed through the record-granular Tx
+ * methods.  insertAfter() claims a slot, whether an empty entry or one past
+ * the end of the directory, by x-locking its record.  The header (slot count
+ * and free-space end) isn't covered by locks: it's read and updated under the
+ * data file's latch (see FileMgr#latch), so that inserters and growing tuples
+ * take disjoint space without excluding each other.  Only compaction, which
+ * moves other records' tuples, x-locks the whole block.
+ *
+ * The writes to entries and tuples are logged, so inserts, tuple moves and
+ * compaction are undone on rollback like any other change.  Header updates
+ * outside a compaction aren't logged: the space of a rolled-back insert or
+ * move is reclaimed by the next compaction.
+ */
+public class SlottedRecordPage extends RecordPage {
+    private static final int SLOT_COUNT_OFFSET = 0;
+    private static final int FREE_END_OFFSET = Integer.BYTES;
+    private static final int DIRECTORY_OFFSET = 2 * Integer.BYTES;
+    private static final int DIRECTORY_ENTRY_SIZE = 2 * Integer.BYTES;
+
+    private final BlockIdBase block;
+    private final TxBase tx;
+    private final Layout layout;
+    private final int fixedSize;
+    // guards the header: never held while waiting for a lock
+    private final Object latch;
+
+    /**
+     * Constructor.
+     *
+     * @param tx     Defines the transaction scope in which operations on the block
+     *               will take place.
+     * @param blk    The block in which the records are stored
+     * @param layout Holds the physical and logical record schema, must use the
+     *               SLOTTED record format
+     * @throws IllegalArgumentException if the layout doesn't use the SLOTTED
+     * format, or if the block is too small to hold at least one record.
+     */
+    public SlottedRecordPage(TxBase tx, BlockIdBase blk, LayoutBase layout) {
+        super(tx, blk, layout);
+        this.block = blk;
+        this.tx = tx;
+        this.layout = (Layout) layout;
+        this.latch = ((FileMgr) ((Tx) tx).fileMgr()).latch(blk.fileName());
+        if(this.layout.format() != RecordFormat.SLOTTED){
+            throw new IllegalArgumentException("Layout must use the SLOTTED record format");
+        }
+        if(tx.blockSize() < DIRECTORY_OFFSET + DIRECTORY_ENTRY_SIZE + layout.slotSize()){
+            throw new IllegalArgumentException("Block size too small to hold a record");
+        }
+        int size = 0;
+        for(int i = 0; i < this.layout.fieldCount(); i++){
+            size = Math.max(size, this.layout.offset(i) + fixedLength(this.layout.type(i)));
+        }
+        fixedSize = size;
+    }
+
+    /**
+     * Deletes the specified slot by marking its directory entry empty.  The
+     * tuple's space is reclaimed by a later compaction.
+     *
+     * @param slot uniquely identifies the record slot.
+     * @throws IllegalArgumentException if slot is negative.
+     */
+    @Override
+    public void delete(int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("input must be greater than or equal to 0");
+        }
+        tx.pin(block);
+        ((Tx)tx).xLockRecord(block, slot);
+        if(!inUse(slot)){
+            throw new IllegalStateException("slot not in use");
+        }
+        ((Tx)tx).setInt(block, slot, entry(slot), 0, true);
+    }
+
+    /**
+     * Initializes the block to hold no slots, with the entire block (less the
+     * header) available as free space.  Not logged: see RecordPageBase.
+     */
+    @Override
+    public void format() {
+        tx.pin(block);
+        ((Tx)tx).xLockBlock(block);
+        tx.setInt(block, SLOT_COUNT_OFFSET, 0, false);
+        tx.setInt(block, FREE_END_OFFSET, tx.blockSize(), false);
+    }
+
+    @Override
+    public int nextAfter(int slot) {
+        if(slot < -1){
+            throw new IllegalArgumentException("input must be greater than or equal to -1");
+        }
+        tx.pin(block);
+        for(int s = slot + 1; ; s++){
+            ((Tx)tx).sLockRecord(block, s);
+            boolean past = s >= slotCount();
+            boolean found = !past && tupleOffset(s) != 0;
+            ((Tx)tx).endRecordRead(block, s);
+            if(found){
+                return s;
+            }
+            if(past){
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Claims the first empty slot after the specified slot, appending a new
+     * directory entry if there is none, and stores an empty tuple (all fields
+     * zero, false, or the empty string) for it.
+     *
+     * @return the claimed slot, or -1 if the block has no room for another
+     * record even after compaction.
+     * @throws IllegalArgumentException if slot is less than -1.
+     */
+    @Override
+    public int insertAfter(int slot) {
+        if(slot < -1){
+            throw new IllegalArgumentException("input must be greater than or equal to -1");
+        }
+        tx.pin(block);
+        Tx t = (Tx) tx;
+        // search under an intention lock, locking only the slot that we claim:
+        // another tx may have claimed it meanwhile, so re-check it once locked
+        t.isLockBlock(block);
+        Object[] values = emptyTuple();
+        int size = encodedSize(values);
+        for(int s = slot + 1; ; s++){
+            if(s < slotCount() && t.getHintInt(block, entry(s)) != 0){
+                continue;
+            }
+            t.xLockRecord(block, s);
+            if(s < slotCount() && tupleOffset(s) != 0){
+                continue;
+            }
+            int offset = allocate(s, size);
+            if(offset < 0){
+                t.xLockBlock(block);
+                if(!compact(-1, size, entry(Math.max(slotCount(), s + 1)))){
+                    return -1;
+                }
+                offset = allocate(s, size);
+            }
+            writeTuple(s, offset, values, -1);
+            setEntry(s, offset, size);
+            return s;
+        }
+    }
+
+    /**
+     * Returns true iff the block has an empty directory entry, or enough free
+     * space for a new entry and an empty tuple.  Space that compaction would
+     * recover isn't counted, except in that deleted tuples leave empty
+     * entries behind.
+     */
+    @Override
+    public boolean hasRoom() {
+        int count = slotCount();
+        for(int s = 0; s < count; s++){
+            if(((Tx)tx).getHintInt(block, entry(s)) == 0){
+                return true;
+            }
+        }
+        return freeEnd() - entry(count + 1) >= encodedSize(emptyTuple());
+    }
+
+    @Override
+    public boolean isInUse(int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("input must be greater than or equal to 0");
+        }
+        ((Tx)tx).sLockRecord(block, slot);
+        return inUse(slot);
+    }
+
+    @Override
+    public boolean isInUseForUpdate(int slot) {
+        if(slot < 0){
+            throw new IllegalArgumentException("input must be greater than or equal to 0");
+        }
+        ((Tx)tx).xLockRecord(block, slot);
+        return inUse(slot);
+    }
+
+    @Override
+    public int[] inUseSlots(PageBase page) {
+        int count = page.getInt(SLOT_COUNT_OFFSET);
+        int[] slots = new int[count];
+        int found = 0;
+        for(int s = 0; s < count; s++){
+            if(page.getInt(entry(s)) != 0){
+                slots[found++] = s;
+            }
+        }
+        return Arrays.copyOf(slots, found);
+    }
+
+    @Override
+    public int fieldOffset(int slot, int ordinal) {
+        int tuple = tupleOffset(slot);
+        int offset = tuple + layout.offset(ordinal);
+        if(layout.type(ordinal) == Types.VARCHAR){
+            return tuple + ((Tx)tx).getInt(block, slot, offset);
+        }
+        return offset;
+    }
+
+    @Override
+    public int fieldOffset(PageBase page, int slot, int ordinal) {
+        int tuple = page.getInt(entry(slot));
+        int offset = tuple + layout.offset(ordinal);
+        if(layout.type(ordinal) == Types.VARCHAR){
+            return tuple + page.getInt(offset);
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the offset at which the specified value of a string field should
+     * be written, first rewriting the tuple with room for the value if the
+     * value doesn't fit the space that the field has in the tuple: the space up
+     * to the next field's string, or (for the last string) to the end of the
+     * tuple's reserved size.
+     *
+     * @throws IllegalStateException if the block can't make room for the grown
+     * tuple.
+     */
+    @Override
+    public int stringWriteOffset(int slot, int ordinal, String val) {
+        int tuple = tupleOffset(slot);
+        int offset = tuple + ((Tx)tx).getInt(block, slot, tuple + layout.offset(ordinal));
+        int reserved = tupleSize(slot);
+        int end = tuple + reserved;
+        for(int i = 0; i < layout.fieldCount(); i++){
+            if(i != ordinal && layout.type(i) == Types.VARCHAR){
+                int other = tuple + ((Tx)tx).getInt(block, slot, tuple + layout.offset(i));
+                if(other > offset && other < end){
+                    end = other;
+                }
+            }
+        }
+        if(PageBase.maxLength(val.length()) <= end - offset){
+            return offset;
+        }
+        Object[] values = readTuple(slot, tuple);
+        values[ordinal] = val;
+        int size = encodedSize(values);
+        if(size > reserved){
+            tuple = grow(slot, tuple, reserved, size);
+            setEntry(slot, tuple, size);
+        }
+        return writeTuple(slot, tuple, values, ordinal);
+    }
+
+    /** Takes space for a tuple of the specified size from the block's free
+     * space, first appending directory entries up to the specified slot if
+     * it's past the end of the directory.  The client must have x-locked the
+     * slot's record.
+     *
+     * @return the offset of the space, or -1 (changing nothing) if the free
+     * space is too small.
+     */
+    private int allocate(int slot, int size) {
+        synchronized(latch){
+            int count = slotCount();
+            int newCount = Math.max(count, slot + 1);
+            int offset = freeEnd() - size;
+            if(offset < entry(newCount)){
+                return -1;
+            }
+            if(newCount > count){
+                // entries beyond the old directory may hold stale tuple bytes
+                for(int s = count; s < newCount; s++){
+                    ((Tx)tx).setHintInt(block, entry(s), 0);
+                }
+                ((Tx)tx).setHintInt(block, SLOT_COUNT_OFFSET, newCount);
+            }
+            ((Tx)tx).setHintInt(block, FREE_END_OFFSET, offset);
+            return offset;
+        }
+    }
+
+    /** Returns the offset of space for the specified slot's tuple to grow to
+     * the specified size: the tuple extended downwards if it borders the free
+     * space, else new space (see allocate), compacting the block first if
+     * necessary.  The client must have x-locked the slot's record.
+     *
+     * @throws IllegalStateException if the block can't make room.
+     */
+    private int grow(int slot, int tuple, int reserved, int size) {
+        synchronized(latch){
+            int extended = tuple + reserved - size;
+            if(tuple == freeEnd() && extended >= entry(slotCount())){
+                ((Tx)tx).setHintInt(block, FREE_END_OFFSET, extended);
+                return extended;
+            }
+        }
+        int offset = allocate(slot, size);
+        if(offset < 0){
+            ((Tx)tx).xLockBlock(block);
+            if(!compact(slot, size, entry(slotCount()))){
+                throw new IllegalStateException("record no longer fits in " + block);
+            }
+            offset = allocate(slot, size);
+        }
+        return offset;
+    }
+
+    /** Rewrites every in-use tuple (other than the excluded slot's) so that the
+     * tuples are contiguous at the end of the block, provided that this leaves
+     * room for a new tuple of the specified size beyond the specified end of
+     * the directory.  Nothing is written if it doesn't.  The client must have
+     * x-locked the block.
+     *
+     * @return true iff the block was compacted
+     */
+    private boolean compact(int excludedSlot, int size, int dirEnd) {
+        int count = slotCount();
+        Object[][] tuples = new Object[count][];
+        int[] sizes = new int[count];
+        int needed = size;
+        for(int s = 0; s < count; s++){
+            int tuple = tupleOffset(s);
+            if(s != excludedSlot && tuple != 0){
+                tuples[s] = readTuple(s, tuple);
+                sizes[s] = encodedSize(tuples[s]);
+                needed += sizes[s];
+            }
+        }
+        if(tx.blockSize() - dirEnd < needed){
+            return false;
+        }
+        int offset = tx.blockSize();
+        for(int s = 0; s < count; s++){
+            if(tuples[s] != null){
+                offset -= sizes[s];
+                writeTuple(s, offset, tuples[s], -1);
+                setEntry(s, offset, sizes[s]);
+            }
+        }
+        tx.setInt(block, FREE_END_OFFSET, offset, true);
+        return true;
+    }
+
+    private Object[] emptyTuple() {
+        Object[] values = new Object[layout.fieldCount()];
+        for(int i = 0; i < values.length; i++){
+            values[i] = switch(layout.type(i)){
+                case Types.INTEGER -> 0;
+                case Types.DOUBLE -> 0.0;
+                case Types.BOOLEAN -> false;
+                default -> "";
+            };
+        }
+        return values;
+    }
+
+    private Object[] readTuple(int slot, int tuple) {
+        Tx t = (Tx) tx;
+        Object[] values = new Object[layout.fieldCount()];
+        for(int i = 0; i < values.length; i++){
+            int offset = tuple + layout.offset(i);
+            values[i] = switch(layout.type(i)){
+                case Types.INTEGER -> t.getInt(block, slot, offset);
+                case Types.DOUBLE -> t.getDouble(block, slot, offset);
+                case Types.BOOLEAN -> t.getBoolean(block, slot, offset);
+                default -> t.getString(block, slot, tuple + t.getInt(block, slot, offset));
+            };
+        }
+        return values;
+    }
+
+    /** Writes the specified slot's tuple at the specified offset.  The string
+     * value of the skipped field (if any) isn't written, but space is laid out
+     * for it (and holds the empty string).
+     *
+     * @return the offset of the skipped field's string, or -1
+     */
+    private int writeTuple(int slot, int tuple, Object[] values, int skippedOrdinal) {
+        Tx t = (Tx) tx;
+        int varOffset = fixedSize;
+        int skipped = -1;
+        for(int i = 0; i < values.length; i++){
+            int offset = tuple + layout.offset(i);
+            switch(layout.type(i)){
+                case Types.INTEGER -> t.setInt(block, slot, offset, (Integer) values[i], true);
+                case Types.DOUBLE -> t.setDouble(block, slot, offset, (Double) values[i], true);
+                case Types.BOOLEAN -> t.setBoolean(block, slot, offset, (Boolean) values[i], true);
+                default -> {
+                    String s = (String) values[i];
+                    t.setInt(block, slot, offset, varOffset, true);
+                    // the space may hold stale bytes: give it a valid (empty)
+                    // string before the logged string write reads the old value
+                    t.setInt(block, slot, tuple + varOffset, 0, true);
+                    if(i == skippedOrdinal){
+                        skipped = tuple + varOffset;
+                    }else{
+                        t.setString(block, slot, tuple + varOffset, s, true);
+                    }
+                    varOffset += PageBase.maxLength(s.length());
+                }
+            }
+        }
+        return skipped;
+    }
+
+    private int encodedSize(Object[] values) {
+        int size = fixedSize;
+        for(int i = 0; i < values.length; i++){
+            if(layout.type(i) == Types.VARCHAR){
+                size += PageBase.maxLength(((String) values[i]).length());
+            }
+        }
+        return size;
+    }
+
+    private static int fixedLength(int type) {
+        return switch(type){
+            case Types.INTEGER, Types.VARCHAR -> Integer.BYTES;
+            case Types.DOUBLE -> Double.BYTES;
+            default -> 1;
+        };
+    }
+
+    private boolean inUse(int slot) {
+        return slot < slotCount() && tupleOffset(slot) != 0;
+    }
+
+    // the header is read under the latch rather than a lock (see the class
+    // comment)
+    private int slotCount() {
+        synchronized(latch){
+            return ((Tx)tx).getHintInt(block, SLOT_COUNT_OFFSET);
+        }
+    }
+
+    private int freeEnd() {
+        synchronized(latch){
+            return ((Tx)tx).getHintInt(block, FREE_END_OFFSET);
+        }
+    }
+
+    private int tupleOffset(int slot) {
+        return ((Tx)tx).getInt(block, slot, entry(slot));
+    }
+
+    private int tupleSize(int slot) {
+        return ((Tx)tx).getInt(block, slot, entry(slot) + Integer.BYTES);
+    }
+
+    private void setEntry(int slot, int tuple, int size) {
+        ((Tx)tx).setInt(block, slot, entry(slot), tuple, true);
+        ((Tx)tx).setInt(block, slot, entry(slot) + Integer.BYTES, size, true);
+    }
+
+    private static int entry(int slot) {
+        return DIRECTORY_OFFSET + slot * DIRECTORY_ENTRY_SIZE;
+    }
+}
@@ -2,11 +2,22 @@ package edu.yu.dbimpl.record;
 
 import edu.yu.dbimpl.file.BlockId;
 import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.file.PageBase;
 import edu.yu.dbimpl.query.Datum;
 import edu.yu.dbimpl.query.DatumBase;
+import edu.yu.dbimpl.query.Expression;
+import edu.yu.dbimpl.query.Predicate;
+import edu.yu.dbimpl.query.Term;
+import edu.yu.dbimpl.tx.IsolationLevel;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
+import edu.yu.dbimpl.tx.recovery.RowImage;
 
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 /** Specifies the public API for the TableScan implementation by requiring all
  * TableScan implementations to extend this base class.
@@ -33,14 +44,58 @@ import java.sql.Types;
  *
  * Reminder: per interface semantics and per relational database semantics,
  * TableScan.next() on an empty table will return false.
+ *
+ * Implementation note: the scan holds exactly one pin, on its current block,
+ * through a PageHandle.  The current slot is validated (and record-locked)
+ * once when the scan is positioned on it; field accesses then go straight to
+ * the page.  Under READ_COMMITTED the slot is revalidated on every read, since
+ * the record's sLock is released after each read.
+ *
+ * Implementation note: besides the name-based accessors, the scan exposes
+ * accessors that take a field ordinal (see Layout#ordinal).  Clients that
+ * read the same fields from many records should resolve each field name once
+ * and use the ordinal accessors, which do no per-record name lookups.
+ *
+ * Implementation note: the blocks of a table whose Layout uses the SLOTTED
+ * record format are accessed through SlottedRecordPage rather than RecordPage
+ * (and PAX tables through PaxRecordPage); the scan asks the record page for
+ * each field's offset.
+ *
+ * Implementation note: insert() consults the table's FreeSpaceMap to find the
+ * next block with room (or to decide to append one) without visiting the
+ * blocks in between; delete() marks the record's block as having room.
+ *
+ * Implementation note: the field writes to the current record are collected
+ * in a RowImage and logged as a single log record when the scan leaves the
+ * record, is closed, or its tx completes, rather than logged one by one.
+ *
+ * Implementation note: a client (e.g., a SelectScan) may push a predicate into
+ * the scan (see pushPredicate), in which case next() skips the records that
+ * fail it, comparing the page's bytes with the predicate's constants rather
+ * than building a Datum per field.
  */
 public class TableScan extends TableScanBase {
+    // what is known about the current slot: whether it's in use, and which
+    // record lock covers it
+    private static final int ROW_UNCHECKED = 0;
+    private static final int ROW_SHARED = 1;
+    private static final int ROW_EXCLUSIVE = 2;
+
     private final TxBase tx;
-    private final LayoutBase layout;
+    private final Layout layout;
     private final String fileName;
+    private final boolean readCommitted;
     private RID currentRID;
-    private RecordPageBase currentRecordPage;
+    private RecordPage currentRecordPage;
+    private FreeSpaceMap freeSpace;
+    private PageHandle handle;
     private int currentSlot;
+    private int rowState;
+    // unlogged writes to the current record, or null if there are none
+    private RowImage pendingRow;
+    private boolean completionHooked = false;
+    // terms that next() checks before returning a record
+    private PushedTerm[] pushed = new PushedTerm[0];
     /**
      * Constructor: if the file for the specified table is currently empty, the
      * Scan will append a block; otherwise, the Scan will be positioned on the
@@ -59,17 +114,19 @@ public class TableScan extends TableScanBase {
     public TableScan(TxBase tx, String tblname, LayoutBase layout) {
         super(tx, tblname, layout);
         this.tx = tx;
-        this.layout = layout;
+        this.layout = (Layout) layout;
         this.fileName = tblname + "_data.tbl";
+        this.freeSpace = new FreeSpaceMap(tx, tblname);
+        this.readCommitted = ((Tx)tx).isolationLevel() == IsolationLevel.READ_COMMITTED;
         currentRID = new RID(0, 0);
         currentSlot = -1;
+        rowState = ROW_UNCHECKED;
         if(tx.size(fileName) <= 0){
             tx.append(fileName);
-            currentRecordPage = new RecordPage(tx, new BlockId(fileName, 0), layout);
-            currentRecordPage.format();
+            moveToBlock(new BlockId(fileName, 0));
+            formatCurrentBlock();
         }else{
-            currentRecordPage = new RecordPage(tx, new BlockId(fileName, 0), layout);
-            this.tx.pin(currentRecordPage.block());
+            moveToBlock(new BlockId(fileName, 0));
         }
     }
 
@@ -97,31 +154,13 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void setVal(String fldname, DatumBase val) {//complete
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
+        switch(val.getSQLType()){
+            case Types.INTEGER -> setInt(fldname, val.asInt());
+            case Types.VARCHAR -> setString(fldname, val.asString());
+            case Types.BOOLEAN -> setBoolean(fldname, val.asBoolean());
+            case Types.DOUBLE -> setDouble(fldname, val.asDouble());
+            default -> throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
         }
-        int type = val.getSQLType();
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != type){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        switch(type){
-            case Types.INTEGER:
-                currentRecordPage.setInt(currentSlot, fldname, val.asInt());
-                break;
-            case Types.VARCHAR:
-                currentRecordPage.setString(currentSlot, fldname, val.asString());
-                break;
-            case Types.BOOLEAN:
-                currentRecordPage.setBoolean(currentSlot, fldname, val.asBoolean());
-                break;
-            case Types.DOUBLE:
-                currentRecordPage.setDouble(currentSlot, fldname, val.asDouble());
-                break;
-        }
-        tx.unpin(currentRecordPage.block());
     }
 
     /**
@@ -134,17 +173,7 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void setInt(String fldname, int val) {
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.INTEGER){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        currentRecordPage.setInt(currentSlot, fldname, val);
-        tx.unpin(currentRecordPage.block());
+        handle.setInt(writeOffset(fldname, Types.INTEGER), val, rowImage());
     }
 
     /**
@@ -157,17 +186,7 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void setDouble(String fldname, double val) {//complete
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.DOUBLE){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        currentRecordPage.setDouble(currentSlot, fldname, val);
-        tx.unpin(currentRecordPage.block());
+        handle.setDouble(writeOffset(fldname, Types.DOUBLE), val, rowImage());
     }
 
     /**
@@ -180,17 +199,7 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void setBoolean(String fldname, boolean val) {//complete
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.BOOLEAN){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        currentRecordPage.setBoolean(currentSlot, fldname, val);
-        tx.unpin(currentRecordPage.block());
+        handle.setBoolean(writeOffset(fldname, Types.BOOLEAN), val, rowImage());
     }
 
     /**
@@ -203,17 +212,70 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void setString(String fldname, String val) {//complete
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
+        if(currentSlot < 0){
+            throw new IllegalArgumentException("not in valid slot");
         }
+        checkRow(true);
+        writeString(layout.ordinal(fldname, Types.VARCHAR), val);
+    }
+
+    /** Modifies the value of the integer field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't an integer field
+     */
+    public void setInt(int ordinal, int val) {
+        handle.setInt(writeOffset(ordinal, Types.INTEGER), val, rowImage());
+    }
+
+    /** Modifies the value of the double field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't a double field
+     */
+    public void setDouble(int ordinal, double val) {
+        handle.setDouble(writeOffset(ordinal, Types.DOUBLE), val, rowImage());
+    }
+
+    /** Modifies the value of the boolean field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't a boolean field
+     */
+    public void setBoolean(int ordinal, boolean val) {
+        handle.setBoolean(writeOffset(ordinal, Types.BOOLEAN), val, rowImage());
+    }
+
+    /** Modifies the value of the string field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range, the
+     * field isn't a string field, or val is longer than the field's length
+     */
+    public void setString(int ordinal, String val) {
         if(currentSlot < 0){
             throw new IllegalArgumentException("not in valid slot");
         }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.VARCHAR){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
+        checkRow(true);
+        checkField(ordinal, Types.VARCHAR);
+        writeString(ordinal, val);
+    }
+
+    private void writeString(int ordinal, String val) {
+        if(val.length() > layout.length(ordinal)){
+            throw new IllegalArgumentException("value too long for field " + layout.fieldName(ordinal));
+        }
+        if(layout.format() == RecordFormat.SLOTTED){
+            // the record page may first move the record to make room for a
+            // longer value, logging the move: log the earlier writes before it
+            flushRow();
+            handle.setString(currentRecordPage.stringWriteOffset(currentSlot, ordinal, val), val, true);
+        }else{
+            handle.setString(currentRecordPage.fieldOffset(currentSlot, ordinal), val, rowImage());
         }
-        currentRecordPage.setString(currentSlot, fldname, val);
-        tx.unpin(currentRecordPage.block());
     }
 
     /**
@@ -223,26 +285,31 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void insert() {//complete
+        flushRow();
         while(true){
             int slot = currentRecordPage.insertAfter(currentSlot);
+            // insertAfter left the block locked, so its free slots can be
+            // counted (for the FreeSpaceMap's hint)
+            boolean full = slot < 0 && (currentSlot < 0 || !currentRecordPage.hasRoom());
             tx.unpin(currentRecordPage.block());
             if (slot >= 0) {
                 currentSlot = slot;
                 currentRID = new RID(currentRecordPage.block().number(), currentSlot);
+                rowState = ROW_EXCLUSIVE;
                 return;
             }
-            BlockIdBase blk = currentRecordPage.block();
-            int nextBlkNum = blk.number() + 1;
-            tx.unpin(blk);
-            if (nextBlkNum >= tx.size(fileName)) {
-                tx.append(fileName);
-                BlockIdBase newBlk = new BlockId(fileName, nextBlkNum);
-                currentRecordPage = new RecordPage(tx, newBlk, layout);
-                currentRecordPage.format();
+            int blkNum = currentRecordPage.block().number();
+            if (full) {
+                freeSpace.markFull(blkNum);
+            }
+            int nextBlkNum = freeSpace.findBlockWithRoom(blkNum + 1, tx.size(fileName));
+            if (nextBlkNum < 0) {
+                nextBlkNum = tx.append(fileName).number();
+                moveToBlock(new BlockId(fileName, nextBlkNum));
+                formatCurrentBlock();
+                freeSpace.markHasRoom(nextBlkNum);
             } else {
-                BlockIdBase nextBlk = new BlockId(fileName, nextBlkNum);
-                tx.pin(nextBlk);
-                currentRecordPage = new RecordPage(tx, nextBlk, layout);
+                moveToBlock(new BlockId(fileName, nextBlkNum));
             }
             // Reset currentSlot to -1 so we search the new block from the beginning
             currentSlot = -1;
@@ -255,8 +322,11 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void delete() {//complete
+        flushRow();
         currentRecordPage.delete(currentSlot);
         tx.unpin(currentRecordPage.block());
+        freeSpace.markHasRoom(currentRecordPage.block().number());
+        rowState = ROW_UNCHECKED;
     }
 
     /**
@@ -276,15 +346,13 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void moveToRid(RID rid) {//complete
-        BlockIdBase block = currentRecordPage.block();
-        if(block.number() !=  rid.blockNumber()){
-            tx.unpin(block);
-            BlockIdBase block2 = new BlockId(fileName, rid.blockNumber());
-            tx.pin(block2);
-            currentRecordPage = new RecordPage(tx, block2, layout);
+        flushRow();
+        if(currentRecordPage.block().number() !=  rid.blockNumber()){
+            moveToBlock(new BlockId(fileName, rid.blockNumber()));
         }
         currentRID = rid;
         currentSlot = rid.slot();
+        rowState = ROW_UNCHECKED;
     }
 
     /**
@@ -293,15 +361,13 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void beforeFirst() {//complete
-        BlockIdBase block = currentRecordPage.block();
-        if(block.number() !=  0){
-            tx.unpin(block);
-            BlockIdBase block2 = new BlockId(fileName, 0);
-            tx.pin(block2);
-            currentRecordPage = new RecordPage(tx, block2, layout);
+        flushRow();
+        if(currentRecordPage.block().number() !=  0){
+            moveToBlock(new BlockId(fileName, 0));
         }
         currentSlot = -1;
         currentRID = new RID(0, 0);
+        rowState = ROW_UNCHECKED;
     }
 
     /**
@@ -312,35 +378,37 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public boolean next() {//complete
-        boolean found = false;
+        flushRow();
         int eof = tx.size(fileName);
         BlockIdBase og = currentRecordPage.block();
-        BlockIdBase searchbBlock = currentRecordPage.block();
-        RecordPageBase recordPage = currentRecordPage;
-        int searchSlot = currentSlot;
-
-        while(!found && searchbBlock.number() < eof){
-            int next = recordPage.nextAfter(searchSlot);
-
-            if(next == -1){
-                tx.unpin(searchbBlock);
-                int nextBlock = searchbBlock.number()+1;
-                searchbBlock = new BlockId(fileName, nextBlock);
-                recordPage = new RecordPage(this.tx, searchbBlock, layout);
-                searchSlot = -1;
-            }else{
+        int ogSlot = currentSlot;
+        while(true){
+            int next = currentRecordPage.nextAfter(currentSlot);
+            tx.unpin(currentRecordPage.block());
+            if(next >= 0){
                 currentSlot = next;
-                currentRID = new RID(searchbBlock.number(), currentSlot);
-                found = true;
-                if(searchbBlock.equals(og)){
-                    tx.unpin(searchbBlock);
-                }else{
-                    tx.unpin(og);
-                    currentRecordPage = new RecordPage(tx, searchbBlock, layout);
+                currentRID = new RID(currentRecordPage.block().number(), currentSlot);
+                // nextAfter s-locked the slot, and (unless it has already
+                // released that lock) the slot's in-use state is now known
+                rowState = readCommitted ? ROW_UNCHECKED : ROW_SHARED;
+                if(pushed.length == 0 || satisfiesPushed()){
+                    return true;
                 }
+                continue;
             }
+            int nextBlkNum = currentRecordPage.block().number() + 1;
+            if(nextBlkNum >= eof){
+                // no more records: the scan stays where it was
+                if(!currentRecordPage.block().equals(og)){
+                    moveToBlock(og);
+                }
+                currentSlot = ogSlot;
+                rowState = ROW_UNCHECKED;
+                return false;
+            }
+            moveToBlock(new BlockId(fileName, nextBlkNum));
+            currentSlot = -1;
         }
-        return  found;
     }
 
     /**
@@ -354,17 +422,20 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public int getInt(String fldname) {//complete
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.INTEGER){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        int val =  currentRecordPage.getInt(currentSlot, fldname);
-        tx.unpin(currentRecordPage.block());
+        int val = handle.getInt(readOffset(fldname, Types.INTEGER));
+        endRead();
+        return val;
+    }
+
+    /** Returns the value of the integer field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't an integer field
+     */
+    public int getInt(int ordinal) {
+        int val = handle.getInt(readOffset(ordinal, Types.INTEGER));
+        endRead();
         return val;
     }
 
@@ -379,20 +450,20 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public boolean getBoolean(String fldname) {//complete
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.BOOLEAN){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        boolean val = currentRecordPage.getBoolean(currentSlot, fldname);
-        tx.unpin(currentRecordPage.block());
+        boolean val = handle.getBoolean(readOffset(fldname, Types.BOOLEAN));
+        endRead();
+        return val;
+    }
+
+    /** Returns the value of the boolean field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't a boolean field
+     */
+    public boolean getBoolean(int ordinal) {
+        boolean val = handle.getBoolean(readOffset(ordinal, Types.BOOLEAN));
+        endRead();
         return val;
     }
 
@@ -407,17 +478,20 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public double getDouble(String fldname) {//complete
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.DOUBLE){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        double val = currentRecordPage.getDouble(currentSlot, fldname);
-        tx.unpin(currentRecordPage.block());
+        double val = handle.getDouble(readOffset(fldname, Types.DOUBLE));
+        endRead();
+        return val;
+    }
+
+    /** Returns the value of the double field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't a double field
+     */
+    public double getDouble(int ordinal) {
+        double val = handle.getDouble(readOffset(ordinal, Types.DOUBLE));
+        endRead();
         return val;
     }
 
@@ -432,17 +506,20 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public String getString(String fldname) {//complete
-        if(currentSlot < 0){
-            throw new IllegalArgumentException("not in valid slot");
-        }
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
-        if(!layout.schema().hasField(fldname) || layout.schema().type(fldname) != Types.VARCHAR){
-            throw new IllegalArgumentException("field " + fldname + " not found or wrong type");
-        }
-        String val = currentRecordPage.getString(currentSlot, fldname);
-        tx.unpin(currentRecordPage.block());
+        String val = handle.getString(readOffset(fldname, Types.VARCHAR));
+        endRead();
+        return val;
+    }
+
+    /** Returns the value of the string field with the specified ordinal in
+     * the current record.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range or the
+     * field isn't a string field
+     */
+    public String getString(int ordinal) {
+        String val = handle.getString(readOffset(ordinal, Types.VARCHAR));
+        endRead();
         return val;
     }
 
@@ -456,25 +533,38 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public DatumBase getVal(String fldname) {//complete
-        if(!tx.getBoolean(currentRecordPage.block(), currentSlot*layout.slotSize())){
-            throw new IllegalStateException("slot not in use");
-        }
         if(currentSlot < 0){
             throw new IllegalArgumentException("not in valid slot");
         }
-        if(!layout.schema().hasField(fldname)){
-            throw new IllegalArgumentException("field " + fldname + " not found");
+        checkRow(false);
+        int ordinal = layout.ordinal(fldname);
+        DatumBase d = datum(fieldOffset(ordinal, layout.type(ordinal)), layout.type(ordinal));
+        endRead();
+        return d;
+    }
+
+    /** Returns the value of the field with the specified ordinal in the
+     * current record, expressed as a DatumBase.
+     *
+     * @throws IllegalArgumentException if the ordinal is out of range
+     */
+    public DatumBase getVal(int ordinal) {
+        if(ordinal < 0 || ordinal >= layout.fieldCount()){
+            throw new IllegalArgumentException("no field with ordinal " + ordinal);
         }
-        int type = layout.schema().type(fldname);
-        DatumBase d = switch (type) {
-            case Types.INTEGER -> new Datum(currentRecordPage.getInt(currentSlot, fldname));
-            case Types.DOUBLE -> new Datum(currentRecordPage.getDouble(currentSlot, fldname));
-            case Types.VARCHAR -> new Datum(currentRecordPage.getString(currentSlot, fldname));
-            case Types.BOOLEAN -> new Datum(currentRecordPage.getBoolean(currentSlot, fldname));
+        DatumBase d = datum(readOffset(ordinal, layout.type(ordinal)), layout.type(ordinal));
+        endRead();
+        return d;
+    }
+
+    private DatumBase datum(int offset, int type) {
+        return switch (type) {
+            case Types.INTEGER -> new Datum(handle.getInt(offset));
+            case Types.DOUBLE -> new Datum(handle.getDouble(offset));
+            case Types.VARCHAR -> new Datum(handle.getString(offset));
+            case Types.BOOLEAN -> new Datum(handle.getBoolean(offset));
             default -> null;
         };
-        tx.unpin(currentRecordPage.block());
-        return d;
     }
 
     /**
@@ -499,10 +589,41 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public int getType(String fldname) {//complete
-        if(!layout.schema().hasField(fldname)){
-            throw new IllegalArgumentException("field " + fldname + " not found");
+        return layout.type(layout.ordinal(fldname));
+    }
+
+    /** Restricts the records returned by next() to those that satisfy the
+     * terms of the specified predicate that can be checked against this
+     * table's records alone: terms that compare a field with a constant of the
+     * field's type, or two fields of the same type.  Terms pushed by earlier
+     * calls remain in force.
+     *
+     * @param pred the predicate
+     * @return the predicate's remaining terms, which the caller must still
+     * evaluate itself
+     */
+    public Predicate pushPredicate(Predicate pred) {
+        List<PushedTerm> accepted = new ArrayList<>(Arrays.asList(pushed));
+        Predicate residual = new Predicate();
+        for(Term t : pred.terms()){
+            PushedTerm p = PushedTerm.compile(t, layout);
+            if(p == null){
+                residual.conjoinWith(new Predicate(t));
+            }else{
+                accepted.add(p);
+            }
         }
-        return layout.schema().type(fldname);
+        pushed = accepted.toArray(new PushedTerm[0]);
+        return residual;
+    }
+
+    /** Returns the ordinal of the specified field, for use with the ordinal
+     * accessors.
+     *
+     * @throws IllegalArgumentException if fldname is not part of the schema
+     */
+    public int ordinal(String fldname) {
+        return layout.ordinal(fldname);
     }
 
     /**
@@ -512,8 +633,215 @@ public class TableScan extends TableScanBase {
      */
     @Override
     public void close() {
-        if(currentRecordPage != null){
-            tx.unpin(currentRecordPage.block());
+        flushRow();
+        if(handle != null){
+            handle.unpin();
+            ((Tx)tx).leaveBlock(currentRecordPage.block());
+            handle = null;
+        }
+    }
+
+    /** Releases the scan's pin on the current block (if any) and pins the
+     * specified block instead.
+     */
+    private void moveToBlock(BlockIdBase blk) {
+        if(handle != null){
+            handle.unpin();
+            ((Tx)tx).leaveBlock(currentRecordPage.block());
+        }
+        currentRecordPage = switch(layout.format()){
+            case SLOTTED -> new SlottedRecordPage(tx, blk, layout);
+            case PAX -> new PaxRecordPage(tx, blk, layout);
+            default -> new RecordPage(tx, blk, layout);
+        };
+        handle = ((Tx)tx).pinHandle(blk);
+        rowState = ROW_UNCHECKED;
+    }
+
+    /** Returns the image collecting the unlogged writes to the current record,
+     * first creating it if necessary.
+     */
+    private RowImage rowImage() {
+        if(pendingRow == null){
+            pendingRow = new RowImage(currentRecordPage.block());
+            if(!completionHooked){
+                // a client may complete the tx without leaving the record
+                ((Tx)tx).beforeCompletion(this::flushRow);
+                completionHooked = true;
+            }
+        }
+        return pendingRow;
+    }
+
+    /** Logs the unlogged writes (if any) to the current record. */
+    private void flushRow() {
+        if(pendingRow != null){
+            if(!pendingRow.isEmpty()){
+                ((Tx)tx).logRowImage(pendingRow);
+            }
+            pendingRow = null;
+        }
+    }
+
+    private void formatCurrentBlock() {
+        currentRecordPage.format();
+        // format() pins on our behalf, but the scan's handle already holds a pin
+        tx.unpin(currentRecordPage.block());
+    }
+
+    /** Verifies that the scan is positioned on an in-use slot, acquiring the
+     * record lock needed for the upcoming access.  The result is remembered
+     * until the scan is repositioned.
+     *
+     * @throws IllegalStateException if the slot isn't in use
+     */
+    private void checkRow(boolean forUpdate) {
+        // the handle's accesses are then covered by the record's lock
+        handle.onRecord(currentSlot);
+        if(rowState == ROW_EXCLUSIVE || (rowState == ROW_SHARED && !forUpdate)){
+            return;
+        }
+        boolean inUse = forUpdate ? currentRecordPage.isInUseForUpdate(currentSlot)
+                : currentRecordPage.isInUse(currentSlot);
+        if(!inUse){
+            throw new IllegalStateException("slot not in use");
+        }
+        if(forUpdate){
+            rowState = ROW_EXCLUSIVE;
+        }else if(!readCommitted){
+            rowState = ROW_SHARED;
+        }
+    }
+
+    private void endRead() {
+        if(readCommitted && rowState != ROW_EXCLUSIVE){
+            ((Tx)tx).endRecordRead(currentRecordPage.block(), currentSlot);
+        }
+    }
+
+    private int readOffset(String fldname, int type) {
+        if(currentSlot < 0){
+            throw new IllegalArgumentException("not in valid slot");
+        }
+        checkRow(false);
+        return fieldOffset(layout.ordinal(fldname, type), type);
+    }
+
+    private int writeOffset(String fldname, int type) {
+        if(currentSlot < 0){
+            throw new IllegalArgumentException("not in valid slot");
+        }
+        checkRow(true);
+        return fieldOffset(layout.ordinal(fldname, type), type);
+    }
+
+    private int readOffset(int ordinal, int type) {
+        if(currentSlot < 0){
+            throw new IllegalArgumentException("not in valid slot");
+        }
+        checkRow(false);
+        return fieldOffset(ordinal, type);
+    }
+
+    private int writeOffset(int ordinal, int type) {
+        if(currentSlot < 0){
+            throw new IllegalArgumentException("not in valid slot");
+        }
+        checkRow(true);
+        return fieldOffset(ordinal, type);
+    }
+
+    private int fieldOffset(int ordinal, int type) {
+        checkField(ordinal, type);
+        return currentRecordPage.fieldOffset(currentSlot, ordinal);
+    }
+
+    /** Returns true iff the current record satisfies the pushed terms. */
+    private boolean satisfiesPushed() {
+        for(PushedTerm t : pushed){
+            int offset = readOffset(t.lhs, t.type);
+            int other = t.rhs < 0 ? -1 : fieldOffset(t.rhs, t.type);
+            int cmp = switch(t.type){
+                case Types.INTEGER -> Integer.compare(handle.getInt(offset),
+                        other < 0 ? t.ival : handle.getInt(other));
+                case Types.DOUBLE -> Double.compare(handle.getDouble(offset),
+                        other < 0 ? t.dval : handle.getDouble(other));
+                case Types.BOOLEAN -> Boolean.compare(handle.getBoolean(offset),
+                        other < 0 ? t.bval : handle.getBoolean(other));
+                // strings are stored as (ASCII) bytes, which order as their chars do
+                default -> Arrays.compareUnsigned(handle.getBytes(offset),
+                        other < 0 ? t.sval : handle.getBytes(other));
+            };
+            endRead();
+            if(!t.op.test(cmp)){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** A pushed term, "field op constant" or "field op field", resolved
+     * against the layout.
+     */
+    private static final class PushedTerm {
+        final int lhs;
+        final Term.Operator op;
+        // -1 if the right-hand side is a constant
+        final int rhs;
+        final int type;
+        int ival;
+        double dval;
+        boolean bval;
+        byte[] sval;
+
+        private PushedTerm(int lhs, Term.Operator op, int rhs, int type) {
+            this.lhs = lhs;
+            this.op = op;
+            this.rhs = rhs;
+            this.type = type;
+        }
+
+        /** Returns the pushed form of the term, or null if it can't be pushed. */
+        static PushedTerm compile(Term t, Layout layout) {
+            Expression left = t.lhs();
+            Expression right = t.rhs();
+            Term.Operator op = t.operator();
+            if(!left.isFieldName()){
+                left = t.rhs();
+                right = t.lhs();
+                op = op.flip();
+            }
+            if(!left.isFieldName() || !layout.schema().hasField(left.asFieldName())){
+                return null;
+            }
+            int lhs = layout.ordinal(left.asFieldName());
+            int type = layout.type(lhs);
+            if(right.isFieldName()){
+                if(!layout.schema().hasField(right.asFieldName())){
+                    return null;
+                }
+                int rhs = layout.ordinal(right.asFieldName());
+                return layout.type(rhs) == type ? new PushedTerm(lhs, op, rhs, type) : null;
+            }
+            DatumBase c = right.asConstant();
+            // an unbound parameter can't be compared
+            if(c == null || c.getSQLType() != type){
+                return null;
+            }
+            PushedTerm p = new PushedTerm(lhs, op, -1, type);
+            switch(type){
+                case Types.INTEGER -> p.ival = c.asInt();
+                case Types.DOUBLE -> p.dval = c.asDouble();
+                case Types.BOOLEAN -> p.bval = c.asBoolean();
+                default -> p.sval = c.asString().getBytes(PageBase.CHARSET);
+            }
+            return p;
+        }
+    }
+
+    private void checkField(int ordinal, int type) {
+        if(ordinal < 0 || ordinal >= layout.fieldCount() || layout.type(ordinal) != type){
+            throw new IllegalArgumentException("no field of that type with ordinal " + ordinal);
         }
     }
 }
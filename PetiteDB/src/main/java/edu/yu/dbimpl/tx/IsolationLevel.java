@@ -0,0 +1,23 @@
+package edu.yu.dbimpl.tx;
+
+/** The isolation levels that a transaction may run under, specified when the
+ * tx is created via TxMgr.newTx(IsolationLevel).  The levels only differ in
+ * how long SHARED locks are held: exclusive locks are always held until the
+ * tx commits or rolls back.
+ */
+public enum IsolationLevel {
+    /** Strict two-phase locking: every lock is held until commit or rollback.
+     * This is the default.
+     */
+    SERIALIZABLE,
+    /** A shared lock is released as soon as the value it protects has been
+     * read.  The tx never sees uncommitted data, but repeated reads of the same
+     * record may return different values.
+     */
+    READ_COMMITTED,
+    /** Shared locks are held only while a TableScan is positioned on the
+     * block that they protect, and are released when the scan moves to a
+     * different block (or closes).
+     */
+    CURSOR_STABILITY
+}
@@ -0,0 +1,313 @@
+package edu.yu.dbimpl.tx;
+
+import edu.yu.dbimpl.buffer.Buffer;
+import edu.yu.dbimpl.buffer.BufferBase;
+import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.file.PageBase;
+import edu.yu.dbimpl.tx.recovery.RowImage;
+
+/** A handle on a block that a tx has pinned, returned by Tx.pinHandle().  The
+ * handle caches the block's buffer and page, and (for SERIALIZABLE txs) the
+ * lock that the tx holds on the block, so that after the first access, gets
+ * and sets go straight to the page with only a cheap validity check.
+ *
+ * The getX/setX semantics are those of the corresponding Tx methods: the
+ * block-granular ones, unless the client has directed the handle at a record
+ * (see onRecord), in which case they lock only that record.  A
+ * handle becomes invalid when it is unpinned or when its tx completes; using
+ * an invalid handle throws an IllegalStateException.  Clients must release
+ * the pin through the handle's unpin(), not Tx.unpin().
+ */
+public class PageHandle {
+    private static final int UNLOCKED = 0;
+    private static final int SHARED = 1;
+    private static final int EXCLUSIVE = 2;
+
+    private final Tx tx;
+    private final BlockIdBase blk;
+    private final BufferBase buffer;
+    private final PageBase page;
+    // held locks are only released before commit under the relaxed isolation
+    // levels, so only SERIALIZABLE txs may cache the lock state
+    private final boolean cacheLocks;
+    private int lockState = UNLOCKED;
+    // the record that the handle's gets and sets access, or -1 for the block
+    private int slot = -1;
+    private boolean valid = true;
+
+    PageHandle(Tx tx, BlockIdBase blk, BufferBase buffer) {
+        this.tx = tx;
+        this.blk = blk;
+        this.buffer = buffer;
+        this.page = buffer.contents();
+        this.cacheLocks = tx.isolationLevel() == IsolationLevel.SERIALIZABLE;
+    }
+
+    public BlockIdBase block() {
+        return blk;
+    }
+
+    /** Directs the handle's subsequent gets and sets at the record in the
+     * specified slot, which must contain every offset that the client goes on
+     * to access: they then lock that record (see Tx#sLockRecord and
+     * Tx#xLockRecord) rather than the whole block.  A negative slot directs
+     * them at the whole block again.
+     *
+     * @param slot the record's slot, or -1
+     */
+    public void onRecord(int slot) {
+        if(slot != this.slot){
+            this.slot = Math.max(slot, -1);
+            lockState = UNLOCKED;
+        }
+    }
+
+    public int getInt(int offset) {
+        if(!canRead()){
+            return tx.getInt(blk, offset);
+        }
+        return page.getInt(offset);
+    }
+
+    public boolean getBoolean(int offset) {
+        if(!canRead()){
+            return tx.getBoolean(blk, offset);
+        }
+        return page.getBoolean(offset);
+    }
+
+    public double getDouble(int offset) {
+        if(!canRead()){
+            return tx.getDouble(blk, offset);
+        }
+        return page.getDouble(offset);
+    }
+
+    public String getString(int offset) {
+        if(!canRead()){
+            return tx.getString(blk, offset);
+        }
+        return page.getString(offset);
+    }
+
+    public byte[] getBytes(int offset) {
+        if(!canRead()){
+            return tx.getBytes(blk, offset);
+        }
+        return page.getBytes(offset);
+    }
+
+    public void setInt(int offset, int val, boolean okToLog) {
+        if(!canWrite()){
+            tx.setInt(blk, offset, val, okToLog);
+            return;
+        }
+        tx.writeInt(buffer, blk, offset, val, okToLog);
+    }
+
+    public void setBoolean(int offset, boolean val, boolean okToLog) {
+        if(!canWrite()){
+            tx.setBoolean(blk, offset, val, okToLog);
+            return;
+        }
+        tx.writeBoolean(buffer, blk, offset, val, okToLog);
+    }
+
+    public void setDouble(int offset, double val, boolean okToLog) {
+        if(!canWrite()){
+            tx.setDouble(blk, offset, val, okToLog);
+            return;
+        }
+        tx.writeDouble(buffer, blk, offset, val, okToLog);
+    }
+
+    public void setString(int offset, String val, boolean okToLog) {
+        if(!canWrite()){
+            tx.setString(blk, offset, val, okToLog);
+            return;
+        }
+        tx.writeString(buffer, blk, offset, val, okToLog);
+    }
+
+    public void setBytes(int offset, byte[] val, boolean okToLog) {
+        if(!canWrite()){
+            tx.setBytes(blk, offset, val, okToLog);
+            return;
+        }
+        tx.writeBytes(buffer, blk, offset, val, okToLog);
+    }
+
+    /** Stores an integer at the specified offset without logging the write,
+     * instead adding the old and new values to the specified row image.  The
+     * client must log the image (see Tx#logRowImage) before unpinning the
+     * block, so that a single log record covers all of a record's writes.
+     *
+     * Until then the image is pending on the block's buffer: if the page is
+     * written to disk first (e.g., when another tx commits), the image is
+     * logged before the write.
+     */
+    public void setInt(int offset, int val, RowImage image) {
+        lockForImage();
+        writePending(image, () -> {
+            image.setInt(offset, page.getInt(offset), val);
+            tx.writeInt(buffer, blk, offset, val, false);
+        });
+    }
+
+    /** @see #setInt(int, int, RowImage) */
+    public void setBoolean(int offset, boolean val, RowImage image) {
+        lockForImage();
+        writePending(image, () -> {
+            image.setBoolean(offset, page.getBoolean(offset), val);
+            tx.writeBoolean(buffer, blk, offset, val, false);
+        });
+    }
+
+    /** @see #setInt(int, int, RowImage) */
+    public void setDouble(int offset, double val, RowImage image) {
+        lockForImage();
+        writePending(image, () -> {
+            image.setDouble(offset, page.getDouble(offset), val);
+            tx.writeDouble(buffer, blk, offset, val, false);
+        });
+    }
+
+    /** @see #setInt(int, int, RowImage) */
+    public void setString(int offset, String val, RowImage image) {
+        lockForImage();
+        writePending(image, () -> {
+            image.setString(offset, page.getString(offset), val);
+            tx.writeString(buffer, blk, offset, val, false);
+        });
+    }
+
+    private void writePending(RowImage image, Runnable write) {
+        synchronized(image){
+            ((Buffer)buffer).writePending(image,
+                    () -> tx.logPendingImage(buffer, image), write);
+        }
+    }
+
+    /** Acquires a shared lock on the whole block (see Tx#sLockBlock) and
+     * returns the block's page, so that a client can read many values of the
+     * block in a tight loop without a lock check per value.  The client must
+     * not modify the page, nor read it after unpinning the handle.
+     */
+    public PageBase sharedPage() {
+        checkValid();
+        tx.sLockBlock(blk);
+        return page;
+    }
+
+    /** Returns the integer stored at the specified offset WITHOUT locking the
+     * block.  Only for pages whose contents are hints (see setHintInt).
+     */
+    public int getHintInt(int offset) {
+        checkValid();
+        return page.getInt(offset);
+    }
+
+    /** Returns the boolean stored at the specified offset WITHOUT locking the
+     * block.  Only for pages whose contents are hints (see setHintInt).
+     */
+    public boolean getHintBoolean(int offset) {
+        checkValid();
+        return page.getBoolean(offset);
+    }
+
+    /** Stores an integer at the specified offset without locking the block or
+     * logging the change.  Such pages hold hints (e.g., a free-space map): their
+     * contents may be stale, lost on a crash, or unaffected by a rollback, so
+     * clients must verify a hint before relying on it.  The page is still
+     * flushed when the tx commits.
+     */
+    public void setHintInt(int offset, int val) {
+        checkValid();
+        tx.writeInt(buffer, blk, offset, val, false);
+    }
+
+    /** Stores a boolean at the specified offset without locking the block or
+     * logging the change.
+     *
+     * @see #setHintInt
+     */
+    public void setHintBoolean(int offset, boolean val) {
+        checkValid();
+        tx.writeBoolean(buffer, blk, offset, val, false);
+    }
+
+    /** Unpins the block and invalidates the handle.
+     *
+     * @throws IllegalStateException if the handle is no longer valid
+     */
+    public void unpin() {
+        checkValid();
+        valid = false;
+        tx.unpin(blk);
+    }
+
+    public boolean isValid() {
+        return valid && tx.getStatus() == TxBase.Status.ACTIVE;
+    }
+
+    private void checkValid() {
+        if(!isValid()){
+            throw new IllegalStateException("Page handle for block " + blk.number() + " is no longer valid");
+        }
+    }
+
+    /** Returns true iff the caller may read the page directly, acquiring (and
+     * caching) an sLock first if necessary.  Returns false if the read must be
+     * delegated to the tx.
+     */
+    private boolean canRead() {
+        checkValid();
+        if(lockState != UNLOCKED){
+            return true;
+        }
+        if(slot >= 0){
+            // a record lock is only released on the client's request (see
+            // Tx#endRecordRead), so a record read never needs the tx
+            tx.sLockRecord(blk, slot);
+        }else if(cacheLocks){
+            tx.lockShared(blk);
+        }else{
+            return false;
+        }
+        if(cacheLocks){
+            lockState = SHARED;
+        }
+        return true;
+    }
+
+    /** Returns true iff the caller may write the page directly, acquiring (and
+     * caching) an xLock first if necessary.  Returns false if the write must be
+     * delegated to the tx.
+     */
+    private boolean canWrite() {
+        checkValid();
+        if(lockState == EXCLUSIVE){
+            return true;
+        }
+        if(slot >= 0){
+            tx.xLockRecord(blk, slot);
+        }else if(cacheLocks){
+            tx.lockExclusive(blk);
+        }else{
+            return false;
+        }
+        if(cacheLocks){
+            lockState = EXCLUSIVE;
+        }
+        return true;
+    }
+
+    /** Acquires the lock needed to read a value's old image and then write the
+     * value directly to the page.
+     */
+    private void lockForImage() {
+        if(!canWrite()){
+            tx.lockExclusive(blk);
+        }
+    }
+}
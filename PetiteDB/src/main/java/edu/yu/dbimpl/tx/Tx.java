@@ -1,5 +1,6 @@
 package edu.yu.dbimpl.tx;
 
+import edu.yu.dbimpl.buffer.Buffer;
 import edu.yu.dbimpl.buffer.BufferBase;
 import edu.yu.dbimpl.buffer.BufferMgr;
 import edu.yu.dbimpl.buffer.BufferMgrBase;
@@ -8,11 +9,13 @@ import edu.yu.dbimpl.file.BlockIdBase;
 import edu.yu.dbimpl.file.FileMgrBase;
 import edu.yu.dbimpl.file.PageBase;
 import edu.yu.dbimpl.log.LogMgrBase;
+import edu.yu.dbimpl.tx.concurrency.ConcurrencyMgr;
 import edu.yu.dbimpl.tx.concurrency.ConcurrencyMgrBase;
 import edu.yu.dbimpl.tx.recovery.LogRecord;
 import edu.yu.dbimpl.tx.recovery.LogRecordBase;
 import edu.yu.dbimpl.tx.recovery.RecoveryMgr;
 import edu.yu.dbimpl.tx.recovery.RecoveryMgrBase;
+import edu.yu.dbimpl.tx.recovery.RowImage;
 
 import java.util.*;
 
@@ -61,8 +64,24 @@ public class Tx implements TxBase{
     private final FileMgrBase  fileMgr;
     private Map<BlockIdBase, BufferBase> blockIdBases;
     private Map<BlockIdBase, Integer>  pinMap;
+    private final boolean readOnly;
+    private final IsolationLevel isolation;
+    private final List<Runnable> completionHooks = new ArrayList<>();
+    private final List<Runnable> commitHooks = new ArrayList<>();
+    // true for the tx that undoes log records on behalf of a rollback or
+    // recovery: see lockForWrite
+    private boolean undoing;
 
     public Tx(int number, int blockSize, FileMgrBase fileMgr, LogMgrBase logMgr, BufferMgrBase bufferMgr, ConcurrencyMgrBase concurrencyMgr, RecoveryMgrBase recoveryMgr) {
+        this(number, blockSize, fileMgr, logMgr, bufferMgr, concurrencyMgr, recoveryMgr, false);
+    }
+
+    /** Creates a tx that is optionally read-only.  A read-only tx writes no log
+     * records (neither START nor COMMIT), never flushes buffers or the log, and
+     * rejects every write with an IllegalStateException: from the log's point
+     * of view it doesn't exist.
+     */
+    public Tx(int number, int blockSize, FileMgrBase fileMgr, LogMgrBase logMgr, BufferMgrBase bufferMgr, ConcurrencyMgrBase concurrencyMgr, RecoveryMgrBase recoveryMgr, boolean readOnly) {
         this.status = Status.ACTIVE;
         this.txNum = number;
         this.fileMgr = fileMgr;
@@ -73,7 +92,23 @@ public class Tx implements TxBase{
         this.blockSize = blockSize;
         this.blockIdBases = new HashMap<>();
         this.pinMap = new HashMap<>();
-        ((RecoveryMgr)recoveryMgr).start();
+        this.readOnly = readOnly;
+        this.isolation = ((ConcurrencyMgr)concurrencyMgr).isolationLevel();
+        if(!readOnly){
+            ((RecoveryMgr)recoveryMgr).start();
+        }
+    }
+
+    /** Returns true iff the tx was created by TxMgr.newReadOnlyTx().
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /** Returns the isolation level that the tx runs under.
+     */
+    public IsolationLevel isolationLevel() {
+        return isolation;
     }
 
     /** A Tx enters the ACTIVE status as soon as it's instantiated.  It remains
@@ -120,9 +155,20 @@ public class Tx implements TxBase{
         return txNum;
     }
 
+    /** Returns the LSN up to which the log must be durable before the tx may
+     * be reported as committed, because it accessed data that another tx
+     * released early (see LockTable), or -1 if there is no such dependency.
+     */
+    public int commitDependencyLSN() {
+        return ((ConcurrencyMgr)concurrencyMgr).commitDependencyLSN();
+    }
+
     /** Commits the current transaction: first flush all modified buffers (and
-     * their log records); then write and flush a commit record to the log; then
-     * release all locks, and unpin any pinned buffers.
+     * their log records); then write a commit record to the log; then release
+     * all locks; then flush the commit record, and unpin any pinned buffers.
+     * Releasing locks before the commit record is durable lets other txs use
+     * the data sooner: such txs record a commit dependency and won't commit
+     * before this tx's commit record is durable.
      *
      * @throws IllegalStateException if tx isn't in the ACTIVE state.
      */
@@ -131,10 +177,28 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE){
             throw new IllegalStateException("Status must be active to commit");
         }
+        runCompletionHooks();
+        for(Runnable hook : commitHooks){
+            hook.run();
+        }
+        commitHooks.clear();
         status = Status.COMMITTING;
-        bufferMgr.flushAll(txNum);
-        recoveryMgr.commit();
-        concurrencyMgr.release();
+        ConcurrencyMgr cm = (ConcurrencyMgr)concurrencyMgr;
+        if(!readOnly){
+            bufferMgr.flushAll(txNum);
+            // early lock release: other txs may proceed while the COMMIT record
+            // is forced, since they can't commit before it becomes durable
+            int lsn = ((RecoveryMgr)recoveryMgr).appendCommit();
+            cm.release(lsn);
+            logMgr.flush(Math.max(lsn, cm.commitDependencyLSN()));
+            cm.durable(lsn);
+        }else{
+            cm.release();
+            // don't acknowledge a read of data whose writer isn't yet durable
+            if(cm.commitDependencyLSN() >= 0){
+                logMgr.flush(cm.commitDependencyLSN());
+            }
+        }
         for (BufferBase buffer : blockIdBases.values()) {
             int times = pinMap.remove(buffer.block());
             for(int i = 0; i < times; i++){
@@ -156,10 +220,14 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE){
             throw new IllegalStateException("Status must be active to rollback");
         }
+        runCompletionHooks();
+        commitHooks.clear();
         status = Status.ROLLING_BACK;
-        rollBackRecords();
-        recoveryMgr.rollback();
-        bufferMgr.flushAll(txNum);
+        if(!readOnly){
+            rollBackRecords();
+            recoveryMgr.rollback();
+            bufferMgr.flushAll(txNum);
+        }
         concurrencyMgr.release();
         for (BufferBase buffer : blockIdBases.values()) {
             int times = pinMap.remove(buffer.block());
@@ -171,9 +239,38 @@ public class Tx implements TxBase{
         status = Status.ROLLED_BACK;
     }
 
+    /** Registers an action to be run when the tx is about to commit or roll
+     * back, while the tx is still ACTIVE: e.g., for a client to log changes
+     * that it has made without logging them yet (see #logRowImage).
+     *
+     * @param hook the action
+     */
+    public void beforeCompletion(Runnable hook) {
+        completionHooks.add(hook);
+    }
+
+    /** Registers an action to be run when the tx is about to commit, after the
+     * beforeCompletion actions and while the tx is still ACTIVE, but not if it
+     * rolls back: e.g., for a client to record a hint that holds only if the
+     * tx's changes do.
+     *
+     * @param hook the action
+     */
+    public void beforeCommit(Runnable hook) {
+        commitHooks.add(hook);
+    }
+
+    private void runCompletionHooks() {
+        for(Runnable hook : completionHooks){
+            hook.run();
+        }
+        completionHooks.clear();
+    }
+
     private void rollBackRecords(){//complete
         Iterator<byte[]> records = logMgr.iterator();
-        TxBase tx = new Tx(this.txNum, this.blockSize, this.fileMgr, logMgr, bufferMgr, this.concurrencyMgr, recoveryMgr);
+        Tx tx = new Tx(this.txNum, this.blockSize, this.fileMgr, logMgr, bufferMgr, this.concurrencyMgr, recoveryMgr);
+        tx.undoing = true;
         while(records.hasNext()){
             LogRecord lr = LogRecord.getLogRecord(records.next());
             if(lr.op() == LogRecordBase.LogType.START.ordinal() && lr.txNumber() == this.txNum){
@@ -199,10 +296,14 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE){
             throw new IllegalStateException("Status must be active to recover");
         }
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't recover");
+        }
         this.status = Status.RECOVERING;
         //pin directly and readwrite directly
         ((BufferMgr)bufferMgr).recoverFlush();
-        TxBase tx = new Tx(this.txNum, this.blockSize, this.fileMgr, logMgr, bufferMgr, concurrencyMgr, recoveryMgr);
+        Tx tx = new Tx(this.txNum, this.blockSize, this.fileMgr, logMgr, bufferMgr, concurrencyMgr, recoveryMgr);
+        tx.undoing = true;
         Iterator<byte[]> logs = logMgr.iterator();
         Set<Integer> commitRolled =  new HashSet<>();
         while(logs.hasNext()){
@@ -252,6 +353,20 @@ public class Tx implements TxBase{
         blockIdBases.put(blk, buffer);
     }
 
+    /** Pins the specified block, returning a handle through which the block
+     * can be accessed without the per-call lookups of the getX/setX methods.
+     *
+     * @param blk a reference to the disk block
+     * @return a handle on the pinned block
+     * @throws IllegalArgumentException if BlockId is null.
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     * @see PageHandle
+     */
+    public synchronized PageHandle pinHandle(BlockIdBase blk) {
+        pin(blk);
+        return new PageHandle(this, blk, blockIdBases.get(blk));
+    }
+
     /** Unpins the specified block.
      *
      * @param blk a reference to the disk block
@@ -294,7 +409,11 @@ public class Tx implements TxBase{
         }
         concurrencyMgr.sLock(blk);
         PageBase page = blockIdBases.get(blk).contents();
-        return page.getInt(offset);
+        int val = page.getInt(offset);
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRead(blk);
+        }
+        return val;
     }
 
     /** Returns the boolean value stored at the specified offset of the specified
@@ -313,7 +432,11 @@ public class Tx implements TxBase{
         }
         concurrencyMgr.sLock(blk);
         PageBase page = blockIdBases.get(blk).contents();
-        return page.getBoolean(offset);
+        boolean val = page.getBoolean(offset);
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRead(blk);
+        }
+        return val;
     }
 
     /** Returns the double value stored at the specified offset of the specified
@@ -332,7 +455,11 @@ public class Tx implements TxBase{
         }
         concurrencyMgr.sLock(blk);
         PageBase page = blockIdBases.get(blk).contents();
-        return page.getDouble(offset);
+        double val = page.getDouble(offset);
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRead(blk);
+        }
+        return val;
     }
 
     /** Returns the string value stored at the specified offset of the specified
@@ -351,7 +478,11 @@ public class Tx implements TxBase{
         }
         concurrencyMgr.sLock(blk);
         PageBase page = blockIdBases.get(blk).contents();
-        return page.getString(offset);
+        String val = page.getString(offset);
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRead(blk);
+        }
+        return val;
     }
 
     /** Returns the byte value stored at the specified offset of the specified
@@ -370,7 +501,11 @@ public class Tx implements TxBase{
         }
         concurrencyMgr.sLock(blk);
         PageBase page = blockIdBases.get(blk).contents();
-        return page.getBytes(offset);
+        byte[] val = page.getBytes(offset);
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRead(blk);
+        }
+        return val;
     }
 
     /** Stores an integer at the specified offset of the specified block.  The
@@ -392,17 +527,11 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
             throw new IllegalStateException("Status must be active to set or get and pinned");
         }
-        concurrencyMgr.xLock(blk);
-        int oldVal = 0;
-        if(okToLog){
-            oldVal = blockIdBases.get(blk).contents().getInt(offset);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
         }
-        blockIdBases.get(blk).contents().setInt(offset, val);
-        int lsn = -1;
-        if(okToLog){
-            lsn = recoveryMgr.setInt(blk,  offset, val, oldVal);
-        }
-        blockIdBases.get(blk).setModified(txNum, lsn);
+        lockForWrite(blk);
+        writeInt(blockIdBases.get(blk), blk, offset, val, okToLog);
     }
 
     /** Stores an boolean at the specified offset of the specified block.  The
@@ -424,17 +553,11 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
             throw new IllegalStateException("Status must be active to set or get and pinned");
         }
-        concurrencyMgr.xLock(blk);
-        boolean oldVal = false;
-        if(okToLog){
-            oldVal = blockIdBases.get(blk).contents().getBoolean(offset);
-        }
-        blockIdBases.get(blk).contents().setBoolean(offset, val);
-        int lsn = -1;
-        if(okToLog){
-            lsn = recoveryMgr.setBoolean(blk,  offset, val, oldVal);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
         }
-        blockIdBases.get(blk).setModified(txNum, lsn);
+        lockForWrite(blk);
+        writeBoolean(blockIdBases.get(blk), blk, offset, val, okToLog);
     }
 
     /** Stores a double at the specified offset of the specified block.  The
@@ -455,17 +578,11 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
             throw new IllegalStateException("Status must be active to set or get and pinned");
         }
-        concurrencyMgr.xLock(blk);
-        double oldVal = 0;
-        if(okToLog){
-            oldVal = blockIdBases.get(blk).contents().getDouble(offset);
-        }
-        blockIdBases.get(blk).contents().setDouble(offset, val);
-        int lsn = -1;
-        if(okToLog){
-            lsn = recoveryMgr.setDouble(blk,  offset, val, oldVal);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
         }
-        blockIdBases.get(blk).setModified(txNum, lsn);
+        lockForWrite(blk);
+        writeDouble(blockIdBases.get(blk), blk, offset, val, okToLog);
     }
 
     /** Stores a string at the specified offset of the specified block. The
@@ -487,17 +604,11 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
             throw new IllegalStateException("Status must be active to set or get and pinned status is " + Status.ACTIVE.name());
         }
-        concurrencyMgr.xLock(blk);
-        String oldVal = "";
-        if(okToLog){
-            oldVal = blockIdBases.get(blk).contents().getString(offset);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
         }
-        blockIdBases.get(blk).contents().setString(offset, val);
-        int lsn = -1;
-        if(okToLog){
-            recoveryMgr.setString(blk, offset, val, oldVal);
-        }
-        blockIdBases.get(blk).setModified(txNum, lsn);
+        lockForWrite(blk);
+        writeString(blockIdBases.get(blk), blk, offset, val, okToLog);
     }
 
     /** Stores a byte[] at the specified offset of the specified block. The
@@ -519,17 +630,277 @@ public class Tx implements TxBase{
         if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
             throw new IllegalStateException("Status must be active to set or get and pinned");
         }
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        lockForWrite(blk);
+        writeBytes(blockIdBases.get(blk), blk, offset, val, okToLog);
+    }
+
+    /** Returns the integer value stored at the specified offset of the specified
+     * block, within the record in the specified slot.  The transaction acquires
+     * an s-lock on that record (see sLockRecord) rather than on the block, and
+     * retains it until the client invokes endRecordRead or the tx completes.
+     *
+     * @param blk a reference to a disk block
+     * @param slot the slot of the record that holds the value
+     * @param offset the byte offset within the block
+     * @return the integer stored at that offset
+     * @throws IllegalStateException if specified block isn't currently pinned by this tx
+     */
+    public int getInt(BlockIdBase blk, int slot, int offset) {
+        return lockRecord(blk, slot, false).contents().getInt(offset);
+    }
+
+    /** @see #getInt(BlockIdBase, int, int) */
+    public boolean getBoolean(BlockIdBase blk, int slot, int offset) {
+        return lockRecord(blk, slot, false).contents().getBoolean(offset);
+    }
+
+    /** @see #getInt(BlockIdBase, int, int) */
+    public double getDouble(BlockIdBase blk, int slot, int offset) {
+        return lockRecord(blk, slot, false).contents().getDouble(offset);
+    }
+
+    /** @see #getInt(BlockIdBase, int, int) */
+    public String getString(BlockIdBase blk, int slot, int offset) {
+        return lockRecord(blk, slot, false).contents().getString(offset);
+    }
+
+    /** @see #getInt(BlockIdBase, int, int) */
+    public byte[] getBytes(BlockIdBase blk, int slot, int offset) {
+        return lockRecord(blk, slot, false).contents().getBytes(offset);
+    }
+
+    /** Stores an integer at the specified offset of the specified block, within
+     * the record in the specified slot.  The transaction acquires an x-lock on
+     * that record (see xLockRecord) rather than on the block; otherwise the
+     * semantics are those of setInt(BlockIdBase, int, int, boolean).
+     *
+     * @param blk a reference to the disk block
+     * @param slot the slot of the record that holds the value
+     * @param offset a byte offset within that block
+     * @param val the value to be stored
+     * @param okToLog true iff the client wants the operation to be logged, false
+     * otherwise.
+     * @throws IllegalStateException if specified block isn't currently pinned by this tx
+     */
+    public void setInt(BlockIdBase blk, int slot, int offset, int val, boolean okToLog) {
+        writeInt(lockRecord(blk, slot, true), blk, offset, val, okToLog);
+    }
+
+    /** @see #setInt(BlockIdBase, int, int, int, boolean) */
+    public void setBoolean(BlockIdBase blk, int slot, int offset, boolean val, boolean okToLog) {
+        writeBoolean(lockRecord(blk, slot, true), blk, offset, val, okToLog);
+    }
+
+    /** @see #setInt(BlockIdBase, int, int, int, boolean) */
+    public void setDouble(BlockIdBase blk, int slot, int offset, double val, boolean okToLog) {
+        writeDouble(lockRecord(blk, slot, true), blk, offset, val, okToLog);
+    }
+
+    /** @see #setInt(BlockIdBase, int, int, int, boolean) */
+    public void setString(BlockIdBase blk, int slot, int offset, String val, boolean okToLog) {
+        writeString(lockRecord(blk, slot, true), blk, offset, val, okToLog);
+    }
+
+    /** @see #setInt(BlockIdBase, int, int, int, boolean) */
+    public void setBytes(BlockIdBase blk, int slot, int offset, byte[] val, boolean okToLog) {
+        writeBytes(lockRecord(blk, slot, true), blk, offset, val, okToLog);
+    }
+
+    /** Returns the integer stored at the specified offset of the specified
+     * block WITHOUT locking it.  The client must either hold a lock that covers
+     * the value, or treat the value as a hint that it re-checks once it holds
+     * such a lock (e.g., while searching a block for a free slot).
+     *
+     * @param blk a reference to a disk block
+     * @param offset the byte offset within the block
+     * @return the integer stored at that offset
+     * @throws IllegalStateException if specified block isn't currently pinned by this tx
+     */
+    public int getHintInt(BlockIdBase blk, int offset) {
+        return pinnedBuffer(blk).contents().getInt(offset);
+    }
+
+    /** @see #getHintInt */
+    public boolean getHintBoolean(BlockIdBase blk, int offset) {
+        return pinnedBuffer(blk).contents().getBoolean(offset);
+    }
+
+    /** Stores an integer at the specified offset of the specified block WITHOUT
+     * locking the block or logging the change: for values that locks don't
+     * cover, which clients update under a latch instead (e.g., the header of a
+     * SlottedRecordPage).  A rollback doesn't undo the change, but the page is
+     * still flushed when the tx commits.
+     *
+     * @param blk a reference to the disk block
+     * @param offset a byte offset within that block
+     * @param val the value to be stored
+     * @throws IllegalStateException if specified block isn't currently pinned by
+     * this tx, or if the tx is read-only.
+     */
+    public void setHintInt(BlockIdBase blk, int offset, int val) {
+        BufferBase buffer = pinnedBuffer(blk);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        writeInt(buffer, blk, offset, val, false);
+    }
+
+    private BufferBase pinnedBuffer(BlockIdBase blk) {
+        if(status != Status.ACTIVE || !blockIdBases.containsKey(blk)){
+            throw new IllegalStateException("Status must be active to set or get and pinned");
+        }
+        return blockIdBases.get(blk);
+    }
+
+    /** Acquires the record lock needed by the record-granular getX/setX methods,
+     * returning the block's buffer.
+     */
+    private BufferBase lockRecord(BlockIdBase blk, int slot, boolean forUpdate) {
+        BufferBase buffer = pinnedBuffer(blk);
+        if(forUpdate){
+            if(readOnly){
+                throw new IllegalStateException("A read-only tx can't write");
+            }
+            ((ConcurrencyMgr)concurrencyMgr).xLockRecord(blk, slot);
+        }else{
+            ((ConcurrencyMgr)concurrencyMgr).sLockRecord(blk, slot);
+        }
+        return buffer;
+    }
+
+    // An undo restores only values that this tx wrote, which the block or
+    // record x-locks that it still holds already cover: a block lock would
+    // make the rollback wait for the block's other record-level writers.
+    private void lockForWrite(BlockIdBase blk) {
+        if(!undoing){
+            concurrencyMgr.xLock(blk);
+        }
+    }
+
+    /** Writes a single log record holding the specified changes to a record,
+     * whose fields the client has already written without logging (see
+     * PageHandle#setInt(int, int, RowImage)), and stamps the block's buffer
+     * with the record's LSN.  The client must log the image before the tx
+     * completes, and before it unpins the record's block.
+     *
+     * @param image the old and new values of the record's changed fields
+     * @throws IllegalStateException if tx isn't in the ACTIVE state, or is
+     * read-only.
+     */
+    public void logRowImage(RowImage image) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to log");
+        }
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        BufferBase buffer = blockIdBases.get(image.block());
+        if(buffer == null){
+            synchronized(image){
+                if(!image.isEmpty()){
+                    ((RecoveryMgr)recoveryMgr).setRow(image);
+                }
+            }
+            return;
+        }
+        logPendingImage(buffer, image);
+    }
+
+    /** Logs the specified row image, unless it's already logged, stamps the
+     * buffer with its LSN, and deregisters it from the buffer.  Invoked either
+     * by this tx or, if the page is about to be written to disk, by the
+     * thread that writes it.
+     */
+    void logPendingImage(BufferBase buffer, RowImage image) {
+        synchronized(image){
+            if(!image.isEmpty()){
+                int lsn = ((RecoveryMgr)recoveryMgr).setRow(image);
+                buffer.setModified(txNum, lsn);
+                image.clear();
+            }
+            ((Buffer)buffer).removePendingImage(image);
+        }
+    }
+
+    void lockShared(BlockIdBase blk) {
+        concurrencyMgr.sLock(blk);
+    }
+
+    void lockExclusive(BlockIdBase blk) {
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
         concurrencyMgr.xLock(blk);
-        byte[] oldVal = null;
+    }
+
+    // The write helpers are shared by the setX methods and PageHandle: the
+    // caller has already validated the tx's state and acquired the xLock.
+    void writeInt(BufferBase buffer, BlockIdBase blk, int offset, int val, boolean okToLog) {
+        PageBase page = buffer.contents();
+        int lsn = -1;
+        if(okToLog){
+            int oldVal = page.getInt(offset);
+            page.setInt(offset, val);
+            lsn = recoveryMgr.setInt(blk, offset, val, oldVal);
+        }else{
+            page.setInt(offset, val);
+        }
+        buffer.setModified(txNum, lsn);
+    }
+
+    void writeBoolean(BufferBase buffer, BlockIdBase blk, int offset, boolean val, boolean okToLog) {
+        PageBase page = buffer.contents();
+        int lsn = -1;
         if(okToLog){
-            oldVal = blockIdBases.get(blk).contents().getBytes(offset);
+            boolean oldVal = page.getBoolean(offset);
+            page.setBoolean(offset, val);
+            lsn = recoveryMgr.setBoolean(blk, offset, val, oldVal);
+        }else{
+            page.setBoolean(offset, val);
         }
-        blockIdBases.get(blk).contents().setBytes(offset, val);
+        buffer.setModified(txNum, lsn);
+    }
+
+    void writeDouble(BufferBase buffer, BlockIdBase blk, int offset, double val, boolean okToLog) {
+        PageBase page = buffer.contents();
         int lsn = -1;
         if(okToLog){
-            recoveryMgr.setBytes(blk, offset, val, oldVal);
+            double oldVal = page.getDouble(offset);
+            page.setDouble(offset, val);
+            lsn = recoveryMgr.setDouble(blk, offset, val, oldVal);
+        }else{
+            page.setDouble(offset, val);
         }
-        blockIdBases.get(blk).setModified(txNum, lsn);
+        buffer.setModified(txNum, lsn);
+    }
+
+    void writeString(BufferBase buffer, BlockIdBase blk, int offset, String val, boolean okToLog) {
+        PageBase page = buffer.contents();
+        int lsn = -1;
+        if(okToLog){
+            String oldVal = page.getString(offset);
+            page.setString(offset, val);
+            lsn = recoveryMgr.setString(blk, offset, val, oldVal);
+        }else{
+            page.setString(offset, val);
+        }
+        buffer.setModified(txNum, lsn);
+    }
+
+    void writeBytes(BufferBase buffer, BlockIdBase blk, int offset, byte[] val, boolean okToLog) {
+        PageBase page = buffer.contents();
+        int lsn = -1;
+        if(okToLog){
+            byte[] oldVal = page.getBytes(offset);
+            page.setBytes(offset, val);
+            lsn = recoveryMgr.setBytes(blk, offset, val, oldVal);
+        }else{
+            page.setBytes(offset, val);
+        }
+        buffer.setModified(txNum, lsn);
     }
 
     /** Returns the number of blocks in the specified file.
@@ -580,11 +951,38 @@ public class Tx implements TxBase{
         }
         int size = size(filename);
         BlockIdBase blk = new BlockId(filename, size);
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
         concurrencyMgr.xLock(blk);
         blk = fileMgr.append(filename);
         return blk;
     }
 
+    /** Appends a new block to the end of the specified file, pins it, and logs
+     * a single "new block" record for it, so that the tx may fill the block
+     * with unlogged writes (okToLog false).  Rollback and recovery undo the
+     * record by erasing the whole block; the tx's commit makes the block's
+     * contents durable.
+     *
+     * The block's buffer is stamped with the record's LSN, so that the record
+     * reaches disk before any of the block's contents can: the log is forced
+     * when the buffer is written (on eviction, or at commit), not once per
+     * appended block.
+     *
+     * @param filename the name of the file
+     * @return a handle on the newly-created, pinned, disk block
+     * @throws IllegalStateException if tx isn't in the ACTIVE state, or is
+     * read-only.
+     * @see #append
+     */
+    public PageHandle appendNewBlock(String filename) {
+        BlockIdBase blk = append(filename);
+        PageHandle handle = pinHandle(blk);
+        blockIdBases.get(blk).setModified(txNum, ((RecoveryMgr)recoveryMgr).newBlock(blk));
+        return handle;
+    }
+
     /** Returns the size of blocks, uniform across all disk blocks managed by the
      * DBMS.
      *
@@ -595,6 +993,13 @@ public class Tx implements TxBase{
         return blockSize;
     }
 
+    /** Returns the FileMgr beneath the tx, for the query operators that keep
+     * temporary files of their own outside the buffer pool (and the log).
+     */
+    public FileMgrBase fileMgr() {
+        return fileMgr;
+    }
+
     /** Returns the number of available (i.e. unpinned) buffers.
      *
      * @return the number of available buffers
@@ -607,4 +1012,126 @@ public class Tx implements TxBase{
         }
         return bufferMgr.available();
     }
+
+    /** Acquires a shared lock on a single record slot (and an intention-shared
+     * lock on its block) on behalf of the client.  The record lock covers only
+     * the record-granular getX methods (e.g., getInt(blk, slot, offset)) on
+     * that record: the block-granular getX methods still s-lock the whole
+     * block, upgrading the intention lock.
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     */
+    public void sLockRecord(BlockIdBase blk, int slot) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to lock");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).sLockRecord(blk, slot);
+    }
+
+    /** Acquires an exclusive lock on a single record slot (and an
+     * intention-exclusive lock on its block) on behalf of the client.
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     * @see #sLockRecord
+     */
+    public void xLockRecord(BlockIdBase blk, int slot) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to lock");
+        }
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).xLockRecord(blk, slot);
+    }
+
+    /** Acquires an exclusive lock on the entire block, even if the tx is
+     * accessing the block at record granularity.  Used for structural changes
+     * to a block.
+     *
+     * @param blk a reference to a disk block
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     */
+    public void xLockBlock(BlockIdBase blk) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to lock");
+        }
+        if(readOnly){
+            throw new IllegalStateException("A read-only tx can't write");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).xLockBlock(blk);
+    }
+
+    /** Acquires an intention-shared lock on the block, unless the tx already
+     * holds a lock on it.  Until the tx locks a record of the block, its reads
+     * of the block are unlocked: used by clients that search the block for a
+     * record to lock, and re-check the record once it's locked.
+     *
+     * @param blk a reference to a disk block
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     */
+    public void isLockBlock(BlockIdBase blk) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to lock");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).isLockBlock(blk);
+    }
+
+    /** Acquires a shared lock on the entire block, even if the tx is
+     * accessing the block at record granularity.  Used by clients that read
+     * every record of a block at once.
+     *
+     * @param blk a reference to a disk block
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     */
+    public void sLockBlock(BlockIdBase blk) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to lock");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).sLockBlock(blk);
+    }
+
+    /** Releases the tx's shared lock on the block, under any isolation level,
+     * if it holds no other lock on it: for a block that the client read only to
+     * find another block, which it has since locked (see BTreeIndex).  The
+     * client must not read the block again without pinning it anew.
+     *
+     * @param blk a reference to a disk block
+     * @throws IllegalStateException if tx isn't in the ACTIVE state.
+     */
+    public void unlockShared(BlockIdBase blk) {
+        if(status != Status.ACTIVE){
+            throw new IllegalStateException("Status must be active to unlock");
+        }
+        ((ConcurrencyMgr)concurrencyMgr).unlockShared(blk);
+    }
+
+    /** Notifies the tx that the client has finished reading the specified
+     * record.  Under READ_COMMITTED the record's shared lock is released;
+     * otherwise this is a no-op.
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     */
+    public void endRecordRead(BlockIdBase blk, int slot) {
+        if(isolation == IsolationLevel.READ_COMMITTED){
+            ((ConcurrencyMgr)concurrencyMgr).endRecordRead(blk, slot);
+        }
+    }
+
+    /** Notifies the tx that the client's cursor has moved off the specified
+     * block.  Under READ_COMMITTED and CURSOR_STABILITY, the shared locks that
+     * the tx holds on the block (and on its records) are released; under
+     * SERIALIZABLE this is a no-op.
+     *
+     * @param blk a reference to a disk block
+     */
+    public void leaveBlock(BlockIdBase blk) {
+        if(isolation != IsolationLevel.SERIALIZABLE && status == Status.ACTIVE){
+            ((ConcurrencyMgr)concurrencyMgr).releaseShared(blk);
+        }
+    }
 }
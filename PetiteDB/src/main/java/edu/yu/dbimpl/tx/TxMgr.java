@@ -86,12 +86,34 @@ public class TxMgr extends TxMgrBase{
      */
     @Override
     public TxBase newTx() {
+        return newTx(IsolationLevel.SERIALIZABLE);
+    }
+    /** Returns a new transaction instance that runs under the specified
+     * isolation level.
+     *
+     * @param isolation can't be null
+     * @throws IllegalArgumentException if isolation is null
+     */
+    public TxBase newTx(IsolationLevel isolation) {
+        if(isolation == null){
+            throw new IllegalArgumentException("isolation level can't be null");
+        }
         int num = txCount.getAndIncrement();
-        ConcurrencyMgrBase concurrencyMgr = new ConcurrencyMgr(this, num);
+        ConcurrencyMgrBase concurrencyMgr = new ConcurrencyMgr(this, num, isolation);
         RecoveryMgrBase recoveryMgr = new RecoveryMgr(num, logMgr, bufferMgr);
         TxBase tx = new Tx(num, fileMgr.blockSize(), fileMgr, logMgr, bufferMgr, concurrencyMgr, recoveryMgr);
         return tx;
     }
+    /** Returns a new read-only transaction instance.  The tx acquires shared
+     * locks like any other tx, but writes nothing to the log, doesn't flush on
+     * commit, and throws IllegalStateException on any attempt to write.
+     */
+    public TxBase newReadOnlyTx() {
+        int num = txCount.getAndIncrement();
+        ConcurrencyMgrBase concurrencyMgr = new ConcurrencyMgr(this, num);
+        RecoveryMgrBase recoveryMgr = new RecoveryMgr(num, logMgr, bufferMgr);
+        return new Tx(num, fileMgr.blockSize(), fileMgr, logMgr, bufferMgr, concurrencyMgr, recoveryMgr, true);
+    }
     /** Resets global lock-related state to "initial" state.  The TxMgr is
      * conceptually a DBMS singleton (as are the other module managers) and is
      * associated with a single DBMS lock table.  Therefore, invoking this method
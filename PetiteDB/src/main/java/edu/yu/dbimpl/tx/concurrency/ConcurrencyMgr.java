@@ -1,11 +1,14 @@
 package edu.yu.dbimpl.tx.concurrency;
 
 import edu.yu.dbimpl.file.BlockIdBase;
+import edu.yu.dbimpl.tx.IsolationLevel;
 import edu.yu.dbimpl.tx.TxMgr;
 import edu.yu.dbimpl.tx.TxMgrBase;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 
 /** Specifies the public API for the ConcurrencyMgr implementation by requiring
@@ -27,9 +30,18 @@ import java.util.Map;
  *
  */
 public class ConcurrencyMgr extends ConcurrencyMgrBase{
+    // block lock modes, stored as a bitmask since a tx may hold e.g. S and IX
+    private static final int S_LOCK = 1;
+    private static final int X_LOCK = 2;
+    private static final int IS_LOCK = 4;
+    private static final int IX_LOCK = 8;
+
     private LockTable locktable;
     private Map<BlockIdBase, Integer> blockIdBases;
+    private Map<RecordLockId, Integer> recordLocks;
     private final int txNum;
+    private final IsolationLevel isolation;
+    private int commitDependencyLSN = -1;
     /**
      * Create a concurrency manager.
      *
@@ -37,53 +49,275 @@ public class ConcurrencyMgr extends ConcurrencyMgrBase{
      *
      */
     public ConcurrencyMgr(TxMgrBase txMgr, int txNum) {
+        this(txMgr, txNum, IsolationLevel.SERIALIZABLE);
+    }
+    /**
+     * Create a concurrency manager whose tx runs under the specified isolation
+     * level.
+     *
+     * @param txMgr
+     * @param isolation can't be null
+     */
+    public ConcurrencyMgr(TxMgrBase txMgr, int txNum, IsolationLevel isolation) {
         super(txMgr);
+        if(isolation == null){
+            throw new IllegalArgumentException("isolation level can't be null");
+        }
         this.locktable = ((TxMgr)txMgr).getLockTable();
         blockIdBases = new HashMap<>();
+        recordLocks = new HashMap<>();
         this.txNum = txNum;
+        this.isolation = isolation;
+    }
+
+    public IsolationLevel isolationLevel() {
+        return isolation;
+    }
+
+    /** Returns the LSN of the latest COMMIT record, written by a tx that released
+     * its locks early, on which this tx depends: this tx must not be reported
+     * as committed until the log is durable up to that LSN.  Returns -1 if
+     * there is no such dependency.
+     */
+    public int commitDependencyLSN() {
+        return commitDependencyLSN;
+    }
+
+    private void dependOn(int lsn) {
+        if(lsn > commitDependencyLSN){
+            commitDependencyLSN = lsn;
+        }
     }
     /** Obtain an SLock on the block, if necessary.  The method will ask the lock
-     * table for an SLock if the transaction currently has no locks on that
-     * block.
+     * table for an SLock unless the transaction already holds an S or X lock
+     * on that block.
+     *
+     * An intention lock doesn't cover a read of the block, since the records
+     * that the transaction locked needn't include the one being read: IS is
+     * upgraded to S, and IX to S+IX.  Clients that access the block at record
+     * granularity use the record-granular Tx methods, which take the record
+     * lock instead.
      *
      * @param blk a reference to the disk block
      */
     @Override
     public void sLock(BlockIdBase blk) {
-        if(blockIdBases.containsKey(blk)){
+        sLockBlock(blk);
+    }
+    /** Obtain an XLock on the block, if necessary.  If the transaction does not
+     * have an XLock on that block, then the method asks the lock table for one,
+     * upgrading any S or intention lock that it holds.
+     *
+     * @param blk a reference to the disk block
+     */
+    @Override
+    public void xLock(BlockIdBase blk) {
+        xLockBlock(blk);
+    }
+    /** Obtain an XLock on the block regardless of any record locks held on it:
+     * used for structural changes (e.g., formatting a block or claiming a free
+     * slot) that must exclude all other transactions from the block.
+     *
+     * @param blk a reference to the disk block
+     */
+    public void xLockBlock(BlockIdBase blk) {
+        int mode = blockIdBases.getOrDefault(blk, 0);
+        if((mode & X_LOCK) != 0){
             return;
         }
         try {
-            locktable.sLock(blk, txNum);
-            blockIdBases.put(blk, 0);
+            dependOn(locktable.xLock(blk, txNum));
+            blockIdBases.put(blk, (mode & ~S_LOCK) | X_LOCK);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
-    /** Obtain an XLock on the block, if necessary.  If the transaction does not
-     * have an XLock on that block, then the method first gets an SLock on that
-     * block (if necessary), and then upgrades it to an XLock.
+    /** Obtain an SLock on the block regardless of any record locks held on it:
+     * used by clients that read many records of the block at once (e.g., a
+     * BatchScan), so that one lock covers all of them.
      *
      * @param blk a reference to the disk block
      */
-    @Override
-    public void xLock(BlockIdBase blk) {
-        if(blockIdBases.get(blk) != null &&  blockIdBases.get(blk) == 1){
+    public void sLockBlock(BlockIdBase blk) {
+        int mode = blockIdBases.getOrDefault(blk, 0);
+        if((mode & (S_LOCK | X_LOCK)) != 0){
             return;
         }
         try {
-            locktable.xLock(blk, txNum);
-            blockIdBases.put(blk, 1);
+            dependOn(locktable.sLock(blk, txNum));
+            blockIdBases.put(blk, mode | S_LOCK);
         } catch (InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
+    /** Obtain an IS lock on the block, unless the transaction already holds a
+     * lock on it: used by clients that search the block for a record to lock
+     * (e.g., a free slot), reading the records unlocked until they find it.
+     *
+     * @param blk a reference to the disk block
+     */
+    public void isLockBlock(BlockIdBase blk) {
+        if(blockIdBases.containsKey(blk)){
+            return;
+        }
+        try {
+            dependOn(locktable.isLock(blk, txNum));
+            blockIdBases.put(blk, IS_LOCK);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    /** Obtain an SLock on a single record, if necessary, preceded by an IS lock
+     * on the record's block.  Nothing is locked if the transaction already holds
+     * an S or X lock on the entire block.
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     */
+    public void sLockRecord(BlockIdBase blk, int slot) {
+        int mode = blockIdBases.getOrDefault(blk, 0);
+        if((mode & (S_LOCK | X_LOCK)) != 0){
+            return;
+        }
+        RecordLockId record = new RecordLockId(blk, slot);
+        if(recordLocks.containsKey(record)){
+            return;
+        }
+        try {
+            if((mode & (IS_LOCK | IX_LOCK)) == 0){
+                dependOn(locktable.isLock(blk, txNum));
+                blockIdBases.put(blk, mode | IS_LOCK);
+            }
+            dependOn(locktable.sLock(record, txNum));
+            recordLocks.put(record, S_LOCK);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    /** Obtain an XLock on a single record, if necessary, preceded by an IX lock
+     * on the record's block.  Nothing is locked if the transaction already holds
+     * an X lock on the entire block.
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     */
+    public void xLockRecord(BlockIdBase blk, int slot) {
+        int mode = blockIdBases.getOrDefault(blk, 0);
+        if((mode & X_LOCK) != 0){
+            return;
+        }
+        RecordLockId record = new RecordLockId(blk, slot);
+        if(recordLocks.getOrDefault(record, 0) == X_LOCK){
+            return;
+        }
+        try {
+            if((mode & IX_LOCK) == 0){
+                dependOn(locktable.ixLock(blk, txNum));
+                blockIdBases.put(blk, mode | IX_LOCK);
+            }
+            dependOn(locktable.xLock(record, txNum));
+            recordLocks.put(record, X_LOCK);
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+    /** Releases the SLock on the block if it is the only lock that the tx holds
+     * on the block.  Used under READ_COMMITTED once the read is complete.
+     *
+     * @param blk a reference to the disk block
+     */
+    public void endRead(BlockIdBase blk) {
+        if(isolation != IsolationLevel.SERIALIZABLE && blockIdBases.getOrDefault(blk, 0) == S_LOCK){
+            locktable.unlock(List.of(blk), txNum);
+            blockIdBases.remove(blk);
+        }
+    }
+    /** Releases the SLock on the block, under any isolation level, if it's the
+     * only lock that the tx holds on the block.  For blocks that the tx read
+     * only to find other blocks (e.g., the inner nodes of a B+-tree), whose
+     * contents don't affect the tx's results once it has locked the block
+     * that it was looking for.
+     *
+     * @param blk a reference to the disk block
+     */
+    public void unlockShared(BlockIdBase blk) {
+        if(blockIdBases.getOrDefault(blk, 0) == S_LOCK){
+            locktable.unlock(List.of(blk), txNum);
+            blockIdBases.remove(blk);
+        }
+    }
+    /** Releases the SLock on a single record (an XLock is retained).  The IS
+     * lock on the record's block is retained until releaseShared(block).
+     *
+     * @param blk the block containing the record
+     * @param slot the record's slot
+     */
+    public void endRecordRead(BlockIdBase blk, int slot) {
+        if(isolation == IsolationLevel.SERIALIZABLE){
+            return;
+        }
+        RecordLockId record = new RecordLockId(blk, slot);
+        if(recordLocks.getOrDefault(record, 0) == S_LOCK){
+            locktable.unlock(List.of(record), txNum);
+            recordLocks.remove(record);
+        }
+    }
+    /** Releases every shared lock that the tx holds on the block and on its
+     * records.  Exclusive locks, and the intention locks that cover them, are
+     * retained.  A no-op under SERIALIZABLE.
+     *
+     * @param blk a reference to the disk block
+     */
+    public void releaseShared(BlockIdBase blk) {
+        if(isolation == IsolationLevel.SERIALIZABLE){
+            return;
+        }
+        List<RecordLockId> released = new ArrayList<>();
+        boolean retained = false;
+        Iterator<Map.Entry<RecordLockId, Integer>> it = recordLocks.entrySet().iterator();
+        while(it.hasNext()){
+            Map.Entry<RecordLockId, Integer> entry = it.next();
+            if(entry.getKey().block().equals(blk)){
+                if(entry.getValue() == S_LOCK){
+                    released.add(entry.getKey());
+                    it.remove();
+                }else{
+                    retained = true;
+                }
+            }
+        }
+        locktable.unlock(released, txNum);
+        int mode = blockIdBases.getOrDefault(blk, 0);
+        if((mode & ~IS_LOCK) == S_LOCK || (mode == IS_LOCK && !retained)){
+            locktable.unlock(List.of(blk), txNum);
+            blockIdBases.remove(blk);
+        }
+    }
     /** Release all locks held by the concurrency manager's tx by asking the lock
-     * table to unlock each one.
+     * table to unlock each one.  Record locks are released before the block
+     * intention locks that cover them.
      */
     @Override
     public void release() {
-        locktable.unlock(new ArrayList<>(blockIdBases.keySet()), txNum);
+        release(-1);
+    }
+    /** Early lock release: releases all locks held by the tx once its COMMIT
+     * record has been appended at commitLSN, but before that record is durable.
+     * The client must then flush the log through commitLSN and invoke
+     * durable(commitLSN).
+     *
+     * @param commitLSN the LSN of the tx's COMMIT record
+     */
+    public void release(int commitLSN) {
+        locktable.unlock(new ArrayList<>(recordLocks.keySet()), txNum, commitLSN);
+        recordLocks.clear();
+        locktable.unlock(new ArrayList<>(blockIdBases.keySet()), txNum, commitLSN);
         blockIdBases.clear();
     }
+    /** Informs the lock table that the log is durable through the specified
+     * LSN.
+     */
+    public void durable(int lsn) {
+        locktable.setDurableLSN(lsn);
+    }
 }
@@ -5,13 +5,53 @@ import edu.yu.dbimpl.file.BlockIdBase;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/** The DBMS-wide lock table.  Locks are granted at two granularities: blocks
+ * (BlockIdBase) and individual record slots (RecordLockId).
+ *
+ * Record locks are plain shared/exclusive locks.  Block locks additionally
+ * support the intention modes (IS, IX) used for multi-granularity locking: a
+ * tx that locks a record first takes an intention lock on the record's block,
+ * so that block-level S and X requests (e.g., from structural changes such as
+ * formatting a block) still conflict with record-level work on that block.
+ *
+ * Compatibility of block modes held by DIFFERENT txs:
+ *
+ *        IS   IX   S    X
+ *   IS   y    y    y    n
+ *   IX   y    y    n    n
+ *   S    y    n    y    n
+ *   X    n    n    n    n
+ *
+ * A tx may hold several modes on the same block (e.g., S and IX), in which
+ * case it is checked against other txs in every mode it holds.
+ *
+ * Entries for keys with no holders and no waiters are removed on unlock, so
+ * the table does not grow without bound as records are locked.  An entry that
+ * is idle but still carries a not-yet-durable release LSN is instead removed
+ * once the log is durable up to that LSN (see setDurableLSN).
+ *
+ * Early lock release: a committing tx may release its locks as soon as its
+ * COMMIT record is appended, before that record is durable.  The tx then
+ * passes the COMMIT record's LSN to unlock(), and every key that it held
+ * exclusively remembers that LSN until it is known to be durable.  A block on
+ * which the tx held IX (i.e., whose records it wrote) remembers the LSN too,
+ * for subsequent S and X requests on the block only: an intention request
+ * goes on to lock the records that it accesses.  Each acquire method returns
+ * the (not yet durable) LSN that the acquiring tx now depends on, or -1: the
+ * acquiring tx may not be acknowledged as committed until the log is durable
+ * up to that LSN.
+ */
 public class LockTable {
-    private static ConcurrentHashMap<BlockIdBase, LockInfo> locks = null;
+    private static ConcurrentHashMap<Object, LockInfo> locks = null;
     private long maxWaitTimeInMillis;
+    private final AtomicInteger durableLSN = new AtomicInteger(-1);
+    // keys whose entries were idle on unlock except for a not-yet-durable LSN
+    private final Set<Object> awaitingDurability = ConcurrentHashMap.newKeySet();
     public static final LockTable INSTANCE = new LockTable();
     private LockTable() {
         locks = new ConcurrentHashMap<>();
@@ -19,51 +59,141 @@ public class LockTable {
 
     public void resetAllLockState() {
         locks.clear();
+        awaitingDurability.clear();
+        durableLSN.set(-1);
+    }
+
+    /** Records that the log is durable up to (and including) the specified LSN,
+     * so that keys released early by txs with smaller commit LSNs no longer
+     * impose a commit dependency.  The entries of such keys that are now idle
+     * are removed.
+     */
+    public void setDurableLSN(int lsn) {
+        durableLSN.accumulateAndGet(lsn, Math::max);
+        for (Object key : awaitingDurability) {
+            LockInfo lockInfo = locks.get(key);
+            if (lockInfo == null) {
+                awaitingDurability.remove(key);
+                continue;
+            }
+            lockInfo.lock.lock();
+            try {
+                if (dependency(lockInfo) < 0) {
+                    // an entry that's in use again is retired by its next unlock
+                    awaitingDurability.remove(key);
+                    if (lockInfo.isIdle() && !lockInfo.retired) {
+                        lockInfo.retired = true;
+                        locks.remove(key, lockInfo);
+                    }
+                }
+            } finally {
+                lockInfo.lock.unlock();
+            }
+        }
     }
 
     public void setMaxWaitTimeInMillis(long maxWaitTimeInMillis) {
         this.maxWaitTimeInMillis = maxWaitTimeInMillis;
     }
 
+    public int sLock(BlockIdBase block, int txNum) throws InterruptedException {
+        return sLock(block, describe(block), txNum);
+    }
+
+    public int xLock(BlockIdBase block, int txNum) throws InterruptedException {
+        return xLock(block, describe(block), txNum);
+    }
+
+    /** Obtains a shared lock on a single record slot. */
+    public int sLock(RecordLockId record, int txNum) throws InterruptedException {
+        return sLock(record, record.toString(), txNum);
+    }
+
+    /** Obtains an exclusive lock on a single record slot. */
+    public int xLock(RecordLockId record, int txNum) throws InterruptedException {
+        return xLock(record, record.toString(), txNum);
+    }
+
+    /** Obtains an intention-shared lock on the block: compatible with every
+     * mode except X held by another tx.  Unless the tx already holds a lock on
+     * the block, the request also waits behind queued X requests, so that a
+     * stream of intention locks can't starve them.
+     */
+    public int isLock(BlockIdBase block, int txNum) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + maxWaitTimeInMillis;
+        LockInfo lockInfo = acquireInfo(block);
+        try {
+            LockRequest request = new LockRequest(LockType.INTENTION_SHARED, txNum);
+            lockInfo.queue.add(request);
+            while ((lockInfo.xLocks > 0 && !Objects.equals(lockInfo.xLockHolder, txNum))
+                    || conflictingRequestAhead(lockInfo, request)) {
+                awaitOrAbort(lockInfo, request, timeout, "isLock", describe(block));
+            }
+            lockInfo.queue.remove(request);
+            lockInfo.condition.signalAll();
+            lockInfo.isHolders.add(txNum);
+            return intentionDependency(lockInfo);
+        } finally {
+            lockInfo.lock.unlock();
+        }
+    }
+
+    /** Obtains an intention-exclusive lock on the block: conflicts with S or X
+     * held by another tx.  Like isLock, the request waits behind queued
+     * conflicting (S or X) requests.
+     */
+    public int ixLock(BlockIdBase block, int txNum) throws InterruptedException {
+        long timeout = System.currentTimeMillis() + maxWaitTimeInMillis;
+        LockInfo lockInfo = acquireInfo(block);
+        try {
+            LockRequest request = new LockRequest(LockType.INTENTION_EXCLUSIVE, txNum);
+            lockInfo.queue.add(request);
+            while ((lockInfo.xLocks > 0 && !Objects.equals(lockInfo.xLockHolder, txNum))
+                    || othersHold(lockInfo.sLockHolders, txNum)
+                    || conflictingRequestAhead(lockInfo, request)) {
+                awaitOrAbort(lockInfo, request, timeout, "ixLock", describe(block));
+            }
+            lockInfo.queue.remove(request);
+            lockInfo.condition.signalAll();
+            lockInfo.ixHolders.add(txNum);
+            return intentionDependency(lockInfo);
+        } finally {
+            lockInfo.lock.unlock();
+        }
+    }
 
-    public void sLock(BlockIdBase block, int txNum) throws InterruptedException {
-        LockInfo lockInfo = locks.computeIfAbsent(block, k -> new LockInfo());
+    private int sLock(Object key, String description, int txNum) throws InterruptedException {
         long timeout = System.currentTimeMillis() + maxWaitTimeInMillis;
-        lockInfo.lock.lock();
+        LockInfo lockInfo = acquireInfo(key);
         try {
             LockRequest request = new LockRequest(LockType.SHARED, txNum);
             lockInfo.queue.add(request);
 
-            while (lockInfo.xLocks > 0 || lockInfo.queue.peek() != request) {
-                if(System.currentTimeMillis() > timeout) {
-                    lockInfo.queue.remove(request);
-                    throw new LockAbortException("Timeout waiting for sLock on block " + block.number() + " on file " + block.fileName());
-                }
-                if(!lockInfo.condition.await(timeout-System.currentTimeMillis(), TimeUnit.MILLISECONDS)){
-                    lockInfo.queue.remove(request);
-                    throw new LockAbortException("Timeout waiting for sLock on block " + block.number() + " on file " + block.fileName());
-                }
+            while (lockInfo.xLocks > 0 || othersHold(lockInfo.ixHolders, txNum)
+                    || lockInfo.queue.peek() != request) {
+                awaitOrAbort(lockInfo, request, timeout, "sLock", description);
             }
             lockInfo.queue.remove(request);
             lockInfo.sLocks++;
             lockInfo.sLockHolders.add(txNum);
+            return dependency(lockInfo);
         } finally {
             lockInfo.lock.unlock();
         }
     }
 
-    public void xLock(BlockIdBase block, int txNum) throws InterruptedException {
-        LockInfo lockInfo = locks.computeIfAbsent(block, k -> new LockInfo());
+    private int xLock(Object key, String description, int txNum) throws InterruptedException {
         long timeout = System.currentTimeMillis() + maxWaitTimeInMillis;
-        lockInfo.lock.lock();
+        LockInfo lockInfo = acquireInfo(key);
         try {
             // If I am the only reader and no writer exists, upgrade immediately.
-            if (lockInfo.sLockHolders.contains(txNum) && lockInfo.sLocks == 1 && lockInfo.xLocks == 0) {
+            if (lockInfo.sLockHolders.contains(txNum) && lockInfo.sLocks == 1 && lockInfo.xLocks == 0
+                    && !othersHold(lockInfo.isHolders, txNum) && !othersHold(lockInfo.ixHolders, txNum)) {
                 lockInfo.sLocks--;
                 lockInfo.sLockHolders.remove(txNum);
                 lockInfo.xLocks++;
                 lockInfo.xLockHolder = txNum;
-                return;
+                return dependency(lockInfo);
             }
             LockRequest request = new LockRequest(LockType.EXCLUSIVE, txNum);
             lockInfo.queue.add(request);
@@ -72,7 +202,8 @@ public class LockTable {
                     // Recalculate state
                     boolean isUpgrade = lockInfo.sLockHolders.contains(txNum);
                     int effectiveSLocks = isUpgrade ? lockInfo.sLocks - 1 : lockInfo.sLocks;
-                    boolean shouldWait = effectiveSLocks > 0 || lockInfo.xLocks > 0;
+                    boolean shouldWait = effectiveSLocks > 0 || lockInfo.xLocks > 0
+                            || othersHold(lockInfo.isHolders, txNum) || othersHold(lockInfo.ixHolders, txNum);
 
                     // --- CUSTOM QUEUE LOGIC STARTS HERE ---
                     if (!shouldWait) {
@@ -98,15 +229,7 @@ public class LockTable {
                         break; // Safe to acquire lock
                     }
 
-                    // Timeout handling
-                    if (System.currentTimeMillis() > timeout) {
-                        lockInfo.queue.remove(request);
-                        throw new LockAbortException("Timeout waiting for xLock on block " + block.number() + " on file " + block.fileName());
-                    }
-                    if (!lockInfo.condition.await(timeout - System.currentTimeMillis(), TimeUnit.MILLISECONDS)) {
-                        lockInfo.queue.remove(request);
-                        throw new LockAbortException("Timeout waiting for xLock on block " + block.number() + " on file " + block.fileName());
-                    }
+                    awaitOrAbort(lockInfo, request, timeout, "xLock", description);
                 }
             } catch (InterruptedException e) {
                 lockInfo.queue.remove(request);
@@ -122,15 +245,26 @@ public class LockTable {
 
             lockInfo.xLocks++;
             lockInfo.xLockHolder = txNum;
+            return dependency(lockInfo);
         } finally {
             lockInfo.lock.unlock();
         }
     }
 
+    /** Releases every lock (in every mode) that the tx holds on the specified
+     * keys.  Keys may be blocks or records.
+     */
+    public void unlock(List<?> keys, int txNum) {
+        unlock(keys, txNum, -1);
+    }
 
-    public void unlock(List<BlockIdBase> blocks, int txNum) {
-        for (BlockIdBase block : blocks) {
-            LockInfo lockInfo = locks.get(block);
+    /** Releases every lock that the tx holds on the specified keys, before the
+     * tx's COMMIT record (at commitLSN) is durable.  Subsequent acquirers of
+     * keys that the tx held exclusively become dependent on commitLSN.
+     */
+    public void unlock(List<?> keys, int txNum, int commitLSN) {
+        for (Object key : keys) {
+            LockInfo lockInfo = locks.get(key);
             if (lockInfo == null) {
                 continue;
             }
@@ -140,10 +274,23 @@ public class LockTable {
                 if (Objects.equals(lockInfo.xLockHolder, txNum)) {
                     lockInfo.xLocks--;
                     lockInfo.xLockHolder = null;
+                    lockInfo.releasedLSN = Math.max(lockInfo.releasedLSN, commitLSN);
                 } else if (lockInfo.sLockHolders.contains(txNum)) {
                     lockInfo.sLocks--;
                     lockInfo.sLockHolders.remove(txNum);
                 }
+                lockInfo.isHolders.remove(txNum);
+                if (lockInfo.ixHolders.remove(txNum)) {
+                    lockInfo.ixReleasedLSN = Math.max(lockInfo.ixReleasedLSN, commitLSN);
+                }
+                if (lockInfo.isIdle()) {
+                    if (dependency(lockInfo) < 0) {
+                        lockInfo.retired = true;
+                        locks.remove(key, lockInfo);
+                    } else {
+                        awaitingDurability.add(key);
+                    }
+                }
                 lockInfo.condition.signalAll();
             } finally {
                 lockInfo.lock.unlock();
@@ -151,8 +298,81 @@ public class LockTable {
         }
     }
 
+    /** Returns the LockInfo for the key with its monitor held, retrying if the
+     * entry was retired (removed as idle) between lookup and locking.
+     */
+    private LockInfo acquireInfo(Object key) {
+        while (true) {
+            LockInfo lockInfo = locks.computeIfAbsent(key, k -> new LockInfo());
+            lockInfo.lock.lock();
+            if (!lockInfo.retired) {
+                return lockInfo;
+            }
+            lockInfo.lock.unlock();
+        }
+    }
+
+    private void awaitOrAbort(LockInfo lockInfo, LockRequest request, long timeout, String mode, String description)
+            throws InterruptedException {
+        long remaining = timeout - System.currentTimeMillis();
+        if (remaining <= 0 || !lockInfo.condition.await(remaining, TimeUnit.MILLISECONDS)) {
+            if (request != null) {
+                lockInfo.queue.remove(request);
+                // a departing head-of-queue may have been blocking the others
+                lockInfo.condition.signalAll();
+            }
+            throw new LockAbortException("Timeout waiting for " + mode + " on " + description);
+        }
+    }
+
+    /** Returns true iff another tx's request that conflicts with the specified
+     * intention request is queued ahead of it.  A tx that already holds a
+     * lock on the key doesn't yield, since the requests ahead may be waiting
+     * for it.
+     */
+    private static boolean conflictingRequestAhead(LockInfo lockInfo, LockRequest request) {
+        if (lockInfo.holds(request.txNum)) {
+            return false;
+        }
+        for (LockRequest r : lockInfo.queue) {
+            if (r == request) {
+                return false;
+            }
+            boolean conflicts = r.type == LockType.EXCLUSIVE
+                    || (r.type == LockType.SHARED && request.type == LockType.INTENTION_EXCLUSIVE);
+            if (conflicts && r.txNum != request.txNum) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Returns the not-yet-durable LSN at which the key was last released by a
+     * tx that held it exclusively, or that held IX on it, or -1.
+     */
+    private int dependency(LockInfo lockInfo) {
+        int lsn = Math.max(lockInfo.releasedLSN, lockInfo.ixReleasedLSN);
+        return lsn > durableLSN.get() ? lsn : -1;
+    }
+
+    /** Returns the dependency of an intention request: only on txs that held
+     * the key exclusively, since the requester then locks the records that it
+     * accesses, which carry their writers' LSNs.
+     */
+    private int intentionDependency(LockInfo lockInfo) {
+        return lockInfo.releasedLSN > durableLSN.get() ? lockInfo.releasedLSN : -1;
+    }
+
+    private static boolean othersHold(Set<Integer> holders, int txNum) {
+        return holders.size() > (holders.contains(txNum) ? 1 : 0);
+    }
+
+    private static String describe(BlockIdBase block) {
+        return "block " + block.number() + " on file " + block.fileName();
+    }
+
     private enum LockType {
-        SHARED, EXCLUSIVE
+        SHARED, EXCLUSIVE, INTENTION_SHARED, INTENTION_EXCLUSIVE
     }
 
     private static class LockRequest {
@@ -170,8 +390,22 @@ public class LockTable {
         int xLocks = 0;
         final Set<Integer> sLockHolders = new HashSet<>();
         Integer xLockHolder = null;
+        final Set<Integer> isHolders = new HashSet<>();
+        final Set<Integer> ixHolders = new HashSet<>();
         final Queue<LockRequest> queue = new LinkedList<>();
         final Lock lock = new ReentrantLock();
         final Condition condition = lock.newCondition();
+        boolean retired = false;
+        int releasedLSN = -1;
+        int ixReleasedLSN = -1;
+
+        boolean holds(int txNum) {
+            return sLockHolders.contains(txNum) || Objects.equals(xLockHolder, txNum)
+                    || isHolders.contains(txNum) || ixHolders.contains(txNum);
+        }
+
+        boolean isIdle() {
+            return sLocks == 0 && xLocks == 0 && isHolders.isEmpty() && ixHolders.isEmpty() && queue.isEmpty();
+        }
     }
 }
@@ -0,0 +1,52 @@
+package edu.yu.dbimpl.tx.concurrency;
+
+import edu.yu.dbimpl.file.BlockIdBase;
+
+/** Identifies a single record slot for the purposes of record-level (RID)
+ * locking.  A RecordLockId is an immutable value class: two instances that
+ * refer to the same slot of the same block are equal.
+ */
+public final class RecordLockId {
+    private final BlockIdBase blk;
+    private final int slot;
+
+    /** Constructor
+     *
+     * @param blk the block containing the record, can't be null
+     * @param slot the record's slot number, must be non-negative
+     * @throws IllegalArgumentException as appropriate
+     */
+    public RecordLockId(BlockIdBase blk, int slot) {
+        if (blk == null || slot < 0) {
+            throw new IllegalArgumentException("Invalid block or slot");
+        }
+        this.blk = blk;
+        this.slot = slot;
+    }
+
+    public BlockIdBase block() {
+        return blk;
+    }
+
+    public int slot() {
+        return slot;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) return true;
+        if (obj == null || getClass() != obj.getClass()) return false;
+        RecordLockId other = (RecordLockId) obj;
+        return this.slot == other.slot && this.blk.equals(other.blk);
+    }
+
+    @Override
+    public int hashCode() {
+        return (31 * blk.hashCode()) + slot;
+    }
+
+    @Override
+    public String toString() {
+        return "slot " + slot + " of block " + blk.number() + " on file " + blk.fileName();
+    }
+}
@@ -5,6 +5,7 @@ import edu.yu.dbimpl.file.BlockIdBase;
 import edu.yu.dbimpl.tx.TxBase;
 
 import java.io.*;
+import java.sql.Types;
 
 public class LogRecord implements LogRecordBase{
     private LogType logType;
@@ -25,6 +26,7 @@ public class LogRecord implements LogRecordBase{
     private int oldLength;
     private String oldWords;
     private double old;
+    private RowImage rowImage;
 
     /**
      * Constructor for Set String
@@ -109,6 +111,30 @@ public class LogRecord implements LogRecordBase{
         this.oldData = oldData;
     }
 
+    /**
+     * Constructor for new block: the block's initial contents are written
+     * without logging, so undo erases the whole block
+     * @param logType
+     * @param blockIdBase
+     */
+    public LogRecord(int txNumber, LogType logType, BlockIdBase blockIdBase) {
+        this.txNumber = txNumber;
+        this.logType = logType;
+        this.blockId = blockIdBase;
+    }
+
+    /**
+     * Constructor for row image: the changed fields of one record
+     * @param logType
+     * @param rowImage
+     */
+    public LogRecord(int txNumber, LogType logType, RowImage rowImage) {
+        this.txNumber = txNumber;
+        this.logType = logType;
+        this.blockId = rowImage.block();
+        this.rowImage = rowImage;
+    }
+
     /**
      * Constructor for tx log
      * for types START, COMMIT, ROLLBACK, CHECKPOINT
@@ -157,6 +183,28 @@ public class LogRecord implements LogRecordBase{
             case SET_BYTES:
                 tx.setBytes(blockId, offset, oldData, false);
                 break;
+            case NEW_BLOCK:
+                int position = 0;
+                for(; position + Integer.BYTES <= tx.blockSize(); position += Integer.BYTES){
+                    tx.setInt(blockId, position, 0, false);
+                }
+                for(; position < tx.blockSize(); position++){
+                    tx.setBoolean(blockId, position, false, false);
+                }
+                break;
+            case ROW_IMAGE:
+                // restore the fields in reverse order, in case one was imaged twice
+                for(int i = rowImage.size() - 1; i >= 0; i--){
+                    int fieldOffset = rowImage.offset(i);
+                    Object oldValue = rowImage.oldValue(i);
+                    switch(rowImage.type(i)){
+                        case Types.INTEGER -> tx.setInt(blockId, fieldOffset, (Integer) oldValue, false);
+                        case Types.BOOLEAN -> tx.setBoolean(blockId, fieldOffset, (Boolean) oldValue, false);
+                        case Types.DOUBLE -> tx.setDouble(blockId, fieldOffset, (Double) oldValue, false);
+                        case Types.VARCHAR -> tx.setString(blockId, fieldOffset, (String) oldValue, false);
+                    }
+                }
+                break;
         }
         tx.unpin(blockId);
     }
@@ -184,6 +232,21 @@ public class LogRecord implements LogRecordBase{
             dos.writeUTF(blockId.fileName());
             dos.writeInt(blockId.number());
 
+            if (logType == LogType.NEW_BLOCK) {
+                return baos.toByteArray();
+            }
+            if (logType == LogType.ROW_IMAGE) {
+                // the block is written once for all of the record's fields
+                dos.writeInt(rowImage.size());
+                for (int i = 0; i < rowImage.size(); i++) {
+                    dos.writeInt(rowImage.offset(i));
+                    dos.writeInt(rowImage.type(i));
+                    writeValue(dos, rowImage.type(i), rowImage.newValue(i));
+                    writeValue(dos, rowImage.type(i), rowImage.oldValue(i));
+                }
+                return baos.toByteArray();
+            }
+
             dos.writeInt(offset);
 
             // Write variable-length data based on type with undo fields
@@ -232,6 +295,38 @@ public class LogRecord implements LogRecordBase{
             int blockNumber = dis.readInt();
             BlockIdBase blockId = new BlockId(fileName, blockNumber);
 
+            if (logType == LogType.NEW_BLOCK) {
+                return new LogRecord(txNumber, logType, blockId);
+            }
+            if (logType == LogType.ROW_IMAGE) {
+                RowImage image = new RowImage(blockId);
+                int fields = dis.readInt();
+                for (int i = 0; i < fields; i++) {
+                    int fieldOffset = dis.readInt();
+                    int type = dis.readInt();
+                    switch (type) {
+                        case Types.INTEGER -> {
+                            int newVal = dis.readInt();
+                            image.setInt(fieldOffset, dis.readInt(), newVal);
+                        }
+                        case Types.BOOLEAN -> {
+                            boolean newVal = dis.readBoolean();
+                            image.setBoolean(fieldOffset, dis.readBoolean(), newVal);
+                        }
+                        case Types.DOUBLE -> {
+                            double newVal = dis.readDouble();
+                            image.setDouble(fieldOffset, dis.readDouble(), newVal);
+                        }
+                        case Types.VARCHAR -> {
+                            String newVal = dis.readUTF();
+                            image.setString(fieldOffset, dis.readUTF(), newVal);
+                        }
+                        default -> throw new IllegalArgumentException("Unknown field type: " + type);
+                    }
+                }
+                return new LogRecord(txNumber, logType, image);
+            }
+
             int offset = dis.readInt();
 
             // Reconstruct based on type with undo fields
@@ -267,4 +362,14 @@ public class LogRecord implements LogRecordBase{
         }
     }
 
+    private static void writeValue(DataOutputStream dos, int type, Object value) throws IOException {
+        switch (type) {
+            case Types.INTEGER -> dos.writeInt((Integer) value);
+            case Types.BOOLEAN -> dos.writeBoolean((Boolean) value);
+            case Types.DOUBLE -> dos.writeDouble((Double) value);
+            case Types.VARCHAR -> dos.writeUTF((String) value);
+            default -> throw new IllegalArgumentException("Unknown field type: " + type);
+        }
+    }
+
 }
@@ -33,6 +33,6 @@ public interface LogRecordBase {
     void undo(TxBase tx);
 
     enum LogType{
-        SET_STRING, SET_INT, SET_DOUBLE, SET_BYTES, SET_BOOL, START, COMMIT, ROLLBACK, CHECKPOINT
+        SET_STRING, SET_INT, SET_DOUBLE, SET_BYTES, SET_BOOL, START, COMMIT, ROLLBACK, CHECKPOINT, NEW_BLOCK, ROW_IMAGE
     }
 }
\ No newline at end of file
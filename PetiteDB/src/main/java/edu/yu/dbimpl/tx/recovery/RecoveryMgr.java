@@ -6,6 +6,7 @@ import edu.yu.dbimpl.file.BlockIdBase;
 import edu.yu.dbimpl.log.LogMgrBase;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class RecoveryMgr extends RecoveryMgrBase{
@@ -25,7 +26,8 @@ public class RecoveryMgr extends RecoveryMgrBase{
         this.txNum = txNUm;
         this.logMgr = logMgr;
         this.bufferMgr = bufferMgr;
-        LSNs = new ArrayList<>();
+        // row images may be logged by the thread that flushes their buffer
+        LSNs = Collections.synchronizedList(new ArrayList<>());
     }
 
     /** Write a commit record to the log, and flushes it to disk, and do whatever
@@ -34,9 +36,16 @@ public class RecoveryMgr extends RecoveryMgrBase{
      */
     @Override
     public void commit() {
+        logMgr.flush(appendCommit());
+    }
+
+    /** Write a commit record to the log WITHOUT flushing it, returning its lsn.
+     * Used for early lock release: the client releases its locks and only then
+     * flushes the log through the returned lsn.
+     */
+    public int appendCommit() {
         LogRecord lr = new LogRecord(txNum, LogRecordBase.LogType.COMMIT);
-        int lsn = logMgr.append(lr.getBytes());
-        logMgr.flush(lsn);
+        return logMgr.append(lr.getBytes());
     }
 
     /** Write a rollback record to the log and flush it to disk, and do whatever
@@ -64,6 +73,33 @@ public class RecoveryMgr extends RecoveryMgrBase{
         LogRecord lr = new LogRecord(txNum, LogRecordBase.LogType.START);
         logMgr.append(lr.getBytes());
     }
+    /** Write a new-block record to the log and return its lsn.  The record
+     * lets the client fill the block without logging each write: undoing it
+     * erases the block.
+     *
+     * @param block the newly appended block
+     * @return the LSN after the record has been written to the log
+     */
+    public int newBlock(BlockIdBase block) {
+        LogRecord lr = new LogRecord(txNum, LogRecordBase.LogType.NEW_BLOCK, block);
+        int lsn = logMgr.append(lr.getBytes());
+        LSNs.add(lsn);
+        return lsn;
+    }
+
+    /** Write a row-image record, holding all of the specified changes to one
+     * record, to the log and return its lsn.
+     *
+     * @param image the old and new values of the record's changed fields
+     * @return the LSN after the record has been written to the log
+     */
+    public int setRow(RowImage image) {
+        LogRecord lr = new LogRecord(txNum, LogRecordBase.LogType.ROW_IMAGE, image);
+        int lsn = logMgr.append(lr.getBytes());
+        LSNs.add(lsn);
+        return lsn;
+    }
+
     /** Write a setInt record to the log and return its lsn.
      *
      * @param block the buffer containing the page
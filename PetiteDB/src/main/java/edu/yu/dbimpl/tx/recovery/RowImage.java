@@ -0,0 +1,106 @@
+package edu.yu.dbimpl.tx.recovery;
+
+import edu.yu.dbimpl.file.BlockIdBase;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** The old and new values of the fields of one record that a client has
+ * modified without logging each write: the client collects the changes here
+ * (see PageHandle#setInt(int, int, RowImage)) and then logs them all in a
+ * single ROW_IMAGE log record (see Tx#logRowImage).
+ *
+ * If a field is written more than once, the image keeps the field's first
+ * old value and its last new value.
+ */
+public class RowImage {
+    private final BlockIdBase block;
+    private final Map<Integer, Integer> positions = new HashMap<>();
+    private final List<Integer> offsets = new ArrayList<>();
+    private final List<Integer> types = new ArrayList<>();
+    private final List<Object> oldValues = new ArrayList<>();
+    private final List<Object> newValues = new ArrayList<>();
+
+    /**
+     * Constructor.
+     *
+     * @param block the block containing the record
+     */
+    public RowImage(BlockIdBase block) {
+        this.block = block;
+    }
+
+    public BlockIdBase block() {
+        return block;
+    }
+
+    public void setInt(int offset, int oldVal, int newVal) {
+        add(offset, Types.INTEGER, oldVal, newVal);
+    }
+
+    public void setBoolean(int offset, boolean oldVal, boolean newVal) {
+        add(offset, Types.BOOLEAN, oldVal, newVal);
+    }
+
+    public void setDouble(int offset, double oldVal, double newVal) {
+        add(offset, Types.DOUBLE, oldVal, newVal);
+    }
+
+    public void setString(int offset, String oldVal, String newVal) {
+        add(offset, Types.VARCHAR, oldVal, newVal);
+    }
+
+    /** Returns the number of fields in the image. */
+    public int size() {
+        return offsets.size();
+    }
+
+    public boolean isEmpty() {
+        return offsets.isEmpty();
+    }
+
+    /** Returns the offset of the i'th field in the image. */
+    public int offset(int i) {
+        return offsets.get(i);
+    }
+
+    /** Returns the type (a java.sql.Types constant) of the i'th field. */
+    public int type(int i) {
+        return types.get(i);
+    }
+
+    /** Returns the value of the i'th field before the changes, boxed. */
+    public Object oldValue(int i) {
+        return oldValues.get(i);
+    }
+
+    /** Returns the value of the i'th field after the changes, boxed. */
+    public Object newValue(int i) {
+        return newValues.get(i);
+    }
+
+    /** Removes all fields from the image. */
+    public void clear() {
+        positions.clear();
+        offsets.clear();
+        types.clear();
+        oldValues.clear();
+        newValues.clear();
+    }
+
+    private void add(int offset, int type, Object oldVal, Object newVal) {
+        Integer i = positions.get(offset);
+        if(i != null && types.get(i) == type){
+            newValues.set(i, newVal);
+            return;
+        }
+        positions.put(offset, offsets.size());
+        offsets.add(offset);
+        types.add(type);
+        oldValues.add(oldVal);
+        newValues.add(newVal);
+    }
+}
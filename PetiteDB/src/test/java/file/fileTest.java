@@ -7,7 +7,10 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Properties;
+import java.util.Random;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -367,5 +370,76 @@ public class fileTest {
         assertThrows(IllegalArgumentException.class, ()->{BlockIdBase blockId = new BlockId(null, 0);});
     }
 
+    @Test
+    public void compressedFileTest(){
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        FileMgr fm = new FileMgr(file, 512);
+        assertThrows(IllegalArgumentException.class, ()->fm.setCompressionPolicy(null));
+        fm.setCompressionPolicy(f -> f.equals("zipFile"));
+        assertTrue(fm.isCompressed("zipFile"));
+        assertFalse(fm.isCompressed("plainFile"));
+
+        for(int i = 0; i < 20; i++){
+            PageBase p = new Page(512);
+            p.setString(0, "record " + i);
+            p.setInt(200, i);
+            p.setString(300, "aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa");
+            fm.write(new BlockId("zipFile", i), p);
+            fm.write(new BlockId("plainFile", i), p);
+        }
+        // a block that doesn't compress, and a block that grows and must move
+        byte[] noise = new byte[512];
+        new Random(17).nextBytes(noise);
+        fm.write(new BlockId("zipFile", 7), new Page(noise.clone()));
+        PageBase grown = new Page(512);
+        grown.setBytes(0, Arrays.copyOf(noise, 300));
+        fm.write(new BlockId("zipFile", 3), grown);
+        BlockIdBase appended = fm.append("zipFile");
+        assertEquals(20, appended.number());
+        assertEquals(21, fm.length("zipFile"));
+        assertEquals(20, fm.length("plainFile"));
+        assertTrue(new File(file, "zipFile").length() < 20 * 512);
+        assertFalse(new File(file, "plainFile.lzmap").exists());
+        //a new policy only decides the format of new files
+        fm.setCompressionPolicy(f -> !f.equals("zipFile"));
+        assertTrue(fm.isCompressed("zipFile"));
+        assertFalse(fm.isCompressed("plainFile"));
+        assertTrue(fm.isCompressed("laterFile"));
+        assertFalse(new File(file, "plainFile.lzmap").exists());
+
+        for(FileMgr reader : new FileMgr[]{fm, reopen()}){
+            assertTrue(reader.isCompressed("zipFile"));
+            assertEquals(21, reader.length("zipFile"));
+            for(int i = 0; i < 21; i++){
+                PageBase p = new Page(512);
+                reader.read(new BlockId("zipFile", i), p);
+                if(i == 7){
+                    ByteBuffer expected = ByteBuffer.wrap(noise);
+                    for(int offset = 0; offset < 512; offset += Integer.BYTES){
+                        assertEquals(expected.getInt(offset), p.getInt(offset));
+                    }
+                }else if(i == 3){
+                    assertArrayEquals(Arrays.copyOf(noise, 300), p.getBytes(0));
+                }else if(i == 20){
+                    assertEquals(0, p.getInt(200));
+                }else{
+                    assertEquals("record " + i, p.getString(0));
+                    assertEquals(i, p.getInt(200));
+                    assertEquals("aaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaaa", p.getString(300));
+                }
+            }
+        }
+    }
+
+    private FileMgr reopen() {
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(false));
+        DBConfiguration.INSTANCE.setConfiguration(dbProperties);
+        return new FileMgr(file, 512);
+    }
+
 }
 
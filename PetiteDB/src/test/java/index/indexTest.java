@@ -3,6 +3,8 @@ package index;
 import edu.yu.dbimpl.buffer.*;
 import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.file.*;
+import edu.yu.dbimpl.index.BTreeIndex;
+import edu.yu.dbimpl.index.ExtendibleHashIndex;
 import edu.yu.dbimpl.index.IndexBase;
 import edu.yu.dbimpl.index.IndexDescriptorBase;
 import edu.yu.dbimpl.index.IndexMgr;
@@ -1104,4 +1106,276 @@ public class indexTest {
 
     }
 
+    /** Returns the RIDs that a scan of the index's range reaches, checking
+     * that the keys ascend.
+     */
+    private List<RID> range(BTreeIndex index, DatumBase lo, boolean loInclusive, DatumBase hi, boolean hiInclusive) {
+        List<RID> rids = new ArrayList<>();
+        DatumBase last = null;
+        index.beforeRange(lo, loInclusive, hi, hiInclusive);
+        while(index.next()){
+            DatumBase key = index.getKey();
+            assertTrue(last == null || last.compareTo(key) <= 0, "keys out of order: " + last + ", " + key);
+            last = key;
+            rids.add(index.getRID());
+        }
+        return rids;
+    }
+
+    @Test
+    public void bTreeTest(){
+        // a long key makes the nodes small (12 entries), so that the tree is deep
+        Schema wide = new Schema();
+        wide.addStringField("k", 150);
+        wide.addIntField("n");
+        TxBase tx1 = txMgr.newTx();
+        tableMgr.createTable("wide", wide, tx1);
+        IndexMgr indexMgr = new IndexMgr(tx1, tableMgr);
+        int id = indexMgr.persistIndexDescriptor(tx1, "wide", "k", IndexMgrBase.IndexType.BTREE);
+        int id2 = indexMgr.persistIndexDescriptor(tx1, "wide", "n", IndexMgrBase.IndexType.BTREE);
+        assertEquals(id, indexMgr.persistIndexDescriptor(tx1, "wide", "k", IndexMgrBase.IndexType.BTREE));
+        assertEquals(IndexMgrBase.IndexType.BTREE, indexMgr.get(tx1, id).getIndexType());
+        assertThrows(IllegalArgumentException.class,
+                () -> indexMgr.persistIndexDescriptor(tx1, "tani", "Description", IndexMgrBase.IndexType.BTREE));
+        tx1.commit();
+
+        // 1000 records with 500 keys, inserted in random order
+        List<Integer> order = new ArrayList<>();
+        for(int i = 0; i < 1000; i++){
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(7));
+        TxBase tx2 = txMgr.newTx();
+        BTreeIndex index = (BTreeIndex) indexMgr.instantiate(tx2, id);
+        BTreeIndex index2 = (BTreeIndex) indexMgr.instantiate(tx2, id2);
+        for(int i : order){
+            index.insert(new Datum(String.format("k%04d", i % 500)), new RID(i, i % 7));
+            index2.insert(new Datum(i % 500), new RID(i, i % 7));
+        }
+        tx2.commit();
+
+        TxBase tx3 = txMgr.newTx();
+        index = (BTreeIndex) indexMgr.instantiate(tx3, id);
+        index2 = (BTreeIndex) indexMgr.instantiate(tx3, id2);
+        index.beforeFirst(new Datum("k0042"));
+        Set<RID> found = new HashSet<>();
+        while(index.next()){
+            found.add(index.getRID());
+        }
+        assertEquals(Set.of(new RID(42, 0), new RID(542, 3)), found);
+        index.beforeFirst(new Datum("k9999"));
+        assertFalse(index.next());
+        assertEquals(1000, range(index, null, false, null, false).size());
+        assertEquals(200, range(index, new Datum("k0100"), true, new Datum("k0200"), false).size());
+        assertEquals(196, range(index, new Datum("k0100"), false, new Datum("k0199"), false).size());
+        assertEquals(20, range(index2, null, false, new Datum(10), false).size());
+        assertEquals(22, range(index2, new Datum(489), true, null, false).size());
+        // a double bound on an int index is truncated, as a search key is
+        assertEquals(4, range(index2, new Datum(8.0), true, new Datum(9), true).size());
+
+        // deleting 900 records merges and redistributes the nodes
+        for(int i : order.subList(0, 900)){
+            index.delete(new Datum(String.format("k%04d", i % 500)), new RID(i, i % 7));
+            index2.delete(new Datum(i % 500), new RID(i, i % 7));
+        }
+        // deleting a missing record is a no-op
+        index.delete(new Datum("k0001"), new RID(12345, 0));
+        tx3.commit();
+
+        Set<RID> remaining = new HashSet<>();
+        for(int i : order.subList(900, 1000)){
+            remaining.add(new RID(i, i % 7));
+        }
+        TxBase tx4 = txMgr.newTx();
+        index = (BTreeIndex) indexMgr.instantiate(tx4, id);
+        List<RID> all = range(index, null, false, null, false);
+        assertEquals(100, all.size());
+        assertEquals(remaining, new HashSet<>(all));
+        int kept = order.get(950);
+        index.beforeFirst(new Datum(String.format("k%04d", kept % 500)));
+        found.clear();
+        while(index.next()){
+            found.add(index.getRID());
+        }
+        assertTrue(found.contains(new RID(kept, kept % 7)));
+
+        // a rolled back tx leaves the tree as it was
+        for(int i = 0; i < 300; i++){
+            index.insert(new Datum(String.format("x%04d", i)), new RID(i, 0));
+        }
+        for(int i : order.subList(900, 950)){
+            index.delete(new Datum(String.format("k%04d", i % 500)), new RID(i, i % 7));
+        }
+        assertEquals(350, range(index, null, false, null, false).size());
+        tx4.rollback();
+        TxBase tx5 = txMgr.newTx();
+        index = (BTreeIndex) indexMgr.instantiate(tx5, id);
+        assertEquals(remaining, new HashSet<>(range(index, null, false, null, false)));
+        index.close();
+
+        indexMgr.deleteAll(tx5, "wide");
+        index2 = new BTreeIndex(tx5, new edu.yu.dbimpl.index.IndexDescriptor("wide", wide, "n", "n", IndexMgrBase.IndexType.BTREE));
+        assertTrue(range(index2, null, false, null, false).isEmpty());
+        index2.close();
+        tx5.commit();
+    }
+
+    private Set<RID> lookup(IndexBase index, DatumBase key) {
+        Set<RID> result = new HashSet<>();
+        index.beforeFirst(key);
+        while(index.next()){
+            assertTrue(result.add(index.getRID()));
+        }
+        return result;
+    }
+
+    @Test
+    public void extendibleHashTest(){
+        // a long key makes the buckets small (12 entries), so that they split often
+        Schema wide = new Schema();
+        wide.addStringField("k", 150);
+        wide.addIntField("n");
+        TxBase tx1 = txMgr.newTx();
+        tableMgr.createTable("wide", wide, tx1);
+        IndexMgr indexMgr = new IndexMgr(tx1, tableMgr);
+        int id = indexMgr.persistIndexDescriptor(tx1, "wide", "k", IndexMgrBase.IndexType.EXTENDIBLE_HASH);
+        int id2 = indexMgr.persistIndexDescriptor(tx1, "wide", "n", IndexMgrBase.IndexType.EXTENDIBLE_HASH);
+        assertEquals(IndexMgrBase.IndexType.EXTENDIBLE_HASH, indexMgr.get(tx1, id).getIndexType());
+        tx1.commit();
+
+        // 1000 records with 500 keys, inserted in random order, and 100 records of one key
+        List<Integer> order = new ArrayList<>();
+        for(int i = 0; i < 1000; i++){
+            order.add(i);
+        }
+        Collections.shuffle(order, new Random(7));
+        TxBase tx2 = txMgr.newTx();
+        IndexBase index = indexMgr.instantiate(tx2, id);
+        IndexBase index2 = indexMgr.instantiate(tx2, id2);
+        for(int i : order){
+            index.insert(new Datum(String.format("k%04d", i % 500)), new RID(i, i % 7));
+            index2.insert(new Datum(i % 500), new RID(i, i % 7));
+        }
+        for(int i = 0; i < 100; i++){
+            index.insert(new Datum("dup"), new RID(5000 + i, 0));
+        }
+        index.close();
+        index2.close();
+        tx2.commit();
+        // the file holds the directory and about a bucket per 12 entries (or fewer, once split)
+        int blocks = fm.length(ExtendibleHashIndex.fileName("wide", "k"));
+        assertTrue(blocks > 1100 / 12 && blocks < 1100 / 4, "blocks " + blocks);
+
+        TxBase tx3 = txMgr.newTx();
+        index = indexMgr.instantiate(tx3, id);
+        index2 = indexMgr.instantiate(tx3, id2);
+        for(int k = 0; k < 500; k++){
+            Set<RID> expected = Set.of(new RID(k, k % 7), new RID(k + 500, (k + 500) % 7));
+            assertEquals(expected, lookup(index, new Datum(String.format("k%04d", k))));
+            assertEquals(expected, lookup(index2, new Datum(k)));
+        }
+        assertEquals(100, lookup(index, new Datum("dup")).size());
+        assertTrue(lookup(index, new Datum("k9999")).isEmpty());
+        // a double key on an int index is truncated
+        assertEquals(2, lookup(index2, new Datum(42.0)).size());
+
+        for(int i : order.subList(0, 900)){
+            index.delete(new Datum(String.format("k%04d", i % 500)), new RID(i, i % 7));
+        }
+        for(int i = 0; i < 50; i++){
+            index.delete(new Datum("dup"), new RID(5000 + i, 0));
+        }
+        // deleting a missing record is a no-op
+        index.delete(new Datum("k0001"), new RID(12345, 0));
+        tx3.commit();
+
+        TxBase tx4 = txMgr.newTx();
+        index = indexMgr.instantiate(tx4, id);
+        int remaining = 0;
+        for(int k = 0; k < 500; k++){
+            remaining += lookup(index, new Datum(String.format("k%04d", k))).size();
+        }
+        assertEquals(100, remaining);
+        assertEquals(50, lookup(index, new Datum("dup")).size());
+
+        // a rolled back tx, which splits buckets and doubles the directory, leaves the index as it was
+        for(int i = 0; i < 1000; i++){
+            index.insert(new Datum(String.format("x%04d", i)), new RID(i, 0));
+        }
+        index.delete(new Datum("dup"), new RID(5099, 0));
+        assertEquals(49, lookup(index, new Datum("dup")).size());
+        tx4.rollback();
+        TxBase tx5 = txMgr.newTx();
+        index = indexMgr.instantiate(tx5, id);
+        assertTrue(lookup(index, new Datum("x0003")).isEmpty());
+        assertEquals(50, lookup(index, new Datum("dup")).size());
+        int kept = order.get(950);
+        assertTrue(lookup(index, new Datum(String.format("k%04d", kept % 500))).contains(new RID(kept, kept % 7)));
+        index.close();
+
+        indexMgr.deleteAll(tx5, "wide");
+        index = new ExtendibleHashIndex(tx5, new edu.yu.dbimpl.index.IndexDescriptor("wide", wide, "k", "k", IndexMgrBase.IndexType.EXTENDIBLE_HASH));
+        assertTrue(lookup(index, new Datum("dup")).isEmpty());
+        assertTrue(lookup(index, new Datum(String.format("k%04d", kept % 500))).isEmpty());
+        index.insert(new Datum("dup"), new RID(1, 1));
+        assertEquals(Set.of(new RID(1, 1)), lookup(index, new Datum("dup")));
+        index.close();
+        tx5.commit();
+    }
+
+    @Test
+    public void bTreeConcurrencyTest() throws InterruptedException {
+        TxBase tx1 = txMgr.newTx();
+        IndexMgr indexMgr = new IndexMgr(tx1, tableMgr);
+        int id = indexMgr.persistIndexDescriptor(tx1, "tani", "Age", IndexMgrBase.IndexType.BTREE);
+        tx1.commit();
+
+        // each thread inserts its own keys, one tx per insert, retrying a tx
+        // that's aborted by a lock or buffer timeout
+        int threads = 3;
+        int perThread = 200;
+        List<Thread> workers = new ArrayList<>();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        for(int t = 0; t < threads; t++){
+            int first = t * perThread;
+            workers.add(new Thread(() -> {
+                try{
+                    for(int i = first; i < first + perThread; i++){
+                        while(true){
+                            TxBase tx = txMgr.newTx();
+                            try{
+                                IndexBase index = indexMgr.instantiate(tx, id);
+                                index.insert(new Datum(i), new RID(i, 0));
+                                index.close();
+                                tx.commit();
+                                break;
+                            }catch(RuntimeException e){
+                                tx.rollback();
+                            }
+                        }
+                    }
+                }catch(Throwable e){
+                    failures.add(e);
+                }
+            }));
+        }
+        for(Thread w : workers){
+            w.start();
+        }
+        for(Thread w : workers){
+            w.join();
+        }
+        assertTrue(failures.isEmpty(), failures.toString());
+
+        TxBase tx2 = txMgr.newTx();
+        BTreeIndex index = (BTreeIndex) indexMgr.instantiate(tx2, id);
+        List<RID> all = range(index, null, false, null, false);
+        assertEquals(threads * perThread, all.size());
+        for(int i = 0; i < threads * perThread; i++){
+            assertEquals(new RID(i, 0), all.get(i));
+        }
+        index.close();
+        tx2.commit();
+    }
+
 }
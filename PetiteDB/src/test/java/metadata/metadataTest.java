@@ -5,8 +5,8 @@ import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.file.*;
 import edu.yu.dbimpl.log.LogMgr;
 import edu.yu.dbimpl.log.LogMgrBase;
-import edu.yu.dbimpl.metadata.TableMgr;
-import edu.yu.dbimpl.metadata.TableMgrBase;
+import edu.yu.dbimpl.metadata.*;
+import edu.yu.dbimpl.query.Datum;
 import edu.yu.dbimpl.record.*;
 import edu.yu.dbimpl.tx.TxBase;
 import edu.yu.dbimpl.tx.TxMgr;
@@ -99,4 +99,133 @@ public class metadataTest {
 
     }
 
+    @Test
+    public void recordFormatTest(){
+        SchemaBase schema = new Schema();
+        schema.addField("string1", Types.VARCHAR, 200);
+        schema.addIntField("int1");
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 1000);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        TableMgr tableMgr = new TableMgr(tx);
+        LayoutBase slotted = tableMgr.createTable("slotted", schema, RecordFormat.SLOTTED, tx);
+        LayoutBase fixed = tableMgr.createTable("fixed", schema, tx);
+        LayoutBase pax = tableMgr.createTable("pax", schema, RecordFormat.PAX, tx);
+        assertThrows(IllegalArgumentException.class, () -> tableMgr.createTable("other", schema, null, tx));
+        tx.commit();
+
+        //the format survives a round trip through the catalog
+        TxBase tx2 = txMgr.newTx();
+        Layout slotted2 = (Layout) tableMgr.getLayout("slotted", tx2);
+        Layout fixed2 = (Layout) tableMgr.getLayout("fixed", tx2);
+        assertEquals(RecordFormat.SLOTTED, slotted2.format());
+        assertEquals(RecordFormat.FIXED, fixed2.format());
+        assertEquals(slotted, slotted2);
+        assertEquals(fixed, fixed2);
+        assertNotEquals(slotted2, fixed2);
+        Layout pax2 = (Layout) tableMgr.getLayout("pax", tx2);
+        assertEquals(RecordFormat.PAX, pax2.format());
+        assertEquals(pax, pax2);
+        assertNotEquals(pax2, fixed2);
+
+        //replacing the schema keeps the table's format
+        SchemaBase schema2 = new Schema();
+        schema2.addStringField("hi", 44);
+        tableMgr.replace("slotted", schema2, tx2);
+        assertEquals(new Layout(schema2, RecordFormat.SLOTTED), tableMgr.getLayout("slotted", tx2));
+        tx2.commit();
+    }
+
+    @Test
+    public void statMgrTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("id");
+        schema.addField("name", Types.VARCHAR, 10);
+        schema.addDoubleField("score");
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration.INSTANCE.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+        TxBase tx = txMgr.newTx();
+        TableMgr tableMgr = new TableMgr(tx);
+        LayoutBase layout = tableMgr.createTable("people", schema, tx);
+        TableScan ts = new TableScan(tx, "people", layout);
+        for(int i = 0; i < 4000; i++){
+            ts.insert();
+            ts.setInt("id", i);
+            ts.setString("name", "n" + (i % 50));
+            ts.setDouble("score", i / 4.0);
+        }
+        ts.close();
+        int blocks = tx.size("people_data.tbl");
+
+        //a small enough table is read whole: exact counts
+        StatMgr statMgr = new StatMgr(blocks);
+        StatInfo si = statMgr.getStatInfo("people", layout, tx);
+        assertEquals(blocks, si.blocksAccessed());
+        assertEquals(4000, si.recordsOutput());
+        assertEquals(4000, si.distinctValues("id"));
+        assertEquals(50, si.distinctValues("name"));
+        assertNull(si.histogram("name"));
+        assertEquals(0.25, si.histogram("score").fractionBelow(250.0), 0.01);
+        assertSame(si, statMgr.getStatInfo("people", layout, tx));
+
+        //a sample of a quarter of the blocks is scaled up to the table
+        si = new StatMgr(blocks / 4).getStatInfo("people", layout, tx);
+        assertEquals(4000, si.recordsOutput(), 400);
+        assertEquals(4000, si.distinctValues("id"), 800);
+        assertEquals(50, si.distinctValues("name"), 10);
+        assertEquals(0.5, si.histogram("score").fractionBelow(500.0), 0.2);
+
+        //inserts and deletes are maintained incrementally
+        ts = new TableScan(tx, "people", layout);
+        for(int i = 4000; i < 5000; i++){
+            ts.insert();
+            ts.setInt("id", i);
+            ts.setString("name", "m" + (i % 50));
+            ts.setDouble("score", i / 4.0);
+            statMgr.recordInsert("people", ts);
+        }
+        ts.beforeFirst();
+        while(ts.next()){
+            if(ts.getInt("id") < 500){
+                statMgr.recordDelete("people", ts);
+                ts.delete();
+            }
+        }
+        ts.close();
+        si = statMgr.getStatInfo("people", layout, tx);
+        assertEquals(4500, si.recordsOutput());
+        assertEquals(tx.size("people_data.tbl"), si.blocksAccessed());
+        assertEquals(100, si.distinctValues("name"), 10);
+        assertEquals(4500, si.distinctValues("id"), 200);
+        assertEquals(0.5, si.histogram("score").fractionBelow(687.5), 0.05);
+        tx.commit();
+
+        //the sketch estimates large cardinalities in constant space
+        HyperLogLog hll = new HyperLogLog();
+        for(int i = 0; i < 100_000; i++){
+            hll.add(new Datum("key" + i));
+            hll.add(new Datum("key" + i));
+        }
+        assertEquals(100_000, hll.estimate(), 10_000);
+    }
 }
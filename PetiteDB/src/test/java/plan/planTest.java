@@ -0,0 +1,381 @@
+package plan;
+
+import edu.yu.dbimpl.buffer.BufferMgr;
+import edu.yu.dbimpl.buffer.BufferMgrBase;
+import edu.yu.dbimpl.config.DBConfiguration;
+import edu.yu.dbimpl.file.FileMgr;
+import edu.yu.dbimpl.file.FileMgrBase;
+import edu.yu.dbimpl.index.IndexMgr;
+import edu.yu.dbimpl.index.IndexMgrBase;
+import edu.yu.dbimpl.log.LogMgr;
+import edu.yu.dbimpl.log.LogMgrBase;
+import edu.yu.dbimpl.metadata.StatMgr;
+import edu.yu.dbimpl.metadata.TableMgr;
+import edu.yu.dbimpl.parse.*;
+import edu.yu.dbimpl.plan.Plan;
+import edu.yu.dbimpl.plan.Planner;
+import edu.yu.dbimpl.plan.PreparedStatement;
+import edu.yu.dbimpl.query.Scan;
+import edu.yu.dbimpl.record.Schema;
+import edu.yu.dbimpl.record.SchemaBase;
+import edu.yu.dbimpl.tx.TxBase;
+import edu.yu.dbimpl.tx.TxMgr;
+import edu.yu.dbimpl.tx.TxMgrBase;
+import edu.yu.dbimpl.tx.concurrency.LockTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Types;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class planTest {
+    private File file;
+    private TxMgrBase txMgr;
+    private TableMgr tableMgr;
+    private IndexMgr indexMgr;
+    private Planner planner;
+
+    @BeforeEach
+    public void setup() {
+        file = new File("dbDirectory1");
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        dbProperties.put(DBConfiguration.N_STATIC_HASH_BUCKETS, Integer.toString(7));
+        DBConfiguration.INSTANCE.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase bufferMgr = new BufferMgr(fm, logManager, 20, 500);
+        txMgr = new TxMgr(fm, logManager, bufferMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        tableMgr = new TableMgr(tx);
+        indexMgr = new IndexMgr(tx, tableMgr);
+        planner = new Planner(tableMgr, indexMgr);
+        tx.commit();
+    }
+
+    @AfterEach
+    public void teardown() {
+        LockTable.INSTANCE.resetAllLockState();
+        TxMgr.resetCount();
+        if(file.isDirectory()) {
+            for(File f : file.listFiles()) {
+                f.delete();
+            }
+        }
+        file.delete();
+    }
+
+    /** Creates people(id, name, score) with rows id = 0..n-1, name = "n" + id % 10, score = id / 2.0. */
+    private void people(TxBase tx, int n) {
+        planner.executeUpdate("create table people (id int, name varchar(10), score double)", tx);
+        for(int i = 0; i < n; i++){
+            planner.executeUpdate("insert into people (id, name, score) values (" + i + ", 'n" + (i % 10) + "', " + (i / 2.0) + ")", tx);
+        }
+    }
+
+    private List<String> rows(Plan p, String... fields) {
+        List<String> result = new ArrayList<>();
+        Scan s = p.open();
+        while(s.next()){
+            StringBuilder sb = new StringBuilder();
+            for(String fld : fields){
+                if(sb.length() > 0){
+                    sb.append(",");
+                }
+                sb.append(switch(s.getType(fld)){
+                    case Types.INTEGER -> Integer.toString(s.getInt(fld));
+                    case Types.DOUBLE -> Double.toString(s.getDouble(fld));
+                    default -> s.getString(fld);
+                });
+            }
+            result.add(sb.toString());
+        }
+        s.close();
+        return result;
+    }
+
+    @Test
+    public void parserTest(){
+        QueryData q = new Parser("SELECT id, name FROM people, dept WHERE id = did AND score >= 2.5 and name <> 'it''s' ORDER BY name;").query();
+        assertEquals(List.of("id", "name"), q.fields());
+        assertEquals(List.of("people", "dept"), q.tables());
+        assertEquals(3, q.pred().terms().size());
+        assertEquals(List.of("name"), q.orderBy());
+        assertEquals("select id, name from people, dept where id = did and score >= 2.5 and name <> 'it's' order by name",
+                q.toString());
+        assertTrue(new Parser("select * from t").query().fields().isEmpty());
+
+        CreateTableData ct = (CreateTableData) new Parser("create table t (a int, b varchar(5), c double, d boolean)").updateCmd();
+        SchemaBase sch = ct.schema();
+        assertEquals(List.of("a", "b", "c", "d"), sch.fields());
+        assertEquals(Types.VARCHAR, sch.type("b"));
+        assertEquals(5, sch.length("b"));
+        assertEquals(Types.BOOLEAN, sch.type("d"));
+
+        InsertData ins = (InsertData) new Parser("insert into t (a, c, d) values (-3, -1.5, true)").updateCmd();
+        assertEquals(-3, ins.values().get(0).asConstant().asInt());
+        assertEquals(-1.5, ins.values().get(1).asConstant().asDouble());
+        assertTrue(ins.values().get(2).asConstant().asBoolean());
+        ModifyData mod = (ModifyData) new Parser("update t set a = c where d = false").updateCmd();
+        assertEquals("c", mod.value().asFieldName());
+        CreateIndexData ci = (CreateIndexData) new Parser("create index ta on t (a)").updateCmd();
+        assertEquals("a", ci.field());
+        assertEquals(IndexMgrBase.IndexType.EXTENDIBLE_HASH, ci.type());
+        ci = (CreateIndexData) new Parser("create index ta on t (a) using static").updateCmd();
+        assertEquals(IndexMgrBase.IndexType.STATIC_HASH, ci.type());
+        ci = (CreateIndexData) new Parser("create index ta on t (a) USING BTree").updateCmd();
+        assertEquals(IndexMgrBase.IndexType.BTREE, ci.type());
+        assertThrows(BadSyntaxException.class, () -> new Parser("create index ta on t (a) using isam").updateCmd());
+        assertTrue(new Parser("delete from t").updateCmd() instanceof DeleteData);
+
+        assertThrows(BadSyntaxException.class, () -> new Parser("select from t").query());
+        assertThrows(BadSyntaxException.class, () -> new Parser("select a from t where a =").query());
+        assertThrows(BadSyntaxException.class, () -> new Parser("select a from t extra").query());
+        assertThrows(BadSyntaxException.class, () -> new Parser("insert into t (a, b) values (1)").updateCmd());
+        assertThrows(BadSyntaxException.class, () -> new Parser("select a from t where b = 'open").query());
+        assertThrows(BadSyntaxException.class, () -> new Parser("select a from t where b # 1").query());
+        assertThrows(BadSyntaxException.class, () -> new Parser("drop table t").updateCmd());
+    }
+
+    @Test
+    public void updateTest(){
+        TxBase tx = txMgr.newTx();
+        people(tx, 50);
+        assertEquals(List.of("7,n7,3.5"), rows(planner.createQueryPlan("select id, name, score from people where id = 7", tx),
+                "id", "name", "score"));
+        //an int constant is widened for a double field
+        assertEquals(5, planner.executeUpdate("update people set score = 100 where id < 5", tx));
+        assertEquals(5, rows(planner.createQueryPlan("select id from people where score = 100", tx), "id").size());
+        assertEquals(5, planner.executeUpdate("delete from people where name = 'n3'", tx));
+        assertEquals(45, rows(planner.createQueryPlan("select * from people", tx), "id").size());
+        //an omitted field has its type's default value
+        assertEquals(1, planner.executeUpdate("insert into people (id) values (99)", tx));
+        assertEquals(List.of(""), rows(planner.createQueryPlan("select name from people where id = 99", tx), "name"));
+
+        assertThrows(IllegalArgumentException.class, () -> planner.createQueryPlan("select id from nobody", tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.createQueryPlan("select age from people", tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.createQueryPlan("select id from people where name = 3", tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.executeUpdate("insert into people (id) values ('x')", tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.executeUpdate("update people set id = name", tx));
+        tx.commit();
+    }
+
+    @Test
+    public void accessPathTest(){
+        TxBase tx = txMgr.newTx();
+        people(tx, 400);
+        planner.executeUpdate("create index pid on people (id)", tx);
+        assertThrows(IllegalArgumentException.class, () -> planner.executeUpdate("create index pid2 on people (id)", tx));
+
+        //a selective equality uses the index
+        Plan p = planner.createQueryPlan("select name from people where id = 123", tx);
+        assertTrue(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("n3"), rows(p, "name"));
+        assertTrue(p.blocksAccessed() < planner.createQueryPlan("select name from people where score = 1.5", tx).blocksAccessed());
+
+        //a range can't use a hash index
+        p = planner.createQueryPlan("select id from people where id < 10 and name = 'n2'", tx);
+        assertFalse(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("2"), rows(p, "id"));
+
+        //a range's selectivity comes from the field's histogram
+        assertEquals(20, planner.createQueryPlan("select id from people where score < 10", tx).recordsOutput(), 4);
+        assertEquals(300, planner.createQueryPlan("select id from people where 50 <= score", tx).recordsOutput(), 15);
+
+        //the index is maintained by updates
+        planner.executeUpdate("update people set id = 1000 where id = 123", tx);
+        assertTrue(rows(planner.createQueryPlan("select name from people where id = 123", tx), "name").isEmpty());
+        assertEquals(List.of("n3"), rows(planner.createQueryPlan("select name from people where id = 1000", tx), "name"));
+        assertEquals(101, planner.executeUpdate("delete from people where id >= 300", tx));
+        assertTrue(rows(planner.createQueryPlan("select name from people where id = 1000", tx), "name").isEmpty());
+        assertTrue(rows(planner.createQueryPlan("select name from people where id = 301", tx), "name").isEmpty());
+        assertEquals(List.of("n9"), rows(planner.createQueryPlan("select name from people where id = 299", tx), "name"));
+        tx.commit();
+    }
+
+    @Test
+    public void bTreeTest(){
+        TxBase tx = txMgr.newTx();
+        people(tx, 400);
+        planner.executeUpdate("create index pid on people (id) using btree", tx);
+
+        //an equality or a range uses the index
+        Plan p = planner.createQueryPlan("select name from people where id = 123", tx);
+        assertTrue(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("n3"), rows(p, "name"));
+        p = planner.createQueryPlan("select id from people where id > 20 and 25 >= id and name <> 'n3'", tx);
+        assertTrue(p.toString().contains("IndexRange"), p.toString());
+        assertEquals(List.of("21", "22", "24", "25"), rows(p, "id"));
+        //a wide range is cheaper to scan
+        p = planner.createQueryPlan("select id from people where id >= 50", tx);
+        assertFalse(p.toString().contains("IndexRange"), p.toString());
+        assertEquals(350, rows(p, "id").size());
+
+        //a narrow range is returned in the index's order, without a sort
+        planner.executeUpdate("update people set id = -1 where id = 350", tx);
+        p = planner.createQueryPlan("select id from people where id < 4 order by id", tx);
+        assertTrue(p.toString().contains("ordered"), p.toString());
+        assertFalse(p.toString().contains("Sort"), p.toString());
+        assertEquals(List.of("-1", "0", "1", "2", "3"), rows(p, "id"));
+        //a wide one is sorted
+        p = planner.createQueryPlan("select id from people where id > 100 order by id", tx);
+        assertTrue(p.toString().contains("Sort"), p.toString());
+        assertEquals(298, rows(p, "id").size());
+
+        //the index is maintained by updates
+        assertEquals(99, planner.executeUpdate("delete from people where id >= 300", tx));
+        assertEquals(List.of("299"), rows(planner.createQueryPlan("select id from people where id > 298", tx), "id"));
+        tx.commit();
+    }
+
+    @Test
+    public void joinTest(){
+        TxBase tx = txMgr.newTx();
+        people(tx, 300);
+        planner.executeUpdate("create table dept (did int, dname varchar(10))", tx);
+        for(int d = 0; d < 10; d++){
+            planner.executeUpdate("insert into dept (did, dname) values (" + d + ", 'd" + d + "')", tx);
+        }
+        planner.executeUpdate("create table tag (tid int, label varchar(10))", tx);
+        for(int t = 0; t < 3; t++){
+            planner.executeUpdate("insert into tag (tid, label) values (" + t + ", 't" + t + "')", tx);
+        }
+        planner.executeUpdate("create table emp (eid int, edept int)", tx);
+        for(int i = 0; i < 300; i++){
+            planner.executeUpdate("insert into emp (eid, edept) values (" + i + ", " + (i % 10) + ")", tx);
+        }
+
+        //an equijoin is planned as a join, not a product, whatever the table order
+        Plan p = planner.createQueryPlan("select eid, dname from dept, emp where edept = did and dname = 'd4'", tx);
+        assertTrue(p.toString().contains("Join"), p.toString());
+        assertFalse(p.toString().contains("Product"), p.toString());
+        List<String> rows = rows(p, "eid", "dname");
+        assertEquals(30, rows.size());
+        for(String row : rows){
+            assertEquals(4, Integer.parseInt(row.split(",")[0]) % 10);
+        }
+
+        //an index on the inner join field makes a selective join an index join
+        planner.executeUpdate("create index eid_idx on emp (eid)", tx);
+        p = planner.createQueryPlan("select id, edept from people, emp where id = eid and id = 42", tx);
+        assertTrue(p.toString().contains("IndexJoin"), p.toString());
+        assertEquals(List.of("42,2"), rows(p, "id", "edept"));
+        //...but not one whose probes cost more than reading the table
+        p = planner.createQueryPlan("select name, edept from people, emp where id = eid and name = 'n7'", tx);
+        assertFalse(p.toString().contains("IndexJoin"), p.toString());
+        assertEquals(30, rows(p, "name").size());
+
+        //three tables, one joined by a product, sorted
+        p = planner.createQueryPlan("select eid, dname, label from emp, dept, tag where edept = did and eid < 20 order by label, eid", tx);
+        assertTrue(p.toString().contains("Product"), p.toString());
+        rows = rows(p, "eid", "dname", "label");
+        assertEquals(60, rows.size());
+        assertEquals("0,d0,t0", rows.get(0));
+        assertEquals("19,d9,t2", rows.get(59));
+
+        assertThrows(IllegalArgumentException.class, () -> planner.createQueryPlan("select eid from emp, emp", tx));
+        tx.commit();
+    }
+
+    @Test
+    public void preparedTest(){
+        assertEquals("select id from people where name = 'it''s' and id <> ?",
+                Lexer.normalize("SELECT  id FROM people\n WHERE name='it''s' AND id != ?;"));
+
+        TxBase tx = txMgr.newTx();
+        people(tx, 200);
+        planner.executeUpdate("create index pid on people (id)", tx);
+        PreparedStatement byId = planner.prepare("select name, score from people where id = ?", tx);
+        assertTrue(byId.isQuery());
+        assertEquals(1, byId.parameterCount());
+        assertThrows(IllegalArgumentException.class, () -> byId.createQueryPlan(tx));
+        byId.setInt(0, 17);
+        Plan p = byId.createQueryPlan(tx);
+        assertTrue(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("n7,8.5"), rows(p, "name", "score"));
+        byId.setInt(0, 150);
+        assertEquals(List.of("n0,75.0"), rows(byId.createQueryPlan(tx), "name", "score"));
+        assertTrue(planner.isCached("select name, score from people where id = ?"));
+        byId.setString(0, "x");
+        assertThrows(IllegalArgumentException.class, () -> byId.createQueryPlan(tx));
+
+        //an int value is widened for a double parameter
+        PreparedStatement range = planner.prepare("select id from people where score >= ? and score < ?", tx);
+        range.setInt(0, 10);
+        range.setDouble(1, 12.0);
+        assertEquals(List.of("20", "21", "22", "23"), rows(range.createQueryPlan(tx), "id"));
+
+        PreparedStatement insert = planner.prepare("insert into people (id, name, score) values (?, ?, ?)", tx);
+        for(int i = 200; i < 210; i++){
+            insert.setInt(0, i);
+            insert.setString(1, "p" + i);
+            insert.setInt(2, i);
+            assertEquals(1, insert.executeUpdate(tx));
+        }
+        byId.setInt(0, 205);
+        assertEquals(List.of("p205,205.0"), rows(byId.createQueryPlan(tx), "name", "score"));
+        PreparedStatement modify = planner.prepare("update people set name = ? where id = ?", tx);
+        modify.setString(0, "q");
+        modify.setInt(1, 205);
+        assertEquals(1, modify.executeUpdate(tx));
+        assertEquals(List.of("q,205.0"), rows(byId.createQueryPlan(tx), "name", "score"));
+        PreparedStatement delete = planner.prepare("delete from people where id >= ?", tx);
+        delete.setInt(0, 200);
+        assertEquals(10, delete.executeUpdate(tx));
+        assertTrue(rows(byId.createQueryPlan(tx), "name").isEmpty());
+
+        assertThrows(IllegalStateException.class, () -> delete.createQueryPlan(tx));
+        assertThrows(IllegalStateException.class, () -> byId.executeUpdate(tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.prepare("select id from people where ? = ?", tx));
+        assertThrows(BadSyntaxException.class, () -> planner.prepare("create table t (a int)", tx));
+        assertThrows(IllegalArgumentException.class, () -> planner.createQueryPlan("select id from people where id = ?", tx));
+        tx.commit();
+
+        //a cached statement is executed in another tx, and compiled again
+        //when its table's indexes or metadata change
+        TxBase tx2 = txMgr.newTx();
+        PreparedStatement byScore = planner.prepare("select id from people where score = ?", tx2);
+        byScore.setDouble(0, 1.5);
+        p = byScore.createQueryPlan(tx2);
+        assertFalse(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("3"), rows(p, "id"));
+        planner.executeUpdate("create index pscore on people (score)", tx2);
+        assertFalse(planner.isCached(byScore.sql()));
+        p = byScore.createQueryPlan(tx2);
+        assertTrue(p.toString().contains("IndexSelect"), p.toString());
+        assertEquals(List.of("3"), rows(p, "id"));
+
+        planner.createQueryPlan("select name from people where id = 3", tx2);
+        assertTrue(planner.isCached("select name from people where id = 3"));
+        indexMgr.persistIndexDescriptor(tx2, "people", "name", IndexMgrBase.IndexType.STATIC_HASH);
+        assertFalse(planner.isCached("select name from people where id = 3"));
+
+        planner.executeUpdate("create table tag (tid int)", tx2);
+        planner.createQueryPlan("select tid from tag", tx2);
+        assertTrue(planner.isCached("select tid from tag"));
+        Schema schema = new Schema();
+        schema.addIntField("tid");
+        schema.addIntField("weight");
+        tableMgr.replace("tag", schema, tx2);
+        assertFalse(planner.isCached("select tid from tag"));
+
+        //the least recently used statement is evicted
+        Planner small = new Planner(tableMgr, indexMgr, new StatMgr(), 2);
+        small.createQueryPlan("select id from people where id = 1", tx2);
+        small.createQueryPlan("select id from people where id = 2", tx2);
+        small.createQueryPlan("select id from people where id = 1", tx2);
+        small.createQueryPlan("select id from people where id = 3", tx2);
+        assertEquals(2, small.cachedStatements());
+        assertTrue(small.isCached("select id from people where id = 1"));
+        assertFalse(small.isCached("select id from people where id = 2"));
+        tx2.commit();
+    }
+}
@@ -0,0 +1,538 @@
+package query;
+
+import edu.yu.dbimpl.buffer.BufferMgr;
+import edu.yu.dbimpl.buffer.BufferMgrBase;
+import edu.yu.dbimpl.config.DBConfiguration;
+import edu.yu.dbimpl.file.FileMgr;
+import edu.yu.dbimpl.file.FileMgrBase;
+import edu.yu.dbimpl.index.Index;
+import edu.yu.dbimpl.index.IndexDescriptor;
+import edu.yu.dbimpl.index.IndexMgrBase;
+import edu.yu.dbimpl.log.LogMgr;
+import edu.yu.dbimpl.log.LogMgrBase;
+import edu.yu.dbimpl.query.*;
+import edu.yu.dbimpl.record.*;
+import edu.yu.dbimpl.tx.TxBase;
+import edu.yu.dbimpl.tx.TxMgr;
+import edu.yu.dbimpl.tx.TxMgrBase;
+import edu.yu.dbimpl.tx.concurrency.LockTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Types;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class queryTest {
+    private File file;
+    private TxMgrBase txMgr;
+    private LayoutBase layout;
+
+    @BeforeEach
+    public void setup() {
+        file = new File("dbDirectory1");
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration.INSTANCE.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase bufferMgr = new BufferMgr(fm, logManager, 10, 500);
+        txMgr = new TxMgr(fm, logManager, bufferMgr, 500);
+
+        SchemaBase schema = new Schema();
+        schema.addIntField("id");
+        schema.addField("name", Types.VARCHAR, 10);
+        schema.addDoubleField("score");
+        layout = new Layout(schema);
+    }
+
+    @AfterEach
+    public void teardown() {
+        LockTable.INSTANCE.resetAllLockState();
+        TxMgr.resetCount();
+    }
+
+    /** Fills the table with rows id = 0..n-1, name = "n" + id % 10, score = id / 2.0. */
+    private void fill(TxBase tx, String tblname, int n) {
+        TableScan scan = new TableScan(tx, tblname, layout);
+        for(int i = 0; i < n; i++){
+            scan.insert();
+            scan.setInt("id", i);
+            scan.setString("name", "n" + (i % 10));
+            scan.setDouble("score", i / 2.0);
+        }
+        scan.close();
+    }
+
+    private static Term term(String fldname, Term.Operator op, DatumBase val) {
+        return new Term(new Expression(fldname), op, new Expression(val));
+    }
+
+    private static int count(Scan s) {
+        int n = 0;
+        while(s.next()){
+            n++;
+        }
+        return n;
+    }
+
+    @Test
+    public void selectPushdownTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 200);
+
+        //an equality on a string field
+        TableScan ts = new TableScan(tx, "people", layout);
+        Scan s = new SelectScan(ts, new Predicate(term("name", Term.Operator.EQ, new Datum("n3"))));
+        int n = 0;
+        while(s.next()){
+            assertEquals("n3", s.getString("name"));
+            assertEquals(3, s.getInt("id") % 10);
+            n++;
+        }
+        assertEquals(20, n);
+        s.close();
+
+        //a range, with the constant on the left, and a term the table can't evaluate
+        Predicate pred = new Predicate(term("id", Term.Operator.GE, new Datum(50)));
+        pred.conjoinWith(new Predicate(new Term(new Expression(new Datum(60)), Term.Operator.GT, new Expression("id"))));
+        ts = new TableScan(tx, "people", layout);
+        assertTrue(ts.pushPredicate(pred).isEmpty());
+        s = new SelectScan(ts, new Predicate());
+        n = 0;
+        while(s.next()){
+            int id = s.getInt("id");
+            assertTrue(id >= 50 && id < 60);
+            n++;
+        }
+        assertEquals(10, n);
+        s.close();
+
+        //a term on a field of another type isn't pushed, but is still applied
+        pred = new Predicate(term("score", Term.Operator.LT, new Datum(10.0)));
+        pred.conjoinWith(new Predicate(term("id", Term.Operator.NE, new Datum("x"))));
+        ts = new TableScan(tx, "people", layout);
+        assertEquals(1, ts.pushPredicate(pred).terms().size());
+        ts.close();
+        pred = new Predicate(term("score", Term.Operator.LT, new Datum(10.0)));
+        pred.conjoinWith(new Predicate(new Term(new Expression("id"), Term.Operator.LE, new Expression("id"))));
+        s = new SelectScan(new TableScan(tx, "people", layout), pred);
+        assertEquals(20, count(s));
+        s.close();
+        tx.commit();
+    }
+
+    @Test
+    public void selectUpdateTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 50);
+        SelectScan s = new SelectScan(new TableScan(tx, "people", layout),
+                new Predicate(term("id", Term.Operator.LT, new Datum(10))));
+        while(s.next()){
+            s.setDouble("score", -1.0);
+        }
+        s.beforeFirst();
+        while(s.next()){
+            if(s.getInt("id") % 2 == 0){
+                s.delete();
+            }
+        }
+        s.close();
+
+        TableScan ts = new TableScan(tx, "people", layout);
+        int changed = 0;
+        int rows = 0;
+        while(ts.next()){
+            rows++;
+            if(ts.getDouble("score") == -1.0){
+                assertEquals(1, ts.getInt("id") % 2);
+                changed++;
+            }
+        }
+        ts.close();
+        assertEquals(5, changed);
+        assertEquals(45, rows);
+
+        SelectScan readOnly = new SelectScan(new ProjectScan(new TableScan(tx, "people", layout), List.of("id")),
+                new Predicate());
+        assertTrue(readOnly.next());
+        assertThrows(IllegalStateException.class, () -> readOnly.setInt("id", 1));
+        readOnly.close();
+        tx.commit();
+    }
+
+    @Test
+    public void projectRenameTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 5);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ProjectScan(new TableScan(tx, "people", layout), List.of("nope")));
+
+        Scan p = new ProjectScan(new TableScan(tx, "people", layout), List.of("id", "name"));
+        assertTrue(p.hasField("id"));
+        assertFalse(p.hasField("score"));
+        assertTrue(p.next());
+        assertThrows(IllegalArgumentException.class, () -> p.getDouble("score"));
+        assertEquals(0, p.getInt("id"));
+        p.close();
+
+        Scan r = new RenameScan(new TableScan(tx, "people", layout), "id", "pid");
+        assertTrue(r.hasField("pid"));
+        assertFalse(r.hasField("id"));
+        int sum = 0;
+        while(r.next()){
+            sum += r.getVal("pid").asInt();
+        }
+        assertEquals(10, sum);
+        r.close();
+
+        Scan sel = new SelectScan(new RenameScan(new TableScan(tx, "people", layout), "id", "pid"),
+                new Predicate(term("pid", Term.Operator.GT, new Datum(2))));
+        assertEquals(2, count(sel));
+        sel.close();
+        tx.commit();
+    }
+
+    @Test
+    public void productTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 12);
+        SchemaBase schema = new Schema();
+        schema.addIntField("dept");
+        LayoutBase deptLayout = new Layout(schema);
+        TableScan depts = new TableScan(tx, "depts", deptLayout);
+        for(int i = 0; i < 3; i++){
+            depts.insert();
+            depts.setInt("dept", i);
+        }
+        depts.close();
+
+        Scan prod = new ProductScan(new TableScan(tx, "people", layout), new TableScan(tx, "depts", deptLayout));
+        assertTrue(prod.hasField("id"));
+        assertTrue(prod.hasField("dept"));
+        assertEquals(36, count(prod));
+        prod.beforeFirst();
+        assertEquals(36, count(prod));
+        prod.close();
+
+        //a join: the product restricted by a field-to-field term
+        Scan join = new SelectScan(new ProductScan(new TableScan(tx, "people", layout), new TableScan(tx, "depts", deptLayout)),
+                new Predicate(new Term(new Expression("id"), new Expression("dept"))));
+        Set<Integer> ids = new HashSet<>();
+        while(join.next()){
+            assertEquals(join.getInt("id"), join.getInt("dept"));
+            ids.add(join.getInt("id"));
+        }
+        assertEquals(Set.of(0, 1, 2), ids);
+        join.close();
+
+        Scan empty = new ProductScan(new TableScan(tx, "people", layout), new TableScan(tx, "nothing", deptLayout));
+        assertFalse(empty.next());
+        empty.close();
+        tx.commit();
+    }
+
+    @Test
+    public void hashJoinTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 600);
+        SchemaBase deptSchema = new Schema();
+        deptSchema.addIntField("dept");
+        deptSchema.addField("dname", Types.VARCHAR, 10);
+        LayoutBase deptLayout = new Layout(deptSchema);
+        TableScan depts = new TableScan(tx, "depts", deptLayout);
+        for(int i = 0; i < 400; i++){
+            depts.insert();
+            depts.setInt("dept", i % 200);
+            depts.setString("dname", "d" + i);
+        }
+        depts.close();
+
+        //ids 0..199 each match two depts
+        for(long budget : new long[]{1_000_000, 4_000}){
+            HashJoinScan join = new HashJoinScan(tx, new TableScan(tx, "people", layout), layout.schema(), "id",
+                    new TableScan(tx, "depts", deptLayout), deptSchema, "dept", budget);
+            for(int pass = 0; pass < 2; pass++){
+                int n = 0;
+                long sum = 0;
+                while(join.next()){
+                    assertEquals(join.getInt("id"), join.getInt("dept"));
+                    assertEquals(join.getInt("dept") % 200, Integer.parseInt(join.getString("dname").substring(1)) % 200);
+                    assertEquals("n" + (join.getInt("id") % 10), join.getVal("name").asString());
+                    sum += join.getInt("id");
+                    n++;
+                }
+                assertEquals(400, n);
+                assertEquals(2L * 199 * 200 / 2, sum);
+                join.beforeFirst();
+            }
+            assertEquals(budget < 10_000, join.spilled());
+            join.close();
+            String[] temps = file.list((dir, name) -> name.startsWith("temp_"));
+            assertEquals(0, temps.length);
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new HashJoinScan(tx, new TableScan(tx, "people", layout),
+                layout.schema(), "name", new TableScan(tx, "depts", deptLayout), deptSchema, "dept", 1000));
+        HashJoinScan empty = new HashJoinScan(tx, new TableScan(tx, "people", layout), layout.schema(), "id",
+                new TableScan(tx, "nothing", deptLayout), deptSchema, "dept");
+        assertFalse(empty.next());
+        assertFalse(empty.spilled());
+        empty.close();
+        tx.commit();
+    }
+
+    @Test
+    public void sortTest(){
+        TxBase tx = txMgr.newTx();
+        Random random = new Random(7);
+        TableScan ts = new TableScan(tx, "random", layout);
+        for(int i = 0; i < 500; i++){
+            ts.insert();
+            ts.setInt("id", random.nextInt(100));
+            ts.setString("name", "r" + i);
+            ts.setDouble("score", random.nextDouble());
+        }
+        ts.close();
+
+        //a small heap and fan-in: many runs, merged in several passes
+        SortScan sort = new SortScan(tx, new TableScan(tx, "random", layout), layout.schema(),
+                List.of("id", "score"), 3_000, 2);
+        for(int pass = 0; pass < 2; pass++){
+            int n = 0;
+            int lastId = -1;
+            double lastScore = -1;
+            Set<String> names = new HashSet<>();
+            while(sort.next()){
+                int id = sort.getInt("id");
+                assertTrue(id > lastId || (id == lastId && sort.getDouble("score") >= lastScore));
+                lastId = id;
+                lastScore = sort.getDouble("score");
+                names.add(sort.getString("name"));
+                n++;
+            }
+            assertEquals(500, n);
+            assertEquals(500, names.size());
+            sort.beforeFirst();
+        }
+        assertTrue(sort.runCount() <= 2);
+        sort.close();
+        assertEquals(0, file.list((dir, name) -> name.startsWith("temp_")).length);
+
+        //replacement selection turns sorted input into a single run
+        fill(tx, "people", 500);
+        sort = new SortScan(tx, new TableScan(tx, "people", layout), layout.schema(), List.of("id"), 3_000, 2);
+        assertTrue(sort.next());
+        assertEquals(1, sort.runCount());
+        sort.close();
+
+        //an input that fits is sorted in memory
+        sort = new SortScan(tx, new TableScan(tx, "people", layout), layout.schema(), List.of("name", "id"),
+                1_000_000, 8);
+        String lastName = "";
+        int lastId = -1;
+        while(sort.next()){
+            String name = sort.getString("name");
+            assertTrue(name.compareTo(lastName) > 0 || (name.equals(lastName) && sort.getInt("id") > lastId));
+            lastName = name;
+            lastId = sort.getInt("id");
+        }
+        assertEquals(0, sort.runCount());
+        sort.close();
+        assertThrows(IllegalArgumentException.class, () -> new SortScan(tx, new TableScan(tx, "people", layout),
+                layout.schema(), List.of("nope")));
+        tx.commit();
+    }
+
+    @Test
+    public void mergeJoinTest(){
+        TxBase tx = txMgr.newTx();
+        fill(tx, "people", 300);
+        SchemaBase deptSchema = new Schema();
+        deptSchema.addIntField("dept");
+        deptSchema.addField("dname", Types.VARCHAR, 10);
+        LayoutBase deptLayout = new Layout(deptSchema);
+        TableScan depts = new TableScan(tx, "depts", deptLayout);
+        for(int i = 0; i < 60; i++){
+            depts.insert();
+            depts.setInt("dept", i % 20);
+            depts.setString("dname", "d" + i);
+        }
+        depts.close();
+
+        Scan join = new MergeJoinScan(tx, new TableScan(tx, "people", layout), layout.schema(), "id",
+                new TableScan(tx, "depts", deptLayout), deptSchema, "dept");
+        int n = 0;
+        while(join.next()){
+            assertEquals(join.getInt("id"), join.getInt("dept"));
+            assertEquals(join.getInt("dept"), Integer.parseInt(join.getString("dname").substring(1)) % 20);
+            n++;
+        }
+        assertEquals(60, n);
+        join.beforeFirst();
+        assertEquals(60, count(join));
+        join.close();
+
+        //duplicates on both sides: each name n0..n9 appears 30 times among the people
+        SchemaBase nameSchema = new Schema();
+        nameSchema.addField("nick", Types.VARCHAR, 10);
+        LayoutBase nameLayout = new Layout(nameSchema);
+        TableScan nicks = new TableScan(tx, "nicks", nameLayout);
+        for(String nick : List.of("n3", "n3", "n7", "zz")){
+            nicks.insert();
+            nicks.setString("nick", nick);
+        }
+        nicks.close();
+        join = new MergeJoinScan(tx, new TableScan(tx, "people", layout), layout.schema(), "name",
+                new TableScan(tx, "nicks", nameLayout), nameSchema, "nick");
+        assertEquals(90, count(join));
+        join.close();
+        tx.commit();
+    }
+
+    @Test
+    public void groupByTest(){
+        TxBase tx = txMgr.newTx();
+        BulkLoader loader = new BulkLoader(tx, "people", layout);
+        for(int i = 0; i < 3000; i++){
+            loader.insert();
+            loader.setInt("id", i);
+            loader.setString("name", "n" + (i % 10));
+            loader.setDouble("score", i / 2.0);
+        }
+        loader.close();
+        tx.commit();
+
+        List<AggregationFn> aggs = List.of(new AggregationFn(AggregationFn.Kind.COUNT, "id"),
+                new AggregationFn(AggregationFn.Kind.SUM, "id"),
+                new AggregationFn(AggregationFn.Kind.MIN, "id"),
+                new AggregationFn(AggregationFn.Kind.MAX, "score"),
+                new AggregationFn(AggregationFn.Kind.AVG, "score"));
+        TxBase tx2 = txMgr.newTx();
+        GroupByScan serial = new GroupByScan(new TableScan(tx2, "people", layout), layout.schema(), List.of("name"), aggs);
+        Map<String, List<DatumBase>> expected = new HashMap<>();
+        while(serial.next()){
+            String name = serial.getString("name");
+            int k = Integer.parseInt(name.substring(1));
+            assertEquals(300, serial.getInt("countofid"));
+            assertEquals(300 * k + 10 * 299 * 300 / 2, serial.getInt("sumofid"));
+            assertEquals(k, serial.getInt("minofid"));
+            assertEquals((2990 + k) / 2.0, serial.getDouble("maxofscore"));
+            assertEquals((2 * k + 2990) / 4.0, serial.getDouble("avgofscore"), 1e-9);
+            expected.put(name, List.of(serial.getVal("countofid"), serial.getVal("sumofid"),
+                    serial.getVal("minofid"), serial.getVal("maxofscore"), serial.getVal("avgofscore")));
+        }
+        assertEquals(10, expected.size());
+        assertEquals(Types.DOUBLE, serial.getType("avgofscore"));
+        assertEquals(Types.INTEGER, serial.getType("sumofid"));
+        assertFalse(serial.hasField("id"));
+        serial.close();
+
+        ParallelTableScan pts = new ParallelTableScan(tx2, "people", layout, List.of("name", "id", "score"), 2);
+        GroupByScan parallel = new GroupByScan(pts, List.of("name"), aggs);
+        int groups = 0;
+        while(parallel.next()){
+            List<DatumBase> row = expected.get(parallel.getString("name"));
+            for(int a = 0; a < aggs.size(); a++){
+                assertEquals(row.get(a), parallel.getVal(aggs.get(a).fieldName()));
+            }
+            groups++;
+        }
+        assertEquals(10, groups);
+        parallel.close();
+
+        //a single group, over a string field
+        GroupByScan global = new GroupByScan(new TableScan(tx2, "people", layout), layout.schema(), List.of(),
+                List.of(new AggregationFn(AggregationFn.Kind.MAX, "name"), new AggregationFn(AggregationFn.Kind.SUM, "score")));
+        assertTrue(global.next());
+        assertEquals("n9", global.getString("maxofname"));
+        assertEquals(2999.0 * 3000 / 4, global.getDouble("sumofscore"));
+        assertFalse(global.next());
+        global.close();
+
+        assertThrows(IllegalArgumentException.class, () -> new GroupByScan(new TableScan(tx2, "people", layout),
+                layout.schema(), List.of(), List.of(new AggregationFn(AggregationFn.Kind.AVG, "name"))));
+        ParallelTableScan narrow = new ParallelTableScan(tx2, "people", layout, List.of("id"), 2);
+        assertThrows(IllegalArgumentException.class, () -> new GroupByScan(narrow, List.of("name"), aggs));
+        narrow.close();
+        tx2.commit();
+    }
+
+    @Test
+    public void indexScanTest(){
+        TxBase tx = txMgr.newTx();
+        IndexDescriptor descriptor = new IndexDescriptor("people", layout.schema(), "people_name", "name",
+                IndexMgrBase.IndexType.STATIC_HASH);
+        Index idx = new Index(tx, descriptor, 7);
+        TableScan ts = new TableScan(tx, "people", layout);
+        for(int i = 0; i < 600; i++){
+            ts.insert();
+            ts.setInt("id", i);
+            ts.setString("name", "n" + (i % 10));
+            ts.setDouble("score", i / 2.0);
+            idx.insert(new Datum("n" + (i % 10)), ts.getRid());
+        }
+        ts.close();
+        idx.close();
+
+        IndexSelectScan select = new IndexSelectScan(new TableScan(tx, "people", layout), new Index(tx, descriptor, 7),
+                new Datum("n3"));
+        for(int pass = 0; pass < 2; pass++){
+            int n = 0;
+            int lastId = -1;
+            while(select.next()){
+                assertEquals("n3", select.getString("name"));
+                //records come back in file order
+                assertTrue(select.getInt("id") > lastId);
+                lastId = select.getInt("id");
+                n++;
+            }
+            assertEquals(60, n);
+            select.beforeFirst();
+        }
+        select.close();
+        select = new IndexSelectScan(new TableScan(tx, "people", layout), new Index(tx, descriptor, 7), new Datum("zz"));
+        assertFalse(select.next());
+        select.close();
+
+        SchemaBase nickSchema = new Schema();
+        nickSchema.addField("nick", Types.VARCHAR, 10);
+        nickSchema.addIntField("rank");
+        LayoutBase nickLayout = new Layout(nickSchema);
+        TableScan nicks = new TableScan(tx, "nicks", nickLayout);
+        String[] names = {"n3", "n3", "n7", "zz"};
+        for(int i = 0; i < names.length; i++){
+            nicks.insert();
+            nicks.setString("nick", names[i]);
+            nicks.setInt("rank", i);
+        }
+        nicks.close();
+        Scan join = new IndexJoinScan(new TableScan(tx, "nicks", nickLayout), nickSchema, "nick",
+                new Index(tx, descriptor, 7), new TableScan(tx, "people", layout));
+        int n = 0;
+        int ranks = 0;
+        while(join.next()){
+            assertEquals(join.getString("nick"), join.getString("name"));
+            ranks += join.getInt("rank");
+            n++;
+        }
+        assertEquals(180, n);
+        assertEquals(60 * (0 + 1 + 2), ranks);
+        join.close();
+        tx.commit();
+    }
+
+    @Test
+    public void predicateToStringTest(){
+        Predicate pred = new Predicate(term("id", Term.Operator.GE, new Datum(5)));
+        pred.conjoinWith(new Predicate(new Term(new Expression("name"), new Expression(new Datum("bob")))));
+        assertEquals("id >= 5 and name = 'bob'", pred.toString());
+        assertEquals("", new Predicate().toString());
+    }
+}
@@ -3,15 +3,21 @@ package record;
 import edu.yu.dbimpl.buffer.*;
 import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.file.*;
+import edu.yu.dbimpl.index.*;
 import edu.yu.dbimpl.log.LogMgr;
 import edu.yu.dbimpl.log.LogMgrBase;
 import edu.yu.dbimpl.query.Datum;
 import edu.yu.dbimpl.query.DatumBase;
 import edu.yu.dbimpl.record.*;
+import edu.yu.dbimpl.tx.IsolationLevel;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
 import edu.yu.dbimpl.tx.TxMgr;
 import edu.yu.dbimpl.tx.TxMgrBase;
+import edu.yu.dbimpl.tx.concurrency.LockAbortException;
 import edu.yu.dbimpl.tx.concurrency.LockTable;
+import edu.yu.dbimpl.tx.recovery.LogRecord;
+import edu.yu.dbimpl.tx.recovery.LogRecordBase;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -22,6 +28,7 @@ import java.util.*;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -436,4 +443,963 @@ public class RecordTest {
         }
     }
 
+    @Test
+    public void recordLockTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 10);
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase setupTx = txMgr.newTx();
+        TableScanBase setupScan = new TableScan(setupTx, "rid_Table", layout);
+        setupScan.insert();
+        setupScan.setInt("int1", 1);
+        setupScan.insert();
+        setupScan.setInt("int1", 2);
+        setupScan.close();
+        setupTx.commit();
+
+        //two txs update different slots of the same block without blocking
+        TxBase tx1 = txMgr.newTx();
+        TxBase tx2 = txMgr.newTx();
+        TableScanBase scan1 = new TableScan(tx1, "rid_Table", layout);
+        TableScanBase scan2 = new TableScan(tx2, "rid_Table", layout);
+        scan1.moveToRid(new RID(0, 0));
+        scan1.setInt("int1", 10);
+        scan2.moveToRid(new RID(0, 1));
+        scan2.setInt("int1", 20);
+        assertEquals(20, scan2.getInt("int1"));
+
+        //...but still conflict on the same record
+        scan2.moveToRid(new RID(0, 0));
+        assertThrows(LockAbortException.class, () -> scan2.getInt("int1"));
+
+        scan1.close();
+        tx1.commit();
+        scan2.close();
+        tx2.rollback();
+
+        TxBase tx3 = txMgr.newTx();
+        TableScanBase scan3 = new TableScan(tx3, "rid_Table", layout);
+        assertTrue(scan3.next());
+        assertEquals(10, scan3.getInt("int1"));
+        assertTrue(scan3.next());
+        assertEquals(2, scan3.getInt("int1"));
+        assertFalse(scan3.next());
+        scan3.close();
+        tx3.commit();
+    }
+
+    @Test
+    public void isolationLevelTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgr txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase setupTx = txMgr.newTx();
+        TableScanBase setupScan = new TableScan(setupTx, "iso_Table", layout);
+        setupScan.insert();
+        setupScan.setInt("int1", 1);
+        setupScan.close();
+        setupTx.commit();
+
+        //READ_COMMITTED: the sLock is gone as soon as the value is read
+        TxBase reader = txMgr.newTx(IsolationLevel.READ_COMMITTED);
+        assertEquals(IsolationLevel.READ_COMMITTED, ((Tx)reader).isolationLevel());
+        TableScanBase readScan = new TableScan(reader, "iso_Table", layout);
+        assertTrue(readScan.next());
+        assertEquals(1, readScan.getInt("int1"));
+        TxBase writer = txMgr.newTx();
+        TableScanBase writeScan = new TableScan(writer, "iso_Table", layout);
+        writeScan.moveToRid(new RID(0, 0));
+        writeScan.setInt("int1", 2);
+        writeScan.close();
+        writer.commit();
+        assertEquals(2, readScan.getInt("int1"));
+        readScan.close();
+        reader.commit();
+
+        //CURSOR_STABILITY: the sLock is held while the scan is on the block
+        TxBase cursor = txMgr.newTx(IsolationLevel.CURSOR_STABILITY);
+        TableScanBase cursorScan = new TableScan(cursor, "iso_Table", layout);
+        assertTrue(cursorScan.next());
+        assertEquals(2, cursorScan.getInt("int1"));
+        TxBase writer2 = txMgr.newTx();
+        TableScanBase writeScan2 = new TableScan(writer2, "iso_Table", layout);
+        writeScan2.moveToRid(new RID(0, 0));
+        assertThrows(LockAbortException.class, () -> writeScan2.setInt("int1", 3));
+        cursorScan.close();
+        writeScan2.setInt("int1", 3);
+        writeScan2.close();
+        writer2.commit();
+        cursor.commit();
+
+        assertThrows(IllegalArgumentException.class, () -> txMgr.newTx(null));
+    }
+
+    @Test
+    public void scanCursorTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 10);
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        TableScanBase scan = new TableScan(tx, "cursor_Table", layout);
+        for(int i = 0; i < 100; i++){
+            scan.insert();
+            scan.setInt("int1", i);
+            scan.setString("string1", "row" + i);
+        }
+        assertEquals(9, buffeMgr.available());
+
+        //the scan holds a single pin while it moves across blocks
+        scan.beforeFirst();
+        int sum = 0;
+        int rows = 0;
+        while(scan.next()){
+            sum += scan.getInt("int1");
+            assertEquals("row" + scan.getInt("int1"), scan.getString("string1"));
+            assertEquals(9, buffeMgr.available());
+            rows++;
+        }
+        assertEquals(100, rows);
+        assertEquals(4950, sum);
+        //an exhausted scan stays on the last record
+        assertEquals(99, scan.getInt("int1"));
+
+        assertThrows(IllegalArgumentException.class, () -> scan.getInt("string1"));
+        scan.delete();
+        assertThrows(IllegalStateException.class, () -> scan.getInt("int1"));
+        scan.close();
+        assertEquals(10, buffeMgr.available());
+        tx.commit();
+    }
+
+
+    @Test
+    public void ordinalAccessTest(){
+        Schema schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 10);
+        schema.addDoubleField("double1");
+        schema.addBooleanField("bool1");
+        Layout layout = new Layout(schema);
+        assertEquals(4, layout.fieldCount());
+        for(int i = 0; i < layout.fieldCount(); i++){
+            String fld = layout.fieldName(i);
+            assertEquals(i, layout.ordinal(fld));
+            assertEquals(layout.offset(fld), layout.offset(i));
+            assertEquals(schema.type(fld), layout.type(i));
+            assertEquals(schema.length(fld), layout.length(i));
+        }
+        assertThrows(IllegalArgumentException.class, () -> layout.ordinal("nope"));
+        assertThrows(IllegalArgumentException.class, () -> layout.ordinal("int1", Types.VARCHAR));
+        //a Layout rebuilt from catalog meta-data compiles the same ordinals
+        Map<String, Integer> offsets = new HashMap<>();
+        for(String fld : schema.fields()){
+            offsets.put(fld, layout.offset(fld));
+        }
+        Layout copy = new Layout(schema, offsets, layout.slotSize());
+        assertEquals(layout.ordinal("bool1"), copy.ordinal("bool1"));
+        assertEquals(layout.offset(3), copy.offset(3));
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        TableScan scan = new TableScan(tx, "ordinal_Table", layout);
+        int intField = scan.ordinal("int1");
+        int stringField = scan.ordinal("string1");
+        int doubleField = scan.ordinal("double1");
+        int boolField = scan.ordinal("bool1");
+        for(int i = 0; i < 50; i++){
+            scan.insert();
+            scan.setInt(intField, i);
+            scan.setString(stringField, "row" + i);
+            scan.setDouble(doubleField, i / 2.0);
+            scan.setBoolean(boolField, i % 2 == 0);
+        }
+        assertThrows(IllegalArgumentException.class, () -> scan.setString(stringField, "much too long"));
+        assertThrows(IllegalArgumentException.class, () -> scan.getInt(stringField));
+        assertThrows(IllegalArgumentException.class, () -> scan.getInt(7));
+
+        scan.beforeFirst();
+        int rows = 0;
+        while(scan.next()){
+            int i = scan.getInt(intField);
+            //ordinal and name-based accessors see the same record
+            assertEquals(scan.getInt("int1"), i);
+            assertEquals("row" + i, scan.getString(stringField));
+            assertEquals(i / 2.0, scan.getDouble(doubleField));
+            assertEquals(i % 2 == 0, scan.getBoolean(boolField));
+            assertEquals(new Datum(i), scan.getVal(intField));
+            rows++;
+        }
+        assertEquals(50, rows);
+        scan.delete();
+        assertThrows(IllegalStateException.class, () -> scan.getInt(intField));
+        scan.close();
+        tx.commit();
+    }
+
+
+    @Test
+    public void slottedPageTest(){
+        Schema schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 200);
+        schema.addBooleanField("bool1");
+        Layout fixedLayout = new Layout(schema);
+        Layout layout = new Layout(schema, RecordFormat.SLOTTED);
+        assertEquals(RecordFormat.SLOTTED, layout.format());
+        assertNotEquals(fixedLayout, layout);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        assertThrows(IllegalArgumentException.class, () -> new SlottedRecordPage(tx, new BlockId("x", 0), fixedLayout));
+        TableScan fixedScan = new TableScan(tx, "fixed_Table", fixedLayout);
+        TableScan scan = new TableScan(tx, "slotted_Table", layout);
+        for(int i = 0; i < 100; i++){
+            fixedScan.insert();
+            fixedScan.setInt("int1", i);
+            fixedScan.setString("string1", "row" + i);
+            scan.insert();
+            scan.setInt("int1", i);
+            scan.setString("string1", "row" + i);
+            scan.setBoolean("bool1", i % 2 == 0);
+        }
+        //short strings only take the space they need
+        assertTrue(tx.size(scan.getTableFileName()) * 5 < tx.size(fixedScan.getTableFileName()));
+        fixedScan.close();
+
+        scan.beforeFirst();
+        int rows = 0;
+        while(scan.next()){
+            int i = scan.getInt("int1");
+            assertEquals("row" + i, scan.getString("string1"));
+            assertEquals(i % 2 == 0, scan.getBoolean("bool1"));
+            rows++;
+        }
+        assertEquals(100, rows);
+
+        //growing, shrinking and deleting records within a block
+        scan.beforeFirst();
+        Map<RID, String> expected = new HashMap<>();
+        while(scan.next()){
+            int i = scan.getInt("int1");
+            if(i % 3 == 0){
+                scan.delete();
+            }else{
+                String val = i % 3 == 1 ? "x".repeat(20) : "";
+                scan.setString("string1", val);
+                expected.put(scan.getRid(), val);
+            }
+        }
+        scan.beforeFirst();
+        rows = 0;
+        while(scan.next()){
+            assertEquals(expected.get(scan.getRid()), scan.getString("string1"));
+            rows++;
+        }
+        assertThrows(IllegalArgumentException.class, () -> scan.setString("string1", "y".repeat(201)));
+        assertEquals(expected.size(), rows);
+        //RIDs are stable across tuple moves
+        for(Map.Entry<RID, String> e : expected.entrySet()){
+            scan.moveToRid(e.getKey());
+            assertEquals(e.getValue(), scan.getString("string1"));
+        }
+
+        //a value too big for what's left of its block is rejected
+        scan.beforeFirst();
+        assertTrue(scan.next());
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> {
+            for(int i = 0; i < 100; i++){
+                scan.insert();
+            }
+            scan.beforeFirst();
+            while(scan.next()){
+                scan.setString("string1", "z".repeat(200));
+            }
+        });
+        assertTrue(e.getMessage().contains("no longer fits"));
+        scan.close();
+        tx.rollback();
+
+        //rollback undoes the moves, and leaves the table empty
+        TxBase tx2 = txMgr.newTx();
+        TableScan scan2 = new TableScan(tx2, "slotted_Table", layout);
+        assertFalse(scan2.next());
+        scan2.insert();
+        scan2.setString("string1", "after");
+        scan2.beforeFirst();
+        assertTrue(scan2.next());
+        assertEquals("after", scan2.getString("string1"));
+        assertEquals(0, scan2.getInt("int1"));
+        scan2.close();
+        tx2.commit();
+    }
+
+    @Test
+    public void slottedConcurrentInsertTest(){
+        Schema schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 50);
+        Layout layout = new Layout(schema, RecordFormat.SLOTTED);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx0 = txMgr.newTx();
+        TableScan scan0 = new TableScan(tx0, "SCI", layout);
+        scan0.insert();
+        scan0.setInt("int1", 0);
+        scan0.close();
+        tx0.commit();
+
+        //inserters into the same block don't exclude each other
+        TxBase tx1 = txMgr.newTx();
+        TableScan scan1 = new TableScan(tx1, "SCI", layout);
+        scan1.insert();
+        scan1.setInt("int1", 1);
+        TxBase tx2 = txMgr.newTx();
+        TableScan scan2 = new TableScan(tx2, "SCI", layout);
+        scan2.insert();
+        scan2.setInt("int1", 2);
+        assertEquals(0, scan1.getRid().blockNumber());
+        assertEquals(0, scan2.getRid().blockNumber());
+        assertNotEquals(scan1.getRid(), scan2.getRid());
+        //nor do records that grow
+        scan2.setString("string1", "grown".repeat(10));
+        scan1.setString("string1", "also grown");
+        assertEquals("grown".repeat(10), scan2.getString("string1"));
+        scan1.close();
+        tx1.rollback();
+        scan2.close();
+        tx2.commit();
+
+        TxBase tx3 = txMgr.newTx();
+        TableScan scan3 = new TableScan(tx3, "SCI", layout);
+        Map<Integer, String> rows = new HashMap<>();
+        while(scan3.next()){
+            rows.put(scan3.getInt("int1"), scan3.getString("string1"));
+        }
+        assertEquals(Map.of(0, "", 2, "grown".repeat(10)), rows);
+        scan3.close();
+        tx3.commit();
+    }
+
+
+    @Test
+    public void freeSpaceMapTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 30);
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        TableScan scan = new TableScan(tx, "fsm_Table", layout);
+        for(int i = 0; i < 1000; i++){
+            scan.insert();
+            scan.setInt("int1", i);
+        }
+        int blocks = tx.size(scan.getTableFileName());
+        assertTrue(blocks > 50);
+        FreeSpaceMap fsm = new FreeSpaceMap(tx, "fsm_Table");
+        assertEquals(1, tx.size(fsm.getFileName()));
+        //every block but the last is full
+        assertEquals(blocks - 1, fsm.findBlockWithRoom(0, blocks));
+
+        //a delete makes its block the target of the next insert
+        RID early = null;
+        scan.beforeFirst();
+        while(scan.next()){
+            if(scan.getInt("int1") == 20){
+                early = scan.getRid();
+                scan.delete();
+                break;
+            }
+        }
+        scan.beforeFirst();
+        scan.insert();
+        assertEquals(early, scan.getRid());
+        assertEquals(9, buffeMgr.available());
+
+        //with the early hole filled, inserts go to the last block and then append
+        scan.beforeFirst();
+        for(int i = 0; i < 30; i++){
+            scan.insert();
+            scan.setInt("int1", i);
+        }
+        assertTrue(scan.getRid().blockNumber() >= blocks - 1);
+        assertTrue(tx.size(scan.getTableFileName()) > blocks);
+        scan.close();
+        assertEquals(10, buffeMgr.available());
+        tx.commit();
+    }
+
+    @Test
+    public void bulkLoaderTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 30);
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        //a load that commits is visible to a TableScan and to the index
+        TxBase tx = txMgr.newTx();
+        IndexBase index = new Index(tx, new IndexDescriptor("bulk_Table", schema, "bulkIdx", "int1", IndexMgrBase.IndexType.STATIC_HASH), 5);
+        BulkLoader loader = new BulkLoader(tx, "bulk_Table", layout);
+        loader.addIndex("int1", index);
+        Map<Integer, RID> rids = new HashMap<>();
+        for(int i = 0; i < 495; i++){
+            rids.put(i, loader.insert());
+            loader.setInt("int1", i);
+            loader.setString("string1", "rec" + i);
+        }
+        assertThrows(IllegalArgumentException.class, () -> loader.setString("string1", "x".repeat(31)));
+        assertThrows(IllegalArgumentException.class, () -> loader.setInt("string1", 1));
+        loader.close();
+        assertThrows(IllegalStateException.class, () -> loader.insert());
+        assertEquals(10, buffeMgr.available());
+        tx.commit();
+
+        TxBase tx2 = txMgr.newTx();
+        TableScan scan = new TableScan(tx2, "bulk_Table", layout);
+        int count = 0;
+        while(scan.next()){
+            int val = scan.getInt("int1");
+            assertEquals("rec" + val, scan.getString("string1"));
+            assertEquals(rids.get(val), scan.getRid());
+            count++;
+        }
+        assertEquals(495, count);
+        //the last, partly filled block takes the next insert
+        int blocks = tx2.size(scan.getTableFileName());
+        scan.insert();
+        assertEquals(blocks - 1, scan.getRid().blockNumber());
+        scan.close();
+        IndexBase index2 = new Index(tx2, new IndexDescriptor("bulk_Table", schema, "bulkIdx", "int1", IndexMgrBase.IndexType.STATIC_HASH), 5);
+        index2.beforeFirst(new Datum(321));
+        assertTrue(index2.next());
+        assertEquals(rids.get(321), index2.getRID());
+        assertFalse(index2.next());
+        index2.close();
+        tx2.commit();
+
+        //a load that rolls back leaves nothing behind
+        TxBase tx3 = txMgr.newTx();
+        BulkLoader loader2 = new BulkLoader(tx3, "bulk_Table", layout);
+        for(int i = 0; i < 200; i++){
+            loader2.insert();
+            loader2.setInt("int1", 1000 + i);
+        }
+        loader2.close();
+        tx3.rollback();
+
+        TxBase tx4 = txMgr.newTx();
+        scan = new TableScan(tx4, "bulk_Table", layout);
+        count = 0;
+        while(scan.next()){
+            assertTrue(scan.getInt("int1") < 1000);
+            count++;
+        }
+        assertEquals(496, count);
+        scan.close();
+        tx4.commit();
+    }
+
+    @Test
+    public void rowImageLogTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addIntField("int2");
+        schema.addDoubleField("doub1");
+        schema.addBooleanField("bool1");
+        schema.addField("string1", Types.VARCHAR, 20);
+        schema.addField("string2", Types.VARCHAR, 20);
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        //one log record for each row's fields, plus one for its in-use flag
+        TxBase tx = txMgr.newTx();
+        TableScan scan = new TableScan(tx, "rowImage_Table", layout);
+        for(int i = 0; i < 20; i++){
+            scan.insert();
+            scan.setInt("int1", i);
+            scan.setInt("int2", i);
+            scan.setInt("int2", -i);
+            scan.setDouble("doub1", i * 1.5);
+            scan.setBoolean("bool1", i % 2 == 0);
+            scan.setString("string1", "a" + i);
+            scan.setString("string2", "b" + i);
+        }
+        scan.close();
+        Map<Integer, Integer> counts = logCounts(logManager, tx.txnum());
+        assertEquals(20, (int) counts.get(LogRecordBase.LogType.ROW_IMAGE.ordinal()));
+        assertEquals(20, (int) counts.get(LogRecordBase.LogType.SET_BOOL.ordinal()));
+        assertEquals(2, counts.size());
+        tx.commit();
+
+        //rolling back a tx restores every field, even if the scan is still on the row
+        TxBase tx2 = txMgr.newTx();
+        scan = new TableScan(tx2, "rowImage_Table", layout);
+        while(scan.next()){
+            scan.setInt("int1", 100);
+            scan.setDouble("doub1", 0.25);
+            scan.setString("string1", "changed");
+            scan.setString("string1", "changed again");
+            scan.setBoolean("bool1", true);
+        }
+        scan.beforeFirst();
+        scan.next();
+        scan.setInt("int2", 1000);
+        tx2.rollback();
+
+        TxBase tx3 = txMgr.newTx();
+        scan = new TableScan(tx3, "rowImage_Table", layout);
+        int count = 0;
+        while(scan.next()){
+            int i = scan.getInt("int1");
+            assertEquals(-i, scan.getInt("int2"));
+            assertEquals(i * 1.5, scan.getDouble("doub1"));
+            assertEquals(i % 2 == 0, scan.getBoolean("bool1"));
+            assertEquals("a" + i, scan.getString("string1"));
+            assertEquals("b" + i, scan.getString("string2"));
+            count++;
+        }
+        assertEquals(20, count);
+        //committing without leaving the row still logs and keeps its writes
+        scan.beforeFirst();
+        scan.next();
+        scan.setInt("int2", 1000);
+        tx3.commit();
+        assertEquals(1, (int) logCounts(logManager, tx3.txnum()).get(LogRecordBase.LogType.ROW_IMAGE.ordinal()));
+
+        TxBase tx4 = txMgr.newTx();
+        scan = new TableScan(tx4, "rowImage_Table", layout);
+        scan.next();
+        assertEquals(1000, scan.getInt("int2"));
+        scan.close();
+        tx4.commit();
+    }
+
+
+    @Test
+    public void paxPageTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 20);
+        schema.addDoubleField("doub1");
+        schema.addBooleanField("bool1");
+        LayoutBase layout = new Layout(schema, RecordFormat.PAX);
+        assertEquals(new Layout(schema).slotSize(), layout.slotSize());
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        //each field's values are stored together, one slot after another
+        TxBase tx = txMgr.newTx();
+        PaxRecordPage page = new PaxRecordPage(tx, b1, layout);
+        int slots = 400 / layout.slotSize();
+        assertEquals(slots, page.maxSlots());
+        assertEquals(slots, page.fieldOffset(0, 0));
+        assertEquals(slots + 4, page.fieldOffset(1, 0));
+        assertEquals(slots + 4 * slots, page.fieldOffset(0, 1));
+        assertEquals(2, page.flagOffset(2));
+        assertThrows(IllegalArgumentException.class, () -> new PaxRecordPage(tx, b1, new Layout(schema)));
+        tx.commit();
+
+        //the format is transparent to a TableScan
+        TxBase tx2 = txMgr.newTx();
+        TableScan scan = new TableScan(tx2, "pax_Table", layout);
+        for(int i = 0; i < 100; i++){
+            scan.insert();
+            scan.setInt("int1", i);
+            scan.setString("string1", "str" + i);
+            scan.setDouble("doub1", i / 2.0);
+            scan.setBoolean("bool1", i % 3 == 0);
+        }
+        scan.beforeFirst();
+        while(scan.next()){
+            if(scan.getInt("int1") % 2 == 1){
+                scan.delete();
+            }
+        }
+        scan.close();
+        tx2.commit();
+
+        TxBase tx3 = txMgr.newTx();
+        scan = new TableScan(tx3, "pax_Table", layout);
+        int count = 0;
+        while(scan.next()){
+            int i = scan.getInt("int1");
+            assertEquals(0, i % 2);
+            assertEquals("str" + i, scan.getString("string1"));
+            assertEquals(i / 2.0, scan.getDouble("doub1"));
+            assertEquals(i % 3 == 0, scan.getBoolean("bool1"));
+            count++;
+        }
+        assertEquals(50, count);
+        scan.close();
+        tx3.commit();
+    }
+
+    @Test
+    public void batchScanTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 20);
+        schema.addDoubleField("doub1");
+        schema.addBooleanField("bool1");
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        for(RecordFormat format : RecordFormat.values()){
+            LayoutBase layout = new Layout(schema, format);
+            String tblname = "batch_" + format;
+            //a slotted block filled with empty tuples has no room to grow them
+            String prefix = format == RecordFormat.SLOTTED ? null : "s";
+            TxBase tx = txMgr.newTx();
+            TableScan scan = new TableScan(tx, tblname, layout);
+            for(int i = 0; i < 300; i++){
+                scan.insert();
+                scan.setInt("int1", i);
+                if(prefix != null){
+                    scan.setString("string1", prefix + i);
+                }
+                scan.setDouble("doub1", i / 4.0);
+                scan.setBoolean("bool1", i % 2 == 0);
+            }
+            scan.beforeFirst();
+            while(scan.next()){
+                if(scan.getInt("int1") % 5 == 0){
+                    scan.delete();
+                }
+            }
+            scan.close();
+            tx.commit();
+
+            TxBase tx2 = txMgr.newTx();
+            BatchScan batchScan = new BatchScan(tx2, tblname, layout, List.of("string1", "int1"), 64);
+            ColumnBatch batch = batchScan.batch();
+            assertThrows(IllegalArgumentException.class, () -> batch.doubles(1));
+            assertThrows(IllegalArgumentException.class, () -> batch.column("doub1"));
+            int ints = batch.column("int1");
+            int strings = batch.column("string1");
+            List<Integer> seen = new ArrayList<>();
+            long sum = 0;
+            int batches = 0;
+            while(batchScan.nextBatch()){
+                batches++;
+                assertTrue(batch.size() <= 64);
+                assertEquals(batch.size(), batch.selectedCount());
+                //at most the current block is pinned
+                assertTrue(buffeMgr.available() >= 9);
+                for(int row = 0; row < batch.size(); row++){
+                    int i = batch.ints(ints)[row];
+                    assertEquals(prefix == null ? "" : prefix + i, batch.getString(strings, row));
+                    seen.add(i);
+                }
+                //a filter narrows the selection, an aggregate reads only the selected rows
+                batch.filterInts(ints, v -> v % 2 == 1);
+                for(int k = 0; k < batch.selectedCount(); k++){
+                    assertEquals(1, batch.ints(ints)[batch.selection()[k]] % 2);
+                }
+                sum += batch.sumInts(ints);
+            }
+            assertEquals(240, seen.size());
+            assertEquals(4, batches);
+            assertEquals(new TreeSet<>(seen).size(), seen.size());
+            assertFalse(seen.contains(0));
+            assertEquals(150 * 150 - (5 + 295) * 30 / 2, sum);
+            batchScan.close();
+            assertEquals(10, buffeMgr.available());
+
+            //every field, and rescanning after beforeFirst()
+            batchScan = new BatchScan(tx2, tblname, layout, 1000);
+            batchScan.beforeFirst();
+            assertTrue(batchScan.nextBatch());
+            ColumnBatch all = batchScan.batch();
+            assertEquals(240, all.size());
+            assertFalse(batchScan.nextBatch());
+            batchScan.beforeFirst();
+            assertTrue(batchScan.nextBatch());
+            RID rid = all.rid(7);
+            TableScan check = new TableScan(tx2, tblname, layout);
+            check.moveToRid(rid);
+            assertEquals(all.ints(all.column("int1"))[7], check.getInt("int1"));
+            assertEquals(all.doubles(all.column("doub1"))[7], check.getDouble("doub1"));
+            assertEquals(all.booleans(all.column("bool1"))[7], check.getBoolean("bool1"));
+            check.close();
+            batchScan.close();
+            batchScan.close();
+            assertThrows(IllegalStateException.class, batchScan::nextBatch);
+            tx2.commit();
+        }
+    }
+
+    @Test
+    public void earlyReleaseDependencyTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+        LockTable lt = ((TxMgr)txMgr).getLockTable();
+        LayoutBase layout = new Layout(schema, RecordFormat.FIXED);
+
+        TxBase tx = txMgr.newTx();
+        TableScan scan = new TableScan(tx, "ELR", layout);
+        scan.insert();
+        scan.setInt("int1", 1);
+        scan.close();
+        tx.commit();
+
+        //a record-level writer holds only IX on the block...
+        TxBase writer = txMgr.newTx();
+        scan = new TableScan(writer, "ELR", layout);
+        scan.insert();
+        scan.setInt("int1", 2);
+        scan.close();
+        //...which it releases early, before its COMMIT record (say at LSN 1000) is durable
+        BlockIdBase blk = new BlockId("ELR_data.tbl", 0);
+        lt.unlock(List.of(blk), writer.txnum(), 1000);
+
+        //a reader that locks the whole block depends on the writer's COMMIT record
+        Tx reader = (Tx) txMgr.newTx();
+        BatchScan batchScan = new BatchScan(reader, "ELR", layout, 64);
+        assertTrue(batchScan.nextBatch());
+        batchScan.close();
+        assertEquals(1000, reader.commitDependencyLSN());
+        //a record-level reader doesn't, since it locks the records that it reads
+        Tx recordReader = (Tx) txMgr.newTx();
+        scan = new TableScan(recordReader, "ELR", layout);
+        assertTrue(scan.next());
+        assertEquals(1, scan.getInt("int1"));
+        scan.close();
+        assertEquals(-1, recordReader.commitDependencyLSN());
+        recordReader.rollback();
+        reader.rollback();
+        writer.rollback();
+    }
+
+    @Test
+    public void parallelScanTest(){
+        SchemaBase schema = new Schema();
+        schema.addIntField("int1");
+        schema.addField("string1", Types.VARCHAR, 10);
+        schema.addDoubleField("doub1");
+        LayoutBase layout = new Layout(schema);
+
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx = txMgr.newTx();
+        BulkLoader loader = new BulkLoader(tx, "parallel_Table", layout);
+        for(int i = 0; i < 3000; i++){
+            loader.insert();
+            loader.setInt("int1", i);
+            loader.setString("string1", "s" + i);
+            loader.setDouble("doub1", i / 2.0);
+        }
+        loader.close();
+        tx.commit();
+
+        TxBase tx2 = txMgr.newTx();
+        ParallelTableScan scan = new ParallelTableScan(tx2, "parallel_Table", layout, List.of("int1", "doub1"), 4);
+        assertEquals(tx2.size("parallel_Table_data.tbl"), scan.blockCount());
+        assertTrue(scan.blockCount() > 100);
+        long rows = scan.stream().mapToLong(ColumnBatch::size).sum();
+        assertEquals(3000, rows);
+        long sum = scan.stream().mapToLong(b -> b.sumInts(0)).sum();
+        assertEquals(2999L * 3000 / 2, sum);
+        //a filter over every batch, on a pool with more workers than buffers
+        ForkJoinPool pool = new ForkJoinPool(16);
+        double halves = scan.execute(pool, s -> s.mapToDouble(b -> {
+            b.filterInts(0, v -> v >= 1000);
+            return b.sumDoubles(1);
+        }).sum());
+        pool.shutdown();
+        assertEquals((1000.0 + 2999.0) * 2000 / 4, halves);
+        //a short-circuiting operation may leave morsels pinned until close()
+        assertTrue(scan.stream().anyMatch(b -> b.size() > 0));
+        scan.close();
+        scan.close();
+        assertEquals(10, buffeMgr.available());
+        assertThrows(IllegalStateException.class, scan::stream);
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParallelTableScan(tx2, "parallel_Table", layout, List.of("nope"), 4));
+        assertThrows(IllegalArgumentException.class,
+                () -> new ParallelTableScan(tx2, "parallel_Table", layout, List.of("int1"), 0));
+        tx2.commit();
+
+        //the snapshot's blocks are locked against writers until the scan's tx completes
+        TxBase reader = txMgr.newTx();
+        ParallelTableScan held = new ParallelTableScan(reader, "parallel_Table", layout, List.of("int1"), 4);
+        TxBase writer = txMgr.newTx();
+        TableScan writes = new TableScan(writer, "parallel_Table", layout);
+        writes.next();
+        assertThrows(LockAbortException.class, () -> writes.setInt("int1", -1));
+        writes.close();
+        writer.rollback();
+        held.close();
+        reader.commit();
+    }
+
+    /** Counts the update log records, by type, written by the specified tx. */
+    private Map<Integer, Integer> logCounts(LogMgrBase logManager, int txnum) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        Iterator<byte[]> logs = logManager.iterator();
+        while(logs.hasNext()){
+            LogRecord lr = LogRecord.getLogRecord(logs.next());
+            if(lr.txNumber() != txnum){
+                continue;
+            }
+            if(lr.op() == LogRecordBase.LogType.START.ordinal()){
+                break;
+            }
+            if(lr.op() != LogRecordBase.LogType.COMMIT.ordinal()){
+                counts.merge(lr.op(), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
 }
@@ -5,11 +5,15 @@ import edu.yu.dbimpl.config.DBConfiguration;
 import edu.yu.dbimpl.file.*;
 import edu.yu.dbimpl.log.LogMgr;
 import edu.yu.dbimpl.log.LogMgrBase;
+import edu.yu.dbimpl.tx.PageHandle;
+import edu.yu.dbimpl.tx.Tx;
 import edu.yu.dbimpl.tx.TxBase;
 import edu.yu.dbimpl.tx.TxMgr;
 import edu.yu.dbimpl.tx.TxMgrBase;
 import edu.yu.dbimpl.tx.concurrency.LockAbortException;
 import edu.yu.dbimpl.tx.concurrency.LockTable;
+import edu.yu.dbimpl.tx.recovery.LogRecord;
+import edu.yu.dbimpl.tx.recovery.LogRecordBase;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -684,4 +688,201 @@ public class TxTest {
         assertEquals(456, i2);
         tx2.commit();
     }
+
+    @Test
+    public void readOnlyTxTest(){
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx1 = txMgr.newTx();
+        tx1.append("testfile1");
+        tx1.pin(b1);
+        tx1.setInt(b1, 100, 613, true);
+        tx1.commit();
+
+        int before = 0;
+        Iterator<byte[]> logs = logManager.iterator();
+        while(logs.hasNext()){
+            logs.next();
+            before++;
+        }
+
+        TxBase readOnly = ((TxMgr)txMgr).newReadOnlyTx();
+        readOnly.pin(b1);
+        assertEquals(613, readOnly.getInt(b1, 100));
+        assertThrows(IllegalStateException.class, () -> readOnly.setInt(b1, 100, 614, true));
+        assertThrows(IllegalStateException.class, () -> readOnly.append("testfile1"));
+        readOnly.commit();
+        assertEquals(TxBase.Status.COMMITTED, readOnly.getStatus());
+        assertEquals(10, buffeMgr.available());
+
+        int after = 0;
+        logs = logManager.iterator();
+        while(logs.hasNext()){
+            logs.next();
+            after++;
+        }
+        assertEquals(before, after);
+
+        //its sLock was released at commit
+        TxBase tx2 = txMgr.newTx();
+        tx2.pin(b1);
+        tx2.setInt(b1, 100, 614, true);
+        tx2.commit();
+    }
+
+    @Test
+    public void earlyLockReleaseTest() throws InterruptedException {
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+        LockTable lt = ((TxMgr)txMgr).getLockTable();
+
+        //a lock released before its holder's commit record is durable imposes a dependency
+        lt.xLock(b1, 100);
+        lt.unlock(List.of(b1), 100, 5);
+        assertEquals(5, lt.sLock(b1, 101));
+        lt.unlock(List.of(b1), 101);
+        //...which goes away once the commit record is durable
+        lt.setDurableLSN(5);
+        assertEquals(-1, lt.sLock(b1, 102));
+        lt.unlock(List.of(b1), 102);
+
+        //commit releases locks early but still forces the COMMIT record
+        TxBase tx1 = txMgr.newTx();
+        tx1.append("testfile1");
+        tx1.pin(b1);
+        tx1.setInt(b1, 0, 613, true);
+        tx1.commit();
+        TxBase tx2 = txMgr.newTx();
+        tx2.pin(b1);
+        assertEquals(613, tx2.getInt(b1, 0));
+        tx2.commit();
+        int commits = 0;
+        Iterator<byte[]> logs = logManager.iterator();
+        while(logs.hasNext()){
+            if(LogRecord.getLogRecord(logs.next()).op() == LogRecordBase.LogType.COMMIT.ordinal()){
+                commits++;
+            }
+        }
+        assertEquals(2, commits);
+    }
+
+    @Test
+    public void pageHandleTest(){
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        Tx tx1 = (Tx) txMgr.newTx();
+        tx1.append("testfile1");
+        PageHandle handle = tx1.pinHandle(b1);
+        assertEquals(b1, handle.block());
+        handle.setInt(0, 613, true);
+        handle.setString(10, "handle", true);
+        handle.setBoolean(40, true, false);
+        handle.setDouble(50, 3.5, true);
+        assertEquals(613, handle.getInt(0));
+        assertEquals("handle", handle.getString(10));
+        assertTrue(handle.getBoolean(40));
+        assertEquals(3.5, handle.getDouble(50));
+        //the handle and the Tx API see the same page
+        assertEquals(613, tx1.getInt(b1, 0));
+        handle.unpin();
+        assertFalse(handle.isValid());
+        assertThrows(IllegalStateException.class, () -> handle.getInt(0));
+        assertEquals(10, buffeMgr.available());
+        tx1.commit();
+
+        //logged handle writes are undone on rollback
+        Tx tx2 = (Tx) txMgr.newTx();
+        PageHandle handle2 = tx2.pinHandle(b1);
+        handle2.setInt(0, 614, true);
+        tx2.rollback();
+        assertThrows(IllegalStateException.class, () -> handle2.getInt(0));
+
+        TxBase tx3 = txMgr.newTx();
+        tx3.pin(b1);
+        assertEquals(613, tx3.getInt(b1, 0));
+        tx3.commit();
+    }
+
+    @Test
+    public void recordGranularAccessTest(){
+        Properties dbProperties = new Properties();
+        dbProperties.put(DBConfiguration.DB_STARTUP, Boolean.toString(true));
+        DBConfiguration config = DBConfiguration.INSTANCE;
+        config.setConfiguration(dbProperties);
+        if (!file.exists()) {
+            file.mkdir();
+        }
+        FileMgrBase fm = new FileMgr(file, 400);
+        LogMgrBase logManager = new LogMgr(fm, "logfile");
+        BufferMgrBase buffeMgr = new BufferMgr(fm, logManager, 10, 500);
+        TxMgrBase txMgr = new TxMgr(fm, logManager, buffeMgr, 500);
+
+        TxBase tx0 = txMgr.newTx();
+        tx0.append("testfile1");
+        tx0.commit();
+
+        //writers of different records of a block proceed concurrently
+        Tx tx1 = (Tx) txMgr.newTx();
+        tx1.pin(b1);
+        tx1.setInt(b1, 0, 0, 7, true);
+        Tx tx2 = (Tx) txMgr.newTx();
+        tx2.pin(b1);
+        tx2.setInt(b1, 1, 100, 8, true);
+        assertEquals(8, tx2.getInt(b1, 1, 100));
+
+        //but an intention lock doesn't cover a block-granular access
+        assertThrows(LockAbortException.class, () -> tx2.getInt(b1, 0));
+        assertThrows(LockAbortException.class, () -> tx2.setInt(b1, 0, 9, true));
+        tx2.rollback();
+
+        //a handle directed at a record locks only that record
+        Tx tx3 = (Tx) txMgr.newTx();
+        PageHandle handle = tx3.pinHandle(b1);
+        handle.onRecord(1);
+        handle.setInt(100, 5, true);
+        assertEquals(5, handle.getInt(100));
+        handle.onRecord(0);
+        assertThrows(LockAbortException.class, () -> handle.getInt(0));
+
+        //rolling back a record-level writer doesn't wait for the block's
+        //other writers
+        tx1.rollback();
+        tx3.rollback();
+
+        TxBase tx4 = txMgr.newTx();
+        tx4.pin(b1);
+        assertEquals(0, tx4.getInt(b1, 0));
+        assertEquals(0, tx4.getInt(b1, 100));
+        tx4.commit();
+    }
 }